@@ -5,13 +5,9 @@ import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
 import java.net.Socket;
-import java.net.URL;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
@@ -68,24 +64,12 @@ public abstract class NeuralNERBase extends DockerRestAnnotator {
 		String body = json.toString();
 
 		try {
-			URL url = new URL(getRestEndpoint());
-			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-			connection.setRequestMethod("POST");
-			connection.setDoInput(true);
-			connection.setDoOutput(true);
-			connection.setUseCaches(false);
-			connection.setRequestProperty("Content-Type", "application/json");
-			connection.setRequestProperty("Content-Length", String.valueOf(body.length()));
+			// the transport sends the body as UTF-8 with the matching length
+			String res = sendRequest(body);
 
-			OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream());
-			writer.write(body);
-			writer.flush();
-
-			String res = IOUtils.toString(connection.getInputStream());
-
-			writer.close();
-			System.out.println(new JSONObject(res));
-			updateCAS(aJCas, new JSONObject(res));
+			JSONObject jsonResult = new JSONObject(res);
+			System.out.println(jsonResult);
+			updateCAS(aJCas, jsonResult);
 
 		} catch (Exception ex) {
 			throw new AnalysisEngineProcessException(ex);
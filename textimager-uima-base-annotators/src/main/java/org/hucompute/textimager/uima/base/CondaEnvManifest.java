@@ -0,0 +1,90 @@
+package org.hucompute.textimager.uima.base;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Stored state of a completely set up conda env.
+ *
+ * Written after the env was installed, so later starts can skip the setup and the walk of the
+ * lib dir if the dependencies and the installed packages did not change.
+ */
+public class CondaEnvManifest {
+	public static final String FILE_NAME = "textimager_env_manifest.json";
+
+	private final String dependencyHash;
+	private final long packagesModified;
+	private final List<String> includePaths;
+
+	public CondaEnvManifest(String dependencyHash, long packagesModified, List<String> includePaths) {
+		this.dependencyHash = dependencyHash;
+		this.packagesModified = packagesModified;
+		this.includePaths = includePaths;
+	}
+
+	/**
+	 * Reads the manifest
+	 *
+	 * @return the manifest or null if it is missing or broken
+	 */
+	public static CondaEnvManifest read(Path file) {
+		if (!Files.exists(file)) {
+			return null;
+		}
+		try {
+			JSONObject json = new JSONObject(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+			List<String> includePaths = new ArrayList<>();
+			JSONArray paths = json.getJSONArray("includePaths");
+			for (int ind = 0; ind < paths.length(); ind++) {
+				includePaths.add(paths.getString(ind));
+			}
+			return new CondaEnvManifest(json.getString("dependencyHash"), json.getLong("packagesModified"), includePaths);
+		} catch (IOException | JSONException e) {
+			System.out.println("ignoring broken env manifest " + file + ": " + e.getMessage());
+			return null;
+		}
+	}
+
+	// Writes the manifest, readers never see a partial file
+	public void write(Path file) throws IOException {
+		JSONObject json = new JSONObject();
+		json.put("dependencyHash", dependencyHash);
+		json.put("packagesModified", packagesModified);
+		json.put("includePaths", new JSONArray(includePaths));
+
+		Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+		Files.write(temp, json.toString().getBytes(StandardCharsets.UTF_8));
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Checks if the env still matches the manifest
+	 *
+	 * @param dependencyHash hash of the current dependency config
+	 * @param packagesModified current modification time of the packages dir
+	 */
+	public boolean isValid(String dependencyHash, long packagesModified) {
+		return this.dependencyHash.equals(dependencyHash) && this.packagesModified == packagesModified;
+	}
+
+	public String getDependencyHash() {
+		return dependencyHash;
+	}
+
+	public long getPackagesModified() {
+		return packagesModified;
+	}
+
+	public List<String> getIncludePaths() {
+		return includePaths;
+	}
+}
@@ -0,0 +1,79 @@
+package org.hucompute.textimager.uima.base;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive lock on a file, for threads of this JVM and other processes.
+ *
+ * Waiting processes are woken up by the OS as soon as the lock is released, the lock is also
+ * released if the process holding it dies.
+ */
+public class CondaLock implements Closeable {
+	// file locks are held by the whole JVM, threads have to wait here
+	private static final Map<Path, ReentrantLock> jvmLocks = new ConcurrentHashMap<>();
+
+	private final ReentrantLock jvmLock;
+	private final FileChannel channel;
+	private final FileLock fileLock;
+
+	private CondaLock(ReentrantLock jvmLock, FileChannel channel, FileLock fileLock) {
+		this.jvmLock = jvmLock;
+		this.channel = channel;
+		this.fileLock = fileLock;
+	}
+
+	/**
+	 * Waits until the lock is free and takes it
+	 *
+	 * @param lockfile the lock file, created if missing and never deleted
+	 * @param name name of the lock for logging
+	 */
+	public static CondaLock acquire(Path lockfile, String name) throws IOException {
+		ReentrantLock jvmLock = jvmLocks.computeIfAbsent(lockfile.toAbsolutePath().normalize(), path -> new ReentrantLock());
+		if (!jvmLock.tryLock()) {
+			System.out.println("waiting on lock \"" + name + "\"...");
+			try {
+				jvmLock.lockInterruptibly();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while waiting on lock \"" + name + "\"");
+			}
+		}
+
+		FileChannel channel = null;
+		try {
+			channel = FileChannel.open(lockfile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+			FileLock fileLock = channel.tryLock();
+			if (fileLock == null) {
+				System.out.println("waiting on lock \"" + name + "\" of other process...");
+				fileLock = channel.lock();
+			}
+			return new CondaLock(jvmLock, channel, fileLock);
+		} catch (IOException | RuntimeException e) {
+			if (channel != null) {
+				channel.close();
+			}
+			jvmLock.unlock();
+			throw e;
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			fileLock.release();
+			channel.close();
+		} finally {
+			jvmLock.unlock();
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package org.hucompute.textimager.uima.base;
+
+import org.apache.commons.io.IOUtils;
+import org.hucompute.textimager.uima.docker.ContainerParametersBuilder;
+import org.hucompute.textimager.uima.docker.ContainerWrapper;
+import org.hucompute.textimager.uima.docker.DockerAPI;
+import org.json.JSONObject;
+
+import javax.json.JsonObject;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Launches containers using the Docker API
+ */
+public class DockerApiContainerLauncher implements DockerContainerLauncher {
+	// Label to find pooled containers
+	public static final String POOL_LABEL = "org.hucompute.textimager.pool";
+
+	private final DockerAPI docker;
+	private final DockerStartupMetrics metrics;
+
+	public DockerApiContainerLauncher(DockerAPI docker, DockerStartupMetrics metrics) {
+		this.docker = docker;
+		this.metrics = metrics;
+	}
+
+	@Override
+	public PooledContainer start(DockerContainerSpec spec, String name, String poolLabel, long timeout) throws Exception {
+		long deadline = System.currentTimeMillis() + timeout;
+
+		// check if image already exists
+		System.out.println("Checking for docker image...");
+		long phaseStart = System.currentTimeMillis();
+		boolean imageExists = docker.check_image_exists(spec.getImage());
+		metrics.record(DockerStartupMetrics.Phase.IMAGE_CHECK, System.currentTimeMillis() - phaseStart);
+		if (!imageExists) {
+			// Pull the docker image to use
+			System.out.println("Docker image not found, pulling...");
+			phaseStart = System.currentTimeMillis();
+			int tagPos = spec.getImage().lastIndexOf(':');
+			docker.get_handle().images().pull(spec.getImage().substring(0, tagPos), spec.getImage().substring(tagPos + 1));
+			metrics.record(DockerStartupMetrics.Phase.PULL, System.currentTimeMillis() - phaseStart);
+		}
+
+		System.out.println("Starting container \"" + name + "\"");
+
+		// Build container
+		ContainerParametersBuilder parametersBuilder = new ContainerParametersBuilder(spec.getImage());
+		parametersBuilder.set_label(POOL_LABEL, poolLabel);
+
+		// Create port mapping
+		if (spec.getHostPort() != 0) {
+			System.out.println("Using Docker port mapping " + spec.getPort() + " -> " + spec.getHostPort());
+			parametersBuilder.set_port_mapping(spec.getPort(), spec.getHostPort());
+		}
+
+		// Set network
+		System.out.println("Using Docker network " + spec.getNetwork());
+		parametersBuilder.set_network_mode(spec.getNetwork());
+
+		// Create container
+		phaseStart = System.currentTimeMillis();
+		JsonObject config = parametersBuilder.get_config();
+		ContainerWrapper container = new ContainerWrapper(
+				docker.get_handle()
+						.containers()
+						.create(name, config)
+		);
+		System.out.println("Created container with id " + container.get_handle().containerId());
+		metrics.record(DockerStartupMetrics.Phase.CREATE, System.currentTimeMillis() - phaseStart);
+
+		// Start container
+		phaseStart = System.currentTimeMillis();
+		String containerId = container.get_handle().containerId();
+		container.get_handle().start();
+
+		// Wait until container is running
+		while (!container.fetch_is_running()) {
+			if (System.currentTimeMillis() > deadline) {
+				stop(new PooledContainer(containerId, name, null));
+				throw new IOException("Docker container " + name + " did not start within " + timeout + " ms");
+			}
+			System.out.println("Waiting for Docker container to start...");
+			Thread.sleep(1000);
+		}
+		metrics.record(DockerStartupMetrics.Phase.START, System.currentTimeMillis() - phaseStart);
+
+		return new PooledContainer(containerId, name, getEndpoint(spec, container));
+	}
+
+	@Override
+	public PooledContainer find(DockerContainerSpec spec, String poolLabel) throws Exception {
+		List<ContainerWrapper> containers = docker.get_containers_by_label(POOL_LABEL, poolLabel);
+		for (ContainerWrapper container : containers) {
+			if (container.is_running()) {
+				return new PooledContainer(container.get_handle().containerId(), container.get_name(), getEndpoint(spec, container));
+			}
+		}
+		return null;
+	}
+
+	// Endpoint of the service, from the host running this annotator
+	protected String getEndpoint(DockerContainerSpec spec, ContainerWrapper container) {
+		String hostname = spec.getHostname();
+		if (hostname == null) {
+			if (spec.getNetwork().equals("bridge")) {
+				// use loaclhost if bridge network is being used
+				hostname = "localhost";
+			}
+			else {
+				hostname = container.get_hostname();
+			}
+		}
+		int port = spec.getHostPort() != 0 ? spec.getHostPort() : spec.getPort();
+		return "http://" + hostname + ":" + port;
+	}
+
+	@Override
+	public boolean isReady(PooledContainer container) {
+		try {
+			URL url = new URL(container.getEndpoint() + "/textimager/ready");
+			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+			connection.setRequestMethod("GET");
+			connection.setDoInput(true);
+			connection.setUseCaches(false);
+			connection.setConnectTimeout(5000);
+			connection.setReadTimeout(5000);
+
+			String res = IOUtils.toString(connection.getInputStream(), StandardCharsets.UTF_8);
+
+			JSONObject status = new JSONObject(res);
+			return status.getBoolean("ready");
+		}
+		catch (Exception ignored) {
+		}
+
+		return false;
+	}
+
+	@Override
+	public void stop(PooledContainer container) {
+		ContainerWrapper wrapper;
+		try {
+			wrapper = new ContainerWrapper(docker.get_handle().containers().get(container.getId()));
+		} catch (Exception e) {
+			System.out.println(e.getMessage());
+			e.printStackTrace();
+			return;
+		}
+
+		// TODO container is not stopped on DUCC?
+		try {
+			System.out.println("Stopping Docker container " + container.getName());
+			wrapper.get_handle().stop();
+		} catch (Exception e) {
+			System.out.println(e.getMessage());
+			e.printStackTrace();
+		}
+
+		// TODO container removed at stop already?
+		try {
+			System.out.println("Waiting for Docker to stop...");
+			wrapper.get_handle().waitOn("not-running");
+		} catch (Exception e) {
+			System.out.println(e.getMessage());
+			e.printStackTrace();
+		}
+
+		try {
+			System.out.println("Removing Docker container");
+			wrapper.get_handle().remove();
+		} catch (Exception e) {
+			System.out.println(e.getMessage());
+			e.printStackTrace();
+		}
+	}
+}
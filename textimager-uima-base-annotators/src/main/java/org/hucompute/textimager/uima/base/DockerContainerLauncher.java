@@ -0,0 +1,33 @@
+package org.hucompute.textimager.uima.base;
+
+/**
+ * Starts and stops the containers of the DockerContainerPool
+ */
+public interface DockerContainerLauncher {
+	/**
+	 * Create and start a container, wait until it is running
+	 *
+	 * @param spec the container spec
+	 * @param name unique container name
+	 * @param poolLabel value of the pool label, to find the container again
+	 * @param timeout max time in ms to wait for the container to run
+	 */
+	PooledContainer start(DockerContainerSpec spec, String name, String poolLabel, long timeout) throws Exception;
+
+	/**
+	 * Find a running container with the pool label, e.g. started by another JVM
+	 *
+	 * @return the container or null if there is none
+	 */
+	PooledContainer find(DockerContainerSpec spec, String poolLabel) throws Exception;
+
+	/**
+	 * Check if the service in the container is ready
+	 */
+	boolean isReady(PooledContainer container);
+
+	/**
+	 * Stop and remove the container
+	 */
+	void stop(PooledContainer container);
+}
@@ -0,0 +1,293 @@
+package org.hucompute.textimager.uima.base;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * JVM-wide pool of running annotator service containers.
+ *
+ * Containers are shared by all annotators using the same DockerContainerSpec and reference counted.
+ * When the last annotator releases a container it is kept warm for the idle timeout and reused if
+ * another annotator needs it, otherwise it is stopped.
+ */
+public class DockerContainerPool {
+	public enum Mode {
+		// every annotator gets its own container
+		NONE,
+		// containers are shared in this JVM
+		JVM,
+		// containers are shared on this host via the pool label and never stopped by annotators
+		HOST
+	}
+
+	private static final DockerContainerPool instance = new DockerContainerPool(1000);
+
+	public static DockerContainerPool getInstance() {
+		return instance;
+	}
+
+	private final long readyPollInterval;
+
+	private final Map<String, Entry> entries = new HashMap<>();
+	private final ScheduledExecutorService evictor;
+
+	private final AtomicLong coldStarts = new AtomicLong();
+	private final AtomicLong reuses = new AtomicLong();
+	private final AtomicLong hostReuses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	private final DockerStartupMetrics startupMetrics = new DockerStartupMetrics();
+
+	private static class Entry {
+		final String key;
+		final DockerContainerLauncher launcher;
+		final boolean stopOnEviction;
+
+		PooledContainer container;
+		int useCount = 0;
+		ScheduledFuture<?> eviction;
+
+		Entry(String key, DockerContainerLauncher launcher, boolean stopOnEviction) {
+			this.key = key;
+			this.launcher = launcher;
+			this.stopOnEviction = stopOnEviction;
+		}
+	}
+
+	/**
+	 * A container in use by one annotator
+	 */
+	public class Lease {
+		private final Entry entry;
+		private final long idleTimeout;
+		private boolean released = false;
+
+		private Lease(Entry entry, long idleTimeout) {
+			this.entry = entry;
+			this.idleTimeout = idleTimeout;
+		}
+
+		public PooledContainer getContainer() {
+			return entry.container;
+		}
+
+		// Give the container back to the pool
+		public void release() {
+			if (!released) {
+				released = true;
+				DockerContainerPool.this.release(entry, idleTimeout);
+			}
+		}
+	}
+
+	DockerContainerPool(long readyPollInterval) {
+		this.readyPollInterval = readyPollInterval;
+
+		evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "textimager-docker-pool-evictor");
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		// do not leave warm containers behind
+		Runtime.getRuntime().addShutdownHook(new Thread(this::stopAll, "textimager-docker-pool-shutdown"));
+	}
+
+	/**
+	 * Get a ready container for this spec, starting one if needed
+	 *
+	 * @param spec the container spec
+	 * @param launcher launcher to start the container if none is running
+	 * @param mode how containers are shared
+	 * @param idleTimeout time in ms an unused container is kept running, 0 to stop it immediately
+	 * @param readyTimeout max time in ms to wait for a new container to be ready
+	 */
+	public Lease acquire(DockerContainerSpec spec, DockerContainerLauncher launcher, Mode mode, long idleTimeout, long readyTimeout) throws Exception {
+		String label = getPoolLabel(spec);
+		String key = mode == Mode.NONE ? spec.getKey() + "|" + UUID.randomUUID() : spec.getKey();
+
+		Entry entry;
+		synchronized (entries) {
+			entry = entries.get(key);
+			if (entry == null) {
+				entry = new Entry(key, launcher, mode != Mode.HOST);
+				entries.put(key, entry);
+			}
+			entry.useCount++;
+			if (entry.eviction != null) {
+				entry.eviction.cancel(false);
+				entry.eviction = null;
+			}
+		}
+
+		// only one annotator starts the container, all others wait for it
+		synchronized (entry) {
+			if (entry.container != null) {
+				System.out.println("Reusing Docker container " + entry.container);
+				reuses.incrementAndGet();
+			}
+			else {
+				try {
+					entry.container = startContainer(spec, launcher, mode, label, readyTimeout);
+				} catch (Exception e) {
+					synchronized (entries) {
+						entry.useCount--;
+						if (entry.useCount <= 0) {
+							entries.remove(key);
+						}
+					}
+					throw e;
+				}
+			}
+		}
+
+		return new Lease(entry, idleTimeout);
+	}
+
+	private PooledContainer startContainer(DockerContainerSpec spec, DockerContainerLauncher launcher, Mode mode, String label, long readyTimeout) throws Exception {
+		long deadline = System.currentTimeMillis() + readyTimeout;
+
+		if (mode == Mode.HOST) {
+			PooledContainer container = launcher.find(spec, label);
+			if (container != null) {
+				System.out.println("Reusing Docker container of this host " + container);
+				hostReuses.incrementAndGet();
+				waitUntilReady(launcher, container, deadline, readyTimeout, false);
+				return container;
+			}
+		}
+
+		// Container name based on timestamp
+		String name = "textimager_pool_" + label + "." + Instant.now().getEpochSecond() + "." + UUID.randomUUID();
+		PooledContainer container = launcher.start(spec, name, label, readyTimeout);
+		coldStarts.incrementAndGet();
+		System.out.println("Container endpoint is " + container.getEndpoint());
+
+		waitUntilReady(launcher, container, deadline, readyTimeout, mode != Mode.HOST);
+		return container;
+	}
+
+	private void waitUntilReady(DockerContainerLauncher launcher, PooledContainer container, long deadline, long readyTimeout, boolean stopOnTimeout) throws IOException, InterruptedException {
+		long start = System.currentTimeMillis();
+		while (!launcher.isReady(container)) {
+			if (System.currentTimeMillis() > deadline) {
+				if (stopOnTimeout) {
+					launcher.stop(container);
+				}
+				throw new IOException("Docker container " + container + " not ready within " + readyTimeout + " ms");
+			}
+			System.out.println("Waiting for service to be ready...");
+			Thread.sleep(readyPollInterval);
+		}
+		startupMetrics.record(DockerStartupMetrics.Phase.READY, System.currentTimeMillis() - start);
+		System.out.println("Docker container should be running now");
+	}
+
+	private void release(Entry entry, long idleTimeout) {
+		synchronized (entries) {
+			entry.useCount--;
+			if (entry.useCount > 0) {
+				System.out.println("not stopping Docker container, users left: " + entry.useCount);
+				return;
+			}
+			if (idleTimeout > 0) {
+				System.out.println("keeping Docker container for " + idleTimeout + " ms");
+				entry.eviction = evictor.schedule(() -> evict(entry), idleTimeout, TimeUnit.MILLISECONDS);
+				return;
+			}
+		}
+		evict(entry);
+	}
+
+	private void evict(Entry entry) {
+		synchronized (entries) {
+			// reused in the meantime
+			if (entry.useCount > 0 || entries.get(entry.key) != entry) {
+				return;
+			}
+			entries.remove(entry.key);
+			entry.eviction = null;
+		}
+
+		synchronized (entry) {
+			if (entry.container != null) {
+				evictions.incrementAndGet();
+				if (entry.stopOnEviction) {
+					entry.launcher.stop(entry.container);
+				}
+				entry.container = null;
+			}
+		}
+	}
+
+	// Stop all containers, e.g. at shutdown
+	void stopAll() {
+		List<Entry> all;
+		synchronized (entries) {
+			all = new ArrayList<>(entries.values());
+			entries.clear();
+		}
+		for (Entry entry : all) {
+			if (entry.stopOnEviction && entry.container != null) {
+				entry.launcher.stop(entry.container);
+			}
+		}
+	}
+
+	// Label value identifying containers of this spec on the host
+	static String getPoolLabel(DockerContainerSpec spec) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] hash = digest.digest(spec.getKey().getBytes(StandardCharsets.UTF_8));
+			return String.format("%064x", new BigInteger(1, hash)).substring(0, 16);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	// timings of the startup phases, launchers should record their phases here too
+	public DockerStartupMetrics getStartupMetrics() {
+		return startupMetrics;
+	}
+
+	// number of started containers
+	public long getColdStarts() {
+		return coldStarts.get();
+	}
+
+	// number of times a running container of this JVM was reused
+	public long getReuses() {
+		return reuses.get();
+	}
+
+	// number of times a running container of another JVM was reused
+	public long getHostReuses() {
+		return hostReuses.get();
+	}
+
+	// number of containers removed from the pool
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	// number of containers in the pool, in use or idle
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+}
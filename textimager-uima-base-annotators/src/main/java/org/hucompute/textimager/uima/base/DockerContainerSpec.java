@@ -0,0 +1,61 @@
+package org.hucompute.textimager.uima.base;
+
+/**
+ * Everything that defines a container of an annotator service, containers with the same spec can be shared
+ */
+public class DockerContainerSpec {
+	// full image name with registry and tag
+	private final String image;
+	private final int port;
+	private final int hostPort;
+	private final String network;
+	private final String hostname;
+
+	public DockerContainerSpec(String image, int port, int hostPort, String network, String hostname) {
+		this.image = image;
+		this.port = port;
+		this.hostPort = hostPort;
+		this.network = network;
+		this.hostname = hostname;
+	}
+
+	public String getImage() {
+		return image;
+	}
+
+	public int getPort() {
+		return port;
+	}
+
+	public int getHostPort() {
+		return hostPort;
+	}
+
+	public String getNetwork() {
+		return network;
+	}
+
+	public String getHostname() {
+		return hostname;
+	}
+
+	// unique key of this spec, used to pool the containers
+	public String getKey() {
+		return image + "|" + port + "|" + hostPort + "|" + network + "|" + (hostname != null ? hostname : "");
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return o instanceof DockerContainerSpec && getKey().equals(((DockerContainerSpec) o).getKey());
+	}
+
+	@Override
+	public int hashCode() {
+		return getKey().hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return getKey();
+	}
+}
@@ -1,22 +1,12 @@
 package org.hucompute.textimager.uima.base;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.uima.UimaContext;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.resource.ResourceInitializationException;
-import org.hucompute.textimager.uima.docker.ContainerParametersBuilder;
-import org.hucompute.textimager.uima.docker.ContainerWrapper;
 import org.hucompute.textimager.uima.docker.DockerAPI;
-import org.json.JSONObject;
 
-import javax.json.JsonObject;
 import java.io.File;
 import java.io.IOException;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.nio.charset.StandardCharsets;
-import java.time.Instant;
-import java.util.UUID;
 
 /**
  * Basic Docker Rest Annotator
@@ -84,6 +74,30 @@ public abstract class DockerRestAnnotator extends RestAnnotator {
 	@ConfigurationParameter(name = PARAM_DOCKER_SOCKET, mandatory = false, defaultValue = "/var/run/docker.sock")
 	protected File dockerSocket;
 
+	/**
+	 * How containers are shared:
+	 * "jvm" shares containers of the same image and parameters between all annotators in this JVM,
+	 * "host" additionally reuses running containers started by other JVMs, these are never stopped by annotators,
+	 * "none" starts a container for every annotator
+	 */
+	public static final String PARAM_DOCKER_POOL = "dockerPool";
+	@ConfigurationParameter(name = PARAM_DOCKER_POOL, mandatory = false, defaultValue = "jvm")
+	protected String dockerPool;
+
+	/**
+	 * Time in ms an unused container is kept running for reuse, 0 stops it when the last annotator is destroyed
+	 */
+	public static final String PARAM_DOCKER_IDLE_TIMEOUT = "dockerIdleTimeout";
+	@ConfigurationParameter(name = PARAM_DOCKER_IDLE_TIMEOUT, mandatory = false, defaultValue = "0")
+	protected int dockerIdleTimeout;
+
+	/**
+	 * Max time in ms to wait for a new container to be running and its service ready
+	 */
+	public static final String PARAM_DOCKER_READY_TIMEOUT = "dockerReadyTimeout";
+	@ConfigurationParameter(name = PARAM_DOCKER_READY_TIMEOUT, mandatory = false, defaultValue = "600000")
+	protected int dockerReadyTimeout;
+
 	@Override
 	protected String getModelName() {
 		return fullDockerImageName;
@@ -106,32 +120,12 @@ public abstract class DockerRestAnnotator extends RestAnnotator {
 	// Docker image name with registry info
 	protected String fullDockerImageName;
 
-	// Docker/Container API
-	protected ContainerWrapper container;
-
-	// Endpoint to check for service readyness
-	protected String getRestEndpointTextImagerReady() {
-		return restEndpoint + "/textimager/ready";
-	}
-
-	// Check if service is ready
-	protected boolean isReady() throws IOException {
-		try {
-			URL url = new URL(getRestEndpointTextImagerReady());
-			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-			connection.setRequestMethod("GET");
-			connection.setDoInput(true);
-			connection.setUseCaches(false);
-
-			String res = IOUtils.toString(connection.getInputStream(), StandardCharsets.UTF_8);
-
-			JSONObject status = new JSONObject(res);
-			return status.getBoolean("ready");
-		}
-		catch (Exception ignored) {
-		}
+	// Container of the service, shared via the pool
+	protected DockerContainerPool.Lease containerLease;
 
-		return false;
+	// Create the launcher, override e.g. for testing
+	protected DockerContainerLauncher createContainerLauncher() throws IOException {
+		return new DockerApiContainerLauncher(new DockerAPI(dockerSocket), DockerContainerPool.getInstance().getStartupMetrics());
 	}
 
 	@Override
@@ -167,144 +161,33 @@ public abstract class DockerRestAnnotator extends RestAnnotator {
 				}
 				System.out.println("Using Docker port: " + dockerPort);
 
-				// Connect to Docker API
-				DockerAPI docker = new DockerAPI(dockerSocket);
-				System.out.println("Connected to Docker API");
-
-				// check if image already exists
-				System.out.println("Checking for docker image...");
-				if (!docker.check_image_exists(fullDockerImage)) {
-					// Pull the docker image to use
-					System.out.println("Docker image not found, pulling...");
-					docker.get_handle().images().pull(fullDockerImageName, dockerImageTag);
-				}
-
-				// Container name based on timestamp
-				String name = getClass().getName() + "__textimager" + "." + Instant.now().getEpochSecond() + "." + UUID.randomUUID();
-				System.out.println("Starting container \"" + name + "\"");
-
-				// Build container
-				ContainerParametersBuilder parametersBuilder = new ContainerParametersBuilder(fullDockerImage);
-
-				// Optionally add port mapping
-				int containerPort = dockerPort;
-
 				// if bridge network use default port from container
 				if (dockerHostPort == 0 && dockerNetwork.equals("bridge")) {
 					dockerHostPort = getDefaultDockerPort();
 				}
 
-				// Create port mapping
-				if (dockerHostPort != 0) {
-					System.out.println("Using Docker port mapping " + dockerPort + " -> " + dockerHostPort);
-					parametersBuilder.set_port_mapping(dockerPort, dockerHostPort);
-					containerPort = dockerHostPort;
-				}
-
-				// Set network
-				System.out.println("Using Docker network " + dockerNetwork);
-				parametersBuilder.set_network_mode(dockerNetwork);
-
-				// Create container
-				JsonObject config = parametersBuilder.get_config();
-				container = new ContainerWrapper(
-						docker.get_handle()
-								.containers()
-								.create(name, config)
-				);
-				System.out.println("Created container with id " + container.get_handle().containerId());
-
-				// Start container
-				container.get_handle().start();
-
-				// Wait until container is running
-				// TODO add timeout
-				try {
-					do {
-						System.out.println("Waiting for Docker container to start...");
-						try {
-							Thread.sleep(1000);
-						} catch (InterruptedException e) {
-							// ignore
-						}
-					} while (!container.fetch_is_running());
-				} catch (InterruptedException e) {
-					// ignore
-				}
+				DockerContainerPool.Mode poolMode = DockerContainerPool.Mode.valueOf(dockerPool.toUpperCase());
+				System.out.println("Using Docker container pool mode " + poolMode);
 
-				// Fetch inspect data
-				container.fetch();
+				DockerContainerSpec spec = new DockerContainerSpec(fullDockerImage, dockerPort, dockerHostPort, dockerNetwork, dockerHostname);
+				containerLease = DockerContainerPool.getInstance().acquire(spec, createContainerLauncher(), poolMode, dockerIdleTimeout, dockerReadyTimeout);
 
 				// Update endpoint of RestAnnotator
-				if (dockerHostname == null) {
-					if (dockerNetwork.equals("bridge")) {
-						// use loaclhost if bridge network is being used
-						dockerHostname = "localhost";
-					}
-					else {
-						dockerHostname = container.get_hostname();
-					}
-				}
-				restEndpoint = "http://" + dockerHostname + ":" + containerPort;
+				restEndpoint = containerLease.getContainer().getEndpoint();
 				System.out.println("Container endpoint is " + restEndpoint);
 
-				// Wait until server is ready
-				// TODO add timeout
-				do {
-					System.out.println("Waiting for service to be ready...");
-					try {
-						Thread.sleep(1000);
-					} catch (InterruptedException e) {
-						// ignore
-					}
-				} while (!isReady());
-
-				System.out.println("Docker container should be running now");
-
 			} catch (Exception e) {
-				// stop Docker before throwing
-				System.out.println("Trying to stop Docker container before throwing...");
-				dockerStop();
 				throw new ResourceInitializationException(e);
 			}
 		}
 	}
 
-	private void dockerStop() {
-		if (container != null) {
-			// TODO container is not stopped on DUCC?
-			try {
-                System.out.println("Stopping Docker container " + container.get_name());
-                container.get_handle().stop();
-			} catch (Exception e) {
-                System.out.println(e.getMessage());
-				e.printStackTrace();
-			}
-
-            // TODO container removed at stop already?
-			try {
-				System.out.println("Waiting for Docker to stop...");
-				container.get_handle().waitOn("not-running");
-			} catch (Exception e) {
-                System.out.println(e.getMessage());
-				e.printStackTrace();
-			}
-
-			try {
-				System.out.println("Removing Docker container");
-				container.get_handle().remove();
-			} catch (Exception e) {
-                System.out.println(e.getMessage());
-				e.printStackTrace();
-			}
-
-			container = null;
-		}
-	}
-
 	@Override
 	public void destroy() {
-		dockerStop();
+		if (containerLease != null) {
+			containerLease.release();
+			containerLease = null;
+		}
 		super.destroy();
 	}
 
@@ -0,0 +1,67 @@
+package org.hucompute.textimager.uima.base;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Timings of the phases of container startups
+ */
+public class DockerStartupMetrics {
+	public enum Phase {
+		IMAGE_CHECK,
+		PULL,
+		CREATE,
+		START,
+		READY
+	}
+
+	private static class Timing {
+		final AtomicLong count = new AtomicLong();
+		final AtomicLong totalMillis = new AtomicLong();
+		final AtomicLong maxMillis = new AtomicLong();
+	}
+
+	private final Map<Phase, Timing> timings = new EnumMap<>(Phase.class);
+
+	public DockerStartupMetrics() {
+		for (Phase phase : Phase.values()) {
+			timings.put(phase, new Timing());
+		}
+	}
+
+	public void record(Phase phase, long millis) {
+		Timing timing = timings.get(phase);
+		timing.count.incrementAndGet();
+		timing.totalMillis.addAndGet(millis);
+		timing.maxMillis.accumulateAndGet(millis, Math::max);
+		System.out.println("Docker " + phase + " took " + millis + " ms");
+	}
+
+	// number of times this phase was run
+	public long getCount(Phase phase) {
+		return timings.get(phase).count.get();
+	}
+
+	public long getTotalMillis(Phase phase) {
+		return timings.get(phase).totalMillis.get();
+	}
+
+	public long getMaxMillis(Phase phase) {
+		return timings.get(phase).maxMillis.get();
+	}
+
+	public double getMeanMillis(Phase phase) {
+		long count = getCount(phase);
+		return count > 0 ? (double) getTotalMillis(phase) / count : 0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (Phase phase : Phase.values()) {
+			builder.append(String.format("%s: %d times, %.0f ms mean, %d ms max%n", phase, getCount(phase), getMeanMillis(phase), getMaxMillis(phase)));
+		}
+		return builder.toString();
+	}
+}
@@ -1,27 +1,32 @@
 package org.hucompute.textimager.uima.base;
 
 import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Stream;
 
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.cas.AbstractCas;
 import org.apache.uima.fit.component.JCasAnnotator_ImplBase;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.resource.ResourceInitializationException;
 
+import jep.Interpreter;
 import jep.JepConfig;
 import jep.JepException;
 import jep.MainInterpreter;
 import jep.PyConfig;
-import jep.SharedInterpreter;
-import jep.SubInterpreter;
 
 public abstract class JepAnnotator extends JCasAnnotator_ImplBase {
 	/**
@@ -36,6 +41,7 @@ public abstract class JepAnnotator extends JCasAnnotator_ImplBase {
 	 *          - envs
 	 *            - [envName]
 	 *              - [bashScript]
+	 *              - textimager_env_manifest.json
 	 * 
 	 */
 	
@@ -82,37 +88,108 @@ public abstract class JepAnnotator extends JCasAnnotator_ImplBase {
 	public static final String PARAM_CONDA_BASH_SCRIPT = "condaBashScript";
 	@ConfigurationParameter(name = PARAM_CONDA_BASH_SCRIPT, mandatory = false)
 	public String condaBashScript;
+
+	/**
+	 * How python interpreters are used:
+	 * "shared" - one interpreter for all annotators in this JVM, the documents of all pipeline threads are
+	 * processed one after another. Annotators share the python globals, so they must not rely on globals
+	 * set by an other annotator type.
+	 * "instance" - opt-in, every annotator instance gets its own sub interpreter, so pipelines with several
+	 * threads run in parallel. Python code holding the GIL still runs one at a time, native code releasing it
+	 * (e.g. numpy, torch, spaCy) scales with the cores. Models are loaded once per instance, so memory grows
+	 * with the number of threads. Native modules that do not support sub interpreters have to be listed in
+	 * {@link #PARAM_SHARED_MODULES}.
+	 */
+	public static final String PARAM_INTERPRETER_MODE = "interpreterMode";
+	@ConfigurationParameter(name = PARAM_INTERPRETER_MODE, mandatory = false, defaultValue = "shared")
+	public String interpreterMode;
+
+	/**
+	 * Python modules imported once and shared by all sub interpreters, needed in "instance" mode. numpy breaks if it is
+	 * imported into several sub interpreters, modules built on it (e.g. torch) need it shared as well. A shared
+	 * module and the modules it imports must not keep state of a single annotator.
+	 */
+	public static final String PARAM_SHARED_MODULES = "sharedModules";
+	@ConfigurationParameter(name = PARAM_SHARED_MODULES, mandatory = false, defaultValue = { "numpy" })
+	public String[] sharedModules;
 	
 	// Conda Base Directory
 	protected static final Path condaBaseDir = Paths.get(System.getProperty("user.home"), ".textimager", "conda");
 	
-	private int threadSleepTime = 10000;
-	
 	protected Path condaDir;
 	protected Path condaInstallDir;
 	protected Path envDir;
+
+	// Python include paths of the env
+	protected String[] includePaths;
 	
-	protected static SubInterpreter interpreter;
-	protected static int interpreterUseCount = 0;
+	// Python interpreter of this annotator, can be used from any thread
+	protected Interpreter interpreter;
+	private JepWorker interpreterWorker;
+
+	// Interpreter shared by all annotators in "shared" mode
+	private static JepWorker sharedWorker;
+	private static int sharedWorkerUseCount = 0;
+	private static boolean mainInterpreterInitialized = false;
 	
 	public void initialize(UimaContext aContext) throws ResourceInitializationException {
 		super.initialize(aContext);
 		System.out.println("Conda Base Dir: " + condaBaseDir.toString());
+
+		if (!interpreterMode.equals("shared") && !interpreterMode.equals("instance")) {
+			throw new ResourceInitializationException(new IllegalArgumentException("unknown interpreterMode: " + interpreterMode));
+		}
 	}
 	
+	/**
+	 * Runs the whole process of the subclass on the interpreter thread, so its set, exec and getValue
+	 * calls are not interleaved with the ones of other documents using the same interpreter
+	 */
 	@Override
-	public void destroy() {
-		interpreterUseCount--;
+	public void process(AbstractCas aCAS) throws AnalysisEngineProcessException {
+		if (interpreterWorker == null) {
+			super.process(aCAS);
+			return;
+		}
 		try {
-			if (interpreterUseCount <= 0) {
-				System.out.println("Closing python interpreter...");
-				interpreter.close();
+			interpreterWorker.call(() -> {
+				super.process(aCAS);
+				return null;
+			});
+		} catch (JepException e) {
+			if (e.getCause() instanceof AnalysisEngineProcessException) {
+				throw (AnalysisEngineProcessException) e.getCause();
 			}
-			else {
-				System.out.println("not closing python interpreter, users left: " + interpreterUseCount);
+			throw new AnalysisEngineProcessException(e);
+		}
+	}
+
+	@Override
+	public void destroy() {
+		if (interpreterWorker != null) {
+			try {
+				synchronized (JepAnnotator.class) {
+					if (interpreterWorker == sharedWorker) {
+						sharedWorkerUseCount--;
+						if (sharedWorkerUseCount <= 0) {
+							System.out.println("Closing python interpreter...");
+							sharedWorker = null;
+							interpreterWorker.close();
+						}
+						else {
+							System.out.println("not closing python interpreter, users left: " + sharedWorkerUseCount);
+						}
+					}
+					else {
+						System.out.println("Closing python interpreter...");
+						interpreterWorker.close();
+					}
+				}
+			} catch (JepException e) {
+				e.printStackTrace();
 			}
-		} catch (JepException e) {
-			e.printStackTrace();
+			interpreterWorker = null;
+			interpreter = null;
 		}
 		super.destroy();
 	}
@@ -130,13 +207,19 @@ public abstract class JepAnnotator extends JCasAnnotator_ImplBase {
 	
 	// Initializes Conda
 	protected void initConda() throws ResourceInitializationException {
+		setupConda();
+		initInterpreter();
+	}
+
+	// Installs Conda and the Env if needed and resolves the include paths
+	void setupConda() throws ResourceInitializationException {
 		// set conda base dir
 		if (condaVersion == null || condaVersion.isEmpty()) {
 			throw new ResourceInitializationException(new IllegalArgumentException("condaVersion ist null or empty!"));
 		}
 		
 		// conda dir with version
-		condaDir = condaBaseDir.resolve(condaVersion);
+		condaDir = getCondaBaseDir().resolve(condaVersion);
 		System.out.println("Conda Dir: " + condaDir.toString());
 		
 		// path to install conda to
@@ -146,6 +229,21 @@ public abstract class JepAnnotator extends JCasAnnotator_ImplBase {
 		// base path for envs
 		envDir = condaInstallDir.resolve("envs").resolve(envName);
 		System.out.println("Env Dir: " + envDir.toString());
+
+		// env already set up with these dependencies?
+		Path manifestFile = envDir.resolve(CondaEnvManifest.FILE_NAME);
+		String dependencyHash = getDependencyHash();
+		CondaEnvManifest manifest = CondaEnvManifest.read(manifestFile);
+		if (manifest != null && manifest.isValid(dependencyHash, getPackagesModified())) {
+			System.out.println("Env manifest is valid, skipping setup...");
+			includePaths = manifest.getIncludePaths().toArray(new String[0]);
+			return;
+		}
+		if (manifest != null && !manifest.getDependencyHash().equals(dependencyHash)) {
+			// the install steps skip an existing env, the changed dependencies would never be installed
+			throw new ResourceInitializationException(new IllegalStateException("Env " + envDir
+					+ " was set up with other dependencies, use a new envName or delete the env to install them"));
+		}
 		
 		// create base directory
 		try {
@@ -155,249 +253,252 @@ public abstract class JepAnnotator extends JCasAnnotator_ImplBase {
 			throw new ResourceInitializationException(e);
 		}
 
-		// Lockfile
-		Path lockfile = condaDir.resolve("textimager_" + condaInstallDir.getFileName().toString() +".conda_lock");
-		System.out.println("lockfile: " + lockfile.toString());
-		while (Files.exists(lockfile)) {
-			try {
-				System.out.println("waiting on lock \"conda install\"...");
-				Thread.sleep(threadSleepTime);
-			} catch (InterruptedException e) {
-				throw new ResourceInitializationException(e);
+		installConda();
+		initEnv();
+		runBashScript();
+
+		// Cache the include paths, walking the lib dir takes seconds for big envs
+		System.out.println("resolving include paths...");
+		Path includePath = Paths.get(envDir.toString(), "/lib");
+		try (Stream<Path> walk = Files.walk(includePath)) {
+			includePaths = walk
+					.filter(Files::isDirectory)
+					.map(Path::toString)
+					.toArray(String[]::new);
+		} catch (IOException e) {
+			throw new ResourceInitializationException(e);
+		}
+
+		try {
+			new CondaEnvManifest(dependencyHash, getPackagesModified(), Arrays.asList(includePaths)).write(manifestFile);
+		} catch (IOException e) {
+			// only slower next time
+			System.out.println("failed to write env manifest: " + e.getMessage());
+		}
+	}
+
+	// Conda Base Directory
+	protected Path getCondaBaseDir() {
+		return condaBaseDir;
+	}
+
+	// Hash of everything that defines the env
+	private String getDependencyHash() {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			for (String value : new String[] { condaVersion, envName, envPythonVersion, envDepsConda, envDepsPip, condaBashScript }) {
+				digest.update(String.valueOf(value).getBytes(StandardCharsets.UTF_8));
+				digest.update((byte) 0);
 			}
+			return String.format("%064x", new BigInteger(1, digest.digest()));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
 		}
+	}
+
+	// Modification time of the installed packages, changes when packages are added or removed
+	private long getPackagesModified() {
+		Path packagesDir = envDir.resolve("lib").resolve("python" + envPythonVersion).resolve("site-packages");
 		try {
-			System.out.println("creating lockfile now...");
-			FileUtils.touch(lockfile.toFile());
-			FileUtils.forceDeleteOnExit(lockfile.toFile());
+			return Files.getLastModifiedTime(Files.exists(packagesDir) ? packagesDir : envDir.resolve("lib")).toMillis();
 		} catch (IOException e) {
-			throw new ResourceInitializationException(e);
+			return -1;
 		}
-				
-		// Check if conda dir is already there
-		System.out.println("checking for conda isntall dir: " + condaInstallDir.toString());
-		if (Files.exists(condaInstallDir)) {
-			System.out.println("Conda already installed, skipping...");
+	}
+
+	// Lock shared with other annotators and processes using this conda installation
+	private CondaLock lock(String fileName, String name) throws ResourceInitializationException {
+		Path lockfile = condaDir.resolve("textimager_" + fileName + ".lock");
+		System.out.println("lockfile: " + lockfile.toString());
+		try {
+			return CondaLock.acquire(lockfile, name);
+		} catch (IOException e) {
+			throw new ResourceInitializationException(e);
 		}
-		else {
+	}
+
+	// Installs Conda
+	private void installConda() throws ResourceInitializationException {
+		try (CondaLock lock = lock(condaInstallDir.getFileName().toString() + ".conda", "conda install")) {
+			// Check if conda dir is already there
+			System.out.println("checking for conda isntall dir: " + condaInstallDir.toString());
+			if (Files.exists(condaInstallDir)) {
+				System.out.println("Conda already installed, skipping...");
+				return;
+			}
+
 			// Not installed, continue
 			System.out.println("not installed, doing now...");
-			
+
 			// copy install script
 			Path condaInstallScript = condaDir.resolve("conda_install.sh");
 			System.out.println("conda install script: " + condaInstallScript.toString());
-			try {
-				Files.copy(getClass().getClassLoader().getResourceAsStream("conda_install.sh"), condaInstallScript, StandardCopyOption.REPLACE_EXISTING);
-			} catch (IOException e) {
-				throw new ResourceInitializationException(e);
-			}
-			
+			Files.copy(getClass().getClassLoader().getResourceAsStream("conda_install.sh"), condaInstallScript, StandardCopyOption.REPLACE_EXISTING);
+
 			// install conda
 			List<String> command = new ArrayList<>();
-	        command.add("bash");
-	        command.add(condaInstallScript.toString());
-	        command.add(condaDir.toString());
-	        command.add(condaVersion);
-	        command.add(condaInstallDir.toString());
-	        System.out.println("running install script now.....");
+			command.add("bash");
+			command.add(condaInstallScript.toString());
+			command.add(condaDir.toString());
+			command.add(condaVersion);
+			command.add(condaInstallDir.toString());
+			System.out.println("running install script now.....");
 			int status = runCommand(command);
-	        System.out.println("conda install: " + status);
-	        if (status != 0) {
-	        	throw new ResourceInitializationException(new IOException("failed to install conda"));
-	        }
-		}
-		
-		System.out.println("deleting lockfile: " + lockfile.toString());
-		try {
-			Files.delete(lockfile);
+			System.out.println("conda install: " + status);
+			if (status != 0) {
+				throw new ResourceInitializationException(new IOException("failed to install conda"));
+			}
 		} catch (IOException e) {
-			// ignore
+			throw new ResourceInitializationException(e);
 		}
-    	
-		initEnv();
-		runBashScript();
-		initInterpreter();
 	}
 	
 	// Initializes Conda Env with Dependencies
 	private void initEnv() throws ResourceInitializationException {
 		System.out.println("init env");
-		
-		// Lockfile
-		Path lockfile = condaDir.resolve("textimager_" + envDir.getFileName().toString() +".env_lock");
-		System.out.println("lockfile: " + lockfile.toString());
-		while (Files.exists(lockfile)) {
-			try {
-				System.out.println("waiting on lock \"conda env\"...");
-				Thread.sleep(threadSleepTime);
-			} catch (InterruptedException e) {
-				throw new ResourceInitializationException(e);
+
+		try (CondaLock lock = lock(envDir.getFileName().toString() + ".env", "conda env")) {
+			// Check if env dir is already there
+			System.out.println("checking env dir: " + envDir.toString());
+			if (Files.exists(envDir)) {
+				System.out.println("Env already setup, skipping...");
+				return;
 			}
-		}
-		try {
-			System.out.println("creating lockfile now...");
-			FileUtils.touch(lockfile.toFile());
-			FileUtils.forceDeleteOnExit(lockfile.toFile());
-		} catch (IOException e) {
-			throw new ResourceInitializationException(e);
-		}
-		
-		// Check if env dir is already there
-		System.out.println("checking env dir: " + envDir.toString());
-		if (Files.exists(envDir)) {
-			System.out.println("Env already setup, skipping...");
-		}
-		else {
-		// Not installed, continue
+
+			// Not installed, continue
 			System.out.println("not installed, doing now...");
-		
+
 			// copy install script
 			Path condaEnvScript = condaDir.resolve("conda_env.sh");
 			System.out.println("conda env script: " + condaEnvScript.toString());
-			try {
-				Files.copy(getClass().getClassLoader().getResourceAsStream("conda_env.sh"), condaEnvScript, StandardCopyOption.REPLACE_EXISTING);
-			} catch (IOException e) {
-				throw new ResourceInitializationException(e);
-			}
-			
+			Files.copy(getClass().getClassLoader().getResourceAsStream("conda_env.sh"), condaEnvScript, StandardCopyOption.REPLACE_EXISTING);
+
 			// Get JVM home path
 			String javaHome = StringUtils.substringBefore(System.getProperties().getProperty("java.home"), "/jre");
-			
+
 			// install env
 			List<String> command = new ArrayList<>();
-	        command.add("bash");
-	        command.add(condaEnvScript.toString());
-	        command.add(condaInstallDir.toString());
-	        command.add(envName);
-	        command.add(envPythonVersion);
-	        command.add(envDepsConda);
-	        command.add(envDepsPip);
-	        command.add(javaHome);
-	        System.out.println("installing now.....");
+			command.add("bash");
+			command.add(condaEnvScript.toString());
+			command.add(condaInstallDir.toString());
+			command.add(envName);
+			command.add(envPythonVersion);
+			command.add(envDepsConda);
+			command.add(envDepsPip);
+			command.add(javaHome);
+			System.out.println("installing now.....");
 			int status = runCommand(command);
-	        System.out.println("conda env: " + status);
-	        if (status != 0) {
-	        	throw new ResourceInitializationException(new IOException("failed to setup conda env"));
-	        }
-		}
-
-		System.out.println("deleting lock file: " + lockfile.toString());
-		try {
-			Files.delete(lockfile);
+			System.out.println("conda env: " + status);
+			if (status != 0) {
+				throw new ResourceInitializationException(new IOException("failed to setup conda env"));
+			}
 		} catch (IOException e) {
-			// ignore
+			throw new ResourceInitializationException(e);
 		}
 	}
 	
 	private void runBashScript() throws ResourceInitializationException {
 		System.out.println("run bash script...");
-		
-		if (condaBashScript != null && !condaBashScript.isEmpty()) {
-			Path script = envDir.resolve(condaBashScript);
-			System.out.println("script: " + script.toString());
-			
-			// Lockfile
-			Path lockfile = condaDir.resolve("textimager_" + script.getFileName().toString() +".script_lock");
-			System.out.println("lockfile: " + lockfile.toString());
-			while (Files.exists(lockfile)) {
-				try {
-					System.out.println("waiting on lock \"bash script\"...");
-					Thread.sleep(threadSleepTime);
-				} catch (InterruptedException e) {
-					throw new ResourceInitializationException(e);
-				}
-			}
-			try {
-				System.out.println("creating lockfile now...");
-				FileUtils.touch(lockfile.toFile());
-				FileUtils.forceDeleteOnExit(lockfile.toFile());
-			} catch (IOException e) {
-				throw new ResourceInitializationException(e);
-			}
-			
+
+		if (condaBashScript == null || condaBashScript.isEmpty()) {
+			return;
+		}
+
+		Path script = envDir.resolve(condaBashScript);
+		System.out.println("script: " + script.toString());
+
+		try (CondaLock lock = lock(script.getFileName().toString() + ".script", "bash script")) {
 			if (Files.exists(script)) {
 				System.out.println("bash script already run, skipping...");
+				return;
 			}
-			else {
-				// copy script
-				System.out.println("running script now: " + script.toString());
-				try {
-					Files.copy(getClass().getClassLoader().getResourceAsStream(condaBashScript), script, StandardCopyOption.REPLACE_EXISTING);
-				} catch (IOException e) {
-					throw new ResourceInitializationException(e);
-				}
-				
-				// install env
-				List<String> command = new ArrayList<>();
-		        command.add("bash");
-		        command.add(script.toString());
-		        command.add(condaInstallDir.toString());
-		        command.add(envName);
-		        System.out.println("running script now start...");
-				int status = runCommand(command);
-		        System.out.println("bash script: " + status);
-		        if (status != 0) {
-		        	throw new ResourceInitializationException(new IOException("failed to run bash script"));
-		        }
-			}
-			
-			System.out.println("deleting lockfile: " + lockfile.toString());
-			try {
-				Files.delete(lockfile);
-			} catch (IOException e) {
-				// ignore
+
+			// copy script
+			System.out.println("running script now: " + script.toString());
+			Files.copy(getClass().getClassLoader().getResourceAsStream(condaBashScript), script, StandardCopyOption.REPLACE_EXISTING);
+
+			// install env
+			List<String> command = new ArrayList<>();
+			command.add("bash");
+			command.add(script.toString());
+			command.add(condaInstallDir.toString());
+			command.add(envName);
+			System.out.println("running script now start...");
+			int status = runCommand(command);
+			System.out.println("bash script: " + status);
+			if (status != 0) {
+				// run again next time
+				Files.deleteIfExists(script);
+				throw new ResourceInitializationException(new IOException("failed to run bash script"));
 			}
+		} catch (IOException e) {
+			throw new ResourceInitializationException(e);
 		}
 	}
 	
 	// Initializes the Python Interpreter
 	private void initInterpreter() throws ResourceInitializationException {
 		System.out.println("initializing interpreter in env: " + envDir.toString());
-		
-		interpreterUseCount++;
-		
-		if (interpreter != null) {
-			System.out.println("python interpreter already set up");
-			return;
-		}
-		
-		System.out.println("initializing new python interpreter...");
 
-        PyConfig pyConfig = new PyConfig();
-        pyConfig.setPythonHome(envDir.toString());
-        pyConfig.setIgnoreEnvironmentFlag(1);
-        pyConfig.setNoSiteFlag(1);
-        pyConfig.setNoUserSiteDirectory(1);
-        try {
-			MainInterpreter.setInitParams(pyConfig);
-		} catch (JepException e) {
-			throw new ResourceInitializationException(e);
+		synchronized (JepAnnotator.class) {
+			if (interpreterMode.equals("instance")) {
+				interpreterWorker = createWorker();
+			}
+			else {
+				sharedWorkerUseCount++;
+				if (sharedWorker != null) {
+					System.out.println("python interpreter already set up");
+				}
+				else {
+					try {
+						sharedWorker = createWorker();
+					} catch (ResourceInitializationException e) {
+						sharedWorkerUseCount--;
+						throw e;
+					}
+				}
+				interpreterWorker = sharedWorker;
+			}
 		}
 
-        Path jepLibPath = Paths.get(envDir.toString(), "/lib", "python" + envPythonVersion, "site-packages", "jep", "libjep.so");
-        System.out.println("jepLibPath: " + jepLibPath.toString());
-        try {
-			MainInterpreter.setJepLibraryPath(jepLibPath.toString());
-		} catch (JepException e) {
-			throw new ResourceInitializationException(e);
-		}
+		interpreter = interpreterWorker.getInterpreter();
+	}
 
-        JepConfig jepConfig = new JepConfig();
+	// Starts a new interpreter on its own thread
+	private JepWorker createWorker() throws ResourceInitializationException {
+		System.out.println("initializing new python interpreter...");
 
-        Path includePath = Paths.get(envDir.toString(), "/lib");
-        try (Stream<Path> walk = Files.walk(includePath)) {
-             String[] includePaths = walk
-                     .filter(Files::isDirectory)
-                     .map(Path::toString)
-                     .toArray(String[]::new);
+		// the main interpreter can only be configured once per JVM
+		if (!mainInterpreterInitialized) {
+			PyConfig pyConfig = new PyConfig();
+			pyConfig.setPythonHome(envDir.toString());
+			pyConfig.setIgnoreEnvironmentFlag(1);
+			pyConfig.setNoSiteFlag(1);
+			pyConfig.setNoUserSiteDirectory(1);
+			try {
+				MainInterpreter.setInitParams(pyConfig);
+			} catch (JepException e) {
+				throw new ResourceInitializationException(e);
+			}
 
-             jepConfig.addIncludePaths(includePaths);
-        } catch (IOException e) {
-			throw new ResourceInitializationException(e);
+			Path jepLibPath = Paths.get(envDir.toString(), "/lib", "python" + envPythonVersion, "site-packages", "jep", "libjep.so");
+			System.out.println("jepLibPath: " + jepLibPath.toString());
+			try {
+				MainInterpreter.setJepLibraryPath(jepLibPath.toString());
+			} catch (JepException e) {
+				throw new ResourceInitializationException(e);
+			}
+			mainInterpreterInitialized = true;
 		}
-        
-        try {
-        	interpreter = jepConfig.createSubInterpreter();
+
+		JepConfig jepConfig = new JepConfig();
+		jepConfig.addIncludePaths(includePaths);
+		if (sharedModules != null && sharedModules.length > 0) {
+			jepConfig.addSharedModules(sharedModules);
+		}
+
+		try {
+			return new JepWorker("textimager-jep-" + envName, jepConfig::createSubInterpreter);
 		} catch (JepException e) {
 			throw new ResourceInitializationException(e);
 		}
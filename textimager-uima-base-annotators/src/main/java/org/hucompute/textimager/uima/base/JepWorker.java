@@ -0,0 +1,129 @@
+package org.hucompute.textimager.uima.base;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import jep.Interpreter;
+import jep.JepException;
+
+/**
+ * Runs a Jep interpreter on its own thread.
+ *
+ * Jep interpreters can only be used by the thread that created them. The worker creates the
+ * interpreter on a dedicated thread and hands out a proxy that runs every call on this thread,
+ * so annotators can use the interpreter from any pipeline thread.
+ */
+public class JepWorker {
+	private final ExecutorService executor;
+	private final Interpreter interpreter;
+	private final Interpreter proxy;
+
+	private volatile Thread thread;
+
+	private final AtomicLong calls = new AtomicLong();
+
+	/**
+	 * @param name name of the worker thread
+	 * @param factory creates the interpreter, called on the worker thread
+	 */
+	public JepWorker(String name, Callable<? extends Interpreter> factory) throws JepException {
+		executor = Executors.newSingleThreadExecutor(runnable -> {
+			Thread thread = new Thread(runnable, name);
+			thread.setDaemon(true);
+			return thread;
+		});
+
+		Future<? extends Interpreter> created = executor.submit(() -> {
+			thread = Thread.currentThread();
+			return factory.call();
+		});
+		try {
+			interpreter = get(created);
+		} catch (JepException e) {
+			executor.shutdown();
+			throw e;
+		}
+
+		proxy = (Interpreter) Proxy.newProxyInstance(Interpreter.class.getClassLoader(), new Class<?>[] { Interpreter.class }, (instance, method, args) -> {
+			if (method.getDeclaringClass() == Object.class) {
+				return method.invoke(interpreter, args);
+			}
+			return call(() -> {
+				try {
+					return method.invoke(interpreter, args);
+				} catch (InvocationTargetException e) {
+					throw unwrap(e.getCause());
+				}
+			});
+		});
+	}
+
+	// The interpreter, can be used from any thread
+	public Interpreter getInterpreter() {
+		return proxy;
+	}
+
+	/**
+	 * Runs the task on the interpreter thread and waits for the result. Interpreter calls of the task
+	 * run directly, so calls of other threads can not come in between.
+	 */
+	public <T> T call(Callable<T> task) throws JepException {
+		calls.incrementAndGet();
+		if (Thread.currentThread() == thread) {
+			// e.g. python calling back into java
+			try {
+				return task.call();
+			} catch (Exception e) {
+				throw unwrap(e);
+			}
+		}
+		return get(executor.submit(task));
+	}
+
+	// Closes the interpreter and stops the thread
+	public void close() throws JepException {
+		try {
+			call(() -> {
+				interpreter.close();
+				return null;
+			});
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	// number of calls run on the interpreter
+	public long getCalls() {
+		return calls.get();
+	}
+
+	private static <T> T get(Future<T> future) throws JepException {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new JepException(e);
+		} catch (ExecutionException e) {
+			throw unwrap(e.getCause());
+		}
+	}
+
+	private static JepException unwrap(Throwable cause) {
+		if (cause instanceof RuntimeException) {
+			throw (RuntimeException) cause;
+		}
+		if (cause instanceof Error) {
+			throw (Error) cause;
+		}
+		if (cause instanceof JepException) {
+			return (JepException) cause;
+		}
+		return new JepException(cause);
+	}
+}
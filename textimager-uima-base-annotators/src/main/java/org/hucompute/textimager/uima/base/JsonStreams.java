@@ -0,0 +1,177 @@
+package org.hucompute.textimager.uima.base;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Iterator;
+
+import javax.json.JsonException;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Helpers to use the streaming JSON API with the org.json objects of the annotators
+ */
+public class JsonStreams {
+	private JsonStreams() {
+	}
+
+	// Write the object as the root or as an array value
+	public static void write(JsonGenerator generator, JSONObject object) {
+		generator.writeStartObject();
+		writeMembers(generator, object);
+		generator.writeEnd();
+	}
+
+	// Write the object as member of the current object
+	public static void write(JsonGenerator generator, String name, JSONObject object) {
+		generator.writeStartObject(name);
+		writeMembers(generator, object);
+		generator.writeEnd();
+	}
+
+	private static void writeMembers(JsonGenerator generator, JSONObject object) {
+		Iterator<String> keys = object.keys();
+		while (keys.hasNext()) {
+			String key = keys.next();
+			Object value = object.opt(key);
+			if (value instanceof JSONObject) {
+				write(generator, key, (JSONObject) value);
+			}
+			else if (value instanceof JSONArray) {
+				generator.writeStartArray(key);
+				writeElements(generator, (JSONArray) value);
+				generator.writeEnd();
+			}
+			else if (value == null || value == JSONObject.NULL) {
+				generator.writeNull(key);
+			}
+			else if (value instanceof Boolean) {
+				generator.write(key, (Boolean) value);
+			}
+			else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+				generator.write(key, ((Number) value).longValue());
+			}
+			else if (value instanceof BigInteger) {
+				generator.write(key, (BigInteger) value);
+			}
+			else if (value instanceof BigDecimal) {
+				generator.write(key, (BigDecimal) value);
+			}
+			else if (value instanceof Number) {
+				generator.write(key, ((Number) value).doubleValue());
+			}
+			else {
+				generator.write(key, value.toString());
+			}
+		}
+	}
+
+	private static void writeElements(JsonGenerator generator, JSONArray array) {
+		for (int ind = 0; ind < array.length(); ind++) {
+			Object value = array.opt(ind);
+			if (value instanceof JSONObject) {
+				write(generator, (JSONObject) value);
+			}
+			else if (value instanceof JSONArray) {
+				generator.writeStartArray();
+				writeElements(generator, (JSONArray) value);
+				generator.writeEnd();
+			}
+			else if (value == null || value == JSONObject.NULL) {
+				generator.writeNull();
+			}
+			else if (value instanceof Boolean) {
+				generator.write((Boolean) value);
+			}
+			else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+				generator.write(((Number) value).longValue());
+			}
+			else if (value instanceof BigInteger) {
+				generator.write((BigInteger) value);
+			}
+			else if (value instanceof BigDecimal) {
+				generator.write((BigDecimal) value);
+			}
+			else if (value instanceof Number) {
+				generator.write(((Number) value).doubleValue());
+			}
+			else {
+				generator.write(value.toString());
+			}
+		}
+	}
+
+	// Read the next object of the parser
+	public static JSONObject readObject(JsonParser parser) {
+		Event event = parser.next();
+		if (event != Event.START_OBJECT) {
+			throw new JsonException("expected object but got " + event);
+		}
+		return (JSONObject) readValue(parser, event);
+	}
+
+	/**
+	 * Read the value started by the event, e.g. a single member while pull parsing the rest
+	 *
+	 * @param parser the parser
+	 * @param event the last event returned by the parser
+	 * @return JSONObject, JSONArray, String, Number, Boolean or JSONObject.NULL
+	 */
+	public static Object readValue(JsonParser parser, Event event) {
+		switch (event) {
+		case START_OBJECT:
+			JSONObject object = new JSONObject();
+			while ((event = parser.next()) != Event.END_OBJECT) {
+				String key = parser.getString();
+				object.put(key, readValue(parser, parser.next()));
+			}
+			return object;
+		case START_ARRAY:
+			JSONArray array = new JSONArray();
+			while ((event = parser.next()) != Event.END_ARRAY) {
+				array.put(readValue(parser, event));
+			}
+			return array;
+		case VALUE_STRING:
+			return parser.getString();
+		case VALUE_NUMBER:
+			if (parser.isIntegralNumber()) {
+				long value = parser.getLong();
+				if (value == (int) value) {
+					return (int) value;
+				}
+				return value;
+			}
+			return parser.getBigDecimal().doubleValue();
+		case VALUE_TRUE:
+			return true;
+		case VALUE_FALSE:
+			return false;
+		case VALUE_NULL:
+			return JSONObject.NULL;
+		default:
+			throw new JsonException("unexpected " + event);
+		}
+	}
+
+	// Skip the value started by the event
+	public static void skipValue(JsonParser parser, Event event) {
+		if (event != Event.START_OBJECT && event != Event.START_ARRAY) {
+			return;
+		}
+		int depth = 1;
+		while (depth > 0) {
+			event = parser.next();
+			if (event == Event.START_OBJECT || event == Event.START_ARRAY) {
+				depth++;
+			}
+			else if (event == Event.END_OBJECT || event == Event.END_ARRAY) {
+				depth--;
+			}
+		}
+	}
+}
@@ -0,0 +1,34 @@
+package org.hucompute.textimager.uima.base;
+
+/**
+ * A running annotator service container
+ */
+public class PooledContainer {
+	private final String id;
+	private final String name;
+	private final String endpoint;
+
+	public PooledContainer(String id, String name, String endpoint) {
+		this.id = id;
+		this.name = name;
+		this.endpoint = endpoint;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	// REST endpoint of the service, without route
+	public String getEndpoint() {
+		return endpoint;
+	}
+
+	@Override
+	public String toString() {
+		return name + " (" + id + ") at " + endpoint;
+	}
+}
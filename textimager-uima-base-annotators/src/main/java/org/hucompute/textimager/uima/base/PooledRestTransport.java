@@ -0,0 +1,161 @@
+package org.hucompute.textimager.uima.base;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.NoHttpResponseException;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.EntityTemplate;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Keep-alive transport backed by a connection pool, with timeouts and bounded retries.
+ *
+ * Requests are only retried if they did not reach the service, or if it answered with an overload status.
+ * A request that timed out while the service was working on it is not sent again.
+ */
+public class PooledRestTransport implements RestTransport {
+	private final PoolingHttpClientConnectionManager connectionManager;
+	private final CloseableHttpClient client;
+
+	private final int maxRetries;
+	private final long retryBackoff;
+
+	/**
+	 * @param poolSize max open connections per endpoint
+	 * @param connectTimeout connect timeout in ms, also the max wait for a free pooled connection, 0 for none
+	 * @param readTimeout socket read timeout in ms, 0 for none
+	 * @param maxRetries number of retries after the first failed attempt
+	 * @param retryBackoff wait before the first retry in ms, doubled for every further retry
+	 */
+	public PooledRestTransport(int poolSize, int connectTimeout, int readTimeout, int maxRetries, long retryBackoff) {
+		this.maxRetries = Math.max(0, maxRetries);
+		this.retryBackoff = Math.max(0, retryBackoff);
+
+		connectionManager = new PoolingHttpClientConnectionManager();
+		// connections are limited per endpoint, the total limit only has to allow for many endpoints
+		connectionManager.setMaxTotal(Math.max(1, poolSize) * 64);
+		connectionManager.setDefaultMaxPerRoute(Math.max(1, poolSize));
+		// stale connections are checked only if they were idle for a while
+		connectionManager.setValidateAfterInactivity(2000);
+
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(connectTimeout)
+				.setSocketTimeout(readTimeout)
+				.setConnectionRequestTimeout(connectTimeout)
+				.build();
+
+		client = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				// retries are handled here to allow backoff
+				.disableAutomaticRetries()
+				.build();
+	}
+
+	@Override
+	public String post(String endpoint, String body) throws IOException {
+		StringEntity entity = new StringEntity(body, ContentType.APPLICATION_JSON.withCharset(StandardCharsets.UTF_8));
+		return execute(endpoint, entity, in -> IOUtils.toString(in, StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public <T> T post(String endpoint, BodyWriter body, ResponseReader<T> reader, boolean gzip) throws IOException {
+		// written in chunks while sending, the whole body is never in memory
+		EntityTemplate entity = new EntityTemplate(out -> {
+			if (!gzip) {
+				body.writeTo(out);
+				return;
+			}
+			GZIPOutputStream gzipOut = new GZIPOutputStream(out, 8192);
+			body.writeTo(gzipOut);
+			gzipOut.finish();
+		});
+		entity.setContentType(ContentType.APPLICATION_JSON.withCharset(StandardCharsets.UTF_8).toString());
+		if (gzip) {
+			entity.setContentEncoding("gzip");
+		}
+		return execute(endpoint, entity, reader);
+	}
+
+	// compressed responses are accepted and decompressed by the client for both variants
+	private <T> T execute(String endpoint, HttpEntity entity, ResponseReader<T> reader) throws IOException {
+		IOException lastException = null;
+		for (int attempt = 0; attempt <= maxRetries; attempt++) {
+			if (attempt > 0) {
+				backoff(attempt);
+			}
+
+			HttpPost request = new HttpPost(endpoint);
+			request.setEntity(entity);
+
+			int status;
+			try (CloseableHttpResponse response = client.execute(request)) {
+				status = response.getStatusLine().getStatusCode();
+				if (status >= 200 && status < 300) {
+					HttpEntity responseEntity = response.getEntity();
+					try (InputStream in = responseEntity != null ? responseEntity.getContent() : new ByteArrayInputStream(new byte[0])) {
+						T res = reader.read(in);
+						// consume the rest so the connection can be reused
+						EntityUtils.consume(responseEntity);
+						return res;
+					}
+				}
+				// always consume the entity so the connection can be reused
+				EntityUtils.consume(response.getEntity());
+			} catch (IOException e) {
+				if (!isRetryable(e)) {
+					throw e;
+				}
+				lastException = e;
+				continue;
+			}
+
+			lastException = new IOException("Server returned HTTP response code: " + status + " for URL: " + endpoint);
+			if (!isRetryable(status)) {
+				break;
+			}
+		}
+		throw lastException;
+	}
+
+	// only retry if the server is overloaded or temporarily unavailable
+	protected boolean isRetryable(int status) {
+		return status == 429 || status == 502 || status == 503 || status == 504;
+	}
+
+	// only retry if the request was not processed: no connection, no free pooled connection, or a stale
+	// kept-alive connection the server closed before reading the request
+	protected boolean isRetryable(IOException e) {
+		return e instanceof ConnectException || e instanceof ConnectTimeoutException || e instanceof NoHttpResponseException;
+	}
+
+	private void backoff(int attempt) throws IOException {
+		try {
+			Thread.sleep(retryBackoff << Math.min(attempt - 1, 16));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while waiting to retry request", e);
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		client.close();
+		connectionManager.close();
+	}
+}
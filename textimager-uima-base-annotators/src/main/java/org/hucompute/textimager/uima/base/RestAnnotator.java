@@ -1,14 +1,17 @@
 package org.hucompute.textimager.uima.base;
 
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.util.concurrent.ExecutionException;
 
-import org.apache.commons.io.IOUtils;
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonParser;
+
+import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
 import org.json.JSONObject;
 
 public abstract class RestAnnotator extends TextImagerBaseAnnotator {
@@ -19,6 +22,80 @@ public abstract class RestAnnotator extends TextImagerBaseAnnotator {
 	@ConfigurationParameter(name = PARAM_REST_ENDPOINT, mandatory = false)
 	protected String restEndpoint;
 
+	/**
+	 * Max number of pooled keep-alive connections per endpoint
+	 */
+	public static final String PARAM_REST_POOL_SIZE = "restPoolSize";
+	@ConfigurationParameter(name = PARAM_REST_POOL_SIZE, mandatory = false, defaultValue = "8")
+	protected int restPoolSize;
+
+	/**
+	 * Connect timeout in ms, 0 disables the timeout
+	 */
+	public static final String PARAM_REST_CONNECT_TIMEOUT = "restConnectTimeout";
+	@ConfigurationParameter(name = PARAM_REST_CONNECT_TIMEOUT, mandatory = false, defaultValue = "10000")
+	protected int restConnectTimeout;
+
+	/**
+	 * Read timeout in ms, 0 disables the timeout
+	 */
+	public static final String PARAM_REST_READ_TIMEOUT = "restReadTimeout";
+	@ConfigurationParameter(name = PARAM_REST_READ_TIMEOUT, mandatory = false, defaultValue = "0")
+	protected int restReadTimeout;
+
+	/**
+	 * Number of retries of a failed request
+	 */
+	public static final String PARAM_REST_MAX_RETRIES = "restMaxRetries";
+	@ConfigurationParameter(name = PARAM_REST_MAX_RETRIES, mandatory = false, defaultValue = "2")
+	protected int restMaxRetries;
+
+	/**
+	 * Wait before the first retry in ms, doubled for every further retry
+	 */
+	public static final String PARAM_REST_RETRY_BACKOFF = "restRetryBackoff";
+	@ConfigurationParameter(name = PARAM_REST_RETRY_BACKOFF, mandatory = false, defaultValue = "500")
+	protected int restRetryBackoff;
+
+	/**
+	 * Max number of documents sent in one batch request, batching is disabled if less than 2.
+	 * Batches are shared by all annotators using the same endpoint, the service has to support
+	 * the batch route, see RestBatcher for the format.
+	 */
+	public static final String PARAM_REST_BATCH_SIZE = "restBatchSize";
+	@ConfigurationParameter(name = PARAM_REST_BATCH_SIZE, mandatory = false, defaultValue = "1")
+	protected int restBatchSize;
+
+	/**
+	 * Max time in ms a document waits for more documents to fill the batch
+	 */
+	public static final String PARAM_REST_BATCH_TIMEOUT = "restBatchTimeout";
+	@ConfigurationParameter(name = PARAM_REST_BATCH_TIMEOUT, mandatory = false, defaultValue = "50")
+	protected int restBatchTimeout;
+
+	/**
+	 * Stream the request and the response instead of building them as strings in memory, for large documents.
+	 * Override buildJSON(JCas, JsonGenerator) and updateCAS(JCas, JsonParser) to also avoid the JSON objects.
+	 * Not used with batching.
+	 */
+	public static final String PARAM_REST_STREAMING = "restStreaming";
+	@ConfigurationParameter(name = PARAM_REST_STREAMING, mandatory = false, defaultValue = "false")
+	protected boolean restStreaming;
+
+	/**
+	 * Compress streamed requests with gzip, the service has to accept "Content-Encoding: gzip".
+	 * Compressed responses are always accepted.
+	 */
+	public static final String PARAM_REST_GZIP = "restGzip";
+	@ConfigurationParameter(name = PARAM_REST_GZIP, mandatory = false, defaultValue = "false")
+	protected boolean restGzip;
+
+	// Transport used to send the requests
+	protected RestTransport restTransport;
+
+	// Shared batcher, only used if batching is enabled
+	protected RestBatcher restBatcher;
+
 	protected String getRestRoute() {
 		return "";
 	}
@@ -29,32 +106,102 @@ public abstract class RestAnnotator extends TextImagerBaseAnnotator {
 	// Update CAS with JSON results
 	protected abstract void updateCAS(JCas aJCas, JSONObject jsonResult) throws AnalysisEngineProcessException;
 
+	// Write request JSON for streaming, defaults to the object of buildJSON(JCas)
+	protected void buildJSON(JCas aJCas, JsonGenerator generator) throws AnalysisEngineProcessException {
+		JsonStreams.write(generator, buildJSON(aJCas));
+	}
+
+	// Update CAS while reading the streamed JSON results, defaults to updateCAS(JCas, JSONObject)
+	protected void updateCAS(JCas aJCas, JsonParser parser) throws AnalysisEngineProcessException {
+		updateCAS(aJCas, JsonStreams.readObject(parser));
+	}
+
 	protected String getRestEndpoint() {
 		return restEndpoint + getRestRoute();
 	}
 
+	protected String getRestBatchRoute() {
+		return getRestRoute() + "/batch";
+	}
+
+	protected String getRestBatchEndpoint() {
+		return restEndpoint + getRestBatchRoute();
+	}
+
+	// Create the transport, override to plug in a different implementation
+	protected RestTransport createRestTransport() {
+		return new PooledRestTransport(restPoolSize, restConnectTimeout, restReadTimeout, restMaxRetries, restRetryBackoff);
+	}
+
+	@Override
+	public void initialize(UimaContext aContext) throws ResourceInitializationException {
+		super.initialize(aContext);
+
+		restTransport = createRestTransport();
+	}
+
 	protected String sendRequest(String body) throws IOException {
-		URL url = new URL(getRestEndpoint());
-		HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-		connection.setRequestMethod("POST");
-		connection.setDoInput(true);
-		connection.setDoOutput(true);
-		connection.setUseCaches(false);
-		connection.setRequestProperty("Content-Type", "application/json");
-		connection.setRequestProperty("Content-Length", String.valueOf(body.length()));
-
-		OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream());
-		writer.write(body);
-		writer.flush();
-		String res = IOUtils.toString(connection.getInputStream(), "UTF-8");
-		writer.close();
-
-		return res;
+		return restTransport.post(getRestEndpoint(), body);
+	}
+
+	// Send the document with a streamed request and update the CAS from the streamed response
+	protected void sendStreamingRequest(JCas aJCas) throws IOException, AnalysisEngineProcessException {
+		try {
+			restTransport.post(getRestEndpoint(), out -> {
+				JsonGenerator generator = Json.createGenerator(out);
+				try {
+					buildJSON(aJCas, generator);
+				} catch (AnalysisEngineProcessException e) {
+					throw new IOException(e);
+				}
+				// flush only, the transport finishes the stream
+				generator.flush();
+			}, in -> {
+				JsonParser parser = Json.createParser(in);
+				try {
+					updateCAS(aJCas, parser);
+				} catch (AnalysisEngineProcessException e) {
+					throw new IOException(e);
+				}
+				return null;
+			}, restGzip);
+		} catch (IOException e) {
+			if (e.getCause() instanceof AnalysisEngineProcessException) {
+				throw (AnalysisEngineProcessException) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	// Send the payload with the next batch and wait for its result
+	protected JSONObject sendBatchRequest(JSONObject payload) throws Exception {
+		// endpoint is known only after initialize, e.g. when using Docker
+		if (restBatcher == null) {
+			restBatcher = RestBatcher.acquire(getRestBatchEndpoint(), restBatchSize, restBatchTimeout, createRestTransport());
+		}
+		try {
+			return restBatcher.submit(payload).get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		}
 	}
 
 	@Override
 	public void process(JCas aJCas) throws AnalysisEngineProcessException {
 		try {
+			if (restBatchSize > 1) {
+				updateCAS(aJCas, sendBatchRequest(buildJSON(aJCas)));
+				return;
+			}
+
+			if (restStreaming) {
+				sendStreamingRequest(aJCas);
+				return;
+			}
+
 			String body = buildJSON(aJCas).toString();
 			//System.out.println(body);
 
@@ -67,4 +214,21 @@ public abstract class RestAnnotator extends TextImagerBaseAnnotator {
 			throw new AnalysisEngineProcessException(ex);
 		}
 	}
+
+	@Override
+	public void destroy() {
+		if (restBatcher != null) {
+			restBatcher.release();
+			restBatcher = null;
+		}
+		if (restTransport != null) {
+			try {
+				restTransport.close();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			restTransport = null;
+		}
+		super.destroy();
+	}
 }
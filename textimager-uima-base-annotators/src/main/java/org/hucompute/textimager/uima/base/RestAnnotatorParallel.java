@@ -1,21 +1,17 @@
 package org.hucompute.textimager.uima.base;
 
-import org.apache.commons.io.IOUtils;
+import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.net.HttpURLConnection;
-import java.net.MalformedURLException;
-import java.net.ProtocolException;
-import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public abstract class RestAnnotatorParallel extends TextImagerBaseAnnotator {
 	/**
@@ -25,6 +21,60 @@ public abstract class RestAnnotatorParallel extends TextImagerBaseAnnotator {
 	@ConfigurationParameter(name = PARAM_REST_ENDPOINT, mandatory = false)
 	protected String restEndpoint;
 
+	/**
+	 * How to use many endpoints:
+	 * "broadcast" sends every document to all endpoints, e.g. to combine different models,
+	 * "balance" sends every document to one of several identical endpoints
+	 */
+	public static final String PARAM_REST_ENDPOINT_MODE = "restEndpointMode";
+	@ConfigurationParameter(name = PARAM_REST_ENDPOINT_MODE, mandatory = false, defaultValue = "broadcast")
+	protected String restEndpointMode;
+
+	/**
+	 * Endpoint selection in "balance" mode: "round_robin" or "least_outstanding"
+	 */
+	public static final String PARAM_REST_BALANCING = "restBalancing";
+	@ConfigurationParameter(name = PARAM_REST_BALANCING, mandatory = false, defaultValue = "least_outstanding")
+	protected String restBalancing;
+
+	/**
+	 * Max number of concurrent requests per endpoint, for all annotator instances in this JVM
+	 */
+	public static final String PARAM_REST_MAX_IN_FLIGHT = "restMaxInFlight";
+	@ConfigurationParameter(name = PARAM_REST_MAX_IN_FLIGHT, mandatory = false, defaultValue = "4")
+	protected int restMaxInFlight;
+
+	/**
+	 * Number of consecutive failures after which an endpoint is ejected
+	 */
+	public static final String PARAM_REST_EJECT_AFTER_FAILURES = "restEjectAfterFailures";
+	@ConfigurationParameter(name = PARAM_REST_EJECT_AFTER_FAILURES, mandatory = false, defaultValue = "3")
+	protected int restEjectAfterFailures;
+
+	/**
+	 * Time in ms an ejected endpoint gets no requests, it is re-admitted afterwards
+	 */
+	public static final String PARAM_REST_EJECT_DURATION = "restEjectDuration";
+	@ConfigurationParameter(name = PARAM_REST_EJECT_DURATION, mandatory = false, defaultValue = "30000")
+	protected int restEjectDuration;
+
+	/**
+	 * Connect timeout in ms, 0 disables the timeout
+	 */
+	public static final String PARAM_REST_CONNECT_TIMEOUT = "restConnectTimeout";
+	@ConfigurationParameter(name = PARAM_REST_CONNECT_TIMEOUT, mandatory = false, defaultValue = "10000")
+	protected int restConnectTimeout;
+
+	/**
+	 * Read timeout in ms, 0 disables the timeout
+	 */
+	public static final String PARAM_REST_READ_TIMEOUT = "restReadTimeout";
+	@ConfigurationParameter(name = PARAM_REST_READ_TIMEOUT, mandatory = false, defaultValue = "0")
+	protected int restReadTimeout;
+
+	// Shared balancer of all endpoints
+	protected RestEndpointBalancer balancer;
+
 	protected String getRestRoute() {
 		return "";
 	}
@@ -43,42 +93,40 @@ public abstract class RestAnnotatorParallel extends TextImagerBaseAnnotator {
 		return endpoints;
 	}
 
+	// Create the transport, retries are left to the balancer which fails over to other endpoints
+	protected RestTransport createRestTransport() {
+		return new PooledRestTransport(restMaxInFlight, restConnectTimeout, restReadTimeout, 0, 0);
+	}
+
+	protected boolean isBalanceMode() {
+		return "balance".equalsIgnoreCase(restEndpointMode);
+	}
+
+	@Override
+	public void initialize(UimaContext aContext) throws ResourceInitializationException {
+		super.initialize(aContext);
+
+		if (!isBalanceMode() && !"broadcast".equalsIgnoreCase(restEndpointMode)) {
+			throw new ResourceInitializationException(new IllegalArgumentException("unknown restEndpointMode: " + restEndpointMode));
+		}
+		try {
+			RestEndpointBalancer.Strategy.valueOf(restBalancing.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new ResourceInitializationException(e);
+		}
+	}
+
 	protected List<String> sendRequest(String body) throws IOException {
-		List<String> results = getRestEndpoints()
-				.stream()
-				.map(splitEndpoint -> {
-					String result = "";
-					try {
-
-						URL url = new URL(splitEndpoint);
-						HttpURLConnection connection = (HttpURLConnection) url.openConnection();
-						connection.setRequestMethod("POST");
-						connection.setDoInput(true);
-						connection.setDoOutput(true);
-						connection.setUseCaches(false);
-						connection.setRequestProperty("Content-Type", "application/json");
-						connection.setRequestProperty("Content-Length", String.valueOf(body.length()));
-
-						OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream());
-						writer.write(body);
-						writer.flush();
-						String res = IOUtils.toString(connection.getInputStream(), "UTF-8");
-						writer.close();
-
-						result = res;
-					} catch (MalformedURLException e) {
-						e.printStackTrace();
-					} catch (ProtocolException e) {
-						e.printStackTrace();
-					} catch (IOException e) {
-						e.printStackTrace();
-					}
-					return result;
-				})
-				.filter(r -> !r.isEmpty())
-				.collect(Collectors.toList());
-
-		return results;
+		// endpoints may be set after initialize by subclasses
+		if (balancer == null) {
+			balancer = RestEndpointBalancer.acquire(getRestEndpoints(), restMaxInFlight, restEjectAfterFailures, restEjectDuration, createRestTransport());
+		}
+
+		if (isBalanceMode()) {
+			RestEndpointBalancer.Strategy strategy = RestEndpointBalancer.Strategy.valueOf(restBalancing.toUpperCase());
+			return Collections.singletonList(balancer.post(body, strategy));
+		}
+		return balancer.broadcast(body);
 	}
 
 	@Override
@@ -99,4 +147,13 @@ public abstract class RestAnnotatorParallel extends TextImagerBaseAnnotator {
 			throw new AnalysisEngineProcessException(ex);
 		}
 	}
+
+	@Override
+	public void destroy() {
+		if (balancer != null) {
+			balancer.release();
+			balancer = null;
+		}
+		super.destroy();
+	}
 }
@@ -0,0 +1,189 @@
+package org.hucompute.textimager.uima.base;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Collects request payloads of several CASes and sends them as one batch request.
+ *
+ * Batches are shared JVM-wide per endpoint, so all annotator instances (e.g. pipeline threads)
+ * posting to the same endpoint contribute to the same batch. A batch is sent as soon as it is full
+ * or the oldest request waited for the batch timeout.
+ *
+ * Request format:  {"batch": [payload, payload, ...]}
+ * Response format: {"batch": [result, result, ...]} in the same order as the payloads
+ */
+public class RestBatcher {
+	public static final String BATCH_KEY = "batch";
+
+	// Batchers by endpoint, shared by all annotators
+	private static final Map<String, RestBatcher> batchers = new HashMap<>();
+
+	private final String endpoint;
+	private final int maxBatchSize;
+	private final long maxWait;
+	private final RestTransport transport;
+
+	private final LinkedBlockingQueue<PendingRequest> queue = new LinkedBlockingQueue<>();
+	private final Thread dispatcher;
+	private volatile boolean running = true;
+
+	private int useCount = 0;
+
+	private static class PendingRequest {
+		final JSONObject payload;
+		final CompletableFuture<JSONObject> result = new CompletableFuture<>();
+
+		PendingRequest(JSONObject payload) {
+			this.payload = payload;
+		}
+	}
+
+	/**
+	 * Get the batcher for this endpoint, creating it if needed. Release with {@link #release()}.
+	 *
+	 * @param endpoint batch endpoint url
+	 * @param maxBatchSize max number of payloads per batch
+	 * @param maxWait max time in ms the first request of a batch waits for more requests
+	 * @param transport transport used if a new batcher is created, closed otherwise
+	 */
+	public static RestBatcher acquire(String endpoint, int maxBatchSize, long maxWait, RestTransport transport) throws IOException {
+		synchronized (batchers) {
+			RestBatcher batcher = batchers.get(endpoint);
+			if (batcher == null) {
+				batcher = new RestBatcher(endpoint, maxBatchSize, maxWait, transport);
+				batchers.put(endpoint, batcher);
+			}
+			else {
+				transport.close();
+			}
+			batcher.useCount++;
+			return batcher;
+		}
+	}
+
+	RestBatcher(String endpoint, int maxBatchSize, long maxWait, RestTransport transport) {
+		this.endpoint = endpoint;
+		this.maxBatchSize = Math.max(1, maxBatchSize);
+		this.maxWait = Math.max(0, maxWait);
+		this.transport = transport;
+
+		dispatcher = new Thread(this::dispatch, "textimager-rest-batcher");
+		dispatcher.setDaemon(true);
+		dispatcher.start();
+	}
+
+	/**
+	 * Add the payload to the next batch
+	 *
+	 * @return the part of the batch response belonging to this payload
+	 */
+	public CompletableFuture<JSONObject> submit(JSONObject payload) {
+		PendingRequest request = new PendingRequest(payload);
+		if (!running) {
+			request.result.completeExceptionally(new IOException("batcher for " + endpoint + " is closed"));
+			return request.result;
+		}
+		queue.add(request);
+		return request.result;
+	}
+
+	private void dispatch() {
+		List<PendingRequest> batch = new ArrayList<>(maxBatchSize);
+		while (running) {
+			try {
+				PendingRequest first = queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+
+				// collect more requests until the batch is full or the timeout is reached
+				long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWait);
+				while (batch.size() < maxBatchSize) {
+					queue.drainTo(batch, maxBatchSize - batch.size());
+					long remaining = deadline - System.nanoTime();
+					if (batch.size() >= maxBatchSize || remaining <= 0) {
+						break;
+					}
+					PendingRequest next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+				}
+
+				send(batch);
+			} catch (InterruptedException e) {
+				break;
+			} finally {
+				batch.clear();
+			}
+		}
+
+		// fail all requests that did not make it
+		PendingRequest request;
+		while ((request = queue.poll()) != null) {
+			request.result.completeExceptionally(new IOException("batcher for " + endpoint + " is closed"));
+		}
+	}
+
+	private void send(List<PendingRequest> batch) {
+		try {
+			JSONArray payloads = new JSONArray();
+			for (PendingRequest request : batch) {
+				payloads.put(request.payload);
+			}
+			JSONObject body = new JSONObject();
+			body.put(BATCH_KEY, payloads);
+
+			JSONArray results = new JSONObject(transport.post(endpoint, body.toString())).getJSONArray(BATCH_KEY);
+			if (results.length() != batch.size()) {
+				throw new IOException("batch response contains " + results.length() + " results for " + batch.size() + " requests");
+			}
+
+			for (int ind = 0; ind < batch.size(); ind++) {
+				batch.get(ind).result.complete(results.getJSONObject(ind));
+			}
+		} catch (Exception e) {
+			for (PendingRequest request : batch) {
+				request.result.completeExceptionally(e);
+			}
+		}
+	}
+
+	/**
+	 * Release this batcher, it is closed if no other annotator uses it
+	 */
+	public void release() {
+		synchronized (batchers) {
+			useCount--;
+			if (useCount > 0) {
+				return;
+			}
+			batchers.remove(endpoint);
+		}
+
+		running = false;
+		dispatcher.interrupt();
+		try {
+			dispatcher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		try {
+			transport.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+}
@@ -0,0 +1,303 @@
+package org.hucompute.textimager.uima.base;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.uima.UIMAFramework;
+import org.apache.uima.util.Level;
+import org.apache.uima.util.Logger;
+
+/**
+ * Spreads requests over several endpoints of the same service.
+ *
+ * Every endpoint has a bounded number of requests in flight. Endpoints failing several times in a row
+ * are ejected for a while and re-admitted afterwards. Balancers are shared JVM-wide per endpoint list,
+ * so the limits hold for all annotator instances.
+ */
+public class RestEndpointBalancer {
+	private static final Logger logger = UIMAFramework.getLogger(RestEndpointBalancer.class);
+
+	public enum Strategy {
+		ROUND_ROBIN,
+		LEAST_OUTSTANDING
+	}
+
+	// Balancers by endpoint list, shared by all annotators
+	private static final Map<String, RestEndpointBalancer> balancers = new HashMap<>();
+
+	private final String key;
+	private final List<Endpoint> endpoints;
+	private final RestTransport transport;
+	private final int ejectAfterFailures;
+	private final long ejectDuration;
+
+	private final AtomicInteger nextEndpoint = new AtomicInteger();
+	private final ExecutorService broadcastExecutor;
+
+	private int useCount = 0;
+
+	/**
+	 * Counters of one endpoint
+	 */
+	public static class Endpoint {
+		private final String url;
+		private final Semaphore permits;
+
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private final AtomicLong requests = new AtomicLong();
+		private final AtomicLong errors = new AtomicLong();
+		private final AtomicLong latencyNanos = new AtomicLong();
+		private final AtomicInteger consecutiveFailures = new AtomicInteger();
+		private volatile long ejectedUntil = 0;
+
+		Endpoint(String url, int maxInFlight) {
+			this.url = url;
+			this.permits = new Semaphore(Math.max(1, maxInFlight), true);
+		}
+
+		public String getUrl() {
+			return url;
+		}
+
+		public int getInFlight() {
+			return inFlight.get();
+		}
+
+		public long getRequests() {
+			return requests.get();
+		}
+
+		public long getErrors() {
+			return errors.get();
+		}
+
+		// mean latency of all requests in ms
+		public double getMeanLatency() {
+			long count = requests.get();
+			return count > 0 ? latencyNanos.get() / 1e6 / count : 0;
+		}
+
+		public boolean isEjected() {
+			return System.currentTimeMillis() < ejectedUntil;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%s: %d requests, %d errors, %.1f ms mean latency%s", url, getRequests(), getErrors(), getMeanLatency(), isEjected() ? ", ejected" : "");
+		}
+	}
+
+	/**
+	 * Get the balancer for these endpoints, creating it if needed. Release with {@link #release()}.
+	 *
+	 * @param urls endpoint urls including the route
+	 * @param maxInFlight max number of concurrent requests per endpoint
+	 * @param ejectAfterFailures number of consecutive failures after which an endpoint is ejected
+	 * @param ejectDuration time in ms an endpoint stays ejected before it gets requests again
+	 * @param transport transport used if a new balancer is created, closed otherwise
+	 */
+	public static RestEndpointBalancer acquire(List<String> urls, int maxInFlight, int ejectAfterFailures, long ejectDuration, RestTransport transport) throws IOException {
+		String key = String.join(";", urls);
+		synchronized (balancers) {
+			RestEndpointBalancer balancer = balancers.get(key);
+			if (balancer == null) {
+				balancer = new RestEndpointBalancer(key, urls, maxInFlight, ejectAfterFailures, ejectDuration, transport);
+				balancers.put(key, balancer);
+			}
+			else {
+				transport.close();
+			}
+			balancer.useCount++;
+			return balancer;
+		}
+	}
+
+	RestEndpointBalancer(String key, List<String> urls, int maxInFlight, int ejectAfterFailures, long ejectDuration, RestTransport transport) {
+		this.key = key;
+		this.transport = transport;
+		this.ejectAfterFailures = Math.max(1, ejectAfterFailures);
+		this.ejectDuration = Math.max(0, ejectDuration);
+
+		List<Endpoint> endpoints = new ArrayList<>();
+		for (String url : urls) {
+			endpoints.add(new Endpoint(url, maxInFlight));
+		}
+		this.endpoints = Collections.unmodifiableList(endpoints);
+
+		broadcastExecutor = Executors.newCachedThreadPool(runnable -> {
+			Thread thread = new Thread(runnable, "textimager-rest-broadcast");
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	public List<Endpoint> getEndpoints() {
+		return endpoints;
+	}
+
+	/**
+	 * Send the body to one endpoint, failing over to the other endpoints on errors. Every endpoint is
+	 * tried at most once per request.
+	 */
+	public String post(String body, Strategy strategy) throws IOException {
+		IOException lastException = null;
+		Set<Endpoint> tried = new HashSet<>();
+		for (int attempt = 0; attempt < endpoints.size(); attempt++) {
+			Endpoint endpoint = select(strategy, tried);
+			tried.add(endpoint);
+			try {
+				return post(endpoint, body);
+			} catch (IOException e) {
+				lastException = e;
+			}
+		}
+		throw lastException;
+	}
+
+	/**
+	 * Send the body to all endpoints concurrently
+	 *
+	 * @return the results of all endpoints that answered, in endpoint order
+	 * @throws IOException if no endpoint answered
+	 */
+	public List<String> broadcast(String body) throws IOException {
+		List<CompletableFuture<String>> futures = new ArrayList<>();
+		for (Endpoint endpoint : endpoints) {
+			futures.add(CompletableFuture.supplyAsync(() -> {
+				try {
+					return post(endpoint, body);
+				} catch (IOException e) {
+					logger.log(Level.WARNING, "request to " + endpoint.getUrl() + " failed: " + e.getMessage());
+					return null;
+				}
+			}, broadcastExecutor));
+		}
+
+		List<String> results = new ArrayList<>();
+		for (CompletableFuture<String> future : futures) {
+			try {
+				String result = future.get();
+				if (result != null) {
+					results.add(result);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException(e);
+			} catch (ExecutionException e) {
+				throw new IOException(e.getCause());
+			}
+		}
+
+		if (results.isEmpty()) {
+			throw new IOException("no endpoint answered: " + key);
+		}
+		return results;
+	}
+
+	private String post(Endpoint endpoint, String body) throws IOException {
+		try {
+			endpoint.permits.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+
+		endpoint.inFlight.incrementAndGet();
+		long start = System.nanoTime();
+		try {
+			String res = transport.post(endpoint.url, body);
+			endpoint.consecutiveFailures.set(0);
+			return res;
+		} catch (IOException e) {
+			endpoint.errors.incrementAndGet();
+			if (endpoint.consecutiveFailures.incrementAndGet() >= ejectAfterFailures) {
+				logger.log(Level.WARNING, "ejecting endpoint " + endpoint.url + " for " + ejectDuration + " ms");
+				endpoint.ejectedUntil = System.currentTimeMillis() + ejectDuration;
+				// give it a single chance after re-admission
+				endpoint.consecutiveFailures.set(ejectAfterFailures - 1);
+			}
+			throw e;
+		} finally {
+			endpoint.latencyNanos.addAndGet(System.nanoTime() - start);
+			endpoint.requests.incrementAndGet();
+			endpoint.inFlight.decrementAndGet();
+			endpoint.permits.release();
+		}
+	}
+
+	// the endpoint for the next attempt of a request, skipping the ones it already tried
+	private Endpoint select(Strategy strategy, Set<Endpoint> tried) {
+		int size = endpoints.size();
+		int offset = Math.floorMod(nextEndpoint.getAndIncrement(), size);
+
+		Endpoint selected = null;
+		for (int ind = 0; ind < size; ind++) {
+			Endpoint endpoint = endpoints.get((offset + ind) % size);
+			if (endpoint.isEjected() || tried.contains(endpoint)) {
+				continue;
+			}
+			if (strategy == Strategy.ROUND_ROBIN) {
+				// first endpoint with free capacity, starting at the next in turn
+				if (endpoint.permits.availablePermits() > 0) {
+					return endpoint;
+				}
+				if (selected == null) {
+					selected = endpoint;
+				}
+			}
+			else if (selected == null || endpoint.inFlight.get() < selected.inFlight.get()) {
+				selected = endpoint;
+			}
+		}
+
+		if (selected == null) {
+			// all untried endpoints are ejected, probe the one re-admitted first
+			for (Endpoint endpoint : endpoints) {
+				if (tried.contains(endpoint)) {
+					continue;
+				}
+				if (selected == null || endpoint.ejectedUntil < selected.ejectedUntil) {
+					selected = endpoint;
+				}
+			}
+		}
+		return selected;
+	}
+
+	/**
+	 * Release this balancer, it is closed if no other annotator uses it
+	 */
+	public void release() {
+		synchronized (balancers) {
+			useCount--;
+			if (useCount > 0) {
+				return;
+			}
+			balancers.remove(key);
+		}
+
+		for (Endpoint endpoint : endpoints) {
+			logger.log(Level.INFO, endpoint.toString());
+		}
+
+		broadcastExecutor.shutdownNow();
+		try {
+			transport.close();
+		} catch (IOException e) {
+			logger.log(Level.WARNING, "could not close the transport of " + key, e);
+		}
+	}
+}
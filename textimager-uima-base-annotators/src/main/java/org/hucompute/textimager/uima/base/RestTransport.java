@@ -0,0 +1,56 @@
+package org.hucompute.textimager.uima.base;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Transport used by the RestAnnotator to talk to the annotation services
+ */
+public interface RestTransport extends Closeable {
+	// Writes the request body, must not close the stream
+	interface BodyWriter {
+		void writeTo(OutputStream out) throws IOException;
+	}
+
+	// Reads the response body, the stream is closed by the transport
+	interface ResponseReader<T> {
+		T read(InputStream in) throws IOException;
+	}
+
+	/**
+	 * Post the JSON body to the endpoint and return the response body
+	 *
+	 * @param endpoint full url including the route
+	 * @param body JSON request body
+	 * @return the response body
+	 * @throws IOException if the request failed after all retries
+	 */
+	String post(String endpoint, String body) throws IOException;
+
+	/**
+	 * Post a JSON body written directly to the connection and read the response from the connection,
+	 * to avoid holding large documents in memory as strings.
+	 * The body may be written again for a retry, the response is read only once.
+	 * The default implementation buffers the request and response.
+	 *
+	 * @param endpoint full url including the route
+	 * @param body writes the JSON request body
+	 * @param reader reads the response body of a successful request
+	 * @param gzip compress the request body, the service has to accept "Content-Encoding: gzip"
+	 * @return the result of the reader
+	 * @throws IOException if the request failed after all retries or the reader failed
+	 */
+	default <T> T post(String endpoint, BodyWriter body, ResponseReader<T> reader, boolean gzip) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		body.writeTo(out);
+		String res = post(endpoint, new String(out.toByteArray(), StandardCharsets.UTF_8));
+		try (InputStream in = new ByteArrayInputStream(res.getBytes(StandardCharsets.UTF_8))) {
+			return reader.read(in);
+		}
+	}
+}
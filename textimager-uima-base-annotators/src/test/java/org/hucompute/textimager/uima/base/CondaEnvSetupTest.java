@@ -0,0 +1,140 @@
+package org.hucompute.textimager.uima.base;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CondaEnvSetupTest {
+	private Path baseDir;
+	private Path envDir;
+
+	// annotator using a conda installation in a temp dir
+	private class MockCondaAnnotator extends JepAnnotator {
+		MockCondaAnnotator(String envDepsPip) {
+			condaVersion = "py37_4.8.3";
+			envName = "textimager_mock_py37";
+			envPythonVersion = "3.7";
+			envDepsConda = "";
+			this.envDepsPip = envDepsPip;
+		}
+
+		@Override
+		protected Path getCondaBaseDir() {
+			return baseDir;
+		}
+
+		@Override
+		public void process(JCas aJCas) {
+		}
+	}
+
+	// installed conda with an env containing a lot of packages
+	@Before
+	public void createMockConda() throws IOException {
+		baseDir = Files.createTempDirectory("textimager-conda");
+		envDir = baseDir.resolve("py37_4.8.3").resolve("miniconda").resolve("envs").resolve("textimager_mock_py37");
+		Path sitePackages = envDir.resolve("lib").resolve("python3.7").resolve("site-packages");
+		for (int pkg = 0; pkg < 300; pkg++) {
+			for (int module = 0; module < 10; module++) {
+				Files.createDirectories(sitePackages.resolve("package" + pkg).resolve("module" + module));
+			}
+		}
+		Files.createDirectories(sitePackages.resolve("jep"));
+		Files.createFile(sitePackages.resolve("jep").resolve("libjep.so"));
+	}
+
+	@After
+	public void deleteMockConda() throws IOException {
+		try (Stream<Path> walk = Files.walk(baseDir)) {
+			walk.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	@Test
+	public void manifestSkipsSetupOnWarmStart() throws Exception {
+		MockCondaAnnotator cold = new MockCondaAnnotator("spacy==2.3.0");
+		long start = System.nanoTime();
+		cold.setupConda();
+		long coldMillis = (System.nanoTime() - start) / 1000000;
+		assertTrue(Files.exists(envDir.resolve(CondaEnvManifest.FILE_NAME)));
+		// lib, python3.7, site-packages, jep and 300 packages with 10 modules each
+		assertEquals(3304, cold.includePaths.length);
+
+		MockCondaAnnotator warm = new MockCondaAnnotator("spacy==2.3.0");
+		start = System.nanoTime();
+		warm.setupConda();
+		long warmMillis = (System.nanoTime() - start) / 1000000;
+		assertArrayEquals(cold.includePaths, warm.includePaths);
+
+		System.out.println("conda setup: cold " + coldMillis + " ms, warm " + warmMillis + " ms");
+		assertTrue("warm start took " + warmMillis + " ms", warmMillis < coldMillis);
+	}
+
+	@Test
+	public void manifestIsInvalidatedByChanges() throws Exception {
+		new MockCondaAnnotator("spacy==2.3.0").setupConda();
+		CondaEnvManifest manifest = CondaEnvManifest.read(envDir.resolve(CondaEnvManifest.FILE_NAME));
+
+		// other dependencies are not installed into the existing env
+		try {
+			new MockCondaAnnotator("spacy==3.0.0").setupConda();
+			fail("expected ResourceInitializationException");
+		} catch (ResourceInitializationException e) {
+			// the manifest still describes the installed dependencies
+			assertEquals(manifest.getDependencyHash(), CondaEnvManifest.read(envDir.resolve(CondaEnvManifest.FILE_NAME)).getDependencyHash());
+		}
+
+		// package installed afterwards
+		Path sitePackages = envDir.resolve("lib").resolve("python3.7").resolve("site-packages");
+		Files.createDirectories(sitePackages.resolve("newpackage"));
+		Files.setLastModifiedTime(sitePackages, FileTime.fromMillis(manifest.getPackagesModified() + 1000));
+		MockCondaAnnotator updated = new MockCondaAnnotator("spacy==2.3.0");
+		updated.setupConda();
+		assertTrue(Stream.of(updated.includePaths).anyMatch(path -> path.endsWith("newpackage")));
+	}
+
+	@Test
+	public void waitingSetupStartsWhenLockIsReleased() throws Exception {
+		Path lockfile = baseDir.resolve("textimager_test.lock");
+		CountDownLatch waiting = new CountDownLatch(1);
+
+		CondaLock lock = CondaLock.acquire(lockfile, "test");
+		ExecutorService other = Executors.newSingleThreadExecutor();
+		Future<Long> acquired = other.submit(() -> {
+			waiting.countDown();
+			try (CondaLock otherLock = CondaLock.acquire(lockfile, "test")) {
+				return System.nanoTime();
+			}
+		});
+		waiting.await();
+		Thread.sleep(200);
+		assertFalse(acquired.isDone());
+
+		long released = System.nanoTime();
+		lock.close();
+		long waitMillis = (acquired.get() - released) / 1000000;
+		other.shutdown();
+
+		System.out.println("lock handed over after " + waitMillis + " ms");
+		assertTrue("lock handed over after " + waitMillis + " ms", waitMillis < 100);
+	}
+}
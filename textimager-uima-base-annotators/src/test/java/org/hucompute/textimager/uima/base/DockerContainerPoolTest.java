@@ -0,0 +1,167 @@
+package org.hucompute.textimager.uima.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class DockerContainerPoolTest {
+	private static final DockerContainerSpec SPEC = new DockerContainerSpec("textimager-uima-service-test:0.1", 8000, 8000, "bridge", null);
+
+	// fake Docker, containers get ready after a few readiness checks
+	private static class FakeLauncher implements DockerContainerLauncher {
+		final AtomicInteger starts = new AtomicInteger();
+		final AtomicInteger stops = new AtomicInteger();
+		final AtomicInteger readyChecks = new AtomicInteger();
+		final List<PooledContainer> hostContainers = new ArrayList<>();
+		final int checksUntilReady;
+
+		FakeLauncher(int checksUntilReady) {
+			this.checksUntilReady = checksUntilReady;
+		}
+
+		@Override
+		public PooledContainer start(DockerContainerSpec spec, String name, String poolLabel, long timeout) throws Exception {
+			// cold start of a big image
+			Thread.sleep(50);
+			starts.incrementAndGet();
+			return new PooledContainer("id" + starts.get(), name, "http://localhost:" + spec.getHostPort());
+		}
+
+		@Override
+		public PooledContainer find(DockerContainerSpec spec, String poolLabel) {
+			return hostContainers.isEmpty() ? null : hostContainers.get(0);
+		}
+
+		@Override
+		public boolean isReady(PooledContainer container) {
+			return readyChecks.incrementAndGet() > checksUntilReady;
+		}
+
+		@Override
+		public void stop(PooledContainer container) {
+			stops.incrementAndGet();
+		}
+	}
+
+	@Test
+	public void containerIsSharedAndReferenceCounted() throws Exception {
+		DockerContainerPool pool = new DockerContainerPool(5);
+		FakeLauncher launcher = new FakeLauncher(2);
+
+		DockerContainerPool.Lease first = pool.acquire(SPEC, launcher, DockerContainerPool.Mode.JVM, 0, 1000);
+		DockerContainerPool.Lease second = pool.acquire(SPEC, launcher, DockerContainerPool.Mode.JVM, 0, 1000);
+		assertSame(first.getContainer(), second.getContainer());
+		assertEquals(1, launcher.starts.get());
+		assertEquals(1, pool.getColdStarts());
+		assertEquals(1, pool.getReuses());
+		// only the started container had to get ready
+		assertEquals(1, pool.getStartupMetrics().getCount(DockerStartupMetrics.Phase.READY));
+		assertTrue(pool.getStartupMetrics().getMaxMillis(DockerStartupMetrics.Phase.READY) >= 10);
+
+		first.release();
+		assertEquals(0, launcher.stops.get());
+		second.release();
+		assertEquals(1, launcher.stops.get());
+		assertEquals(0, pool.size());
+	}
+
+	@Test
+	public void concurrentAcquiresStartOneContainer() throws Exception {
+		DockerContainerPool pool = new DockerContainerPool(5);
+		FakeLauncher launcher = new FakeLauncher(3);
+
+		ExecutorService annotators = Executors.newFixedThreadPool(16);
+		List<Future<DockerContainerPool.Lease>> leases = new ArrayList<>();
+		for (int ind = 0; ind < 16; ind++) {
+			leases.add(annotators.submit(() -> pool.acquire(SPEC, launcher, DockerContainerPool.Mode.JVM, 0, 1000)));
+		}
+		for (Future<DockerContainerPool.Lease> lease : leases) {
+			lease.get().release();
+		}
+		annotators.shutdown();
+
+		assertEquals(1, launcher.starts.get());
+		assertEquals(15, pool.getReuses());
+		assertEquals(1, launcher.stops.get());
+	}
+
+	@Test
+	public void idleContainerIsReusedThenEvicted() throws Exception {
+		DockerContainerPool pool = new DockerContainerPool(5);
+		FakeLauncher launcher = new FakeLauncher(0);
+
+		pool.acquire(SPEC, launcher, DockerContainerPool.Mode.JVM, 200, 1000).release();
+		// next job starts within the idle timeout
+		Thread.sleep(50);
+		DockerContainerPool.Lease lease = pool.acquire(SPEC, launcher, DockerContainerPool.Mode.JVM, 200, 1000);
+		assertEquals(1, launcher.starts.get());
+		assertEquals(1, pool.getReuses());
+
+		// eviction was cancelled by the reuse
+		Thread.sleep(300);
+		assertEquals(0, launcher.stops.get());
+
+		lease.release();
+		assertEquals(0, launcher.stops.get());
+		Thread.sleep(300);
+		assertEquals(1, launcher.stops.get());
+		assertEquals(1, pool.getEvictions());
+		assertEquals(0, pool.size());
+	}
+
+	@Test
+	public void readyTimeoutStopsContainer() throws Exception {
+		DockerContainerPool pool = new DockerContainerPool(5);
+		FakeLauncher launcher = new FakeLauncher(Integer.MAX_VALUE);
+
+		try {
+			pool.acquire(SPEC, launcher, DockerContainerPool.Mode.JVM, 0, 100);
+			throw new AssertionError("expected timeout");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("not ready"));
+		}
+		assertEquals(1, launcher.stops.get());
+		assertEquals(0, pool.size());
+	}
+
+	@Test
+	public void noPoolingStartsContainerPerAnnotator() throws Exception {
+		DockerContainerPool pool = new DockerContainerPool(5);
+		FakeLauncher launcher = new FakeLauncher(0);
+
+		DockerContainerPool.Lease first = pool.acquire(SPEC, launcher, DockerContainerPool.Mode.NONE, 0, 1000);
+		DockerContainerPool.Lease second = pool.acquire(SPEC, launcher, DockerContainerPool.Mode.NONE, 0, 1000);
+		assertNotSame(first.getContainer(), second.getContainer());
+		assertEquals(2, launcher.starts.get());
+
+		first.release();
+		second.release();
+		assertEquals(2, launcher.stops.get());
+	}
+
+	@Test
+	public void hostContainerIsReusedAndNotStopped() throws Exception {
+		DockerContainerPool pool = new DockerContainerPool(5);
+		FakeLauncher launcher = new FakeLauncher(0);
+		launcher.hostContainers.add(new PooledContainer("other", "started_by_other_jvm", "http://localhost:8000"));
+
+		DockerContainerPool.Lease lease = pool.acquire(SPEC, launcher, DockerContainerPool.Mode.HOST, 0, 1000);
+		assertEquals("other", lease.getContainer().getId());
+		assertEquals(0, launcher.starts.get());
+		assertEquals(1, pool.getHostReuses());
+
+		lease.release();
+		assertEquals(0, launcher.stops.get());
+	}
+}
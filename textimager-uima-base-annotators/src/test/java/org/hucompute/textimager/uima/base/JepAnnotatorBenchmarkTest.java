@@ -0,0 +1,107 @@
+package org.hucompute.textimager.uima.base;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.junit.Assume;
+import org.junit.Test;
+
+import jep.JepException;
+
+/**
+ * Throughput of the python interpreter modes with several pipeline threads.
+ *
+ * Sets up a small conda env on the first run, enable with -Dtextimager.benchmark=true
+ */
+public class JepAnnotatorBenchmarkTest {
+	private static final int THREADS = 4;
+	private static final int DOCUMENTS_PER_THREAD = 50;
+
+	// cpu bound python, sha256 of big buffers releases the GIL like most native libraries
+	public static class HashAnnotator extends JepAnnotator {
+		@Override
+		public void initialize(UimaContext aContext) throws ResourceInitializationException {
+			super.initialize(aContext);
+
+			envName = "textimager_jep_benchmark_py37_v1";
+			envPythonVersion = "3.7";
+			envDepsConda = "";
+			envDepsPip = "";
+
+			initConda();
+
+			try {
+				interpreter.exec("import hashlib");
+				interpreter.exec("data = b'x' * (4 << 20)");
+			} catch (JepException e) {
+				throw new ResourceInitializationException(e);
+			}
+		}
+
+		@Override
+		public void process(JCas aJCas) throws AnalysisEngineProcessException {
+			try {
+				interpreter.exec("digest = hashlib.sha256(data).hexdigest()");
+				aJCas.setDocumentLanguage(interpreter.getValue("digest", String.class).substring(0, 2));
+			} catch (JepException e) {
+				throw new AnalysisEngineProcessException(e);
+			}
+		}
+	}
+
+	// documents/sec with one engine per pipeline thread
+	private double run(String mode) throws Exception {
+		List<AnalysisEngine> engines = new ArrayList<>();
+		for (int ind = 0; ind < THREADS; ind++) {
+			engines.add(AnalysisEngineFactory.createEngine(HashAnnotator.class, JepAnnotator.PARAM_INTERPRETER_MODE, mode));
+		}
+
+		ExecutorService pipeline = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> futures = new ArrayList<>();
+		long start = System.nanoTime();
+		for (AnalysisEngine engine : engines) {
+			futures.add(pipeline.submit(() -> {
+				JCas jCas = JCasFactory.createText("benchmark");
+				for (int ind = 0; ind < DOCUMENTS_PER_THREAD; ind++) {
+					engine.process(jCas);
+				}
+				return null;
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		double documentsPerSecond = THREADS * DOCUMENTS_PER_THREAD / ((System.nanoTime() - start) / 1e9);
+		pipeline.shutdown();
+
+		for (AnalysisEngine engine : engines) {
+			engine.destroy();
+		}
+		return documentsPerSecond;
+	}
+
+	@Test
+	public void instanceInterpretersScaleWithThreads() throws Exception {
+		Assume.assumeTrue(Boolean.getBoolean("textimager.benchmark"));
+
+		double shared = run("shared");
+		double instance = run("instance");
+		System.out.println(String.format("%d threads: shared interpreter %.1f documents/sec, instance interpreters %.1f documents/sec", THREADS, shared, instance));
+
+		if (Runtime.getRuntime().availableProcessors() >= THREADS) {
+			assertTrue("no scaling with instance interpreters", instance > shared * 1.5);
+		}
+	}
+}
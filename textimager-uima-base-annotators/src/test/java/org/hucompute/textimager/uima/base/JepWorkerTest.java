@@ -0,0 +1,121 @@
+package org.hucompute.textimager.uima.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import jep.Interpreter;
+import jep.JepException;
+
+public class JepWorkerTest {
+	// fake interpreter that remembers the threads using it, like jep it must stay on one thread
+	private static Interpreter fakeInterpreter(Set<Thread> threads) {
+		return (Interpreter) Proxy.newProxyInstance(Interpreter.class.getClassLoader(), new Class<?>[] { Interpreter.class }, (instance, method, args) -> {
+			threads.add(Thread.currentThread());
+			if (method.getName().equals("getValue")) {
+				return "value of " + args[0];
+			}
+			if (method.getName().equals("exec") && args[0].equals("raise")) {
+				throw new JepException("<class 'Exception'>: raised");
+			}
+			return null;
+		});
+	}
+
+	@Test
+	public void callsFromAllThreadsRunOnInterpreterThread() throws Exception {
+		Set<Thread> threads = ConcurrentHashMap.newKeySet();
+		AtomicReference<Thread> creator = new AtomicReference<>();
+		JepWorker worker = new JepWorker("jep-test", () -> {
+			creator.set(Thread.currentThread());
+			return fakeInterpreter(threads);
+		});
+		Interpreter interpreter = worker.getInterpreter();
+
+		ExecutorService pipeline = Executors.newFixedThreadPool(8);
+		List<Future<Object>> values = new ArrayList<>();
+		for (int ind = 0; ind < 100; ind++) {
+			String name = "x" + ind;
+			values.add(pipeline.submit(() -> {
+				interpreter.set(name, 1);
+				return interpreter.getValue(name);
+			}));
+		}
+		for (int ind = 0; ind < 100; ind++) {
+			assertEquals("value of x" + ind, values.get(ind).get());
+		}
+		pipeline.shutdown();
+
+		assertEquals(1, threads.size());
+		assertSame(creator.get(), threads.iterator().next());
+		assertEquals(200, worker.getCalls());
+		worker.close();
+	}
+
+	@Test
+	public void tasksAreNotInterleaved() throws Exception {
+		// globals of the fake interpreter
+		Map<Object, Object> globals = new HashMap<>();
+		JepWorker worker = new JepWorker("jep-test", () -> (Interpreter) Proxy.newProxyInstance(Interpreter.class.getClassLoader(), new Class<?>[] { Interpreter.class }, (instance, method, args) -> {
+			if (method.getName().equals("set")) {
+				globals.put(args[0], args[1]);
+			}
+			else if (method.getName().equals("getValue")) {
+				// room for other threads to come in between
+				Thread.sleep(1);
+				return globals.get(args[0]);
+			}
+			return null;
+		}));
+		Interpreter interpreter = worker.getInterpreter();
+
+		ExecutorService pipeline = Executors.newFixedThreadPool(8);
+		List<Future<Object>> values = new ArrayList<>();
+		for (int ind = 0; ind < 100; ind++) {
+			int value = ind;
+			values.add(pipeline.submit(() -> worker.call(() -> {
+				interpreter.set("text", value);
+				return interpreter.getValue("text");
+			})));
+		}
+		for (int ind = 0; ind < 100; ind++) {
+			assertEquals(ind, values.get(ind).get());
+		}
+		pipeline.shutdown();
+		worker.close();
+	}
+
+	@Test
+	public void pythonErrorsArePassedToCaller() throws Exception {
+		JepWorker worker = new JepWorker("jep-test", () -> fakeInterpreter(ConcurrentHashMap.newKeySet()));
+		try {
+			worker.getInterpreter().exec("raise");
+			throw new AssertionError("expected JepException");
+		} catch (JepException e) {
+			assertTrue(e.getMessage().contains("raised"));
+		} finally {
+			worker.close();
+		}
+	}
+
+	@Test(expected = JepException.class)
+	public void failedInterpreterCreation() throws Exception {
+		new JepWorker("jep-test", () -> {
+			throw new JepException("libjep.so not found");
+		});
+	}
+}
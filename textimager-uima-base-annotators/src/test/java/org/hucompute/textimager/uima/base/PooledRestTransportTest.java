@@ -0,0 +1,183 @@
+package org.hucompute.textimager.uima.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class PooledRestTransportTest {
+	private static final int REQUESTS = 2000;
+
+	private HttpServer server;
+	private ExecutorService handlers;
+	private String endpoint;
+	private String slowEndpoint;
+	private AtomicInteger failNext = new AtomicInteger();
+	private AtomicInteger slowRequests = new AtomicInteger();
+
+	@Before
+	public void startStub() throws IOException {
+		// echo stub, answers with 503 as long as failNext is > 0
+		// disable nagle on the stub, otherwise keep-alive responses stall on delayed acks
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/echo", exchange -> {
+			byte[] body;
+			try (InputStream in = exchange.getRequestBody()) {
+				body = IOUtils.toByteArray(in);
+			}
+			int status = 200;
+			if (failNext.getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+				status = 503;
+				body = "{}".getBytes(StandardCharsets.UTF_8);
+			}
+			exchange.sendResponseHeaders(status, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		// a service still working on the request when the client gives up
+		server.createContext("/slow", exchange -> {
+			IOUtils.toByteArray(exchange.getRequestBody());
+			slowRequests.incrementAndGet();
+			try {
+				Thread.sleep(1000);
+			} catch (InterruptedException e) {
+				// ignore
+			}
+			exchange.sendResponseHeaders(200, 2);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write("{}".getBytes(StandardCharsets.UTF_8));
+			}
+		});
+		handlers = Executors.newCachedThreadPool();
+		server.setExecutor(handlers);
+		server.start();
+		endpoint = "http://localhost:" + server.getAddress().getPort() + "/echo";
+		slowEndpoint = "http://localhost:" + server.getAddress().getPort() + "/slow";
+	}
+
+	@After
+	public void stopStub() {
+		server.stop(0);
+		handlers.shutdownNow();
+	}
+
+	// the request code used before the pooled transport
+	private String sendLegacy(String body) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(endpoint).openConnection();
+		connection.setRequestMethod("POST");
+		connection.setDoInput(true);
+		connection.setDoOutput(true);
+		connection.setUseCaches(false);
+		connection.setRequestProperty("Content-Type", "application/json");
+
+		OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8);
+		writer.write(body);
+		writer.flush();
+		String res = IOUtils.toString(connection.getInputStream(), StandardCharsets.UTF_8);
+		writer.close();
+		return res;
+	}
+
+	@Test
+	public void echoNonAscii() throws IOException {
+		try (RestTransport transport = new PooledRestTransport(2, 1000, 1000, 0, 0)) {
+			String body = "{\"text\":\"Größe ſ 東京\"}";
+			assertEquals(body, transport.post(endpoint, body));
+		}
+	}
+
+	@Test
+	public void retryOnUnavailable() throws IOException {
+		failNext.set(2);
+		try (RestTransport transport = new PooledRestTransport(2, 1000, 1000, 2, 10)) {
+			assertEquals("{\"a\":1}", transport.post(endpoint, "{\"a\":1}"));
+		}
+	}
+
+	@Test(expected = IOException.class)
+	public void retriesAreBounded() throws IOException {
+		failNext.set(3);
+		try (RestTransport transport = new PooledRestTransport(2, 1000, 1000, 2, 10)) {
+			transport.post(endpoint, "{\"a\":1}");
+		}
+	}
+
+	@Test
+	public void readTimeoutIsNotRetried() throws IOException {
+		try (RestTransport transport = new PooledRestTransport(2, 1000, 200, 2, 10)) {
+			transport.post(slowEndpoint, "{\"a\":1}");
+			fail("expected SocketTimeoutException");
+		} catch (SocketTimeoutException e) {
+			// the service got the document once
+			assertEquals(1, slowRequests.get());
+		}
+	}
+
+	@Test
+	public void waitForPooledConnectionIsBounded() throws Exception {
+		ExecutorService client = Executors.newSingleThreadExecutor();
+		try (RestTransport transport = new PooledRestTransport(1, 200, 5000, 0, 0)) {
+			// holds the only connection of the pool
+			Future<String> slow = client.submit(() -> transport.post(slowEndpoint, "{}"));
+			while (slowRequests.get() == 0) {
+				Thread.sleep(10);
+			}
+			try {
+				transport.post(endpoint, "{}");
+				fail("expected ConnectionPoolTimeoutException");
+			} catch (ConnectionPoolTimeoutException e) {
+				// no free connection within the connect timeout
+			}
+			assertEquals("{}", slow.get());
+		} finally {
+			client.shutdown();
+		}
+	}
+
+	// enable with -Dtextimager.benchmark=true
+	@Test
+	public void benchmark() throws IOException {
+		Assume.assumeTrue(Boolean.getBoolean("textimager.benchmark"));
+		String body = "{\"text\":\"This is a short tweet sized document.\"}";
+
+		long start = System.nanoTime();
+		for (int i = 0; i < REQUESTS; i++) {
+			assertEquals(body, sendLegacy(body));
+		}
+		double legacySeconds = (System.nanoTime() - start) / 1e9;
+
+		try (RestTransport transport = new PooledRestTransport(4, 1000, 1000, 0, 0)) {
+			start = System.nanoTime();
+			for (int i = 0; i < REQUESTS; i++) {
+				assertEquals(body, transport.post(endpoint, body));
+			}
+		}
+		double pooledSeconds = (System.nanoTime() - start) / 1e9;
+
+		System.out.println(String.format("new connection per request: %.0f requests/sec", REQUESTS / legacySeconds));
+		System.out.println(String.format("pooled keep-alive transport: %.0f requests/sec", REQUESTS / pooledSeconds));
+	}
+}
@@ -0,0 +1,125 @@
+package org.hucompute.textimager.uima.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.commons.io.IOUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class RestBatcherTest {
+	private static final int THREADS = 8;
+	private static final int DOCUMENTS = 50;
+	private static final int BATCH_SIZE = 4;
+
+	private HttpServer server;
+	private ExecutorService serverExecutor;
+	private String endpoint;
+	private List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<>());
+
+	@Before
+	public void startStub() throws IOException {
+		// records the batch sizes and answers every payload with its reversed text
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		serverExecutor = Executors.newFixedThreadPool(4);
+		server.setExecutor(serverExecutor);
+		server.createContext("/parse/batch", exchange -> {
+			JSONArray batch;
+			try (InputStream in = exchange.getRequestBody()) {
+				batch = new JSONObject(IOUtils.toString(in, StandardCharsets.UTF_8)).getJSONArray(RestBatcher.BATCH_KEY);
+			}
+			batchSizes.add(batch.length());
+
+			JSONArray results = new JSONArray();
+			for (int ind = 0; ind < batch.length(); ind++) {
+				String text = batch.getJSONObject(ind).getString("text");
+				results.put(new JSONObject().put("text", new StringBuilder(text).reverse().toString()));
+			}
+			byte[] body = new JSONObject().put(RestBatcher.BATCH_KEY, results).toString().getBytes(StandardCharsets.UTF_8);
+			exchange.sendResponseHeaders(200, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+		endpoint = "http://localhost:" + server.getAddress().getPort() + "/parse/batch";
+	}
+
+	@After
+	public void stopStub() {
+		server.stop(0);
+		serverExecutor.shutdown();
+	}
+
+	@Test
+	public void batchesAcrossThreads() throws Exception {
+		ExecutorService pipelines = Executors.newFixedThreadPool(THREADS);
+		List<Future<?>> futures = new ArrayList<>();
+		long start = System.nanoTime();
+		for (int thread = 0; thread < THREADS; thread++) {
+			final int threadId = thread;
+			futures.add(pipelines.submit(() -> {
+				// every pipeline thread uses its own annotator, all share the batcher
+				RestBatcher batcher = RestBatcher.acquire(endpoint, BATCH_SIZE, 20, new PooledRestTransport(2, 1000, 1000, 0, 0));
+				try {
+					for (int doc = 0; doc < DOCUMENTS; doc++) {
+						String text = "doc-" + threadId + "-" + doc;
+						JSONObject result = batcher.submit(new JSONObject().put("text", text)).get();
+						assertEquals(new StringBuilder(text).reverse().toString(), result.getString("text"));
+					}
+				} finally {
+					batcher.release();
+				}
+				return null;
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		pipelines.shutdown();
+		double seconds = (System.nanoTime() - start) / 1e9;
+
+		int documents = 0;
+		int maxSize = 0;
+		for (int size : batchSizes) {
+			documents += size;
+			maxSize = Math.max(maxSize, size);
+		}
+		System.out.println(String.format("%d documents in %d batches, %.0f documents/sec", documents, batchSizes.size(), documents / seconds));
+
+		assertEquals(THREADS * DOCUMENTS, documents);
+		assertTrue("batch size limit exceeded", maxSize <= BATCH_SIZE);
+		assertTrue("no documents were batched", batchSizes.size() < documents);
+	}
+
+	@Test(expected = IOException.class)
+	public void failedBatchFailsAllRequests() throws Throwable {
+		RestBatcher batcher = RestBatcher.acquire("http://localhost:" + server.getAddress().getPort() + "/missing", BATCH_SIZE, 20, new PooledRestTransport(2, 1000, 1000, 0, 0));
+		try {
+			batcher.submit(new JSONObject().put("text", "abc")).get();
+		} catch (ExecutionException e) {
+			throw e.getCause();
+		} finally {
+			batcher.release();
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package org.hucompute.textimager.uima.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class RestEndpointBalancerTest {
+	private static final int CLIENTS = 12;
+	private static final int REQUESTS_PER_CLIENT = 40;
+
+	private List<HttpServer> servers = new ArrayList<>();
+
+	// if set, every stub waits for the requests of all stubs before it answers
+	private volatile CountDownLatch arrived;
+	private final AtomicBoolean overlapped = new AtomicBoolean(true);
+
+	// stub replica that handles one request at a time, like a single model worker
+	private String startStub(long latency, int status) throws IOException {
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/tag", exchange -> {
+			byte[] body;
+			try (InputStream in = exchange.getRequestBody()) {
+				body = IOUtils.toByteArray(in);
+			}
+			try {
+				CountDownLatch latch = arrived;
+				if (latch != null) {
+					latch.countDown();
+					if (!latch.await(10, TimeUnit.SECONDS)) {
+						overlapped.set(false);
+					}
+				}
+				Thread.sleep(latency);
+			} catch (InterruptedException e) {
+				// ignore
+			}
+			exchange.sendResponseHeaders(status, body.length);
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		});
+		server.start();
+		servers.add(server);
+		return "http://localhost:" + server.getAddress().getPort() + "/tag";
+	}
+
+	@After
+	public void stopStubs() {
+		for (HttpServer server : servers) {
+			server.stop(0);
+		}
+	}
+
+	// requests/sec of several clients posting to the balancer concurrently
+	private double run(RestEndpointBalancer balancer, RestEndpointBalancer.Strategy strategy) throws Exception {
+		ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+		List<Future<?>> futures = new ArrayList<>();
+		long start = System.nanoTime();
+		for (int client = 0; client < CLIENTS; client++) {
+			futures.add(clients.submit(() -> {
+				for (int ind = 0; ind < REQUESTS_PER_CLIENT; ind++) {
+					String body = "{\"request\":" + ind + "}";
+					assertEquals(body, balancer.post(body, strategy));
+				}
+				return null;
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		clients.shutdown();
+		return CLIENTS * REQUESTS_PER_CLIENT / ((System.nanoTime() - start) / 1e9);
+	}
+
+	@Test
+	public void requestsAreSpreadOverEndpoints() throws Exception {
+		List<String> endpoints = new ArrayList<>();
+		endpoints.add(startStub(1, 200));
+		endpoints.add(startStub(2, 200));
+		endpoints.add(startStub(1, 200));
+
+		for (RestEndpointBalancer.Strategy strategy : RestEndpointBalancer.Strategy.values()) {
+			RestEndpointBalancer balancer = RestEndpointBalancer.acquire(endpoints, 1, 3, 1000, new PooledRestTransport(1, 1000, 5000, 0, 0));
+			try {
+				run(balancer, strategy);
+				for (RestEndpointBalancer.Endpoint endpoint : balancer.getEndpoints()) {
+					assertTrue(strategy + ": " + endpoint.getUrl() + " got no requests", endpoint.getRequests() > 0);
+					assertEquals(0, endpoint.getErrors());
+				}
+			} finally {
+				balancer.release();
+			}
+		}
+	}
+
+	// enable with -Dtextimager.benchmark=true
+	@Test
+	public void benchmarkThroughputScalesWithEndpoints() throws Exception {
+		Assume.assumeTrue(Boolean.getBoolean("textimager.benchmark"));
+
+		List<String> endpoints = new ArrayList<>();
+		endpoints.add(startStub(5, 200));
+		endpoints.add(startStub(10, 200));
+		endpoints.add(startStub(5, 200));
+		endpoints.add(startStub(15, 200));
+
+		double single = 0;
+		double all = 0;
+		for (RestEndpointBalancer.Strategy strategy : RestEndpointBalancer.Strategy.values()) {
+			RestEndpointBalancer balancer = RestEndpointBalancer.acquire(endpoints.subList(0, 1), 1, 3, 1000, new PooledRestTransport(1, 1000, 5000, 0, 0));
+			single = run(balancer, strategy);
+			balancer.release();
+
+			balancer = RestEndpointBalancer.acquire(endpoints, 1, 3, 1000, new PooledRestTransport(1, 1000, 5000, 0, 0));
+			all = run(balancer, strategy);
+			balancer.release();
+
+			System.out.println(String.format("%s: 1 endpoint %.0f requests/sec, %d endpoints %.0f requests/sec", strategy, single, endpoints.size(), all));
+		}
+		assertTrue("no scaling with more endpoints", all > single * 2);
+	}
+
+	@Test
+	public void failingEndpointIsEjected() throws Exception {
+		List<String> endpoints = new ArrayList<>();
+		endpoints.add(startStub(1, 200));
+		endpoints.add(startStub(1, 500));
+
+		RestEndpointBalancer balancer = RestEndpointBalancer.acquire(endpoints, 2, 2, 60000, new PooledRestTransport(2, 1000, 5000, 0, 0));
+		try {
+			for (int ind = 0; ind < 50; ind++) {
+				assertEquals("{}", balancer.post("{}", RestEndpointBalancer.Strategy.ROUND_ROBIN));
+			}
+			RestEndpointBalancer.Endpoint failing = balancer.getEndpoints().get(1);
+			assertTrue(failing.isEjected());
+			assertEquals(2, failing.getErrors());
+			assertEquals(50, balancer.getEndpoints().get(0).getRequests());
+		} finally {
+			balancer.release();
+		}
+	}
+
+	@Test
+	public void failoverSkipsTriedEndpoints() throws Exception {
+		List<String> endpoints = new ArrayList<>();
+		endpoints.add(startStub(1, 500));
+		endpoints.add(startStub(1, 500));
+		endpoints.add(startStub(1, 200));
+
+		for (RestEndpointBalancer.Strategy strategy : RestEndpointBalancer.Strategy.values()) {
+			// failing endpoints are never ejected, every request has to find the healthy one
+			RestEndpointBalancer balancer = RestEndpointBalancer.acquire(endpoints, CLIENTS, Integer.MAX_VALUE, 60000, new PooledRestTransport(CLIENTS, 1000, 5000, 0, 0));
+			try {
+				run(balancer, strategy);
+				RestEndpointBalancer.Endpoint healthy = balancer.getEndpoints().get(2);
+				assertEquals(CLIENTS * REQUESTS_PER_CLIENT, healthy.getRequests());
+				for (RestEndpointBalancer.Endpoint failing : balancer.getEndpoints().subList(0, 2)) {
+					assertFalse(failing.isEjected());
+					// at most once per request
+					assertTrue(failing.getRequests() <= CLIENTS * REQUESTS_PER_CLIENT);
+				}
+			} finally {
+				balancer.release();
+			}
+		}
+	}
+
+	@Test
+	public void ejectedEndpointIsReadmitted() throws Exception {
+		List<String> endpoints = new ArrayList<>();
+		endpoints.add(startStub(1, 200));
+		endpoints.add(startStub(1, 500));
+
+		RestEndpointBalancer balancer = RestEndpointBalancer.acquire(endpoints, 2, 1, 100, new PooledRestTransport(2, 1000, 5000, 0, 0));
+		try {
+			balancer.post("{}", RestEndpointBalancer.Strategy.ROUND_ROBIN);
+			balancer.post("{}", RestEndpointBalancer.Strategy.ROUND_ROBIN);
+			RestEndpointBalancer.Endpoint failing = balancer.getEndpoints().get(1);
+			assertTrue(failing.isEjected());
+
+			Thread.sleep(200);
+			assertFalse(failing.isEjected());
+		} finally {
+			balancer.release();
+		}
+	}
+
+	@Test
+	public void broadcastReturnsAllAnsweringEndpoints() throws Exception {
+		List<String> endpoints = new ArrayList<>();
+		endpoints.add(startStub(1, 200));
+		endpoints.add(startStub(1, 500));
+		endpoints.add(startStub(1, 200));
+
+		RestEndpointBalancer balancer = RestEndpointBalancer.acquire(endpoints, 2, 3, 1000, new PooledRestTransport(2, 1000, 5000, 0, 0));
+		try {
+			arrived = new CountDownLatch(endpoints.size());
+			List<String> results = balancer.broadcast("{\"a\":1}");
+
+			assertEquals(2, results.size());
+			// endpoints are requested concurrently, each stub saw the requests of the others
+			assertTrue("broadcast requests did not overlap", overlapped.get());
+		} finally {
+			balancer.release();
+		}
+	}
+}
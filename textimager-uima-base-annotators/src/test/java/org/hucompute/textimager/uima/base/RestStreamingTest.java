@@ -0,0 +1,263 @@
+package org.hucompute.textimager.uima.base;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.json.Json;
+import javax.json.stream.JsonGenerator;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class RestStreamingTest {
+	// about 7 MB of text, a book sized document
+	private static final int WORDS = 1_000_000;
+
+	private HttpServer server;
+	private String endpoint;
+	private volatile String requestEncoding;
+
+	@Before
+	public void startStub() throws IOException {
+		// tokenizer stub, answers with the offsets of all space separated words
+		System.setProperty("sun.net.httpserver.nodelay", "true");
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.createContext("/tokens", exchange -> {
+			requestEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+			String text = null;
+			InputStream in = exchange.getRequestBody();
+			if ("gzip".equals(requestEncoding)) {
+				in = new GZIPInputStream(in);
+			}
+			try (JsonParser parser = Json.createParser(in)) {
+				while (parser.hasNext()) {
+					if (parser.next() == Event.KEY_NAME && parser.getString().equals("text")) {
+						parser.next();
+						text = parser.getString();
+					}
+				}
+			}
+
+			String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+			boolean gzip = accept != null && accept.contains("gzip");
+			if (gzip) {
+				exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+			}
+			exchange.sendResponseHeaders(200, 0);
+			OutputStream out = exchange.getResponseBody();
+			if (gzip) {
+				out = new GZIPOutputStream(out, 8192);
+			}
+			try (JsonGenerator generator = Json.createGenerator(out)) {
+				generator.writeStartObject();
+				generator.writeStartArray("tokens");
+				int begin = 0;
+				for (int end = 0; end <= text.length(); end++) {
+					if (end == text.length() || text.charAt(end) == ' ') {
+						generator.writeStartArray().write(begin).write(end).writeEnd();
+						begin = end + 1;
+					}
+				}
+				generator.writeEnd();
+				generator.writeEnd();
+			}
+		});
+		server.start();
+		endpoint = "http://localhost:" + server.getAddress().getPort() + "/tokens";
+	}
+
+	@After
+	public void stopStub() {
+		server.stop(0);
+	}
+
+	private static String createText(int words) {
+		StringBuilder text = new StringBuilder();
+		for (int ind = 0; ind < words; ind++) {
+			if (ind > 0) {
+				text.append(' ');
+			}
+			text.append(ind % 10 == 0 ? "Größe" : "word" + (ind % 100));
+		}
+		return text.toString();
+	}
+
+	// the way RestAnnotator sends documents without streaming
+	private int sendBuffered(RestTransport transport, String text) throws IOException {
+		String body = new JSONObject().put("text", text).toString();
+		JSONArray tokens = new JSONObject(transport.post(endpoint, body)).getJSONArray("tokens");
+		int covered = 0;
+		for (int ind = 0; ind < tokens.length(); ind++) {
+			JSONArray token = tokens.getJSONArray(ind);
+			covered += token.getInt(1) - token.getInt(0);
+		}
+		return covered;
+	}
+
+	// the way RestAnnotator sends documents with restStreaming and a pull parsing updateCAS
+	private int sendStreaming(RestTransport transport, String text, boolean gzip) throws IOException {
+		return transport.post(endpoint, out -> {
+			JsonGenerator generator = Json.createGenerator(out);
+			generator.writeStartObject().write("text", text).writeEnd();
+			generator.flush();
+		}, in -> {
+			JsonParser parser = Json.createParser(in);
+			int covered = 0;
+			while (parser.hasNext()) {
+				// tokens are [begin, end] pairs
+				if (parser.next() == Event.VALUE_NUMBER) {
+					int begin = parser.getInt();
+					parser.next();
+					covered += parser.getInt() - begin;
+				}
+			}
+			return covered;
+		}, gzip);
+	}
+
+	private static int coveredLength(String text) {
+		return text.length() - text.split(" ").length + 1;
+	}
+
+	@Test
+	public void streamedRequestWithGzip() throws IOException {
+		String text = "Größe ſ 東京 \"quoted\"";
+		try (RestTransport transport = new PooledRestTransport(2, 1000, 5000, 0, 0)) {
+			assertEquals(coveredLength(text), sendStreaming(transport, text, true));
+			assertEquals("gzip", requestEncoding);
+			assertEquals(coveredLength(text), sendStreaming(transport, text, false));
+			assertEquals(null, requestEncoding);
+		}
+	}
+
+	@Test
+	public void objectsAreStreamedUnchanged() {
+		JSONObject json = new JSONObject()
+				.put("text", "Größe\n\"Text\"")
+				.put("lang", "de")
+				.put("count", 3)
+				.put("big", 1L << 40)
+				.put("score", 0.5)
+				.put("flag", true)
+				.put("nothing", JSONObject.NULL)
+				.put("tokens", new JSONArray().put(new JSONArray().put(0).put(5)).put(new JSONObject().put("a", "b")));
+
+		StringWriter out = new StringWriter();
+		try (JsonGenerator generator = Json.createGenerator(out)) {
+			JsonStreams.write(generator, json);
+		}
+		JSONObject read;
+		try (JsonParser parser = Json.createParser(new StringReader(out.toString()))) {
+			read = JsonStreams.readObject(parser);
+		}
+
+		assertEquals(json.getString("text"), read.getString("text"));
+		assertEquals(3, read.getInt("count"));
+		assertEquals(1L << 40, read.getLong("big"));
+		assertEquals(0.5, read.getDouble("score"), 0);
+		assertTrue(read.getBoolean("flag"));
+		assertTrue(read.isNull("nothing"));
+		assertEquals(5, read.getJSONArray("tokens").getJSONArray(0).getInt(1));
+		assertEquals("b", read.getJSONArray("tokens").getJSONObject(1).getString("a"));
+	}
+
+	// samples the used heap while the request runs
+	private static class HeapSampler extends Thread {
+		private final AtomicBoolean running = new AtomicBoolean(true);
+		private final AtomicLong peak = new AtomicLong();
+
+		HeapSampler() {
+			setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			Runtime runtime = Runtime.getRuntime();
+			while (running.get()) {
+				peak.accumulateAndGet(runtime.totalMemory() - runtime.freeMemory(), Math::max);
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					return;
+				}
+			}
+		}
+
+		long finish() throws InterruptedException {
+			running.set(false);
+			join();
+			return peak.get();
+		}
+	}
+
+	private interface Request {
+		int send() throws IOException;
+	}
+
+	// returns duration in ms, peak heap in MB and bytes allocated by this thread in MB
+	private static long[] measure(String name, int expected, Request request) throws Exception {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long threadId = Thread.currentThread().getId();
+
+		System.gc();
+		Runtime runtime = Runtime.getRuntime();
+		long baseline = runtime.totalMemory() - runtime.freeMemory();
+		HeapSampler sampler = new HeapSampler();
+		sampler.start();
+		long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+		long start = System.nanoTime();
+
+		assertEquals(expected, request.send());
+
+		long millis = (System.nanoTime() - start) / 1000000;
+		long allocated = (threads.getThreadAllocatedBytes(threadId) - allocatedBefore) >> 20;
+		long peak = Math.max(0, sampler.finish() - baseline) >> 20;
+		System.out.println(String.format("%s: %d ms, peak heap +%d MB, allocated %d MB", name, millis, peak, allocated));
+		return new long[] { millis, peak, allocated };
+	}
+
+	// enable with -Dtextimager.benchmark=true
+	@Test
+	public void benchmarkLargeDocument() throws Exception {
+		Assume.assumeTrue(Boolean.getBoolean("textimager.benchmark"));
+
+		String text = createText(WORDS);
+		int expected = coveredLength(text);
+		System.out.println(String.format("document: %d chars", text.length()));
+
+		List<long[]> buffered = new ArrayList<>();
+		List<long[]> streamed = new ArrayList<>();
+		try (RestTransport transport = new PooledRestTransport(2, 1000, 0, 0, 0)) {
+			// second round with a warm JVM
+			for (int round = 0; round < 2; round++) {
+				buffered.add(measure("buffered", expected, () -> sendBuffered(transport, text)));
+				streamed.add(measure("streaming", expected, () -> sendStreaming(transport, text, false)));
+				measure("streaming gzip", expected, () -> sendStreaming(transport, text, true));
+			}
+		}
+
+		assertTrue("streaming should allocate less", streamed.get(1)[2] < buffered.get(1)[2]);
+	}
+}
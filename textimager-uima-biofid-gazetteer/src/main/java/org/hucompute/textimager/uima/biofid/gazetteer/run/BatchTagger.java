@@ -0,0 +1,249 @@
+package org.hucompute.textimager.uima.biofid.gazetteer.run;
+
+import org.apache.log4j.Logger;
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.cas.impl.XmiCasSerializer;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.CasIOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Tags all XMI files below an input folder with a number of workers and writes them to the same relative path below
+ * an output folder.
+ * <p>
+ * The files are handed to the workers through a bounded queue, so neither the file list nor the documents pile up in
+ * memory. Each worker has its own engine and CAS, and writes its documents itself. Engines with the same parameters
+ * share one gazetteer model. An output is first written to a temporary file and then moved in place, so every
+ * existing output is complete, and a rerun after a crash skips the files that are done and retries the failed ones.
+ */
+public class BatchTagger {
+	private static final Logger logger = Logger.getLogger(BatchTagger.class);
+
+	// tells a worker that there are no more files
+	private static final Path END = Paths.get("");
+
+	private final AnalysisEngineDescription description;
+	private final Path input;
+	private final Path output;
+	private final int workers;
+	private final int queueSize;
+	private long reportInterval = 30;
+
+	private final AtomicInteger tagged = new AtomicInteger();
+	private final AtomicInteger skipped = new AtomicInteger();
+	private final AtomicInteger failed = new AtomicInteger();
+	private final AtomicLong bytes = new AtomicLong();
+	private long startTime;
+
+	/**
+	 * @param description the engines of each worker
+	 * @param input       the folder with the XMI files
+	 * @param output      the folder for the tagged files
+	 * @param workers     the number of documents tagged at the same time
+	 * @param queueSize   the number of files waiting for a worker
+	 */
+	public BatchTagger(AnalysisEngineDescription description, Path input, Path output, int workers, int queueSize) {
+		if (workers < 1 || queueSize < 1) {
+			throw new IllegalArgumentException(String.format("Need at least one worker and queue entry, got %d and %d", workers, queueSize));
+		}
+		this.description = description;
+		this.input = input.toAbsolutePath().normalize();
+		this.output = output.toAbsolutePath().normalize();
+		this.workers = workers;
+		this.queueSize = queueSize;
+	}
+
+	/**
+	 * @param seconds the interval of the progress reports, 0 to only report at the end
+	 */
+	public BatchTagger setReportInterval(long seconds) {
+		reportInterval = seconds;
+		return this;
+	}
+
+	/**
+	 * Tag all files that have no output yet. Files that cannot be read, tagged or written are logged and skipped.
+	 *
+	 * @return the counts of this run
+	 */
+	public Report run() throws IOException, ResourceInitializationException, InterruptedException {
+		Files.createDirectories(output);
+		tagged.set(0);
+		skipped.set(0);
+		failed.set(0);
+		bytes.set(0);
+		startTime = System.nanoTime();
+
+		// created up front, so that configuration errors stop the run before any file is taken
+		List<AnalysisEngine> engines = new ArrayList<>(workers);
+		ExecutorService pool = Executors.newFixedThreadPool(workers);
+		ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+		try {
+			for (int i = 0; i < workers; i++) {
+				engines.add(AnalysisEngineFactory.createEngine(description));
+			}
+			logger.info(String.format("Tagging '%s' to '%s' with %d workers", input, output, workers));
+			if (reportInterval > 0) {
+				reporter.scheduleAtFixedRate(() -> logger.info(getReport()), reportInterval, reportInterval, TimeUnit.SECONDS);
+			}
+
+			BlockingQueue<Path> queue = new ArrayBlockingQueue<>(queueSize);
+			List<Future<?>> futures = new ArrayList<>(workers);
+			for (AnalysisEngine engine : engines) {
+				futures.add(pool.submit(() -> work(engine, queue)));
+			}
+
+			try (Stream<Path> files = Files.walk(input)) {
+				Iterator<Path> iterator = files
+						.filter(file -> file.getFileName().toString().endsWith(".xmi"))
+						.filter(file -> !file.startsWith(output))
+						.filter(Files::isRegularFile)
+						.iterator();
+				while (iterator.hasNext()) {
+					Path file = iterator.next();
+					if (Files.exists(getTarget(file))) {
+						skipped.incrementAndGet();
+						continue;
+					}
+					while (!queue.offer(file, 1, TimeUnit.SECONDS)) {
+						checkWorkers(futures);
+					}
+				}
+			}
+			for (int i = 0; i < workers; i++) {
+				while (!queue.offer(END, 1, TimeUnit.SECONDS)) {
+					checkWorkers(futures);
+				}
+			}
+			for (Future<?> future : futures) {
+				getResult(future);
+			}
+		} finally {
+			reporter.shutdownNow();
+			pool.shutdownNow();
+			engines.forEach(AnalysisEngine::destroy);
+		}
+
+		Report report = getReport();
+		logger.info("Done. " + report);
+		return report;
+	}
+
+	private Void work(AnalysisEngine engine, BlockingQueue<Path> queue) throws UIMAException, InterruptedException {
+		// reused for all documents of this worker
+		JCas jCas = JCasFactory.createJCas();
+		for (Path file = queue.take(); file != END; file = queue.take()) {
+			jCas.reset();
+			tag(engine, jCas, file);
+		}
+		return null;
+	}
+
+	private void tag(AnalysisEngine engine, JCas jCas, Path file) {
+		Path target = getTarget(file);
+		Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+		try {
+			try (InputStream inputStream = Files.newInputStream(file)) {
+				CasIOUtils.load(inputStream, null, jCas.getCas(), true);
+			}
+			engine.process(jCas);
+
+			Files.createDirectories(target.getParent());
+			try (OutputStream outputStream = Files.newOutputStream(temporary)) {
+				XmiCasSerializer.serialize(jCas.getCas(), outputStream);
+			}
+			Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+			tagged.incrementAndGet();
+			bytes.addAndGet(Files.size(file));
+		} catch (Exception e) {
+			failed.incrementAndGet();
+			logger.error(String.format("Could not tag '%s': %s", file, e), e);
+			try {
+				Files.deleteIfExists(temporary);
+			} catch (IOException ignored) {
+			}
+		}
+	}
+
+	private Path getTarget(Path file) {
+		return output.resolve(input.relativize(file));
+	}
+
+	// rethrow the error of a worker, so that a full queue does not block forever
+	private static void checkWorkers(List<Future<?>> futures) throws IOException, InterruptedException {
+		for (Future<?> future : futures) {
+			if (future.isDone()) {
+				getResult(future);
+			}
+		}
+	}
+
+	private static void getResult(Future<?> future) throws IOException, InterruptedException {
+		try {
+			future.get();
+		} catch (ExecutionException e) {
+			throw new IOException("A worker failed", e.getCause());
+		}
+	}
+
+	/**
+	 * @return the counts so far
+	 */
+	public Report getReport() {
+		return new Report(tagged.get(), skipped.get(), failed.get(), bytes.get(), System.nanoTime() - startTime);
+	}
+
+	public static class Report {
+		/**
+		 * The number of files tagged in this run, skipped because they were tagged before, and failed.
+		 */
+		public final int tagged;
+		public final int skipped;
+		public final int failed;
+		// of the tagged input files
+		public final long bytes;
+		public final long nanos;
+
+		Report(int tagged, int skipped, int failed, long bytes, long nanos) {
+			this.tagged = tagged;
+			this.skipped = skipped;
+			this.failed = failed;
+			this.bytes = bytes;
+			this.nanos = nanos;
+		}
+
+		public double getDocumentsPerSecond() {
+			return tagged / Math.max(nanos / 1e9, 1e-9);
+		}
+
+		public double getMegabytesPerSecond() {
+			return bytes / 1e6 / Math.max(nanos / 1e9, 1e-9);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("Tagged %d files, skipped %d, failed %d in %.0fs: %.1f documents/s, %.2f MB/s",
+					tagged, skipped, failed, nanos / 1e9, getDocumentsPerSecond(), getMegabytesPerSecond());
+		}
+	}
+}
@@ -2,16 +2,13 @@ package org.hucompute.textimager.uima.biofid.gazetteer.run;
 
 import org.apache.commons.cli.*;
 import org.apache.uima.UIMAException;
-import org.apache.uima.collection.CollectionReader;
-import org.apache.uima.fit.factory.AggregateBuilder;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
 import org.apache.uima.fit.factory.AnalysisEngineFactory;
-import org.apache.uima.fit.factory.CollectionReaderFactory;
-import org.apache.uima.fit.pipeline.SimplePipeline;
-import org.hucompute.textimager.uima.gazetteer.SingleClassTreeGazetteer;
-import org.dkpro.core.io.xmi.XmiReader;
-import org.dkpro.core.io.xmi.XmiWriter;
+import org.hucompute.textimager.uima.biofid.gazetteer.BiofidGazetteer;
+import org.texttechnologylab.annotation.type.Taxon;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * Created on 18.04.2019.
@@ -29,12 +26,20 @@ public class TagTaxa {
 		Option minLen = new Option("m", "minlength", true, "Taxa minimum length. Default: 5.");
 		minLen.setRequired(false);
 		
+		Option workersOption = new Option("w", "workers", true, "Number of documents tagged at the same time. Default: number of processors.");
+		workersOption.setRequired(false);
+		
+		Option queueOption = new Option("q", "queue", true, "Number of files waiting for a worker. Default: 4 per worker.");
+		queueOption.setRequired(false);
+		
 		Options options = new Options();
 		options.addOption("h", "help", false, "Print this message.");
 		options.addOption(inputOption);
 		options.addOption(outputOption);
 		options.addOption(taxaOption);
 		options.addOption(minLen);
+		options.addOption(workersOption);
+		options.addOption(queueOption);
 		options.addOption("l", "lowercase", false, "Optional, if true use lowercase.");
 		options.addOption("s", "allSkips", false, "Optional, if true use lowercase.");
 		
@@ -54,31 +59,24 @@ public class TagTaxa {
 			Boolean getAllSkips = cmd.hasOption("s");
 			Integer minLength = cmd.hasOption("m") ? Integer.valueOf(cmd.getOptionValue("m")) : 5;
 			
-			CollectionReader collection = CollectionReaderFactory.createReader(
-					XmiReader.class,
-					XmiReader.PARAM_PATTERNS, "[+]*.xmi",
-					XmiReader.PARAM_SOURCE_LOCATION, inputLocation,
-					XmiReader.PARAM_LENIENT, true
-//						, XmiReader.PARAM_LOG_FREQ, -1
-			);
+			int workers = cmd.hasOption("w") ? Integer.parseInt(cmd.getOptionValue("w")) : Runtime.getRuntime().availableProcessors();
+			int queueSize = cmd.hasOption("q") ? Integer.parseInt(cmd.getOptionValue("q")) : 4 * workers;
 			
-			AggregateBuilder ab = new AggregateBuilder();
-			ab.add(AnalysisEngineFactory.createEngineDescription(
-					AnalysisEngineFactory.createEngineDescription(SingleClassTreeGazetteer.class,
-							SingleClassTreeGazetteer.PARAM_SOURCE_LOCATION, taxaLocations,
-							SingleClassTreeGazetteer.PARAM_USE_LOWERCASE, useLowerCase,
-							SingleClassTreeGazetteer.PARAM_MIN_LENGTH, minLength,
-							SingleClassTreeGazetteer.PARAM_GET_ALL_SKIPS, getAllSkips)
-			));
-			ab.add(AnalysisEngineFactory.createEngineDescription(XmiWriter.class,
-					XmiWriter.PARAM_TARGET_LOCATION, outputLocation,
-					XmiWriter.PARAM_OVERWRITE, true
-			));
+			// the workers share the model of these parameters
+			AnalysisEngineDescription gazetteer = AnalysisEngineFactory.createEngineDescription(BiofidGazetteer.class,
+					BiofidGazetteer.PARAM_SOURCE_LOCATION, taxaLocations,
+					BiofidGazetteer.PARAM_TAGGING_TYPE_NAME, Taxon.class.getName(),
+					BiofidGazetteer.PARAM_MAPPING_PROVIDER_LOCATION, "classpath:/org/hucompute/textimager/uima/biofid/gazetteer/lib/ner-default.map",
+					BiofidGazetteer.PARAM_USE_LOWERCASE, useLowerCase,
+					BiofidGazetteer.PARAM_MIN_LENGTH, minLength,
+					BiofidGazetteer.PARAM_GET_ALL_SKIPS, getAllSkips);
+			
+			// outputs of earlier runs are skipped
+			BatchTagger.Report report = new BatchTagger(gazetteer, Paths.get(inputLocation), Paths.get(outputLocation), workers, queueSize).run();
+			System.out.println(report);
 			
-			SimplePipeline.runPipeline(collection, ab.createAggregate());
-
 			System.out.println("\nDone.");
-		} catch (ParseException | UIMAException | IOException e) {
+		} catch (ParseException | UIMAException | IOException | InterruptedException e) {
 			e.printStackTrace();
 		}
 	}
@@ -86,7 +84,7 @@ public class TagTaxa {
 	private static void printUsage(Options options) {
 		HelpFormatter formatter = new HelpFormatter();
 		formatter.printHelp("java -cp $CP org.hucompute.textimager.biofid.TagTaxa",
-				"TODO", //TODO
+				"Tag the taxa in all XMI files below the input path. Files with an output from an earlier run are skipped.",
 				options,
 				"",
 				true);
@@ -0,0 +1,142 @@
+package org.hucompute.textimager.uima.biofid.gazetteer.run;
+
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.UIMAException;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.cas.impl.XmiCasSerializer;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.util.CasIOUtils;
+import org.hucompute.textimager.uima.biofid.gazetteer.BiofidGazetteer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.texttechnologylab.annotation.type.Taxon;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TestBatchTagger {
+	private static final int DOCUMENTS = 40;
+
+	private Path folder;
+	private Path input;
+	private Path output;
+
+	@BeforeEach
+	public void createFolders() throws IOException {
+		folder = Files.createTempDirectory("batch-tagger");
+		input = Files.createDirectories(folder.resolve("input/volume"));
+		output = folder.resolve("output");
+	}
+
+	@AfterEach
+	public void deleteFolders() throws IOException {
+		FileUtils.deleteDirectory(folder.toFile());
+	}
+
+	// one sentence with tokens
+	private static void writeDocument(Path file, String text) throws UIMAException, IOException, SAXException {
+		JCas jCas = JCasFactory.createText(text, "de");
+		jCas.addFsToIndexes(new Sentence(jCas, 0, text.length()));
+		Matcher matcher = Pattern.compile("\\S+").matcher(text);
+		while (matcher.find()) {
+			jCas.addFsToIndexes(new Token(jCas, matcher.start(), matcher.end()));
+		}
+		try (OutputStream outputStream = Files.newOutputStream(file)) {
+			XmiCasSerializer.serialize(jCas.getCas(), outputStream);
+		}
+	}
+
+	private AnalysisEngineDescription createGazetteer() throws IOException, UIMAException {
+		Path taxa = folder.resolve("taxa.txt");
+		Files.write(taxa, Arrays.asList(
+				"Abies alba\thttps://www.biofid.de/bio-ontologies/1",
+				"Fagus sylvatica\thttps://www.biofid.de/bio-ontologies/2"
+		), StandardCharsets.UTF_8);
+		return AnalysisEngineFactory.createEngineDescription(BiofidGazetteer.class,
+				BiofidGazetteer.PARAM_SOURCE_LOCATION, taxa.toString(),
+				BiofidGazetteer.PARAM_TAGGING_TYPE_NAME, Taxon.class.getName(),
+				BiofidGazetteer.PARAM_MAPPING_PROVIDER_LOCATION, "classpath:/org/hucompute/textimager/uima/biofid/gazetteer/lib/ner-default.map",
+				BiofidGazetteer.PARAM_USE_PREBUILT_MODEL, false,
+				BiofidGazetteer.PARAM_USE_SENTECE_LEVEL_TAGGING, true,
+				BiofidGazetteer.PARAM_USE_LEMMATA, false);
+	}
+
+	private static int countTaxa(Path file) throws UIMAException, IOException {
+		JCas jCas = JCasFactory.createJCas();
+		try (InputStream inputStream = Files.newInputStream(file)) {
+			CasIOUtils.load(inputStream, null, jCas.getCas(), true);
+		}
+		return JCasUtil.select(jCas, Taxon.class).size();
+	}
+
+	private long countOutputs() throws IOException {
+		try (Stream<Path> files = Files.walk(output)) {
+			return files.filter(Files::isRegularFile).count();
+		}
+	}
+
+	@Test
+	public void rerunSkipsTaggedFiles() throws Exception {
+		for (int i = 0; i < DOCUMENTS; i++) {
+			writeDocument(input.resolve(i + ".xmi"), String.format("Im Wald %d stehen Abies alba und Fagus sylvatica .", i));
+		}
+		AnalysisEngineDescription gazetteer = createGazetteer();
+
+		BatchTagger.Report report = new BatchTagger(gazetteer, folder.resolve("input"), output, 3, 2).run();
+		assertEquals(DOCUMENTS, report.tagged);
+		assertEquals(0, report.skipped);
+		assertEquals(0, report.failed);
+		assertTrue(report.getDocumentsPerSecond() > 0);
+		assertEquals(DOCUMENTS, countOutputs());
+		for (int i = 0; i < DOCUMENTS; i++) {
+			assertEquals(2, countTaxa(output.resolve("volume/" + i + ".xmi")));
+		}
+
+		// as if the first run had stopped early, with a broken input
+		for (int i = 0; i < 5; i++) {
+			Files.delete(output.resolve("volume/" + i + ".xmi"));
+		}
+		Files.write(input.resolve("0.xmi"), "<xmi:XMI".getBytes(StandardCharsets.UTF_8));
+		report = new BatchTagger(gazetteer, folder.resolve("input"), output, 2, 1).run();
+		assertEquals(4, report.tagged);
+		assertEquals(DOCUMENTS - 5, report.skipped);
+		assertEquals(1, report.failed);
+		// no partial output of the failed file
+		assertFalse(Files.exists(output.resolve("volume/0.xmi")));
+		assertEquals(DOCUMENTS - 1, countOutputs());
+
+		report = new BatchTagger(gazetteer, folder.resolve("input"), output, 1, 1).run();
+		assertEquals(0, report.tagged);
+		assertEquals(DOCUMENTS - 1, report.skipped);
+		assertEquals(1, report.failed);
+	}
+
+	@Test
+	public void outputBelowInputIsNotTagged() throws Exception {
+		writeDocument(input.resolve("a.xmi"), "Abies alba .");
+		output = folder.resolve("input/tagged");
+		BatchTagger.Report report = new BatchTagger(createGazetteer(), folder.resolve("input"), output, 2, 4).run();
+		assertEquals(1, report.tagged);
+
+		report = new BatchTagger(createGazetteer(), folder.resolve("input"), output, 2, 4).run();
+		assertEquals(0, report.tagged);
+		assertEquals(1, report.skipped);
+	}
+}
@@ -18,7 +18,7 @@ import org.apache.uima.resource.ResourceInitializationException;
 
 
 public abstract class AbstractCollectionReader extends CasCollectionReader_ImplBase {
-	Logger logger;
+	protected Logger logger;
 
 	public static final String PARAM_LOG_FILE_LOCATION = "logFile";
 	@ConfigurationParameter(name = PARAM_LOG_FILE_LOCATION,mandatory = false)
@@ -1,14 +1,13 @@
 package org.hucompute.services.uima.database.cassandra;
 
 import java.io.IOException;
-import java.lang.reflect.Array;
 import java.util.*;
-import java.util.regex.Pattern;
 
 import com.datastax.driver.core.*;
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
 import de.tudarmstadt.ukp.dkpro.core.api.lexmorph.type.pos.POS;
 import de.tudarmstadt.ukp.dkpro.core.api.metadata.type.DocumentMetaData;
-import de.tudarmstadt.ukp.dkpro.core.api.metadata.type.TagsetDescription;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.*;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
 import org.apache.uima.UimaContext;
@@ -16,16 +15,23 @@ import org.apache.uima.cas.CAS;
 import org.apache.uima.cas.CASException;
 import org.apache.uima.collection.CollectionException;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.util.Progress;
 import org.hucompute.services.uima.database.AbstractCollectionReader;
 
 
+/**
+ * Reads the documents of the table xmi and their annotations in the layout of the
+ * {@link CassandraWriter}. The queries of the next documents are sent ahead, so they are
+ * answered while the current ones are processed. With the document layout a document is
+ * one query to its partition, with the table layout one query per table.
+ */
 public class CassandraCollectionReader extends AbstractCollectionReader {
 
 	private Cluster cluster;
 	private Session session;
-	private Set<String> tables;
+	private List<String> tables;
 
 	public static final String PARAM_DB_CONNECTION = "cassandra_connection";
 	@ConfigurationParameter(name = PARAM_DB_CONNECTION, //
@@ -37,163 +43,203 @@ public class CassandraCollectionReader extends AbstractCollectionReader {
 			description = "some cassandra query SELECT  COLUMNNAME FROM TABLE WHERE CONDITION;")
 	private String query = null;
 
+	public static final String PARAM_CONTACT_POINTS = CassandraWriter.PARAM_CONTACT_POINTS;
+	@ConfigurationParameter(name = PARAM_CONTACT_POINTS, mandatory = false, defaultValue = "127.0.0.1")
+	protected String[] contactPoints;
+
+	public static final String PARAM_PORT = CassandraWriter.PARAM_PORT;
+	@ConfigurationParameter(name = PARAM_PORT, mandatory = false, defaultValue = "9042")
+	protected int port;
+
+	public static final String PARAM_USER = CassandraWriter.PARAM_USER;
+	@ConfigurationParameter(name = PARAM_USER, mandatory = false, defaultValue = "cassandra")
+	protected String user;
+
+	public static final String PARAM_PW = CassandraWriter.PARAM_PW;
+	@ConfigurationParameter(name = PARAM_PW, mandatory = false, defaultValue = "cassandra")
+	protected String pw;
+
+	public static final String PARAM_KEYSPACE = CassandraWriter.PARAM_KEYSPACE;
+	@ConfigurationParameter(name = PARAM_KEYSPACE, mandatory = false, defaultValue = "textimager")
+	protected String keyspace;
+
+	public static final String PARAM_LAYOUT = CassandraWriter.PARAM_LAYOUT;
+	@ConfigurationParameter(name = PARAM_LAYOUT, mandatory = false, defaultValue = CassandraWriter.LAYOUT_TABLES)
+	protected String layout;
+
+	public static final String PARAM_PREFETCH = "cassandra_prefetch";
+	@ConfigurationParameter(name = PARAM_PREFETCH, mandatory = false, defaultValue = "16", //
+			description = "Number of documents queried ahead")
+	protected int prefetch;
+
+	public static final String PARAM_FETCH_SIZE = "cassandra_fetch_size";
+	@ConfigurationParameter(name = PARAM_FETCH_SIZE, mandatory = false, defaultValue = "1000", //
+			description = "Number of rows per page")
+	protected int fetchSize;
+
 	ResultSet rs = null;
 
+	private PreparedStatement selectAnnotations;
+	private final Map<String, PreparedStatement> selectTables = new HashMap<>();
+
+	// the documents queried ahead
+	private final Deque<PendingDocument> pending = new ArrayDeque<>();
+	private long requestsBefore;
+
+	private static class PendingDocument {
+		final Row meta;
+		// by table, or the one of the document partition
+		final Map<String, ResultSetFuture> annotations = new LinkedHashMap<>();
+
+		PendingDocument(Row meta) {
+			this.meta = meta;
+		}
+	}
 
 	@Override
 	public void initialize(UimaContext context)
 			throws ResourceInitializationException {
 		super.initialize(context);
-		//initialize jdbc connection
-
 
 		cluster = null;
 
 		try {
-			//			String id = "0_";
 			cluster = Cluster.builder()
-					.addContactPoint("127.0.0.1")
-					.withPort(
-							9042
-					)
-					.withCredentials(
-							"cassandra",
-							"cassandra"
-					)
+					.addContactPoints(contactPoints)
+					.withPort(port)
+					.withCredentials(user, pw)
+					// straight to a replica of the partition of the document
+					.withLoadBalancingPolicy(new TokenAwarePolicy(DCAwareRoundRobinPolicy.builder().build()))
 					.build();
-			session = cluster.connect("textimager");
-			session.execute("use textimager;");
-			tables = new HashSet<>(Arrays.asList("WikiDataHyponym", "pos", "Lemma", "tokens", "Wikify", "morph", "Sentence", "TagsetDescription", "Paragraph"));
-			System.out.println("Grabing xmis...");
-			rs = session.execute("SELECT * FROM xmi;");
-			System.out.println("query complete.");
-		}catch (Exception e){
-			e.printStackTrace();
+			session = cluster.connect(keyspace);
+			if (layout.equals(CassandraWriter.LAYOUT_DOCUMENT)) {
+				selectAnnotations = session.prepare("SELECT kind, start, end, fields FROM " + CassandraWriter.ANNOTATION_TABLE + " WHERE xmi = ?;");
+			} else if (layout.equals(CassandraWriter.LAYOUT_TABLES)) {
+				// the ones that were written
+				tables = new ArrayList<>();
+				KeyspaceMetadata metadata = cluster.getMetadata().getKeyspace(keyspace);
+				for (String table : Arrays.asList("pos", "Lemma", "tokens", "Sentence", "Paragraph")) {
+					if (metadata.getTable(table) != null) {
+						tables.add(table);
+						selectTables.put(table, session.prepare("SELECT * FROM " + table + " WHERE xmi = ?;"));
+					}
+				}
+			} else {
+				throw new IllegalArgumentException("Unknown layout: " + layout);
+			}
+			requestsBefore = getRequests();
+			rs = session.execute(new SimpleStatement(query != null ? query : "SELECT * FROM xmi;").setFetchSize(fetchSize));
+		} catch (Exception e) {
+			if (cluster != null)
+				cluster.close();
+			throw new ResourceInitializationException(e);
 		}
+		prefetch();
 	}
 
-	//bearbeiten
-	public boolean hasNext() throws IOException, CollectionException {
-		if(!rs.isExhausted())
-		{
-			return true;
-		}
-		else
-		{	
-			session.close();
-			cluster.close();
-			return false;
+	// queries the annotations of the next documents
+	private void prefetch() {
+		while (pending.size() < prefetch && !rs.isExhausted()) {
+			// the next page of documents while these are read
+			if (rs.getAvailableWithoutFetching() == fetchSize / 2 && !rs.isFullyFetched())
+				rs.fetchMoreResults();
+			PendingDocument document = new PendingDocument(rs.one());
+			String xmi = document.meta.getString("xmi");
+			if (selectAnnotations != null) {
+				document.annotations.put(CassandraWriter.ANNOTATION_TABLE, session.executeAsync(selectAnnotations.bind(xmi).setFetchSize(Integer.MAX_VALUE)));
+			} else {
+				for (String table : tables) {
+					document.annotations.put(table, session.executeAsync(selectTables.get(table).bind(xmi).setFetchSize(Integer.MAX_VALUE)));
+				}
+			}
+			pending.add(document);
 		}
 	}
 
+	public boolean hasNext() throws IOException, CollectionException {
+		return !pending.isEmpty();
+	}
+
 	@Override
 	public void getNext(CAS aCAS) throws IOException, CollectionException {
 		resumeWatch();
+		try {
+			PendingDocument document = pending.poll();
+			prefetch();
 
-		Row row = rs.one();
-
-		reecreateMetaData(aCAS, row);
-
-		String xmi = row.getString("xmi");;
-		StringBuilder sb = new StringBuilder();
-		for(String s : tables){
-			sb.setLength(0);
-			sb.append("SELECT * FROM ");
-			sb.append(s);
-			sb.append(" WHERE xmi ='");
-			sb.append(xmi);
-			sb.append("' ;");
-
-			//  reihen bzgl der xmi, werden nun geparsed
-			ResultSet xmiRs = session.execute(sb.toString());
-			recreateFromRows(xmiRs, s, aCAS);
+			JCas jCas = aCAS.getJCas();
+			reecreateMetaData(aCAS, document.meta);
+			for (Map.Entry<String, ResultSetFuture> entry : document.annotations.entrySet()) {
+				ResultSet resultSet = entry.getValue().getUninterruptibly();
+				if (selectAnnotations != null) {
+					for (Row row : resultSet) {
+						recreate(jCas, row.getString("kind"), row.getInt("start"), row.getInt("end"),
+								row.getMap("fields", String.class, String.class));
+					}
+				} else {
+					recreateFromRows(resultSet, entry.getKey(), jCas);
+				}
+			}
+		} catch (CASException | RuntimeException e) {
+			throw new CollectionException(e);
+		} finally {
+			suspendWatch();
 		}
-
-		//		//readCAS()
-		suspendWatch();
 		log();
 	}
 
+	/**
+	 * @return the requests sent for the documents so far, including the pages
+	 */
+	public long getRequests() {
+		return cluster.getMetrics() != null ? cluster.getMetrics().getRequestsTimer().getCount() - requestsBefore : -1;
+	}
+
 	@Override
 	public Progress[] getProgress() {
 		// TODO Auto-generated method stub
 		return null;
 	}
 
-	private void recreateFromRows(ResultSet resultSet, String table, CAS aCAS){
-		while (!resultSet.isExhausted()) {
-			Row row = resultSet.one();
-
-			String begin = row.getString("start");
-			String end = row.getString("end");
-			//prelim work
-
-			switch (table){
-//			case "WikiDataHyponym":
-//				try {
-//					WikiDataHyponym wdh = new WikiDataHyponym(aCAS.getJCas(),Integer.valueOf(begin), Integer.valueOf(end));
-//					wdh.setDepth(Integer.valueOf(row.getString("depth")));
-//					wdh.addToIndexes(aCAS.getJCas());
-//				} catch (CASException e) {
-//					e.printStackTrace();
-//				}
-//
-//				break;
-			case "pos":
-				try {
-					POS pos = new POS(aCAS.getJCas(),Integer.valueOf(begin), Integer.valueOf(end));
-					pos.setPosValue(row.getString("value"));
-					pos.addToIndexes(aCAS.getJCas());
-				} catch (CASException e) {
-					e.printStackTrace();
-				}
-				break;
-			case "Lemma":
-				try {
-					Lemma lemma = new Lemma(aCAS.getJCas(),Integer.valueOf(begin), Integer.valueOf(end));
-					lemma.setValue(row.getString("value"));
-					lemma.addToIndexes(aCAS.getJCas());
-				} catch (CASException e) {
-					e.printStackTrace();
-				}
-				break;
-			case "tokens":
-				try {
-					Token token = new de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token(aCAS.getJCas(),Integer.valueOf(begin), Integer.valueOf(end));
-					token.addToIndexes(aCAS.getJCas());
-				} catch (CASException e) {
-					e.printStackTrace();
-				}
-				break;
-//			case "Wikify":
-//				try {
-//					Wikify wikify = new Wikify(aCAS.getJCas(),Integer.valueOf(begin), Integer.valueOf(end));
-//					wikify.setLink(row.getString("link"));
-//					wikify.setTitle(row.getString("title"));
-//					wikify.addToIndexes(aCAS.getJCas());
-//				} catch (CASException e) {
-//					e.printStackTrace();
-//				}
-			case "Sentence":
-				try {
-					Sentence sentence = new Sentence(aCAS.getJCas(),Integer.valueOf(begin), Integer.valueOf(end));
-					sentence.addToIndexes(aCAS.getJCas());
-				} catch (CASException e) {
-					e.printStackTrace();
-				}
-				break;
-			case "Paragraph":
-				try {
-					Paragraph paragraph = new Paragraph(aCAS.getJCas(),Integer.valueOf(begin), Integer.valueOf(end));
-					paragraph.addToIndexes(aCAS.getJCas());
-				} catch (CASException e) {
-					e.printStackTrace();
-				}
-				break;
-			default:
-				break;
-			}
+	@Override
+	public void close() throws IOException {
+		if (cluster != null)
+			cluster.close();
+		super.close();
+	}
+
+	private void recreateFromRows(ResultSet resultSet, String table, JCas jCas) {
+		for (Row row : resultSet) {
+			Map<String, String> fields = new HashMap<>();
+			if (row.getColumnDefinitions().contains("value"))
+				fields.put("value", row.getString("value"));
+			recreate(jCas, table, Integer.valueOf(row.getString("start")), Integer.valueOf(row.getString("end")), fields);
+		}
+	}
 
+	private void recreate(JCas jCas, String table, int begin, int end, Map<String, String> fields) {
+		switch (table){
+		case "pos":
+			POS pos = new POS(jCas, begin, end);
+			pos.setPosValue(fields.get("value"));
+			pos.addToIndexes(jCas);
+			break;
+		case "Lemma":
+			Lemma lemma = new Lemma(jCas, begin, end);
+			lemma.setValue(fields.get("value"));
+			lemma.addToIndexes(jCas);
+			break;
+		case "tokens":
+			new Token(jCas, begin, end).addToIndexes(jCas);
+			break;
+		case "Sentence":
+			new Sentence(jCas, begin, end).addToIndexes(jCas);
+			break;
+		case "Paragraph":
+			new Paragraph(jCas, begin, end).addToIndexes(jCas);
+			break;
+		default:
+			break;
 		}
 	}
 
@@ -210,6 +256,6 @@ public class CassandraCollectionReader extends AbstractCollectionReader {
 			e.printStackTrace();
 		}
 	}
-	
-	
+
+
 }
@@ -1,394 +1,404 @@
 package org.hucompute.services.uima.database.cassandra;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
-import java.util.Set;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
-import org.apache.uima.cas.FSIterator;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.tcas.Annotation;
-import org.apache.uima.json.JsonCasSerializer;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.hucompute.services.uima.database.AbstractWriter;
 
+import com.codahale.metrics.Snapshot;
 import com.datastax.driver.core.BatchStatement;
 import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.PreparedStatement;
 import com.datastax.driver.core.ResultSet;
+import com.datastax.driver.core.ResultSetFuture;
 import com.datastax.driver.core.Session;
-import com.datastax.driver.core.SimpleStatement;
-import com.datastax.driver.core.exceptions.SyntaxError;
+import com.datastax.driver.core.Statement;
+import com.datastax.driver.core.policies.DCAwareRoundRobinPolicy;
+import com.datastax.driver.core.policies.TokenAwarePolicy;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
 
 import de.tudarmstadt.ukp.dkpro.core.api.lexmorph.type.pos.POS;
 import de.tudarmstadt.ukp.dkpro.core.api.metadata.type.DocumentMetaData;
 import de.tudarmstadt.ukp.dkpro.core.api.metadata.type.TagsetDescription;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Lemma;
-import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Paragraph;
-import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
-import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
-
 
+/**
+ * Writes the annotations into one table per type, with the document id as partition key,
+ * or with {@link #LAYOUT_DOCUMENT} all of them into the partition of the document in the
+ * {@link #ANNOTATION_TABLE}, so that a document is read with one query. The metadata of
+ * the documents is in the table xmi in both layouts.
+ *
+ * The tables are created and their inserts prepared the first time a type is seen. The rows
+ * of a document are sent as unlogged batches of one table to the replicas of its partition,
+ * asynchronously, with at most {@link #PARAM_MAX_IN_FLIGHT} requests waiting at a time.
+ */
 public class CassandraWriter extends AbstractWriter {
 
+	public static final String PARAM_CONTACT_POINTS = "cassandra_contact_points";
+	@ConfigurationParameter(name = PARAM_CONTACT_POINTS, mandatory = false, defaultValue = "127.0.0.1")
+	protected String[] contactPoints;
+
+	public static final String PARAM_PORT = "cassandra_port";
+	@ConfigurationParameter(name = PARAM_PORT, mandatory = false, defaultValue = "9042")
+	protected int port;
+
+	public static final String PARAM_USER = "cassandra_user";
+	@ConfigurationParameter(name = PARAM_USER, mandatory = false, defaultValue = "cassandra")
+	protected String user;
+
+	public static final String PARAM_PW = "cassandra_pw";
+	@ConfigurationParameter(name = PARAM_PW, mandatory = false, defaultValue = "cassandra")
+	protected String pw;
+
+	public static final String PARAM_KEYSPACE = "cassandra_keyspace";
+	@ConfigurationParameter(name = PARAM_KEYSPACE, mandatory = false, defaultValue = "textimager")
+	protected String keyspace;
+
+	public static final String PARAM_REPLICATION_FACTOR = "cassandra_replication_factor";
+	@ConfigurationParameter(name = PARAM_REPLICATION_FACTOR, mandatory = false, defaultValue = "1", //
+			description = "Replication factor of the keyspace, if it is created")
+	protected int replicationFactor;
+
+	public static final String PARAM_MAX_IN_FLIGHT = "cassandra_max_in_flight";
+	@ConfigurationParameter(name = PARAM_MAX_IN_FLIGHT, mandatory = false, defaultValue = "256", //
+			description = "Number of writes sent without waiting for their result")
+	protected int maxInFlight;
+
+	public static final String PARAM_BATCH_SIZE = "cassandra_batch_size";
+	@ConfigurationParameter(name = PARAM_BATCH_SIZE, mandatory = false, defaultValue = "100", //
+			description = "Number of rows of one document in a batch")
+	protected int batchSize;
+
+	public static final String LAYOUT_TABLES = "tables";
+	public static final String LAYOUT_DOCUMENT = "document";
+
+	public static final String PARAM_LAYOUT = "cassandra_layout";
+	@ConfigurationParameter(name = PARAM_LAYOUT, mandatory = false, defaultValue = LAYOUT_TABLES, //
+			description = "tables: a table per type, document: all annotations of a document in one partition")
+	protected String layout;
+
+	// the annotations of the document layout, with the table of the other layout as kind
+	public static final String ANNOTATION_TABLE = "annotations";
+
 	private Cluster cluster;
 	private Session session;
-	private int id = 0;
-    Set<String> types = null;
-    Pattern typePattern = null;
-    Pattern secondTypePattern = null;
-    Set<String> tableCreates = null;
-    Set<String> tableCreated = null;
-    Set<String> insertQueries = null;
 
+	Pattern typePattern = null;
+	Pattern secondTypePattern = null;
 
-    private JsonCasSerializer xcs;
+	// the created tables by name
+	private final Map<String, Table> tables = new HashMap<>();
+	private PreparedStatement insertAnnotation;
+
+	private Semaphore inFlight;
+	// the most writes in flight at a time
+	private final AtomicInteger peakInFlight = new AtomicInteger();
+	private final AtomicLong written = new AtomicLong();
+	// of an asynchronous write, thrown with the next document
+	private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+	private static class Table {
+		final List<String> columns;
+		final PreparedStatement insert;
+
+		Table(List<String> columns, PreparedStatement insert) {
+			this.columns = columns;
+			this.insert = insert;
+		}
+	}
 
 	@Override
 	public void initialize(UimaContext context)
 			throws ResourceInitializationException {
 		super.initialize(context);
 
-        types = new HashSet<>();
-        tableCreates = new HashSet<>();
-        tableCreated = new HashSet<>();
-        insertQueries = new HashSet<>();
-		//Initialize db connection
-
-		cluster = null;
-        typePattern = Pattern.compile("([^\\s]*\\.type\\.)([^\\.|\\s]*)");
-        secondTypePattern = Pattern.compile("[^\\s]*\\.type\\.[^\\s|^\\.]*\\.([^\\s]*)");
+		typePattern = Pattern.compile("([^\\s]*\\.type\\.)([^\\.|\\s]*)");
+		secondTypePattern = Pattern.compile("[^\\s]*\\.type\\.[^\\s|^\\.]*\\.([^\\s]*)");
+		if (maxInFlight < 1 || batchSize < 1) {
+			throw new ResourceInitializationException(new IllegalArgumentException(
+					String.format("Need at least one write in flight and row per batch, got %d and %d", maxInFlight, batchSize)));
+		}
+		if (!layout.equals(LAYOUT_TABLES) && !layout.equals(LAYOUT_DOCUMENT)) {
+			throw new ResourceInitializationException(new IllegalArgumentException("Unknown layout: " + layout));
+		}
+		inFlight = new Semaphore(maxInFlight);
 
 		try {
-//			String id = "0_";
 			cluster = Cluster.builder()
-					.addContactPoint("127.0.0.1")
-					.withPort(
-							9042
-					)
-					.withCredentials(
-							"cassandra",
-							"cassandra"
-					)
-					//.withClusterName("textimager")
+					.addContactPoints(contactPoints)
+					.withPort(port)
+					.withCredentials(user, pw)
+					// straight to a replica of the partition of a prepared statement
+					.withLoadBalancingPolicy(new TokenAwarePolicy(DCAwareRoundRobinPolicy.builder().build()))
 					.build();
 			session = cluster.connect();
-//			session.execute("drop textimager;");
-			session.execute("create keyspace textimager WITH REPLICATION = {'class' : 'SimpleStrategy', 'replication_factor' : 1};");
-			session.execute("use textimager;");
+			session.execute(String.format("CREATE KEYSPACE IF NOT EXISTS %s WITH REPLICATION = {'class' : 'SimpleStrategy', 'replication_factor' : %d};",
+					keyspace, replicationFactor));
+			session.execute("USE " + keyspace + ";");
+			if (layout.equals(LAYOUT_DOCUMENT)) {
+				session.execute("CREATE TABLE IF NOT EXISTS " + ANNOTATION_TABLE
+						+ " (xmi text, kind text, seq int, start int, end int, fields map<text, text>, primary key (xmi, kind, seq));");
+				insertAnnotation = session.prepare("INSERT INTO " + ANNOTATION_TABLE
+						+ " (xmi, kind, seq, start, end, fields) VALUES (?, ?, ?, ?, ?, ?);");
+			}
+		} catch (Exception e) {
+			if (cluster != null)
+				cluster.close();
+			throw new ResourceInitializationException(e);
 		}
-		catch (Exception e){
-			e.printStackTrace();
-		}
-//		finally {if ( cluster != null) cluster.close();
-//		
-//		}
 	}
 
 	@Override
 	public void process(JCas jCas) throws AnalysisEngineProcessException {
 		resumeWatch();
-		//saveCAS(jCas)
-
-		Matcher m = null;
-        try {
-
-            FSIterator iterator = jCas.getAnnotationIndex().iterator();
-            while (iterator.hasNext()) {
-                Annotation annoation = (Annotation) iterator.next();
-                m = typePattern.matcher(annoation.getType().toString());
-                if (m.find()) {
-//                    String typeFull = m.group(1) + m.group(2);
-                    String type = m.group(2); // what does this exactly do? And for what is typeFull?
-
-                    types.add(type);
-                    // uncommented line below 
-                    addByType(type, annoation, DocumentMetaData.get(jCas).getDocumentId());
-                }
-
-            }
-//            System.out.println(types);
-            }
-            catch(Exception e){
-                e.printStackTrace();
-            }
-		
-        int count = insertQueries.size() + tableCreates.size();
-        if(count >= 34845){ // @Hemati: why this exact number?
-            System.out.println("Starting queries...");
-            batchQueries();
-            System.out.println("...finished.");
-        }
-        suspendWatch();
+		try {
+			checkFailure();
+			String id = DocumentMetaData.get(jCas).getDocumentId();
+
+			// the rows of the document by table
+			Map<String, List<Map<String, String>>> rows = new LinkedHashMap<>();
+			for (Annotation annotation : jCas.getAnnotationIndex()) {
+				Matcher m = typePattern.matcher(annotation.getType().toString());
+				if (m.find()) {
+					LinkedHashMap<String, String> row = new LinkedHashMap<>();
+					String table = addByType(m.group(2), annotation, id, row);
+					rows.computeIfAbsent(table, name -> new ArrayList<>()).add(row);
+				}
+			}
+			// a batch only has rows of one table, all of them in the partition of the document
+			Map<String, List<Statement>> statements = new LinkedHashMap<>();
+			for (Map.Entry<String, List<Map<String, String>>> entry : rows.entrySet()) {
+				if (insertAnnotation != null && !entry.getKey().equals("xmi")) {
+					bindAnnotations(entry.getKey(), entry.getValue(),
+							statements.computeIfAbsent(ANNOTATION_TABLE, name -> new ArrayList<>()));
+				} else {
+					bindRows(getTable(entry.getKey(), entry.getValue().get(0)), entry.getValue(),
+							statements.computeIfAbsent(entry.getKey(), name -> new ArrayList<>()));
+				}
+			}
+			for (List<Statement> tableStatements : statements.values()) {
+				write(tableStatements);
+			}
+		} catch (AnalysisEngineProcessException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new AnalysisEngineProcessException(e);
+		} finally {
+			suspendWatch();
+		}
 		log();
-		
 	}
 
+	// creates the table with the columns of its first row, all of them in the primary key
+	private Table getTable(String name, Map<String, String> row) {
+		Table table = tables.get(name);
+		if (table == null) {
+			List<String> columns = new ArrayList<>(row.keySet());
+			StringBuilder query = new StringBuilder();
+			query.append("CREATE TABLE IF NOT EXISTS ").append(name).append(" (");
+			for (String column : columns) {
+				query.append(column).append(" text, ");
+			}
+			query.append("primary key (").append(String.join(", ", columns)).append("));");
+			session.execute(query.toString());
+
+			StringBuilder insert = new StringBuilder();
+			insert.append("INSERT INTO ").append(name).append(" (").append(String.join(", ", columns)).append(") VALUES (");
+			for (int i = 0; i < columns.size(); i++) {
+				insert.append(i == 0 ? "?" : ", ?");
+			}
+			insert.append(");");
+			table = new Table(columns, session.prepare(insert.toString()));
+			tables.put(name, table);
+		}
+		return table;
+	}
+
+	private static void bindRows(Table table, List<Map<String, String>> rows, List<Statement> statements) {
+		for (Map<String, String> row : rows) {
+			Object[] values = new Object[table.columns.size()];
+			for (int i = 0; i < values.length; i++) {
+				// the columns are part of the primary key and must not be null
+				String value = row.get(table.columns.get(i));
+				values[i] = value == null ? "" : value;
+			}
+			statements.add(table.insert.bind(values));
+		}
+	}
+
+	private void bindAnnotations(String kind, List<Map<String, String>> rows, List<Statement> statements) {
+		int seq = 0;
+		for (Map<String, String> row : rows) {
+			Map<String, String> fields = new HashMap<>();
+			for (Map.Entry<String, String> field : row.entrySet()) {
+				if (!field.getKey().equals("xmi") && !field.getKey().equals("start") && !field.getKey().equals("end")) {
+					fields.put(field.getKey(), field.getValue() == null ? "" : field.getValue());
+				}
+			}
+			statements.add(insertAnnotation.bind(row.get("xmi"), kind, seq++,
+					Integer.valueOf(row.get("start")), Integer.valueOf(row.get("end")), fields));
+		}
+	}
+
+	private void write(List<Statement> statements) throws InterruptedException {
+		BatchStatement batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+		for (Statement statement : statements) {
+			batch.add(statement);
+			if (batch.size() >= batchSize) {
+				execute(batch);
+				batch = new BatchStatement(BatchStatement.Type.UNLOGGED);
+			}
+		}
+		if (batch.size() > 0) {
+			execute(batch);
+		}
+	}
+
+	private void execute(BatchStatement batch) throws InterruptedException {
+		int size = batch.size();
+		Statement statement = size == 1 ? batch.getStatements().iterator().next() : batch;
+		inFlight.acquire();
+		peakInFlight.accumulateAndGet(maxInFlight - inFlight.availablePermits(), Math::max);
+		ResultSetFuture future;
+		try {
+			future = session.executeAsync(statement);
+		} catch (RuntimeException e) {
+			inFlight.release();
+			throw e;
+		}
+		Futures.addCallback(future, new FutureCallback<ResultSet>() {
+			@Override
+			public void onSuccess(ResultSet result) {
+				written.addAndGet(size);
+				inFlight.release();
+			}
+
+			@Override
+			public void onFailure(Throwable t) {
+				failure.compareAndSet(null, t);
+				inFlight.release();
+			}
+		});
+	}
+
+	private void checkFailure() throws AnalysisEngineProcessException {
+		Throwable t = failure.getAndSet(null);
+		if (t != null) {
+			throw new AnalysisEngineProcessException(t);
+		}
+	}
+
+	// waits for all writes in flight
+	private void drain() throws InterruptedException {
+		inFlight.acquire(maxInFlight);
+		inFlight.release(maxInFlight);
+	}
 
-    private void createTable(String name, LinkedHashMap<String,String> map) throws Exception{
-        StringBuilder fields = new StringBuilder();
-        StringBuilder primKey = new StringBuilder();
-        primKey.append("(");
-
-//      String fields = "", primKey = "(";
-        for (String s : map.keySet()) {
-            fields.append(s);
-            fields.append(" text,");
-            primKey.append(s);
-            primKey.append(", ");
-//            fields += s + " text,";
-//            primKey += s + ", ";
-        }
-        primKey.delete(primKey.length() - 2, primKey.length()-1);
-        primKey.append(")");
-//        primKey = primKey.substring(0, primKey.length() - 2);
-//        primKey += ")";
-//        System.out.println(primKey);
-//        System.out.println(map);
-
-        StringBuilder query = new StringBuilder();
-        query.append("CREATE TABLE IF NOT EXISTS ");
-        query.append(name);
-        query.append(" (");
-        query.append(fields.toString());
-        query.append(" primary key ");
-        query.append(primKey.toString());
-        query.append(");");
-        tableCreates.add(query.toString());
-//        String query = "CREATE TABLE IF NOT EXISTS " + name + " (" + fields + " primary key " + primKey + ");";
-
-//        System.out.println(query.toString());
-
-        ResultSet rs = (ResultSet) session.execute(query.toString());
-
-
-    }
-
-	private void insert(String table, LinkedHashMap<String,String> map) throws Exception{
-        try {
-            StringBuilder fields = new StringBuilder(), value = new StringBuilder();
-            fields.append("(");
-            value.append("(");
-//            String fields = "(", value = "(";
-            for (String s : map.keySet()) {
-                fields.append(s);
-                fields.append(", ");
-                value.append("'");
-                value.append(map.get(s));
-                value.append("'");
-                value.append(", ");
-//                fields += s + ", ";
-//                value += "'" + map.get(s) + "'" + ", ";
-            }
-            fields.delete(fields.length() - 2, fields.length() - 1);
-            value.delete(value.length() - 2, value.length() - 1);
-            fields.append(")");
-            value.append(")");
-//            fields = fields.substring(0, fields.length() - 2);
-//            fields += ")";
-//            value = value.substring(0, value.length() - 2);
-//            value += ")";
-            StringBuilder  query = new StringBuilder();
-            query.append("insert into ");
-            query.append(table);
-            query.append(" ");
-            query.append(fields);
-            query.append(" values");
-            query.append(value);
-            query.append(";");
-            insertQueries.add(query.toString());
-//            String query = "insert into " + table + " " + fields + " values" + value + ";";
-//            System.out.println(query.toString());
-
-//            ResultSet rs = session.execute(query.toString());
-        }
-        catch (SyntaxError e){
-            for(String key: map.keySet()){
-                map.put(key, repairQuotation(map.get(key)));
-            }
-            insert(table,map);
-        }
-        catch(Exception e){
-            e.printStackTrace();
-        }
+	// the latencies of the requests of the driver, null without metrics
+	Snapshot getRequestLatencies() {
+		return cluster.getMetrics() == null ? null : cluster.getMetrics().getRequestsTimer().getSnapshot();
 	}
 
-	private void addByType(String type, Annotation annotation, String id){
-        Matcher m = null;
-        LinkedHashMap<String,String> map = new LinkedHashMap<>();
-
-        map.put("xmi", id);
-        map.put("start", String.valueOf(annotation.getBegin()));
-        map.put("end", String.valueOf(annotation.getEnd()));
-        switch (type){
-//            case "WikiDataHyponym":
-//                WikiDataHyponym wdh = (WikiDataHyponym) annotation;
-//                map.put("depth", String.valueOf(wdh.getDepth()));
-//
-//                break;
-            case "pos":
-                POS pos = (POS) annotation;
-                map.put("value", pos.getPosValue());
-                break;
-            case "dependency":
-                m = secondTypePattern.matcher(annotation.getType().toString());
-//                Dependency dep = (Dependency) annotation;
-//                dep.getDependent().getId();
-
-                if(m.find()){
-                    map.put("type", m.group(1));
-                }
-                break;
-            case "Lemma":
-                Lemma lemma = (Lemma) annotation;
-                map.put("value", lemma.getValue().equals("'")?"''":lemma.getValue());
-                break;
-            case "html":
-                m = secondTypePattern.matcher(annotation.getType().toString());
-                if(m.find()){
-                    map.put("type", m.group(1));
-                }
-                break;
-            case "Token":
-                Token token = (Token) annotation;
-                type = "tokens";
-                break;
-            case "DocumentMetaData":
-                DocumentMetaData meta = (DocumentMetaData) annotation;
-                map.put("title", meta.getDocumentTitle());
-                map.put("collectionId",meta.getCollectionId());
-                map.put("baseUri",meta.getDocumentBaseUri());
-                map.put("fileUri",meta.getDocumentUri());
-                type = "xmi";
-                try {
-                    createTable(type, map);
-                    insert(type,map);
-                }catch (Exception e){
-                e.printStackTrace();
-                }
-                return;
-//            case "Wikify":
-//                Wikify wikify = (Wikify) annotation;
-//                map.put("link", wikify.getLink());
-//                map.put("title", wikify.getTitle());
-//                break;
-            case "morph":
-                m = secondTypePattern.matcher(annotation.getType().toString());
-                if(m.find()){
-                    map.put("type", m.group(1));
-                }
-                break;
-            case "Sentence":
-                Sentence sentence = (Sentence) annotation;
-//                map.put("id", sentence.getId());
-                break;
-            case "TagsetDescription":
-                TagsetDescription tagsetDescription = (TagsetDescription) annotation;
-                m = secondTypePattern.matcher(tagsetDescription.getLayer().toString());
-                if(m.find()){
-                    map.put("layer", m.group(1));
-                }
-                map.put("name",tagsetDescription.getName());
-                break;
-            case "Paragraph":
-                Paragraph paragraph = (Paragraph) annotation;
-//                map.put("id",paragraph.getId());
-                break;
-            default:
-                m = secondTypePattern.matcher(annotation.getType().toString());
-                String secondType = "";
-                if(m.find()){
-                    map.put("type", m.group(1));
-                }
-                break;
-        }
-        try {
-            createTable(type, map);
-
-            insert(type,map);
-
-        }catch (Exception e){
-            e.printStackTrace();
-        }
-
-    }
-
-    private String repairQuotation(String s){
-        for(int i = 0; i < s.length(); i++){
-            if(s.charAt(i)=='\''){
-                s = s.substring(0,i) +"'"+ s.substring(i);
-                i++;
-            }
-        }
-        return s;
-    }
-
-    private void batchQueries(){
-        for(String s : tableCreates){
-            if(!tableCreated.contains(s)) {
-                session.execute(s);
-                tableCreated.add(s);
-            }
-        }
-
-        BatchStatement stmt = new BatchStatement();
-        Set<String> currentBatch = new HashSet<>();
-        try{
-        int count = 0;
-            System.out.print("Batch execute");
-
-        for(String s : insertQueries){
-            stmt.add(new SimpleStatement(s));
-
-            currentBatch.add(s);
-            count++;
-            if(count==2500){
-                session.execute(stmt);
-                System.out.print(".");
-                stmt.clear();
-                currentBatch.clear();
-                count = 0;
-            }
-        }
-
-        session.execute(stmt);
-        insertQueries.clear();
-        } catch (SyntaxError e){
-            System.out.println("Syntax error in batch, trying to fix queries...");
-            stmt.clear();
-            for(String s : currentBatch){
-                try {
-                    session.execute(s);
-                }catch (Exception ex){
-                    System.out.println("Broken Query: " + s);
-                }
-
-            }
-        }
-        System.out.println("finished.");
-    }
-
-//    private static String escapeCharacter(String string){
-//        switch(string){
-//            case "'":
-//            case "(":
-//            case ")":
-//            case "[":
-//            case "]":
-//            case "$":
-//            case "?":
-//            case "\\":
-//            case "{":
-//            case "}":
-//            case "!":
-//            case "|":
-//            case "*":
-//            case "<":
-//            case ">":
-//
-//        }
-//    }
-
-}
\ No newline at end of file
+	int getPeakInFlight() {
+		return peakInFlight.get();
+	}
+
+	@Override
+	public void collectionProcessComplete() throws AnalysisEngineProcessException {
+		try {
+			drain();
+		} catch (InterruptedException e) {
+			throw new AnalysisEngineProcessException(e);
+		}
+		checkFailure();
+		Snapshot latencies = getRequestLatencies();
+		if (latencies != null) {
+			logger.info(String.format("Wrote %d rows, request latency median %.2f ms, p99 %.2f ms",
+					written.get(), latencies.getMedian() / 1e6, latencies.get99thPercentile() / 1e6));
+		}
+		super.collectionProcessComplete();
+	}
+
+	@Override
+	public void destroy() {
+		if (cluster != null) {
+			try {
+				drain();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			cluster.close();
+		}
+		super.destroy();
+	}
+
+	// fills the row of the annotation and returns its table
+	private String addByType(String type, Annotation annotation, String id, Map<String, String> map) {
+		Matcher m = null;
+
+		map.put("xmi", id);
+		map.put("start", String.valueOf(annotation.getBegin()));
+		map.put("end", String.valueOf(annotation.getEnd()));
+		switch (type) {
+		case "pos":
+			POS pos = (POS) annotation;
+			map.put("value", pos.getPosValue());
+			break;
+		case "dependency":
+		case "html":
+		case "morph":
+			m = secondTypePattern.matcher(annotation.getType().toString());
+			if (m.find()) {
+				map.put("type", m.group(1));
+			}
+			break;
+		case "Lemma":
+			Lemma lemma = (Lemma) annotation;
+			map.put("value", lemma.getValue());
+			break;
+		case "Token":
+			return "tokens";
+		case "DocumentMetaData":
+			DocumentMetaData meta = (DocumentMetaData) annotation;
+			map.put("title", meta.getDocumentTitle());
+			map.put("collectionId", meta.getCollectionId());
+			map.put("baseUri", meta.getDocumentBaseUri());
+			map.put("fileUri", meta.getDocumentUri());
+			return "xmi";
+		case "Sentence":
+		case "Paragraph":
+			break;
+		case "TagsetDescription":
+			TagsetDescription tagsetDescription = (TagsetDescription) annotation;
+			m = secondTypePattern.matcher(tagsetDescription.getLayer());
+			if (m.find()) {
+				map.put("layer", m.group(1));
+			}
+			map.put("name", tagsetDescription.getName());
+			break;
+		default:
+			m = secondTypePattern.matcher(annotation.getType().toString());
+			if (m.find()) {
+				map.put("type", m.group(1));
+			}
+			break;
+		}
+		return type;
+	}
+}
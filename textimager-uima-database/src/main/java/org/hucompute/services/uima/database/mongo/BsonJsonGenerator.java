@@ -0,0 +1,232 @@
+package org.hucompute.services.uima.database.mongo;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.bson.BsonBinary;
+import org.bson.BsonBinaryWriter;
+import org.bson.RawBsonDocument;
+import org.bson.io.BasicOutputBuffer;
+
+import com.fasterxml.jackson.core.Base64Variant;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.base.GeneratorBase;
+
+/**
+ * A Jackson generator that writes one JSON object as a BSON document, so that the
+ * JSON CAS serializer can write straight into the bytes sent to Mongo, without a JSON
+ * string that is parsed again.
+ *
+ * Field names can be renamed on the way, the values are written as they are. Numbers
+ * get the types {@code com.mongodb.util.JSON} would have parsed them to: int32 if they
+ * fit, else int64, and double for fractions.
+ */
+public class BsonJsonGenerator extends GeneratorBase {
+
+	private final Map<String, String> fieldNames;
+	private final BasicOutputBuffer buffer = new BasicOutputBuffer();
+	private final BsonBinaryWriter writer = new BsonBinaryWriter(buffer);
+	private int depth = 0;
+	private boolean done = false;
+
+	public BsonJsonGenerator() {
+		this(Collections.<String, String>emptyMap());
+	}
+
+	/**
+	 * @param fieldNames
+	 *            the field names to replace, by their replacement
+	 */
+	public BsonJsonGenerator(Map<String, String> fieldNames) {
+		super(0, null);
+		this.fieldNames = fieldNames;
+	}
+
+	/**
+	 * @return the document, once the outermost object is closed
+	 */
+	public RawBsonDocument getDocument() {
+		if (!done) {
+			throw new IllegalStateException("The document is not complete");
+		}
+		return new RawBsonDocument(buffer.getInternalBuffer(), 0, buffer.getPosition());
+	}
+
+	@Override
+	public void writeStartObject() throws IOException {
+		if (depth == 0 && done) {
+			throw new IllegalStateException("Only one document can be written");
+		}
+		depth++;
+		writer.writeStartDocument();
+	}
+
+	@Override
+	public void writeEndObject() throws IOException {
+		writer.writeEndDocument();
+		if (--depth == 0) {
+			done = true;
+		}
+	}
+
+	@Override
+	public void writeStartArray() throws IOException {
+		if (depth == 0) {
+			throw new IllegalStateException("A BSON document must be an object");
+		}
+		depth++;
+		writer.writeStartArray();
+	}
+
+	@Override
+	public void writeEndArray() throws IOException {
+		depth--;
+		writer.writeEndArray();
+	}
+
+	@Override
+	public void writeFieldName(String name) throws IOException {
+		String renamed = fieldNames.get(name);
+		writer.writeName(renamed == null ? name : renamed);
+	}
+
+	@Override
+	public void writeFieldName(SerializableString name) throws IOException {
+		writeFieldName(name.getValue());
+	}
+
+	@Override
+	public void writeString(String text) throws IOException {
+		if (text == null) {
+			writeNull();
+		} else {
+			writer.writeString(text);
+		}
+	}
+
+	@Override
+	public void writeString(char[] text, int offset, int len) throws IOException {
+		writer.writeString(new String(text, offset, len));
+	}
+
+	@Override
+	public void writeRawUTF8String(byte[] text, int offset, int length) throws IOException {
+		writer.writeString(new String(text, offset, length, StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public void writeUTF8String(byte[] text, int offset, int length) throws IOException {
+		writer.writeString(new String(text, offset, length, StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public void writeRaw(String text) throws IOException {
+		throw new UnsupportedOperationException("Raw JSON cannot be written as BSON");
+	}
+
+	@Override
+	public void writeRaw(String text, int offset, int len) throws IOException {
+		throw new UnsupportedOperationException("Raw JSON cannot be written as BSON");
+	}
+
+	@Override
+	public void writeRaw(char[] text, int offset, int len) throws IOException {
+		throw new UnsupportedOperationException("Raw JSON cannot be written as BSON");
+	}
+
+	@Override
+	public void writeRaw(char c) throws IOException {
+		throw new UnsupportedOperationException("Raw JSON cannot be written as BSON");
+	}
+
+	@Override
+	public void writeBinary(Base64Variant variant, byte[] data, int offset, int len) throws IOException {
+		writer.writeBinaryData(new BsonBinary(Arrays.copyOfRange(data, offset, offset + len)));
+	}
+
+	@Override
+	public void writeNumber(int v) throws IOException {
+		writer.writeInt32(v);
+	}
+
+	@Override
+	public void writeNumber(long v) throws IOException {
+		if (v == (int) v) {
+			writer.writeInt32((int) v);
+		} else {
+			writer.writeInt64(v);
+		}
+	}
+
+	@Override
+	public void writeNumber(BigInteger v) throws IOException {
+		if (v == null) {
+			writeNull();
+		} else if (v.bitLength() < 64) {
+			writeNumber(v.longValue());
+		} else {
+			writeNumber(v.doubleValue());
+		}
+	}
+
+	@Override
+	public void writeNumber(double v) throws IOException {
+		if (Double.isNaN(v) || Double.isInfinite(v)) {
+			// quoted in JSON as well
+			writer.writeString(String.valueOf(v));
+		} else {
+			writer.writeDouble(v);
+		}
+	}
+
+	@Override
+	public void writeNumber(float v) throws IOException {
+		// the shortest decimal of the float, as in JSON
+		writeNumber(Double.parseDouble(Float.toString(v)));
+	}
+
+	@Override
+	public void writeNumber(BigDecimal v) throws IOException {
+		if (v == null) {
+			writeNull();
+		} else {
+			writeNumber(v.doubleValue());
+		}
+	}
+
+	@Override
+	public void writeNumber(String encodedValue) throws IOException {
+		if (encodedValue.indexOf('.') >= 0 || encodedValue.indexOf('e') >= 0 || encodedValue.indexOf('E') >= 0) {
+			writeNumber(Double.parseDouble(encodedValue));
+		} else {
+			writeNumber(Long.parseLong(encodedValue));
+		}
+	}
+
+	@Override
+	public void writeBoolean(boolean state) throws IOException {
+		writer.writeBoolean(state);
+	}
+
+	@Override
+	public void writeNull() throws IOException {
+		writer.writeNull();
+	}
+
+	@Override
+	public void flush() throws IOException {
+	}
+
+	@Override
+	protected void _releaseBuffers() {
+	}
+
+	@Override
+	protected void _verifyValueWrite(String typeMsg) throws IOException {
+	}
+}
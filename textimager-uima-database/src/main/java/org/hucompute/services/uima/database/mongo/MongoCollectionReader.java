@@ -1,6 +1,15 @@
 package org.hucompute.services.uima.database.mongo;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.apache.uima.UimaContext;
 import org.apache.uima.cas.CAS;
@@ -11,9 +20,13 @@ import org.apache.uima.resource.ResourceInitializationException;
 import org.apache.uima.util.Progress;
 import org.apache.uima.util.ProgressImpl;
 import org.hucompute.services.uima.database.AbstractCollectionReader;
+import org.json.JSONArray;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
+import com.mongodb.BasicDBObject;
 import com.mongodb.Bytes;
+import com.mongodb.DBCollection;
 import com.mongodb.DBCursor;
 import com.mongodb.DBObject;
 import com.mongodb.util.JSON;
@@ -21,6 +34,9 @@ import com.mongodb.util.JSON;
 /**
  * Reads CASes from Mongo
  * 
+ * The matching documents are split into ranges of their _id, each read by its own
+ * cursor and thread into a bounded prefetch queue.
+ * 
  * @author renaud.richardet@epfl.ch
  */
 public class MongoCollectionReader extends AbstractCollectionReader {
@@ -57,7 +73,6 @@ public class MongoCollectionReader extends AbstractCollectionReader {
 			description = "Mongo's WriteConcern SAFE(true) or NORMAL(false)")
 	private boolean safeMode;
 	
-    protected DBCursor cur;
 
     public static final String PARAM_QUERY = "mongo query";
     @ConfigurationParameter(name = PARAM_QUERY, mandatory = false, //
@@ -70,14 +85,35 @@ public class MongoCollectionReader extends AbstractCollectionReader {
     private int limit;
     
     public static final String PARAM_SKIP = "mongo_SKIP";
-    @ConfigurationParameter(name = PARAM_LIMIT, mandatory = false, defaultValue = "0")
+    @ConfigurationParameter(name = PARAM_SKIP, mandatory = false, defaultValue = "0")
     private int skip;
 
+    public static final String PARAM_PARTITIONS = "mongo_partitions";
+    @ConfigurationParameter(name = PARAM_PARTITIONS, mandatory = false, defaultValue = "1", //
+    description = "Number of _id ranges read in parallel")
+    private int partitions;
+
+    public static final String PARAM_PREFETCH = "mongo_prefetch";
+    @ConfigurationParameter(name = PARAM_PREFETCH, mandatory = false, defaultValue = "1000", //
+    description = "Number of documents read ahead of the pipeline")
+    private int prefetch;
+
     public static final String PARAM_DB_AUTH_SOURCE = "mongo_connection_auth_source";
     @ConfigurationParameter(name = PARAM_DB_AUTH_SOURCE, mandatory = false, defaultValue = "admin")
     protected String db_connection_auth_source;
     
     int processed = 0;
+
+    // tells the reader that a partition is done
+    private static final Object END = new Object();
+
+    // documents, errors of the partitions and END
+    private BlockingQueue<Object> queue;
+    private ExecutorService pool;
+    private int finished;
+    private JSONObject next;
+    // counted once
+    private int total;
     
     @Override
     public void initialize(UimaContext context)
@@ -93,39 +129,136 @@ public class MongoCollectionReader extends AbstractCollectionReader {
     }
 
     protected void initQuery(MongoConnection conn) throws IOException {
-    	System.out.println("initQuery");
-    	if (query != null){
-            cur = conn.coll.find((DBObject) JSON.parse(query));
-            System.out.println(JSON.parse(query));
+        if (partitions < 1 || prefetch < 1) {
+            throw new IOException(String.format("Need at least one partition and prefetched document, got %d and %d", partitions, prefetch));
+        }
+        DBObject filter = query != null ? (DBObject) JSON.parse(query) : new BasicDBObject();
+        total = (int) Math.max(0, conn.coll.count(filter) - skip);
+        if (limit > 0)
+            total = Math.min(total, limit);
+        logger.info(String.format("Reading %d documents in %d partitions", total, partitions));
+
+        // each partition starts at the _id of its first document, the last one ends after the limit
+        List<Object> bounds = new ArrayList<>(partitions + 1);
+        for (int i = 0; i <= partitions; i++) {
+            int position = skip + (int) ((long) total * i / partitions);
+            bounds.add(i == 0 && skip == 0 ? null : getId(conn.coll, filter, position));
+        }
+        if (limit <= 0)
+            bounds.set(partitions, null);
+
+        queue = new ArrayBlockingQueue<>(prefetch);
+        pool = Executors.newFixedThreadPool(partitions, runnable -> {
+            Thread thread = new Thread(runnable, "MongoCollectionReader partition");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < partitions; i++) {
+            DBObject range = new BasicDBObject();
+            if (bounds.get(i) != null)
+                range.put("$gte", bounds.get(i));
+            if (bounds.get(i + 1) != null)
+                range.put("$lt", bounds.get(i + 1));
+            DBObject partition = range.keySet().isEmpty() ? filter
+                    : new BasicDBObject("$and", Arrays.asList(filter, new BasicDBObject("_id", range)));
+            // more partitions than documents give ranges with equal bounds
+            boolean empty = total == 0 || bounds.get(i) != null && bounds.get(i).equals(bounds.get(i + 1));
+            pool.submit(() -> read(conn.coll, partition, empty));
+        }
+        pool.shutdown();
+    }
+
+    // the _id of the document at the position in _id order, null if there is none
+    private static Object getId(DBCollection coll, DBObject filter, int position) {
+        try (DBCursor cursor = coll.find(filter, new BasicDBObject("_id", 1))
+                .sort(new BasicDBObject("_id", 1)).skip(position).limit(1)) {
+            return cursor.hasNext() ? cursor.next().get("_id") : null;
+        }
+    }
+
+    private void read(DBCollection coll, DBObject partition, boolean empty) {
+        try {
+            if (!empty) {
+                try (DBCursor cursor = coll.find(partition)) {
+                    cursor.addOption(Bytes.QUERYOPTION_NOTIMEOUT).batchSize(1000);
+                    while (cursor.hasNext()) {
+                        DBObject doc = cursor.next();
+                        doc.removeField("_id");
+                        queue.put(toJson(doc));
+                    }
+                }
+            }
+            queue.put(END);
+        } catch (InterruptedException e) {
+            // closed
+        } catch (Throwable t) {
+            try {
+                queue.put(t);
+            } catch (InterruptedException e) {
+                // closed
+            }
         }
-        else
-            cur = conn.coll.find()
-//            .limit(1000)
-            ;
-        if(limit>0)
-        	cur.limit(limit);
-        if(skip>0)
-        	cur.skip(skip);
-        cur.addOption(Bytes.QUERYOPTION_NOTIMEOUT).batchSize(1000);
-        System.out.println("size: " + cur.size());
+    }
+
+    // the documents and lists of the driver as they are, without a JSON string in between,
+    // the other BSON values like ObjectId and Date in the extended JSON of JSON.serialize
+    static Object toJson(Object value) {
+        if (value instanceof Map) {
+            JSONObject object = new JSONObject();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                object.put(entry.getKey().toString(), toJson(entry.getValue()));
+            }
+            return object;
+        }
+        if (value instanceof Collection) {
+            JSONArray array = new JSONArray();
+            for (Object element : (Collection<?>) value) {
+                array.put(toJson(element));
+            }
+            return array;
+        }
+        if (value == null)
+            return JSONObject.NULL;
+        if (value instanceof String || value instanceof Boolean || value instanceof Integer
+                || value instanceof Long || value instanceof Double)
+            return value;
+        return new JSONTokener(JSON.serialize(value)).nextValue();
     }
 
     public boolean hasNext() throws IOException, CollectionException {
-        return cur.hasNext();
+        try {
+            while (next == null && finished < partitions) {
+                Object item = queue.take();
+                if (item == END)
+                    finished++;
+                else if (item instanceof Throwable)
+                    throw new CollectionException((Throwable) item);
+                else
+                    next = (JSONObject) item;
+            }
+        } catch (InterruptedException e) {
+            throw new CollectionException(e);
+        }
+        // a partition reads up to the _id of the next one, the limit is checked here
+        if (limit > 0 && processed >= total)
+            return false;
+        return next != null;
     }
 
 	@Override
 	public void getNext(CAS aCAS) throws IOException, CollectionException {
-		
+		if (!hasNext())
+			throw new CollectionException(new IllegalStateException("No more documents"));
 		resumeWatch();
 		try {
-            DBObject doc = cur.next();
-            String json = JSON.serialize(doc);
-            new JsonCasDeserializer().deserialize(aCAS.getJCas(), new JSONObject(json));
+            JSONObject doc = next;
+            next = null;
+            new JsonCasDeserializer().deserialize(aCAS.getJCas(), doc);
         } catch (Exception e) {
             throw new CollectionException(e);
-        }		
-		suspendWatch();
+        } finally {
+            suspendWatch();
+        }
 		log();
 		processed++;
 	}
@@ -133,7 +266,13 @@ public class MongoCollectionReader extends AbstractCollectionReader {
 	@Override
 	public Progress[] getProgress() {
 		return new Progress[] { new ProgressImpl(processed,
-				cur.count(), Progress.ENTITIES) };
+				total, Progress.ENTITIES) };
 	}
-}
 
+	@Override
+	public void close() throws IOException {
+		if (pool != null)
+			pool.shutdownNow();
+		super.close();
+	}
+}
@@ -10,6 +10,7 @@ import com.mongodb.MongoClient;
 import com.mongodb.MongoCredential;
 import com.mongodb.MongoException;
 import com.mongodb.ServerAddress;
+import com.mongodb.client.MongoDatabase;
 
 /**
  * A wrapper for a connection to Mongo.
@@ -23,6 +24,7 @@ public class MongoConnection {
 //	final public Mongo m;
 	final public DB db;
 	final public DBCollection coll;
+	final public MongoDatabase database;
 
 	/**
 	 * @param db_connection
@@ -83,6 +85,7 @@ public class MongoConnection {
 
 
 		db = mongoClient.getDB(dbName);
+		database = mongoClient.getDatabase(dbName);
 //		if (user.length() > 0) {
 //			if (!db.authenticate(user, pw.toCharArray())) {
 //				throw new MongoException(-1, "cannot login with user " + user);
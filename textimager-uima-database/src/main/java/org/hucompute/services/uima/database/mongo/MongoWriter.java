@@ -2,7 +2,13 @@ package org.hucompute.services.uima.database.mongo;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.uima.UimaContext;
@@ -12,17 +18,24 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.json.JsonCasSerializer;
 import org.apache.uima.json.JsonCasSerializer.JsonContextFormat;
 import org.apache.uima.json.JsonCasSerializerModified;
+import org.apache.uima.json.impl.JsonContentHandlerJacksonWrapper;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.bson.BsonSerializationException;
+import org.bson.RawBsonDocument;
 import org.hucompute.services.uima.database.AbstractWriter;
 import org.json.JSONObject;
 
-import com.mongodb.DBCollection;
-import com.mongodb.DBObject;
-import com.mongodb.util.JSON;
+import com.mongodb.WriteConcern;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.InsertManyOptions;
 
 import de.tudarmstadt.ukp.dkpro.core.api.metadata.type.DocumentMetaData;
 
+/**
+ * Writes each CAS as one document with the short keys {@link MongoCollectionReader}
+ * reads. The CAS is serialized straight into BSON and the documents are inserted in
+ * unordered batches.
+ */
 public class MongoWriter extends AbstractWriter {
 
 	public static final String PARAM_DB_USER = "mongo_connection_user";
@@ -56,7 +69,33 @@ public class MongoWriter extends AbstractWriter {
 	@ConfigurationParameter(name = PARAM_DB_AUTH_SOURCE, mandatory = false, defaultValue = "admin")
 	protected String db_connection_auth_source;
 
-	private DBCollection coll;
+	public static final String PARAM_BATCH_SIZE = "mongo_batch_size";
+	@ConfigurationParameter(name = PARAM_BATCH_SIZE, mandatory = false, defaultValue = "100", //
+			description = "Number of documents inserted at once")
+	protected int batchSize;
+
+	public static final String PARAM_FLUSH_INTERVAL = "mongo_flush_interval";
+	@ConfigurationParameter(name = PARAM_FLUSH_INTERVAL, mandatory = false, defaultValue = "1000", //
+			description = "Milliseconds after which an incomplete batch is inserted, 0 to wait until it is complete")
+	protected int flushInterval;
+
+	// the long keys of the JSON serializer and the ones stored
+	private static final Map<String, String> KEYS = new HashMap<>();
+	static {
+		KEYS.put("begin", "b");
+		KEYS.put("end", "e");
+		KEYS.put("xmi:id", "xid");
+		KEYS.put("sofa", "s");
+	}
+
+	private MongoCollection<RawBsonDocument> collection;
+
+	private final List<RawBsonDocument> batch = new ArrayList<>();
+	// when the first document of the batch was added
+	private long batchStart;
+	private ScheduledExecutorService flusher;
+	// of a timed insert, thrown with the next document
+	private volatile Throwable flushError;
 
 	private JsonCasSerializerModified xcs;
 
@@ -76,37 +115,105 @@ public class MongoWriter extends AbstractWriter {
 
 		try {
 			MongoConnection conn = new MongoConnection(db_connection_host,db_connection_dbname,db_connection_collectionname,db_connection_user,db_connection_pw, safeMode, db_connection_auth_source);
-			coll = conn.coll;
+			collection = conn.database.getCollection(db_connection_collectionname, RawBsonDocument.class)
+					.withWriteConcern(safeMode ? WriteConcern.ACKNOWLEDGED : WriteConcern.UNACKNOWLEDGED);
 		} catch (IOException e) {
 			throw new ResourceInitializationException(e);
 		}
+		if (batchSize < 1) {
+			throw new ResourceInitializationException(new IllegalArgumentException("Batch size must be positive: " + batchSize));
+		}
+		if (flushInterval > 0) {
+			flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "MongoWriter flush");
+				thread.setDaemon(true);
+				return thread;
+			});
+			flusher.scheduleWithFixedDelay(this::flushExpired, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+		}
 	}
 
 	@Override
 	public void process(JCas jCas) throws AnalysisEngineProcessException {
 		resumeWatch();
 		try {
-
-			StringWriter sw = new StringWriter();
-			xcs.serialize(jCas.getCas(), sw);
-
-			DBObject doc = (DBObject) JSON.parse(
-					sw.toString()
-					.replaceAll("\"begin\"", "\"b\"")
-					.replaceAll("\"end\"", "\"e\"")
-					.replaceAll("\"xmi:id\"", "\"xid\"")
-					.replaceAll("\"sofa\"", "\"s\"")
-					);
-//			try{
-			coll.insert(doc);
-//			}
-//			catch(BsonSerializationException e){
-//				e.printStackTrace();
-//			}
+			checkFlushError();
+			BsonJsonGenerator generator = new BsonJsonGenerator(KEYS);
+			xcs.serialize(jCas.getCas(), new JsonContentHandlerJacksonWrapper(generator));
+			add(generator.getDocument());
+		} catch (AnalysisEngineProcessException e) {
+			throw e;
 		} catch (Throwable t) {
 			throw new AnalysisEngineProcessException(t);
+		} finally {
+			suspendWatch();
 		}
-		suspendWatch();
 //		log();
 	}
-}
\ No newline at end of file
+
+	private synchronized void add(RawBsonDocument document) {
+		if (batch.isEmpty()) {
+			batchStart = System.currentTimeMillis();
+		}
+		batch.add(document);
+		if (batch.size() >= batchSize) {
+			flush();
+		}
+	}
+
+	/**
+	 * Inserts the documents waiting for a complete batch.
+	 */
+	public synchronized void flush() {
+		if (batch.isEmpty()) {
+			return;
+		}
+		// not retried, the documents of an unordered batch may be partly inserted
+		List<RawBsonDocument> documents = new ArrayList<>(batch);
+		batch.clear();
+		collection.insertMany(documents, new InsertManyOptions().ordered(false));
+	}
+
+	private synchronized void flushExpired() {
+		if (!batch.isEmpty() && System.currentTimeMillis() - batchStart >= flushInterval) {
+			try {
+				flush();
+			} catch (Throwable t) {
+				logger.error("Could not insert the batch", t);
+				flushError = t;
+			}
+		}
+	}
+
+	private void checkFlushError() throws AnalysisEngineProcessException {
+		Throwable t = flushError;
+		if (t != null) {
+			flushError = null;
+			throw new AnalysisEngineProcessException(t);
+		}
+	}
+
+	@Override
+	public void collectionProcessComplete() throws AnalysisEngineProcessException {
+		try {
+			flush();
+		} catch (Throwable t) {
+			throw new AnalysisEngineProcessException(t);
+		}
+		checkFlushError();
+		super.collectionProcessComplete();
+	}
+
+	@Override
+	public void destroy() {
+		if (flusher != null) {
+			flusher.shutdownNow();
+		}
+		try {
+			flush();
+		} catch (Throwable t) {
+			logger.error("Could not insert the last batch", t);
+		}
+		super.destroy();
+	}
+}
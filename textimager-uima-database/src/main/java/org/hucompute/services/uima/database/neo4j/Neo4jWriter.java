@@ -1,13 +1,29 @@
 package org.hucompute.services.uima.database.neo4j;
 
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.apache.uima.UIMAException;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.util.CasCopier;
+import org.apache.uima.util.CasCreationUtils;
+import org.apache.uima.util.TypeSystemUtil;
 import org.hucompute.services.uima.database.AbstractWriter;
 import org.hucompute.services.uima.database.neo4j.data.Const.RelationType;
 import org.hucompute.services.uima.database.neo4j.impl.Document_Neo4J_Impl;
@@ -17,6 +33,9 @@ import org.hucompute.services.uima.database.neo4j.impl.Paragraph_Neo4J_Impl;
 import org.hucompute.services.uima.database.neo4j.impl.Pos_Neo4J_Impl;
 import org.hucompute.services.uima.database.neo4j.impl.Sentence_Neo4J_Impl;
 import org.hucompute.services.uima.database.neo4j.impl.Token_Neo4J_Impl;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Transaction;
 
 import de.tudarmstadt.ukp.dkpro.core.api.metadata.type.DocumentMetaData;
@@ -25,126 +44,481 @@ import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Paragraph;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
 
+/**
+ * Writes documents with their paragraphs, sentences and tokens, and the shared lemma and
+ * POS nodes, into the embedded Neo4j database, or into CSV files for the offline importer.
+ *
+ * Several documents can be committed in one transaction. If the transaction fails, its
+ * documents are written again one at a time, so only the failing document is lost. The node
+ * ids of the lemmata and POS values are cached, so each value is looked up in the database once.
+ */
 public class Neo4jWriter extends AbstractWriter {
+
+	public static final String PARAM_CONF_LOCATION = "neo4j_conf_location";
+	@ConfigurationParameter(name = PARAM_CONF_LOCATION, mandatory = false, defaultValue = "src/main/resources/neo4j/conf.conf")
+	protected String confLocation;
+
+	public static final String PARAM_DOCUMENTS_PER_TRANSACTION = "neo4j_documents_per_transaction";
+	@ConfigurationParameter(name = PARAM_DOCUMENTS_PER_TRANSACTION, mandatory = false, defaultValue = "1", //
+			description = "Number of documents committed in one transaction. The documents are copied until the commit, "
+					+ "to write them again one at a time if the transaction fails")
+	protected int documentsPerTransaction;
+
+	public static final String PARAM_CSV_LOCATION = "neo4j_csv_location";
+	@ConfigurationParameter(name = PARAM_CSV_LOCATION, mandatory = false, //
+			description = "If set, the graph is written as CSV files for neo4j-admin import into this directory instead of the database")
+	protected File csvLocation;
+
 	MDB_Neo4J_Impl pMDB;
+
+	private Graph graph;
+	// the documents of the open transaction
+	private int uncommitted = 0;
+	// copies of the documents of the open transaction, reused for the next ones
+	private final List<JCas> copies = new ArrayList<>();
+
+	// node ids by value, of nodes that are committed or in the open transaction
+	private final NodeCache lemmata = new NodeCache();
+	private final NodeCache posValues = new NodeCache();
+
 	@Override
 	public void initialize(UimaContext context)
 			throws ResourceInitializationException {
 		super.initialize(context);
-		pMDB = new MDB_Neo4J_Impl("src/main/resources/neo4j/conf.conf");
-		pMDB.createIndex(Lemma_Neo4J_Impl.getLabel(), "value");
-		pMDB.createIndex(Pos_Neo4J_Impl.getLabel(), "value");
+		if (documentsPerTransaction < 1) {
+			throw new ResourceInitializationException(new IllegalArgumentException("Need at least one document per transaction, got " + documentsPerTransaction));
+		}
+		if (csvLocation != null) {
+			try {
+				graph = new CsvGraph(csvLocation);
+			} catch (IOException e) {
+				throw new ResourceInitializationException(e);
+			}
+		} else {
+			pMDB = new MDB_Neo4J_Impl(confLocation);
+			pMDB.createIndex(Lemma_Neo4J_Impl.getLabel(), "value");
+			pMDB.createIndex(Pos_Neo4J_Impl.getLabel(), "value");
+			// documents are looked up by id
+			pMDB.createIndex(Document_Neo4J_Impl.getLabel(), "id");
+			graph = new EmbeddedGraph(MDB_Neo4J_Impl.gdbs);
+		}
 	}
 
 	/**
-	 * Processes one document jCas in a single (offline) Neo4j transaction. 
+	 * Adds one document jCas to the open transaction, which is committed after
+	 * {@link #PARAM_DOCUMENTS_PER_TRANSACTION} documents. If the transaction fails, the
+	 * documents in it are written again one at a time, and only if jCas fails on its own
+	 * an exception is thrown. The earlier documents that fail on their own are logged.
 	 */
 	@Override
 	public void process(JCas jCas) throws AnalysisEngineProcessException {
 		resumeWatch();
-		try{
-			try (Transaction tx = MDB_Neo4J_Impl.gdbs.beginTx()) {
-				/* Document creation. */
-				final String docId = DocumentMetaData.get(jCas).getDocumentId();
-				Document_Neo4J_Impl neo4jDocument = Document_Neo4J_Impl.getOrCreate(pMDB,docId);
-				neo4jDocument.setProperty("id", docId);
-				neo4jDocument.setProperty("text", jCas.getDocumentText());
-				neo4jDocument.setProperty("language", jCas.getDocumentLanguage());
-				
-				/* Iteration variable initialization. */
-				Paragraph_Neo4J_Impl previousP = null;
-				Paragraph_Neo4J_Impl neo4jPara = null;
-				Sentence_Neo4J_Impl previousS = null;
-				Sentence_Neo4J_Impl neo4jSentence = null;
-				Token_Neo4J_Impl previousT = null;
-				Token_Neo4J_Impl neo4jToken = null;
-				Pos_Neo4J_Impl neo4jpos = null;
-				Lemma_Neo4J_Impl neo4jlemma = null;
-				
-				/* 
-				 * Iterate over each element of the jCas that was annotated as a Paragraph.
-				 * Each paragraph gets properties for its beginning and ending character position
-				 * and the id of the document it is contained in. This is done, so matching paragraphs don't
-				 * get relationships with more than one document.
-				 */
-				for(Paragraph paragraph : JCasUtil.select(jCas, Paragraph.class)) {
-					neo4jPara = Paragraph_Neo4J_Impl.create(pMDB);
-					neo4jPara.setProperty("begin", paragraph.getBegin());
-					neo4jPara.setProperty("end", paragraph.getEnd());
-					neo4jPara.setProperty("id", docId);
-					
-					/* A successor relationship to the previous paragraph is created. */
-					neo4jDocument.addAnnotation(neo4jPara, RelationType.paragraph);
-					if(previousP != null)
-						neo4jPara.createRelationshipTo(previousP.getNode(), RelationType.successorP);
-					previousP = neo4jPara;
-					
-					/* 
-					 * Previous sentence is set to null, thus no relationships between sentences of neighboring paragraphs.
-					 * Other: see above. 
-					 */
-					previousS = null;
-					for(Sentence sentence : JCasUtil.selectCovered(jCas, Sentence.class, paragraph)) {
-						neo4jSentence = Sentence_Neo4J_Impl.create(pMDB);
-						neo4jSentence.setProperty("begin", sentence.getBegin());
-						neo4jSentence.setProperty("end", sentence.getEnd());
-						neo4jSentence.setProperty("id", docId);
-						
-						/* A successor relationship to the previous sentence in the same paragraph is created. */
-						neo4jDocument.addAnnotation(neo4jSentence, RelationType.sentence);
-						if(previousS != null)
-							neo4jSentence.createRelationshipTo(previousS.getNode(), RelationType.successorS);
-						previousS = neo4jSentence;
-						
-						/* Connect paragraph with sentence. */
-						neo4jSentence.createRelationshipTo(neo4jPara.getNode(), RelationType.inParagraphS);
-						
-						/* See above. */
-						previousT = null;
-						for (Token token : JCasUtil.selectCovered(jCas, Token.class, sentence)) {
-							neo4jToken = Token_Neo4J_Impl.create(pMDB);
-							neo4jToken.setProperty("begin", token.getBegin());
-							neo4jToken.setProperty("end", token.getEnd());
-							neo4jToken.setProperty("id", docId);
-							neo4jToken.setProperty("value", token.getCoveredText());
-							
-							/* POS and lemma are set. */
-							neo4jpos = Pos_Neo4J_Impl.getOrCreate(pMDB,token.getPos().getPosValue());
-							neo4jToken.setPos(neo4jpos);
-
-							neo4jlemma = Lemma_Neo4J_Impl.getOrCreate(pMDB,token.getLemma().getValue());
-							neo4jToken.setLemma(neo4jlemma);
-							
-							/* A successor relationship to the previous token in the same sentence is created. */
-							neo4jDocument.addAnnotation(neo4jToken, RelationType.token);
-							if(previousT != null)
-								neo4jToken.createRelationshipTo(previousT.getNode(), RelationType.successorT);
-							previousT = neo4jToken;
-							
-							/* Connects the token to its parent sentence and paragraph. */
-							neo4jToken.createRelationshipTo(neo4jSentence.getNode(), RelationType.inSentence);
-							neo4jToken.createRelationshipTo(neo4jPara.getNode(), RelationType.inParagraphT);
-						}
-					}
+		try {
+			if (documentsPerTransaction > 1) {
+				keep(jCas);
+			}
+			int documents = ++uncommitted;
+			try {
+				write(jCas);
+				if (uncommitted >= documentsPerTransaction) {
+					commit();
+				}
+			} catch (Exception e) {
+				rollback();
+				if (documents == 1) {
+					throw new AnalysisEngineProcessException(e);
+				}
+				logger.warn(String.format("Rolling back %d documents, writing them one at a time", documents), e);
+				writeOneAtATime(documents);
+			}
+		} finally {
+			suspendWatch();
+		}
+		log();
+	}
+
+	// the documents of a rolled back transaction, each in a transaction of its own
+	private void writeOneAtATime(int documents) throws AnalysisEngineProcessException {
+		for (int i = 0; i < documents; i++) {
+			JCas document = copies.get(i);
+			try {
+				write(document);
+				commit();
+			} catch (Exception e) {
+				rollback();
+				if (i == documents - 1) {
+					throw new AnalysisEngineProcessException(e);
 				}
+				logger.error(String.format("Could not write document %d of the %d rolled back ones", i + 1, documents), e);
+			}
+		}
+	}
+
+	// copies jCas, the CAS is reset for the next document before the commit
+	private void keep(JCas jCas) throws AnalysisEngineProcessException {
+		try {
+			if (copies.size() <= uncommitted) {
+				copies.add(CasCreationUtils.createCas(TypeSystemUtil.typeSystem2TypeSystemDescription(jCas.getTypeSystem()), null, null).getJCas());
+			}
+		} catch (UIMAException e) {
+			throw new AnalysisEngineProcessException(e);
+		}
+		JCas copy = copies.get(uncommitted);
+		copy.reset();
+		CasCopier.copyCas(jCas.getCas(), copy.getCas(), true);
+	}
+
+	private void commit() throws IOException {
+		graph.commit();
+		lemmata.commit();
+		posValues.commit();
+		uncommitted = 0;
+	}
+
+	private void rollback() {
+		graph.rollback();
+		// the nodes of the open transaction are gone, and so are their ids
+		lemmata.rollback();
+		posValues.rollback();
+		uncommitted = 0;
+	}
+
+	private void write(JCas jCas) {
+		/* Document creation. */
+		final String docId = DocumentMetaData.get(jCas).getDocumentId();
+		long document = graph.findNode(Document_Neo4J_Impl.getLabel(), "id", docId);
+		if (document < 0) {
+			document = graph.createNode(Document_Neo4J_Impl.getLabel(), "id", docId, "text", jCas.getDocumentText(), "language", jCas.getDocumentLanguage());
+		} else {
+			graph.setProperties(document, "text", jCas.getDocumentText(), "language", jCas.getDocumentLanguage());
+		}
 
-				/* Creates a HashSet of {@link de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Lemma lemmata}. */
-				HashSet<String> LL = new HashSet<>();
-				JCasUtil.select(jCas, Lemma.class).forEach(e -> LL.add(e.getValue()));
-				/* Gets the Lemma_Neo4J_Impl Object for each lemmata. */
-				ArrayList<Lemma_Neo4J_Impl> lemmata = new ArrayList<>();
-				LL.forEach(e -> lemmata.add(Lemma_Neo4J_Impl.getOrCreate(pMDB,e)));
-				
-				/* Creates a inDocument realtionship for each lemma. */
-				for (Lemma_Neo4J_Impl lemma : lemmata) {
-					lemma.createRelationshipTo(neo4jDocument.getNode(), RelationType.inDocument);
+		/* Iteration variable initialization. */
+		long previousP = -1;
+		long previousS;
+		long previousT;
+
+		/*
+		 * Iterate over each element of the jCas that was annotated as a Paragraph.
+		 * Each paragraph gets properties for its beginning and ending character position
+		 * and the id of the document it is contained in. This is done, so matching paragraphs don't
+		 * get relationships with more than one document.
+		 */
+		for (Paragraph paragraph : JCasUtil.select(jCas, Paragraph.class)) {
+			long neo4jPara = graph.createNode(Paragraph_Neo4J_Impl.getLabel(), "begin", paragraph.getBegin(), "end", paragraph.getEnd(), "id", docId);
+
+			/* A successor relationship to the previous paragraph is created. */
+			graph.createRelationship(document, neo4jPara, RelationType.paragraph);
+			if (previousP >= 0)
+				graph.createRelationship(neo4jPara, previousP, RelationType.successorP);
+			previousP = neo4jPara;
+
+			/*
+			 * Previous sentence is reset, thus no relationships between sentences of neighboring paragraphs.
+			 * Other: see above.
+			 */
+			previousS = -1;
+			for (Sentence sentence : JCasUtil.selectCovered(jCas, Sentence.class, paragraph)) {
+				long neo4jSentence = graph.createNode(Sentence_Neo4J_Impl.getLabel(), "begin", sentence.getBegin(), "end", sentence.getEnd(), "id", docId);
+
+				/* A successor relationship to the previous sentence in the same paragraph is created. */
+				graph.createRelationship(document, neo4jSentence, RelationType.sentence);
+				if (previousS >= 0)
+					graph.createRelationship(neo4jSentence, previousS, RelationType.successorS);
+				previousS = neo4jSentence;
+
+				/* Connect paragraph with sentence. */
+				graph.createRelationship(neo4jSentence, neo4jPara, RelationType.inParagraphS);
+
+				/* See above. */
+				previousT = -1;
+				for (Token token : JCasUtil.selectCovered(jCas, Token.class, sentence)) {
+					long neo4jToken = graph.createNode(Token_Neo4J_Impl.getLabel(), "begin", token.getBegin(), "end", token.getEnd(), "id", docId, "value", token.getCoveredText());
+
+					/* POS and lemma are set. */
+					if (token.getPos() != null)
+						graph.createRelationship(neo4jToken, getOrCreate(posValues, Pos_Neo4J_Impl.getLabel(), token.getPos().getPosValue()), RelationType.pos);
+					if (token.getLemma() != null)
+						graph.createRelationship(neo4jToken, getOrCreate(lemmata, Lemma_Neo4J_Impl.getLabel(), token.getLemma().getValue()), RelationType.lemma);
+
+					/* A successor relationship to the previous token in the same sentence is created. */
+					graph.createRelationship(document, neo4jToken, RelationType.token);
+					if (previousT >= 0)
+						graph.createRelationship(neo4jToken, previousT, RelationType.successorT);
+					previousT = neo4jToken;
+
+					/* Connects the token to its parent sentence and paragraph. */
+					graph.createRelationship(neo4jToken, neo4jSentence, RelationType.inSentence);
+					graph.createRelationship(neo4jToken, neo4jPara, RelationType.inParagraphT);
 				}
+			}
+		}
+
+		/* Creates an inDocument relationship for each distinct lemma. */
+		Set<String> LL = new LinkedHashSet<>();
+		JCasUtil.select(jCas, Lemma.class).forEach(e -> LL.add(e.getValue()));
+		for (String lemma : LL) {
+			graph.createRelationship(getOrCreate(lemmata, Lemma_Neo4J_Impl.getLabel(), lemma), document, RelationType.inDocument);
+		}
+	}
+
+	// the node of the value, looked up in the database only if it is not cached
+	private long getOrCreate(NodeCache cache, Label label, String value) {
+		Long id = cache.ids.get(value);
+		if (id == null) {
+			long found = graph.findNode(label, "value", value);
+			id = found >= 0 ? found : graph.createNode(label, "value", value);
+			cache.put(value, id);
+		}
+		return id;
+	}
+
+	// node ids by value, the ones of the open transaction are removed with its rollback
+	private static class NodeCache {
+		final Map<String, Long> ids = new HashMap<>();
+		final List<String> uncommitted = new ArrayList<>();
+
+		void put(String value, long id) {
+			ids.put(value, id);
+			uncommitted.add(value);
+		}
+
+		void commit() {
+			uncommitted.clear();
+		}
+
+		void rollback() {
+			for (String value : uncommitted)
+				ids.remove(value);
+			uncommitted.clear();
+		}
+	}
+
+	@Override
+	public void collectionProcessComplete() throws AnalysisEngineProcessException {
+		try {
+			commit();
+		} catch (IOException e) {
+			throw new AnalysisEngineProcessException(e);
+		}
+		super.collectionProcessComplete();
+	}
+
+	@Override
+	public void destroy() {
+		if (graph != null) {
+			try {
+				commit();
+				graph.close();
+			} catch (IOException e) {
+				logger.error("Could not close the graph", e);
+			}
+		}
+		super.destroy();
+	}
+
+	/**
+	 * Where the nodes and relationships go. Properties are given as pairs of name and value.
+	 */
+	private interface Graph {
+		/**
+		 * @return the id of the node, -1 if there is none
+		 */
+		long findNode(Label label, String key, String value);
+
+		long createNode(Label label, Object... properties);
+
+		void setProperties(long node, Object... properties);
+
+		void createRelationship(long from, long to, RelationType type);
+
+		void commit() throws IOException;
+
+		void rollback();
+
+		void close() throws IOException;
+	}
+
+	// in transactions of the embedded database, opened with the first change
+	private static class EmbeddedGraph implements Graph {
+		private final GraphDatabaseService gdbs;
+		private Transaction tx;
+
+		EmbeddedGraph(GraphDatabaseService gdbs) {
+			this.gdbs = gdbs;
+		}
+
+		private void begin() {
+			if (tx == null)
+				tx = gdbs.beginTx();
+		}
+
+		@Override
+		public long findNode(Label label, String key, String value) {
+			begin();
+			Node node = gdbs.findNode(label, key, value);
+			return node == null ? -1 : node.getId();
+		}
+
+		@Override
+		public long createNode(Label label, Object... properties) {
+			begin();
+			Node node = gdbs.createNode(label);
+			setProperties(node, properties);
+			return node.getId();
+		}
+
+		@Override
+		public void setProperties(long node, Object... properties) {
+			begin();
+			setProperties(gdbs.getNodeById(node), properties);
+		}
+
+		private static void setProperties(Node node, Object... properties) {
+			for (int i = 0; i < properties.length; i += 2) {
+				// Neo4j has no null values
+				if (properties[i + 1] != null)
+					node.setProperty((String) properties[i], properties[i + 1]);
+			}
+		}
+
+		@Override
+		public void createRelationship(long from, long to, RelationType type) {
+			begin();
+			gdbs.getNodeById(from).createRelationshipTo(gdbs.getNodeById(to), type);
+		}
+
+		@Override
+		public void commit() {
+			if (tx != null) {
 				tx.success();
+				tx.close();
+				tx = null;
 			}
-		}catch(Exception e){
-			e.printStackTrace();
 		}
-		suspendWatch();
-		log();
+
+		@Override
+		public void rollback() {
+			if (tx != null) {
+				tx.failure();
+				tx.close();
+				tx = null;
+			}
+		}
+
+		@Override
+		public void close() {
+			commit();
+		}
+	}
+
+	/*
+	 * A nodes file per label, with the property names of its first node as header, and one
+	 * relationships file, for neo4j-admin import with --multiline-fields=true. The ids are
+	 * numbered in one id space, and documents are not merged by id. The lines of a transaction
+	 * are kept in memory and written with its commit.
+	 */
+	private static class CsvGraph implements Graph {
+		private final File directory;
+		private final Map<String, Writer> nodes = new HashMap<>();
+		private final Writer relationships;
+		// the lines of the open transaction by label, with the header of a new file
+		private final Map<String, StringBuilder> uncommittedNodes = new LinkedHashMap<>();
+		private final StringBuilder uncommittedRelationships = new StringBuilder();
+		private long nextId = 0;
+		private long committedId = 0;
+
+		CsvGraph(File directory) throws IOException {
+			this.directory = directory;
+			Files.createDirectories(directory.toPath());
+			relationships = newWriter("relationships.csv");
+			relationships.write(":START_ID,:END_ID,:TYPE\n");
+		}
+
+		private Writer newWriter(String name) throws IOException {
+			return new BufferedWriter(Files.newBufferedWriter(new File(directory, name).toPath(), StandardCharsets.UTF_8), 1 << 16);
+		}
+
+		@Override
+		public long findNode(Label label, String key, String value) {
+			return -1;
+		}
+
+		@Override
+		public long createNode(Label label, Object... properties) {
+			long id = nextId++;
+			StringBuilder lines = uncommittedNodes.get(label.name());
+			if (lines == null) {
+				lines = new StringBuilder();
+				if (!nodes.containsKey(label.name())) {
+					lines.append(":ID");
+					for (int i = 0; i < properties.length; i += 2) {
+						lines.append(',').append((String) properties[i]);
+						if (properties[i + 1] instanceof Integer)
+							lines.append(":int");
+					}
+					lines.append(",:LABEL\n");
+				}
+				uncommittedNodes.put(label.name(), lines);
+			}
+			lines.append(id);
+			for (int i = 1; i < properties.length; i += 2) {
+				lines.append(',');
+				if (properties[i] instanceof String)
+					lines.append(quote((String) properties[i]));
+				else if (properties[i] != null)
+					lines.append(properties[i]);
+			}
+			lines.append(',').append(label.name()).append('\n');
+			return id;
+		}
+
+		private static String quote(String value) {
+			return '"' + value.replace("\"", "\"\"") + '"';
+		}
+
+		@Override
+		public void setProperties(long node, Object... properties) {
+			throw new UnsupportedOperationException("The nodes of the CSV files are not looked up");
+		}
+
+		@Override
+		public void createRelationship(long from, long to, RelationType type) {
+			uncommittedRelationships.append(from).append(',').append(to).append(',').append(type.name()).append('\n');
+		}
+
+		@Override
+		public void commit() throws IOException {
+			for (Map.Entry<String, StringBuilder> entry : uncommittedNodes.entrySet()) {
+				Writer writer = nodes.get(entry.getKey());
+				if (writer == null) {
+					writer = newWriter(entry.getKey() + ".csv");
+					nodes.put(entry.getKey(), writer);
+				}
+				writer.append(entry.getValue());
+			}
+			relationships.append(uncommittedRelationships);
+			for (Writer writer : nodes.values())
+				writer.flush();
+			relationships.flush();
+			uncommittedNodes.clear();
+			uncommittedRelationships.setLength(0);
+			committedId = nextId;
+		}
+
+		@Override
+		public void rollback() {
+			uncommittedNodes.clear();
+			uncommittedRelationships.setLength(0);
+			// the ids of the lines that are not written are used again
+			nextId = committedId;
+		}
+
+		@Override
+		public void close() throws IOException {
+			for (Writer writer : nodes.values())
+				writer.close();
+			relationships.close();
+		}
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,85 @@
+package org.hucompute.services.uima.database.cassandra;
+
+import java.util.Random;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.CollectionReaderFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
+
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Lemma;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+
+/**
+ * Reads the same documents in the table layout and in the document layout from an
+ * embedded Cassandra, and reports the requests per document and the documents per second.
+ */
+public class CassandraCollectionReaderBenchmark {
+
+	private static final int DOCUMENTS = Integer.getInteger("textimager.cassandra.benchmarkDocuments", 500);
+
+	private static void write(String layout) throws Exception {
+		AnalysisEngine writer = AnalysisEngineFactory.createEngine(CassandraWriter.class,
+				CassandraWriter.PARAM_CONTACT_POINTS, new String[] { EmbeddedCassandraServerHelper.getHost() },
+				CassandraWriter.PARAM_PORT, EmbeddedCassandraServerHelper.getNativeTransportPort(),
+				CassandraWriter.PARAM_KEYSPACE, layout,
+				CassandraWriter.PARAM_LAYOUT, layout);
+		Random random = new Random(24);
+		for (int i = 0; i < DOCUMENTS; i++) {
+			writer.process(CassandraWriterBenchmark.createDocument(random, "document" + i));
+		}
+		writer.collectionProcessComplete();
+		writer.destroy();
+	}
+
+	private static void read(String layout, int prefetch) throws Exception {
+		CassandraCollectionReader reader = (CassandraCollectionReader) CollectionReaderFactory.createReader(CassandraCollectionReader.class,
+				CassandraCollectionReader.PARAM_CONTACT_POINTS, new String[] { EmbeddedCassandraServerHelper.getHost() },
+				CassandraCollectionReader.PARAM_PORT, EmbeddedCassandraServerHelper.getNativeTransportPort(),
+				CassandraCollectionReader.PARAM_KEYSPACE, layout,
+				CassandraCollectionReader.PARAM_LAYOUT, layout,
+				CassandraCollectionReader.PARAM_PREFETCH, prefetch,
+				CassandraCollectionReader.PARAM_FETCH_SIZE, 100);
+		JCas jCas = JCasFactory.createJCas();
+		int documents = 0;
+		long start = System.nanoTime();
+		try {
+			while (reader.hasNext()) {
+				jCas.reset();
+				reader.getNext(jCas.getCas());
+				if (JCasUtil.select(jCas, Token.class).size() != CassandraWriterBenchmark.TOKENS
+						|| JCasUtil.select(jCas, Lemma.class).size() != CassandraWriterBenchmark.TOKENS) {
+					throw new IllegalStateException("Incomplete document in the " + layout + " layout");
+				}
+				documents++;
+			}
+			long nanos = System.nanoTime() - start;
+			if (documents != DOCUMENTS) {
+				throw new IllegalStateException(String.format("Read %d documents in the %s layout", documents, layout));
+			}
+			System.out.println(String.format("%s layout, %d prefetched: %.1f requests/document, %.0f documents/sec",
+					layout, prefetch, reader.getRequests() / (double) documents, documents / (nanos / 1e9)));
+		} finally {
+			reader.close();
+			reader.destroy();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		EmbeddedCassandraServerHelper.startEmbeddedCassandra();
+		write(CassandraWriter.LAYOUT_TABLES);
+		write(CassandraWriter.LAYOUT_DOCUMENT);
+		System.out.println(String.format("%d documents of %d tokens", DOCUMENTS, CassandraWriterBenchmark.TOKENS));
+
+		// warm up the server and the JIT
+		read(CassandraWriter.LAYOUT_TABLES, 16);
+		for (int prefetch : new int[] { 1, 16 }) {
+			read(CassandraWriter.LAYOUT_TABLES, prefetch);
+			read(CassandraWriter.LAYOUT_DOCUMENT, prefetch);
+		}
+		EmbeddedCassandraServerHelper.cleanEmbeddedCassandra();
+	}
+}
@@ -0,0 +1,116 @@
+package org.hucompute.services.uima.database.cassandra;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.uima.fit.factory.CollectionReaderFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.tudarmstadt.ukp.dkpro.core.api.metadata.type.DocumentMetaData;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Lemma;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+
+/**
+ * Writes documents with the {@link CassandraWriter} into an embedded Cassandra and reads
+ * them back with the {@link CassandraCollectionReader}, in both layouts.
+ */
+public class CassandraCollectionReaderTest {
+
+	private static final int DOCUMENTS = 5;
+
+	@BeforeClass
+	public static void startCassandra() throws Exception {
+		EmbeddedCassandraServerHelper.startEmbeddedCassandra();
+	}
+
+	@AfterClass
+	public static void stopCassandra() {
+		EmbeddedCassandraServerHelper.cleanEmbeddedCassandra();
+	}
+
+	// the annotations as text, for a readable failure
+	private static List<String> describe(JCas jCas) {
+		List<String> annotations = new ArrayList<>();
+		for (Token token : JCasUtil.select(jCas, Token.class)) {
+			annotations.add(describe(token, null));
+		}
+		for (Lemma lemma : JCasUtil.select(jCas, Lemma.class)) {
+			annotations.add(describe(lemma, lemma.getValue()));
+		}
+		for (Sentence sentence : JCasUtil.select(jCas, Sentence.class)) {
+			annotations.add(describe(sentence, null));
+		}
+		return annotations;
+	}
+
+	private static String describe(Annotation annotation, String value) {
+		return annotation.getType().getShortName() + " " + annotation.getBegin() + " " + annotation.getEnd() + " " + value;
+	}
+
+	private static void roundTrip(String keyspace, String layout) throws Exception {
+		Map<String, List<String>> written = new HashMap<>();
+		CassandraWriter writer = CassandraWriterBenchmark.createWriter(
+				CassandraWriter.PARAM_KEYSPACE, keyspace,
+				CassandraWriter.PARAM_LAYOUT, layout,
+				CassandraWriter.PARAM_BATCH_SIZE, 10);
+		Random random = new Random(5);
+		for (int i = 0; i < DOCUMENTS; i++) {
+			JCas jCas = CassandraWriterBenchmark.createDocument(random, "document" + i);
+			written.put("document" + i, describe(jCas));
+			writer.process(jCas);
+		}
+		writer.collectionProcessComplete();
+		writer.destroy();
+
+		// fewer prefetched documents and rows per page than documents
+		CassandraCollectionReader reader = (CassandraCollectionReader) CollectionReaderFactory.createReader(CassandraCollectionReader.class,
+				CassandraCollectionReader.PARAM_CONTACT_POINTS, new String[] { EmbeddedCassandraServerHelper.getHost() },
+				CassandraCollectionReader.PARAM_PORT, EmbeddedCassandraServerHelper.getNativeTransportPort(),
+				CassandraCollectionReader.PARAM_KEYSPACE, keyspace,
+				CassandraCollectionReader.PARAM_LAYOUT, layout,
+				CassandraCollectionReader.PARAM_PREFETCH, 2,
+				CassandraCollectionReader.PARAM_FETCH_SIZE, 2);
+		Map<String, List<String>> read = new HashMap<>();
+		JCas jCas = JCasFactory.createJCas();
+		try {
+			while (reader.hasNext()) {
+				jCas.reset();
+				reader.getNext(jCas.getCas());
+				DocumentMetaData meta = DocumentMetaData.get(jCas);
+				assertEquals(meta.getDocumentId(), meta.getDocumentTitle());
+				read.put(meta.getDocumentId(), describe(jCas));
+			}
+		} finally {
+			reader.close();
+			reader.destroy();
+		}
+
+		assertEquals(written.keySet(), read.keySet());
+		for (Map.Entry<String, List<String>> document : written.entrySet()) {
+			assertEquals(document.getKey(), document.getValue(), read.get(document.getKey()));
+		}
+	}
+
+	@Test
+	public void readsTheDocumentLayout() throws Exception {
+		roundTrip("document_test", CassandraWriter.LAYOUT_DOCUMENT);
+	}
+
+	@Test
+	public void readsTheTablesLayout() throws Exception {
+		roundTrip("tables_test", CassandraWriter.LAYOUT_TABLES);
+	}
+}
@@ -0,0 +1,120 @@
+package org.hucompute.services.uima.database.cassandra;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.factory.UimaContextFactory;
+import org.apache.uima.jcas.JCas;
+import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
+
+import com.codahale.metrics.Snapshot;
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Session;
+
+import de.tudarmstadt.ukp.dkpro.core.api.metadata.type.DocumentMetaData;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Lemma;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+
+/**
+ * Measures the rows per second and the request latency of the driver of the CassandraWriter
+ * against an embedded Cassandra, writing one row at a time and asynchronously in batches.
+ * The process time of a document is no latency, its writes are only sent.
+ */
+public class CassandraWriterBenchmark {
+
+	private static final int DOCUMENTS = Integer.getInteger("textimager.cassandra.benchmarkDocuments", 500);
+	static final int TOKENS = 300;
+
+	private static final String[] WORDS = { "Die", "Buche", "wächst", "im", "Wald", "und", "am", "Hang", "." };
+
+	// tokens with lemmas and sentences, the rows of the document
+	static JCas createDocument(Random random, String id) throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < TOKENS; i++) {
+			text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+		}
+		JCas jCas = JCasFactory.createText(text.toString(), "de");
+		DocumentMetaData meta = DocumentMetaData.create(jCas);
+		meta.setDocumentId(id);
+		meta.setDocumentTitle(id);
+		int sentenceStart = 0;
+		int begin = 0;
+		for (String word : text.toString().split(" ")) {
+			jCas.addFsToIndexes(new Token(jCas, begin, begin + word.length()));
+			Lemma lemma = new Lemma(jCas, begin, begin + word.length());
+			lemma.setValue(word.toLowerCase());
+			jCas.addFsToIndexes(lemma);
+			begin += word.length() + 1;
+			if (word.equals(".")) {
+				jCas.addFsToIndexes(new Sentence(jCas, sentenceStart, begin - 1));
+				sentenceStart = begin;
+			}
+		}
+		return jCas;
+	}
+
+	// a writer of its own, for the metrics of its driver
+	static CassandraWriter createWriter(Object... parameters) throws Exception {
+		List<Object> allParameters = new ArrayList<>(Arrays.asList(
+				CassandraWriter.PARAM_CONTACT_POINTS, new String[] { EmbeddedCassandraServerHelper.getHost() },
+				CassandraWriter.PARAM_PORT, EmbeddedCassandraServerHelper.getNativeTransportPort()));
+		allParameters.addAll(Arrays.asList(parameters));
+		CassandraWriter writer = new CassandraWriter();
+		writer.initialize(UimaContextFactory.createUimaContext(allParameters.toArray()));
+		return writer;
+	}
+
+	private static void run(JCas[] documents, String keyspace, int maxInFlight, int batchSize) throws Exception {
+		CassandraWriter writer = createWriter(
+				CassandraWriter.PARAM_KEYSPACE, keyspace,
+				CassandraWriter.PARAM_MAX_IN_FLIGHT, maxInFlight,
+				CassandraWriter.PARAM_BATCH_SIZE, batchSize);
+		long rows = 0;
+		long start = System.nanoTime();
+		for (JCas document : documents) {
+			writer.process(document);
+			rows += document.getAnnotationIndex().size();
+		}
+		writer.collectionProcessComplete();
+		long nanos = System.nanoTime() - start;
+		Snapshot latencies = writer.getRequestLatencies();
+		writer.destroy();
+
+		System.out.println(String.format("%d in flight, batches of %d: %.0f rows/sec, request latency p50 %.2f ms, p99 %.2f ms",
+				maxInFlight, batchSize, rows / (nanos / 1e9),
+				latencies.getMedian() / 1e6, latencies.get99thPercentile() / 1e6));
+	}
+
+	public static void main(String[] args) throws Exception {
+		EmbeddedCassandraServerHelper.startEmbeddedCassandra();
+		Random random = new Random(23);
+		JCas[] documents = new JCas[DOCUMENTS];
+		for (int i = 0; i < DOCUMENTS; i++) {
+			documents[i] = createDocument(random, "document" + i);
+		}
+		System.out.println(String.format("%d documents of %d tokens", DOCUMENTS, TOKENS));
+
+		// warm up the server and the JIT
+		run(Arrays.copyOf(documents, DOCUMENTS / 10), "warmup", 256, 100);
+		run(documents, "single", 1, 1);
+		run(documents, "async", 256, 100);
+
+		try (Cluster cluster = Cluster.builder()
+				.addContactPoint(EmbeddedCassandraServerHelper.getHost())
+				.withPort(EmbeddedCassandraServerHelper.getNativeTransportPort())
+				.build();
+				Session session = cluster.connect()) {
+			for (String keyspace : new String[] { "single", "async" }) {
+				long tokens = session.execute("SELECT count(*) FROM " + keyspace + ".tokens;").one().getLong(0);
+				if (tokens != (long) DOCUMENTS * TOKENS) {
+					throw new IllegalStateException(String.format("%d tokens in %s", tokens, keyspace));
+				}
+			}
+		}
+		EmbeddedCassandraServerHelper.cleanEmbeddedCassandra();
+	}
+}
@@ -0,0 +1,121 @@
+package org.hucompute.services.uima.database.cassandra;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.uima.jcas.JCas;
+import org.cassandraunit.utils.EmbeddedCassandraServerHelper;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.datastax.driver.core.Cluster;
+import com.datastax.driver.core.Row;
+import com.datastax.driver.core.Session;
+
+import de.tudarmstadt.ukp.dkpro.core.api.metadata.type.DocumentMetaData;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Lemma;
+
+/**
+ * Writes documents into an embedded Cassandra and reads the rows back.
+ */
+public class CassandraWriterTest {
+
+	private static Cluster cluster;
+	private static Session session;
+
+	@BeforeClass
+	public static void startCassandra() throws Exception {
+		EmbeddedCassandraServerHelper.startEmbeddedCassandra();
+		cluster = Cluster.builder()
+				.addContactPoint(EmbeddedCassandraServerHelper.getHost())
+				.withPort(EmbeddedCassandraServerHelper.getNativeTransportPort())
+				.build();
+		session = cluster.connect();
+	}
+
+	@AfterClass
+	public static void stopCassandra() {
+		session.close();
+		cluster.close();
+		EmbeddedCassandraServerHelper.cleanEmbeddedCassandra();
+	}
+
+	private static void write(String keyspace, JCas... documents) throws Exception {
+		write(keyspace, 256, documents);
+	}
+
+	private static CassandraWriter write(String keyspace, int maxInFlight, JCas... documents) throws Exception {
+		CassandraWriter writer = CassandraWriterBenchmark.createWriter(
+				CassandraWriter.PARAM_KEYSPACE, keyspace,
+				CassandraWriter.PARAM_MAX_IN_FLIGHT, maxInFlight,
+				CassandraWriter.PARAM_BATCH_SIZE, 10);
+		for (JCas document : documents) {
+			writer.process(document);
+		}
+		writer.collectionProcessComplete();
+		writer.destroy();
+		return writer;
+	}
+
+	private static long count(String keyspace, String table, String id) {
+		return session.execute("SELECT count(*) FROM " + keyspace + "." + table + " WHERE xmi = ?;", id).one().getLong(0);
+	}
+
+	@Test
+	public void createsTheSchema() throws Exception {
+		write("schema_test", CassandraWriterBenchmark.createDocument(new Random(1), "first"));
+		// the keyspace and tables exist now
+		write("schema_test", CassandraWriterBenchmark.createDocument(new Random(2), "second"));
+
+		Set<String> tables = new HashSet<>();
+		for (Row row : session.execute("SELECT table_name FROM system_schema.tables WHERE keyspace_name = 'schema_test';")) {
+			tables.add(row.getString("table_name"));
+		}
+		assertTrue(tables.toString(), tables.containsAll(Arrays.asList("xmi", "tokens", "lemma", "sentence")));
+		for (String id : new String[] { "first", "second" }) {
+			assertEquals(1, count("schema_test", "xmi", id));
+			assertEquals(CassandraWriterBenchmark.TOKENS, count("schema_test", "tokens", id));
+			assertEquals(CassandraWriterBenchmark.TOKENS, count("schema_test", "lemma", id));
+		}
+	}
+
+	@Test
+	public void bindsValuesWithQuotes() throws Exception {
+		JCas jCas = CassandraWriterBenchmark.createDocument(new Random(3), "quotes");
+		DocumentMetaData.get(jCas).setDocumentTitle("O'Brien's \"Wald\"; DROP TABLE xmi;");
+		Lemma lemma = new Lemma(jCas, 0, 3);
+		lemma.setValue("it's");
+		jCas.addFsToIndexes(lemma);
+		write("quotes_test", jCas);
+
+		assertEquals("O'Brien's \"Wald\"; DROP TABLE xmi;",
+				session.execute("SELECT title FROM quotes_test.xmi WHERE xmi = 'quotes';").one().getString("title"));
+		Set<String> values = new HashSet<>();
+		for (Row row : session.execute("SELECT value FROM quotes_test.lemma WHERE xmi = 'quotes';")) {
+			values.add(row.getString("value"));
+		}
+		assertTrue(values.contains("it's"));
+	}
+
+	@Test
+	public void limitsTheWritesInFlight() throws Exception {
+		Random random = new Random(4);
+		JCas[] documents = new JCas[3];
+		for (int i = 0; i < documents.length; i++) {
+			documents[i] = CassandraWriterBenchmark.createDocument(random, "document" + i);
+		}
+		CassandraWriter writer = write("inflight_test", 1, documents);
+
+		assertEquals(1, writer.getPeakInFlight());
+		for (int i = 0; i < documents.length; i++) {
+			assertEquals(CassandraWriterBenchmark.TOKENS, count("inflight_test", "tokens", "document" + i));
+			assertEquals(CassandraWriterBenchmark.TOKENS, count("inflight_test", "lemma", "document" + i));
+		}
+	}
+}
@@ -0,0 +1,119 @@
+package org.hucompute.services.uima.database.mongo;
+
+import java.net.InetSocketAddress;
+import java.util.Random;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.CollectionReaderFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.json.JsonCasDeserializer;
+import org.json.JSONObject;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.util.JSON;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+
+/**
+ * Reads a collection with the single cursor and JSON strings used before and with
+ * the partitioned reader, against an in-memory Mongo server.
+ */
+public class MongoCollectionReaderBenchmark {
+
+	private static final int DOCUMENTS = Integer.getInteger("textimager.mongo.benchmarkDocuments", 2_000);
+
+	// MongoCollectionReader.getNext before the partitions
+	static long legacyRead(DBCollection coll) throws Exception {
+		long tokens = 0;
+		JCas jCas = JCasFactory.createJCas();
+		try (DBCursor cur = coll.find()) {
+			while (cur.hasNext()) {
+				jCas.reset();
+				DBObject doc = cur.next();
+				String json = JSON.serialize(doc);
+				new JsonCasDeserializer().deserialize(jCas, new JSONObject(json));
+				tokens += JCasUtil.select(jCas, Token.class).size();
+			}
+		}
+		return tokens;
+	}
+
+	private static long read(String host, int partitions, int skip, int limit) throws Exception {
+		CollectionReader reader = CollectionReaderFactory.createReader(MongoCollectionReader.class,
+				MongoCollectionReader.PARAM_DB_HOST, host,
+				MongoCollectionReader.PARAM_DB_USER, "",
+				MongoCollectionReader.PARAM_DB_PW, "",
+				MongoCollectionReader.PARAM_DB_DBNAME, "benchmark",
+				MongoCollectionReader.PARAM_DB_COLLECTIONNAME, "documents",
+				MongoCollectionReader.PARAM_PARTITIONS, partitions,
+				MongoCollectionReader.PARAM_SKIP, skip,
+				MongoCollectionReader.PARAM_LIMIT, limit);
+		long tokens = 0;
+		int documents = 0;
+		JCas jCas = JCasFactory.createJCas();
+		try {
+			while (reader.hasNext()) {
+				jCas.reset();
+				reader.getNext(jCas.getCas());
+				tokens += JCasUtil.select(jCas, Token.class).size();
+				documents++;
+			}
+		} finally {
+			reader.close();
+			reader.destroy();
+		}
+		int expected = Math.max(0, limit > 0 ? Math.min(limit, DOCUMENTS - skip) : DOCUMENTS - skip);
+		if (documents != expected) {
+			throw new IllegalStateException(String.format("Read %d documents instead of %d with %d partitions", documents, expected, partitions));
+		}
+		return tokens;
+	}
+
+	public static void main(String[] args) throws Exception {
+		MongoServer server = new MongoServer(new MemoryBackend());
+		InetSocketAddress address = server.bind();
+		String host = address.getHostString() + ":" + address.getPort();
+		MongoClient client = new MongoClient(host);
+		try {
+			AnalysisEngine writer = AnalysisEngineFactory.createEngine(MongoWriter.class,
+					MongoWriter.PARAM_DB_HOST, host,
+					MongoWriter.PARAM_DB_USER, "",
+					MongoWriter.PARAM_DB_PW, "",
+					MongoWriter.PARAM_DB_DBNAME, "benchmark",
+					MongoWriter.PARAM_DB_COLLECTIONNAME, "documents");
+			Random random = new Random(22);
+			for (int i = 0; i < DOCUMENTS; i++) {
+				writer.process(MongoWriterBenchmark.createDocument(random));
+			}
+			writer.collectionProcessComplete();
+			writer.destroy();
+
+			DBCollection coll = client.getDB("benchmark").getCollection("documents");
+			long start = System.nanoTime();
+			long expected = legacyRead(coll);
+			System.out.println(String.format("%d documents of %d tokens", DOCUMENTS, MongoWriterBenchmark.TOKENS));
+			System.out.println(String.format("single cursor, JSON strings: %.0f documents/sec", DOCUMENTS / ((System.nanoTime() - start) / 1e9)));
+
+			for (int partitions : new int[] { 1, 2, 4, 8 }) {
+				start = System.nanoTime();
+				long tokens = read(host, partitions, 0, 0);
+				if (tokens != expected) {
+					throw new IllegalStateException(String.format("Read %d tokens instead of %d with %d partitions", tokens, expected, partitions));
+				}
+				System.out.println(String.format("%d partitions: %.0f documents/sec", partitions, DOCUMENTS / ((System.nanoTime() - start) / 1e9)));
+			}
+		} finally {
+			client.close();
+			server.shutdownNow();
+		}
+	}
+}
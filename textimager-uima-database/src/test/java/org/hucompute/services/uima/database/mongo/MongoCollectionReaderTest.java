@@ -0,0 +1,134 @@
+package org.hucompute.services.uima.database.mongo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Random;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.CollectionReaderFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.bson.types.ObjectId;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.util.JSON;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+
+public class MongoCollectionReaderTest {
+
+	private static final int DOCUMENTS = 40;
+
+	private MongoServer server;
+	private String host;
+	private MongoClient client;
+
+	@Before
+	public void writeDocuments() throws Exception {
+		server = new MongoServer(new MemoryBackend());
+		InetSocketAddress address = server.bind();
+		host = address.getHostString() + ":" + address.getPort();
+		client = new MongoClient(host);
+
+		AnalysisEngine writer = AnalysisEngineFactory.createEngine(MongoWriter.class,
+				MongoWriter.PARAM_DB_HOST, host,
+				MongoWriter.PARAM_DB_USER, "",
+				MongoWriter.PARAM_DB_PW, "",
+				MongoWriter.PARAM_DB_DBNAME, "test",
+				MongoWriter.PARAM_DB_COLLECTIONNAME, "documents");
+		Random random = new Random(22);
+		for (int i = 0; i < DOCUMENTS; i++) {
+			writer.process(MongoWriterBenchmark.createDocument(random));
+		}
+		writer.collectionProcessComplete();
+		writer.destroy();
+	}
+
+	@After
+	public void stopServer() {
+		client.close();
+		server.shutdownNow();
+	}
+
+	// the number of documents and tokens read
+	private long[] read(int partitions, int skip, int limit) throws Exception {
+		CollectionReader reader = CollectionReaderFactory.createReader(MongoCollectionReader.class,
+				MongoCollectionReader.PARAM_DB_HOST, host,
+				MongoCollectionReader.PARAM_DB_USER, "",
+				MongoCollectionReader.PARAM_DB_PW, "",
+				MongoCollectionReader.PARAM_DB_DBNAME, "test",
+				MongoCollectionReader.PARAM_DB_COLLECTIONNAME, "documents",
+				MongoCollectionReader.PARAM_PARTITIONS, partitions,
+				MongoCollectionReader.PARAM_SKIP, skip,
+				MongoCollectionReader.PARAM_LIMIT, limit);
+		long documents = 0;
+		long tokens = 0;
+		JCas jCas = JCasFactory.createJCas();
+		try {
+			while (reader.hasNext()) {
+				jCas.reset();
+				reader.getNext(jCas.getCas());
+				tokens += JCasUtil.select(jCas, Token.class).size();
+				documents++;
+			}
+		} finally {
+			reader.close();
+			reader.destroy();
+		}
+		return new long[] { documents, tokens };
+	}
+
+	@Test
+	public void partitionsReadLikeOneCursor() throws Exception {
+		long expected = MongoCollectionReaderBenchmark.legacyRead(client.getDB("test").getCollection("documents"));
+		assertEquals(DOCUMENTS * MongoWriterBenchmark.TOKENS, expected);
+		for (int partitions : new int[] { 1, 3, 8 }) {
+			long[] read = read(partitions, 0, 0);
+			assertEquals(DOCUMENTS, read[0]);
+			assertEquals(expected, read[1]);
+		}
+	}
+
+	@Test
+	public void skipAndLimitOverPartitions() throws Exception {
+		assertEquals(25, read(3, 10, 25)[0]);
+		assertEquals(DOCUMENTS - 10, read(3, 10, 0)[0]);
+		assertEquals(5, read(2, DOCUMENTS - 5, 25)[0]);
+	}
+
+	@Test
+	public void morePartitionsThanDocuments() throws Exception {
+		assertEquals(2, read(4, DOCUMENTS - 2, 0)[0]);
+		assertEquals(0, read(2, DOCUMENTS, 0)[0]);
+	}
+
+	@Test
+	public void bsonValuesLikeJsonSerialize() {
+		DBObject document = new BasicDBObject("id", new ObjectId())
+				.append("date", new Date(1_500_000_000_000L))
+				.append("int", 1)
+				.append("long", 1L << 40)
+				.append("double", 0.5)
+				.append("text", "ein \"Text\"")
+				.append("none", null)
+				.append("list", Arrays.asList(new ObjectId(), 2, new BasicDBObject("b", 3)));
+		JSONObject expected = new JSONObject(JSON.serialize(document));
+		Object actual = MongoCollectionReader.toJson(document);
+		assertTrue(expected + " and " + actual, expected.similar(actual));
+	}
+}
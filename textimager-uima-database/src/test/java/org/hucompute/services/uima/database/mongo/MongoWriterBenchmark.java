@@ -0,0 +1,132 @@
+package org.hucompute.services.uima.database.mongo;
+
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.json.JsonCasSerializerModified;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.util.JSON;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+
+/**
+ * Compares the JSON string writer used before with the BSON writer, against an
+ * in-memory Mongo server. Checks that both store the same documents.
+ */
+public class MongoWriterBenchmark {
+
+	private static final int DOCUMENTS = Integer.getInteger("textimager.mongo.benchmarkDocuments", 2_000);
+	static final int TOKENS = 500;
+
+	private static final String[] WORDS = { "Die", "Buche", "wächst", "im", "Wald", "und", "am", "Hang", "." };
+
+	static JCas createDocument(Random random) throws Exception {
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < TOKENS; i++) {
+			text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+		}
+		JCas jCas = JCasFactory.createText(text.toString(), "de");
+		int sentenceStart = 0;
+		int begin = 0;
+		for (String word : text.toString().split(" ")) {
+			jCas.addFsToIndexes(new Token(jCas, begin, begin + word.length()));
+			begin += word.length() + 1;
+			if (word.equals(".")) {
+				jCas.addFsToIndexes(new Sentence(jCas, sentenceStart, begin - 1));
+				sentenceStart = begin;
+			}
+		}
+		return jCas;
+	}
+
+	// MongoWriter.process before the BSON generator
+	static void legacyInsert(JsonCasSerializerModified xcs, DBCollection coll, JCas jCas) throws Exception {
+		StringWriter sw = new StringWriter();
+		xcs.serialize(jCas.getCas(), sw);
+		DBObject doc = (DBObject) JSON.parse(
+				sw.toString()
+				.replaceAll("\"begin\"", "\"b\"")
+				.replaceAll("\"end\"", "\"e\"")
+				.replaceAll("\"xmi:id\"", "\"xid\"")
+				.replaceAll("\"sofa\"", "\"s\"")
+				);
+		coll.insert(doc);
+	}
+
+	static Set<DBObject> readWithoutIds(DBCollection collection) {
+		Set<DBObject> documents = new HashSet<>();
+		for (DBObject document : collection.find()) {
+			document.removeField("_id");
+			documents.add(document);
+		}
+		return documents;
+	}
+
+	public static void main(String[] args) throws Exception {
+		MongoServer server = new MongoServer(new MemoryBackend());
+		InetSocketAddress address = server.bind();
+		String host = address.getHostString() + ":" + address.getPort();
+		MongoClient client = new MongoClient(host);
+		try {
+			Random random = new Random(21);
+			JCas[] documents = new JCas[DOCUMENTS];
+			for (int i = 0; i < DOCUMENTS; i++) {
+				documents[i] = createDocument(random);
+			}
+
+			JsonCasSerializerModified xcs = new JsonCasSerializerModified();
+			xcs.setOmit0Values(true);
+			xcs.setJsonContext(JsonCasSerializerModified.JsonContextFormat.omitContext);
+			DBCollection legacy = client.getDB("benchmark").getCollection("legacy");
+			long start = System.nanoTime();
+			for (JCas jCas : documents) {
+				legacyInsert(xcs, legacy, jCas);
+			}
+			long legacyNanos = System.nanoTime() - start;
+
+			AnalysisEngine writer = AnalysisEngineFactory.createEngine(MongoWriter.class,
+					MongoWriter.PARAM_DB_HOST, host,
+					MongoWriter.PARAM_DB_USER, "",
+					MongoWriter.PARAM_DB_PW, "",
+					MongoWriter.PARAM_DB_DBNAME, "benchmark",
+					MongoWriter.PARAM_DB_COLLECTIONNAME, "bson",
+					MongoWriter.PARAM_BATCH_SIZE, 100);
+			start = System.nanoTime();
+			for (JCas jCas : documents) {
+				writer.process(jCas);
+			}
+			writer.collectionProcessComplete();
+			long bsonNanos = System.nanoTime() - start;
+			writer.destroy();
+
+			DBCollection bson = client.getDB("benchmark").getCollection("bson");
+			if (legacy.count() != DOCUMENTS || bson.count() != DOCUMENTS) {
+				throw new IllegalStateException(legacy.count() + " and " + bson.count() + " documents stored");
+			}
+			// unordered batches keep no order
+			if (!readWithoutIds(legacy).equals(readWithoutIds(bson))) {
+				throw new IllegalStateException("The writers stored different documents");
+			}
+
+			System.out.println(String.format("%d documents of %d tokens", DOCUMENTS, TOKENS));
+			System.out.println(String.format("JSON string, single inserts: %.0f documents/sec", DOCUMENTS / (legacyNanos / 1e9)));
+			System.out.println(String.format("BSON, unordered batches: %.0f documents/sec", DOCUMENTS / (bsonNanos / 1e9)));
+		} finally {
+			client.close();
+			server.shutdownNow();
+		}
+	}
+}
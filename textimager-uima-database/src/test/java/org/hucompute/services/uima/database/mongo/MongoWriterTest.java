@@ -1,18 +1,222 @@
 package org.hucompute.services.uima.database.mongo;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
 import org.apache.uima.UIMAException;
 import org.apache.uima.analysis_engine.AnalysisEngine;
-import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.factory.AnalysisEngineFactory;
 import org.apache.uima.fit.factory.JCasFactory;
 import org.apache.uima.fit.pipeline.SimplePipeline;
 import org.apache.uima.jcas.JCas;
+import org.apache.uima.json.JsonCasSerializerModified;
 import org.apache.uima.resource.ResourceInitializationException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
 
 public class MongoWriterTest {
 
+	private MongoServer server;
+	private String host;
+	private MongoClient client;
+
+	@Before
+	public void startServer() {
+		server = new MongoServer(new MemoryBackend());
+		InetSocketAddress address = server.bind();
+		host = address.getHostString() + ":" + address.getPort();
+		client = new MongoClient(host);
+	}
+
+	@After
+	public void stopServer() {
+		client.close();
+		server.shutdownNow();
+	}
+
+	private AnalysisEngine createWriter(String collection, Object... parameters) throws ResourceInitializationException {
+		List<Object> allParameters = new ArrayList<>();
+		allParameters.add(MongoWriter.PARAM_DB_HOST);
+		allParameters.add(host);
+		allParameters.add(MongoWriter.PARAM_DB_USER);
+		allParameters.add("");
+		allParameters.add(MongoWriter.PARAM_DB_PW);
+		allParameters.add("");
+		allParameters.add(MongoWriter.PARAM_DB_DBNAME);
+		allParameters.add("test");
+		allParameters.add(MongoWriter.PARAM_DB_COLLECTIONNAME);
+		allParameters.add(collection);
+		for (Object parameter : parameters) {
+			allParameters.add(parameter);
+		}
+		return AnalysisEngineFactory.createEngine(MongoWriter.class, allParameters.toArray());
+	}
+
+	private DBCollection getCollection(String name) {
+		return client.getDB("test").getCollection(name);
+	}
+
+	// the keys of all objects in the document, and the types of the values by path
+	private static void collect(Object value, String path, Set<String> keys, List<String> types) {
+		if (value instanceof DBObject && !(value instanceof List)) {
+			DBObject object = (DBObject) value;
+			for (String key : object.keySet()) {
+				keys.add(key);
+				collect(object.get(key), path + "/" + key, keys, types);
+			}
+		} else if (value instanceof List) {
+			List<?> list = (List<?>) value;
+			for (int i = 0; i < list.size(); i++) {
+				collect(list.get(i), path + "/" + i, keys, types);
+			}
+		} else {
+			types.add(path + " " + (value == null ? null : value.getClass().getSimpleName()));
+		}
+	}
+
+	@Test
+	public void storesTheDocumentsOfTheJsonWriter() throws Exception {
+		JCas jCas = MongoWriterBenchmark.createDocument(new Random(21));
+
+		JsonCasSerializerModified xcs = new JsonCasSerializerModified();
+		xcs.setOmit0Values(true);
+		xcs.setJsonContext(JsonCasSerializerModified.JsonContextFormat.omitContext);
+		MongoWriterBenchmark.legacyInsert(xcs, getCollection("legacy"), jCas);
+
+		AnalysisEngine writer = createWriter("bson");
+		writer.process(jCas);
+		writer.collectionProcessComplete();
+		writer.destroy();
+
+		Set<DBObject> legacy = MongoWriterBenchmark.readWithoutIds(getCollection("legacy"));
+		Set<DBObject> bson = MongoWriterBenchmark.readWithoutIds(getCollection("bson"));
+		assertEquals(1, bson.size());
+		assertEquals(legacy, bson);
+
+		Set<String> legacyKeys = new TreeSet<>();
+		List<String> legacyTypes = new ArrayList<>();
+		collect(legacy.iterator().next(), "", legacyKeys, legacyTypes);
+		Set<String> bsonKeys = new TreeSet<>();
+		List<String> bsonTypes = new ArrayList<>();
+		collect(bson.iterator().next(), "", bsonKeys, bsonTypes);
+
+		// Integer and Long values are not equal, but compare the types explicitly for a readable failure
+		assertEquals(legacyTypes, bsonTypes);
+		assertEquals(legacyKeys, bsonKeys);
+		assertTrue(bsonKeys.containsAll(Arrays.asList("b", "e", "s")));
+		assertFalse(bsonKeys.contains("begin"));
+		assertFalse(bsonKeys.contains("end"));
+		assertFalse(bsonKeys.contains("sofa"));
+		assertFalse(bsonKeys.contains("xmi:id"));
+	}
+
+	@Test
+	public void keysInTheTextAreNotRenamed() throws Exception {
+		String text = "Ein \"begin\" und ein \"end\" im Text .";
+		JCas jCas = JCasFactory.createText(text, "de");
+
+		AnalysisEngine writer = createWriter("bson");
+		writer.process(jCas);
+		writer.collectionProcessComplete();
+		writer.destroy();
+
+		List<String> strings = new ArrayList<>();
+		findStrings(getCollection("bson").findOne(), strings);
+		assertTrue(strings.toString(), strings.contains(text));
+	}
+
+	// the string values of the document, BasicDBObject is a Map and BasicDBList a List
+	private static void findStrings(Object value, List<String> strings) {
+		if (value instanceof Map) {
+			for (Object child : ((Map<?, ?>) value).values()) {
+				findStrings(child, strings);
+			}
+		} else if (value instanceof List) {
+			for (Object child : (List<?>) value) {
+				findStrings(child, strings);
+			}
+		} else if (value instanceof String) {
+			strings.add((String) value);
+		}
+	}
+
+	@Test
+	public void insertsCompleteBatches() throws Exception {
+		AnalysisEngine writer = createWriter("batches",
+				MongoWriter.PARAM_BATCH_SIZE, 3,
+				MongoWriter.PARAM_FLUSH_INTERVAL, 0);
+		DBCollection collection = getCollection("batches");
+		Random random = new Random(1);
+
+		writer.process(MongoWriterBenchmark.createDocument(random));
+		writer.process(MongoWriterBenchmark.createDocument(random));
+		assertEquals(0, collection.count());
+		writer.process(MongoWriterBenchmark.createDocument(random));
+		assertEquals(3, collection.count());
+		writer.process(MongoWriterBenchmark.createDocument(random));
+		assertEquals(3, collection.count());
+
+		// the rest with the end of the collection
+		writer.collectionProcessComplete();
+		assertEquals(4, collection.count());
+		writer.destroy();
+		assertEquals(4, collection.count());
+	}
+
+	@Test
+	public void insertsIncompleteBatchesAfterTheInterval() throws Exception {
+		AnalysisEngine writer = createWriter("interval",
+				MongoWriter.PARAM_BATCH_SIZE, 100,
+				MongoWriter.PARAM_FLUSH_INTERVAL, 500);
+		DBCollection collection = getCollection("interval");
+
+		long start = System.currentTimeMillis();
+		writer.process(MongoWriterBenchmark.createDocument(new Random(1)));
+		if (System.currentTimeMillis() - start < 500) {
+			assertEquals(0, collection.count());
+		}
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (collection.count() == 0 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(50);
+		}
+		assertEquals(1, collection.count());
+		// inserted without the end of the collection
+		assertTrue(System.currentTimeMillis() - start >= 500);
+		writer.destroy();
+		assertEquals(1, collection.count());
+	}
+
+	@Test
+	public void destroyInsertsTheRest() throws Exception {
+		AnalysisEngine writer = createWriter("destroy",
+				MongoWriter.PARAM_BATCH_SIZE, 100,
+				MongoWriter.PARAM_FLUSH_INTERVAL, 0);
+		writer.process(MongoWriterBenchmark.createDocument(new Random(1)));
+		assertEquals(0, getCollection("destroy").count());
+		writer.destroy();
+		assertEquals(1, getCollection("destroy").count());
+	}
+
 	public static void main(String[] args) throws UIMAException {
-		AnalysisEngine writer = AnalysisEngineFactory.createEngine(MongoWriter.class, 
+		AnalysisEngine writer = AnalysisEngineFactory.createEngine(MongoWriter.class,
 				MongoWriter.PARAM_DB_HOST,"localhost",
 				MongoWriter.PARAM_DB_USER,"root",
 				MongoWriter.PARAM_DB_PW,"rootpassword",
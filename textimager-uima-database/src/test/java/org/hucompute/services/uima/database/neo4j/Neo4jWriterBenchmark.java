@@ -0,0 +1,103 @@
+package org.hucompute.services.uima.database.neo4j;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.collection.CollectionReader;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.CollectionReaderFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.hucompute.services.uima.database.neo4j.impl.MDB_Neo4J_Impl;
+import org.hucompute.services.uima.database.xmi.XmiReaderModified;
+import org.neo4j.graphdb.Transaction;
+
+/**
+ * Writes the biologie_sample documents into a new embedded Neo4j database with one and
+ * with several documents per transaction, and into CSV files for neo4j-admin import.
+ * The sample directory can be given as first argument.
+ */
+public class Neo4jWriterBenchmark {
+
+	private static final int DOCUMENTS_PER_TRANSACTION = Integer.getInteger("textimager.neo4j.benchmarkDocumentsPerTransaction", 50);
+
+	private static List<JCas> readDocuments(String location) throws Exception {
+		CollectionReader reader = CollectionReaderFactory.createReader(XmiReaderModified.class,
+				XmiReaderModified.PARAM_PATTERNS, "[+]**/*.xmi.gz",
+				XmiReaderModified.PARAM_SOURCE_LOCATION, location,
+				XmiReaderModified.PARAM_LANGUAGE, "de");
+		List<JCas> documents = new ArrayList<>();
+		while (reader.hasNext()) {
+			JCas jCas = JCasFactory.createJCas();
+			reader.getNext(jCas.getCas());
+			documents.add(jCas);
+		}
+		reader.close();
+		return documents;
+	}
+
+	// a conf of its own database
+	static String createConf(Path directory) throws IOException {
+		Path conf = directory.resolve("neo4j.conf");
+		Files.write(conf, Collections.singletonList("db_dir = " + directory.resolve("graph.db")), StandardCharsets.UTF_8);
+		return conf.toString();
+	}
+
+	private static double run(List<JCas> documents, Object... parameters) throws Exception {
+		AnalysisEngine writer = AnalysisEngineFactory.createEngine(Neo4jWriter.class, parameters);
+		long start = System.nanoTime();
+		for (JCas jCas : documents) {
+			writer.process(jCas);
+		}
+		writer.collectionProcessComplete();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		writer.destroy();
+		return documents.size() / seconds;
+	}
+
+	private static long countNodes() {
+		try (Transaction tx = MDB_Neo4J_Impl.gdbs.beginTx()) {
+			return MDB_Neo4J_Impl.gdbs.getAllNodes().stream().count();
+		}
+	}
+
+	static void shutdown() {
+		MDB_Neo4J_Impl.gdbs.shutdown();
+		MDB_Neo4J_Impl.gdbs = null;
+	}
+
+	public static void main(String[] args) throws Exception {
+		List<JCas> documents = readDocuments(args.length > 0 ? args[0] : "testdata/biologie_sample");
+		System.out.println(String.format("%d documents", documents.size()));
+
+		long expected = -1;
+		for (int documentsPerTransaction : new int[] { 1, DOCUMENTS_PER_TRANSACTION }) {
+			Path directory = Files.createTempDirectory("neo4j-benchmark");
+			double rate = run(documents,
+					Neo4jWriter.PARAM_CONF_LOCATION, createConf(directory),
+					Neo4jWriter.PARAM_DOCUMENTS_PER_TRANSACTION, documentsPerTransaction);
+			long nodes = countNodes();
+			shutdown();
+			System.out.println(String.format("%d documents per transaction: %.1f documents/sec, %d nodes", documentsPerTransaction, rate, nodes));
+			if (expected >= 0 && nodes != expected) {
+				throw new IllegalStateException(String.format("%d nodes instead of %d", nodes, expected));
+			}
+			expected = nodes;
+		}
+
+		File csv = Files.createTempDirectory("neo4j-benchmark-csv").toFile();
+		double rate = run(documents, Neo4jWriter.PARAM_CSV_LOCATION, csv);
+		long size = 0;
+		for (File file : csv.listFiles()) {
+			size += file.length();
+		}
+		System.out.println(String.format("CSV files: %.1f documents/sec, %d bytes in %s", rate, size, csv));
+	}
+}
@@ -0,0 +1,307 @@
+package org.hucompute.services.uima.database.neo4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.hucompute.services.uima.database.neo4j.data.Const.RelationType;
+import org.hucompute.services.uima.database.neo4j.impl.Document_Neo4J_Impl;
+import org.hucompute.services.uima.database.neo4j.impl.Lemma_Neo4J_Impl;
+import org.hucompute.services.uima.database.neo4j.impl.MDB_Neo4J_Impl;
+import org.hucompute.services.uima.database.neo4j.impl.Paragraph_Neo4J_Impl;
+import org.hucompute.services.uima.database.neo4j.impl.Pos_Neo4J_Impl;
+import org.hucompute.services.uima.database.neo4j.impl.Sentence_Neo4J_Impl;
+import org.hucompute.services.uima.database.neo4j.impl.Token_Neo4J_Impl;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Relationship;
+import org.neo4j.graphdb.Transaction;
+
+import de.tudarmstadt.ukp.dkpro.core.api.lexmorph.type.pos.POS;
+import de.tudarmstadt.ukp.dkpro.core.api.metadata.type.DocumentMetaData;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Lemma;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Paragraph;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+
+/**
+ * Compares the graph of the {@link Neo4jWriter} with the one of the *_Neo4J_Impl classes it
+ * replaced, and checks that failing documents leave nothing behind.
+ */
+public class Neo4jWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@After
+	public void shutdown() {
+		if (MDB_Neo4J_Impl.gdbs != null) {
+			Neo4jWriterBenchmark.shutdown();
+		}
+	}
+
+	// a paragraph per sentence, with POS and lemma for each token
+	private static JCas createDocument(String id, String text) throws Exception {
+		JCas jCas = JCasFactory.createText(text, "de");
+		DocumentMetaData.create(jCas).setDocumentId(id);
+		int sentenceStart = 0;
+		int begin = 0;
+		for (String word : text.split(" ")) {
+			Token token = new Token(jCas, begin, begin + word.length());
+			POS pos = new POS(jCas, token.getBegin(), token.getEnd());
+			pos.setPosValue(word.equals(".") ? "$." : "NN");
+			jCas.addFsToIndexes(pos);
+			Lemma lemma = new Lemma(jCas, token.getBegin(), token.getEnd());
+			lemma.setValue(word.toLowerCase());
+			jCas.addFsToIndexes(lemma);
+			token.setPos(pos);
+			token.setLemma(lemma);
+			jCas.addFsToIndexes(token);
+			begin += word.length() + 1;
+			if (word.equals(".")) {
+				jCas.addFsToIndexes(new Paragraph(jCas, sentenceStart, begin - 1));
+				jCas.addFsToIndexes(new Sentence(jCas, sentenceStart, begin - 1));
+				sentenceStart = begin;
+			}
+		}
+		return jCas;
+	}
+
+	private static List<JCas> createDocuments() throws Exception {
+		List<JCas> documents = new ArrayList<>();
+		documents.add(createDocument("first", "Die Buche wächst im Wald . Der Wald wächst ."));
+		documents.add(createDocument("second", "Die Eiche wächst am Hang ."));
+		documents.add(createDocument("third", "Der Hang und der Wald ."));
+		return documents;
+	}
+
+	// fails after its paragraph and sentence are written, the token is behind the text
+	private static JCas createBrokenDocument() throws Exception {
+		String text = "Kaputt .";
+		JCas jCas = JCasFactory.createText(text, "de");
+		DocumentMetaData.create(jCas).setDocumentId("broken");
+		jCas.addFsToIndexes(new Paragraph(jCas, 0, text.length() + 10));
+		jCas.addFsToIndexes(new Sentence(jCas, 0, text.length() + 10));
+		jCas.addFsToIndexes(new Token(jCas, text.length() + 2, text.length() + 5));
+		return jCas;
+	}
+
+	// Old way: the process method of the writer before the node caches
+	private static void legacyWrite(MDB_Neo4J_Impl pMDB, JCas jCas) {
+		try (Transaction tx = MDB_Neo4J_Impl.gdbs.beginTx()) {
+			final String docId = DocumentMetaData.get(jCas).getDocumentId();
+			Document_Neo4J_Impl neo4jDocument = Document_Neo4J_Impl.getOrCreate(pMDB, docId);
+			neo4jDocument.setProperty("id", docId);
+			neo4jDocument.setProperty("text", jCas.getDocumentText());
+			neo4jDocument.setProperty("language", jCas.getDocumentLanguage());
+
+			Paragraph_Neo4J_Impl previousP = null;
+			for (Paragraph paragraph : JCasUtil.select(jCas, Paragraph.class)) {
+				Paragraph_Neo4J_Impl neo4jPara = Paragraph_Neo4J_Impl.create(pMDB);
+				neo4jPara.setProperty("begin", paragraph.getBegin());
+				neo4jPara.setProperty("end", paragraph.getEnd());
+				neo4jPara.setProperty("id", docId);
+				neo4jDocument.addAnnotation(neo4jPara, RelationType.paragraph);
+				if (previousP != null)
+					neo4jPara.createRelationshipTo(previousP.getNode(), RelationType.successorP);
+				previousP = neo4jPara;
+
+				Sentence_Neo4J_Impl previousS = null;
+				for (Sentence sentence : JCasUtil.selectCovered(jCas, Sentence.class, paragraph)) {
+					Sentence_Neo4J_Impl neo4jSentence = Sentence_Neo4J_Impl.create(pMDB);
+					neo4jSentence.setProperty("begin", sentence.getBegin());
+					neo4jSentence.setProperty("end", sentence.getEnd());
+					neo4jSentence.setProperty("id", docId);
+					neo4jDocument.addAnnotation(neo4jSentence, RelationType.sentence);
+					if (previousS != null)
+						neo4jSentence.createRelationshipTo(previousS.getNode(), RelationType.successorS);
+					previousS = neo4jSentence;
+					neo4jSentence.createRelationshipTo(neo4jPara.getNode(), RelationType.inParagraphS);
+
+					Token_Neo4J_Impl previousT = null;
+					for (Token token : JCasUtil.selectCovered(jCas, Token.class, sentence)) {
+						Token_Neo4J_Impl neo4jToken = Token_Neo4J_Impl.create(pMDB);
+						neo4jToken.setProperty("begin", token.getBegin());
+						neo4jToken.setProperty("end", token.getEnd());
+						neo4jToken.setProperty("id", docId);
+						neo4jToken.setProperty("value", token.getCoveredText());
+						neo4jToken.setPos(Pos_Neo4J_Impl.getOrCreate(pMDB, token.getPos().getPosValue()));
+						neo4jToken.setLemma(Lemma_Neo4J_Impl.getOrCreate(pMDB, token.getLemma().getValue()));
+						neo4jDocument.addAnnotation(neo4jToken, RelationType.token);
+						if (previousT != null)
+							neo4jToken.createRelationshipTo(previousT.getNode(), RelationType.successorT);
+						previousT = neo4jToken;
+						neo4jToken.createRelationshipTo(neo4jSentence.getNode(), RelationType.inSentence);
+						neo4jToken.createRelationshipTo(neo4jPara.getNode(), RelationType.inParagraphT);
+					}
+				}
+			}
+
+			Set<String> LL = new HashSet<>();
+			JCasUtil.select(jCas, Lemma.class).forEach(e -> LL.add(e.getValue()));
+			for (String lemma : LL) {
+				Lemma_Neo4J_Impl.getOrCreate(pMDB, lemma).createRelationshipTo(neo4jDocument.getNode(), RelationType.inDocument);
+			}
+			tx.success();
+		}
+	}
+
+	private static String describe(Node node) {
+		List<String> labels = new ArrayList<>();
+		for (Label label : node.getLabels()) {
+			labels.add(label.name());
+		}
+		Collections.sort(labels);
+		return labels + " " + new TreeMap<>(node.getAllProperties());
+	}
+
+	// the nodes and relationships without their ids, sorted
+	private static List<String> graph() {
+		List<String> graph = new ArrayList<>();
+		try (Transaction tx = MDB_Neo4J_Impl.gdbs.beginTx()) {
+			for (Node node : MDB_Neo4J_Impl.gdbs.getAllNodes()) {
+				graph.add(describe(node));
+			}
+			for (Relationship relationship : MDB_Neo4J_Impl.gdbs.getAllRelationships()) {
+				graph.add(describe(relationship.getStartNode()) + " -" + relationship.getType().name() + "-> " + describe(relationship.getEndNode()));
+			}
+		}
+		Collections.sort(graph);
+		return graph;
+	}
+
+	private static long count(List<String> graph, RelationType type) {
+		return graph.stream().filter(line -> line.contains(" -" + type.name() + "-> ")).count();
+	}
+
+	private List<String> legacyGraph(List<JCas> documents) throws IOException {
+		MDB_Neo4J_Impl pMDB = new MDB_Neo4J_Impl(Neo4jWriterBenchmark.createConf(folder.newFolder().toPath()));
+		pMDB.createIndex(Lemma_Neo4J_Impl.getLabel(), "value");
+		pMDB.createIndex(Pos_Neo4J_Impl.getLabel(), "value");
+		for (JCas jCas : documents) {
+			legacyWrite(pMDB, jCas);
+		}
+		List<String> graph = graph();
+		Neo4jWriterBenchmark.shutdown();
+		return graph;
+	}
+
+	private AnalysisEngine createWriter(int documentsPerTransaction) throws Exception {
+		return AnalysisEngineFactory.createEngine(Neo4jWriter.class,
+				Neo4jWriter.PARAM_CONF_LOCATION, Neo4jWriterBenchmark.createConf(folder.newFolder().toPath()),
+				Neo4jWriter.PARAM_DOCUMENTS_PER_TRANSACTION, documentsPerTransaction);
+	}
+
+	private static void processBroken(AnalysisEngine writer) throws Exception {
+		try {
+			writer.process(createBrokenDocument());
+			fail("expected AnalysisEngineProcessException");
+		} catch (AnalysisEngineProcessException e) {
+			// the broken document only
+		}
+	}
+
+	@Test
+	public void writesTheGraphOfTheNeo4jImpl() throws Exception {
+		List<JCas> documents = createDocuments();
+		List<String> legacy = legacyGraph(documents);
+		// the tokens of the three documents
+		assertEquals(22, count(legacy, RelationType.token));
+
+		for (int documentsPerTransaction : new int[] { 1, 2 }) {
+			AnalysisEngine writer = createWriter(documentsPerTransaction);
+			for (JCas jCas : documents) {
+				writer.process(jCas);
+			}
+			writer.collectionProcessComplete();
+			writer.destroy();
+			List<String> graph = graph();
+			Neo4jWriterBenchmark.shutdown();
+
+			for (RelationType type : RelationType.values()) {
+				assertEquals(documentsPerTransaction + " " + type, count(legacy, type), count(graph, type));
+			}
+			assertEquals(legacy, graph);
+		}
+	}
+
+	@Test
+	public void failingDocumentKeepsTheOthersOfItsTransaction() throws Exception {
+		List<JCas> documents = createDocuments();
+		List<String> legacy = legacyGraph(documents);
+
+		AnalysisEngine writer = createWriter(3);
+		writer.process(documents.get(0));
+		processBroken(writer);
+		// written again on its own
+		try (Transaction tx = MDB_Neo4J_Impl.gdbs.beginTx()) {
+			assertNotNull(MDB_Neo4J_Impl.gdbs.findNode(Document_Neo4J_Impl.getLabel(), "id", "first"));
+		}
+		writer.process(documents.get(1));
+		writer.process(documents.get(2));
+		writer.collectionProcessComplete();
+		writer.destroy();
+
+		assertEquals(legacy, graph());
+	}
+
+	private static Map<String, String> readCsv(File directory) throws IOException {
+		Map<String, String> files = new TreeMap<>();
+		for (File file : directory.listFiles()) {
+			files.put(file.getName(), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+		}
+		return files;
+	}
+
+	@Test
+	public void csvFilesWithoutTheFailingDocument() throws Exception {
+		List<JCas> documents = createDocuments();
+		File expected = folder.newFolder();
+		AnalysisEngine writer = AnalysisEngineFactory.createEngine(Neo4jWriter.class, Neo4jWriter.PARAM_CSV_LOCATION, expected);
+		for (JCas jCas : documents) {
+			writer.process(jCas);
+		}
+		writer.collectionProcessComplete();
+		writer.destroy();
+
+		for (int documentsPerTransaction : new int[] { 1, 2 }) {
+			File csv = folder.newFolder();
+			writer = AnalysisEngineFactory.createEngine(Neo4jWriter.class,
+					Neo4jWriter.PARAM_CSV_LOCATION, csv,
+					Neo4jWriter.PARAM_DOCUMENTS_PER_TRANSACTION, documentsPerTransaction);
+			writer.process(documents.get(0));
+			processBroken(writer);
+			writer.process(documents.get(1));
+			writer.process(documents.get(2));
+			writer.collectionProcessComplete();
+			writer.destroy();
+
+			Map<String, String> files = readCsv(csv);
+			assertFalse(files.toString().contains("broken"));
+			assertEquals(readCsv(expected), files);
+		}
+	}
+}
@@ -33,6 +33,11 @@ public class ContainerParametersBuilder {
      */
     private final String _image_name;
 
+    /**
+     * Saves the labels of the container to be created
+     */
+    private final JsonObjectBuilder _labels;
+
     /**
      * The network name, "bridge" by default
      */
@@ -49,6 +54,7 @@ public class ContainerParametersBuilder {
         _ports = Json.createObjectBuilder();
         _hostPorts = Json.createObjectBuilder();
         _deviceRequests = Json.createArrayBuilder();
+        _labels = Json.createObjectBuilder();
         _network_mode = "bridge";
     }
 
@@ -91,6 +97,18 @@ public class ContainerParametersBuilder {
         return this;
     }
 
+    /**
+     * Sets a label on the container, labels can be used to find the container again
+     *
+     * @param key   The label key
+     * @param value The label value
+     * @return Returns a reference to this container to chain calls
+     */
+    public ContainerParametersBuilder set_label(String key, String value) {
+        _labels.add(key, value);
+        return this;
+    }
+
     /**
      * Sets the network mode
      *
@@ -111,6 +129,7 @@ public class ContainerParametersBuilder {
         JsonObjectBuilder _params = Json.createObjectBuilder().add("Image", _image_name);
         _params.add("ExposedPorts", _ports.build())
                 .add("Env", _env.build())
+                .add("Labels", _labels.build())
                 .add("HostConfig", Json.createObjectBuilder()
                         .add("DeviceRequests", _deviceRequests.build())
                         .add("AutoRemove", true)
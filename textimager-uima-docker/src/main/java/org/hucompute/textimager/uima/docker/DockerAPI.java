@@ -1,13 +1,22 @@
 package org.hucompute.textimager.uima.docker;
 
 import com.amihaiemil.docker.*;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
 
 import javax.json.JsonObject;
 import javax.json.JsonString;
 import java.io.*;
+import java.net.HttpURLConnection;
 import java.net.URI;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -21,25 +30,65 @@ public class DockerAPI {
      */
     final Docker _docker_connection;
 
+    /**
+     * The docker socket file, null in tcp mode
+     */
+    private final File _socket_file;
+
+    /**
+     * The http base uri of the docker api, null in socket mode
+     */
+    private final URI _tcp_uri;
+
+    /**
+     * Images found by check_image_exists, with the time they were found
+     */
+    private static final Map<String, Long> _image_cache = new ConcurrentHashMap<>();
+
+    /**
+     * How long an existing image is cached in ms
+     */
+    private static volatile long _image_cache_ttl = 30000;
+
     /**
      * Initialises the docker connection, at the moment only through socket
      */
     public DockerAPI() {
-        _docker_connection = (Docker) new UnixDocker(new File("/var/run/docker.sock"));
+        this(new File("/var/run/docker.sock"), null);
     }
 
 
     /**
      * Acesses the uri for the docker socket
      *
-     * @param uri the address of the docker socket in tcp mode
+     * @param uri the address of the docker socket in tcp mode, e.g. "tcp://localhost:2375"
      */
     public DockerAPI(String uri) {
-        _docker_connection = (Docker) new TcpDocker(URI.create("tcp://localhost:23750"));
+        this(null, URI.create(uri.replaceFirst("^tcp://", "http://")));
     }
 
     public DockerAPI(File from_file) throws IOException {
-        _docker_connection = (Docker) new UnixDocker(from_file);
+        this(from_file, null);
+    }
+
+    private DockerAPI(File socket_file, URI tcp_uri) {
+        _socket_file = socket_file;
+        _tcp_uri = tcp_uri;
+        if (tcp_uri != null) {
+            _docker_connection = (Docker) new TcpDocker(tcp_uri);
+        } else {
+            _docker_connection = (Docker) new UnixDocker(socket_file);
+        }
+    }
+
+    /**
+     * Sets how long existing images are cached by check_image_exists
+     *
+     * @param ttl The time in ms, 0 disables the cache
+     */
+    public static void set_image_cache_ttl(long ttl) {
+        _image_cache_ttl = ttl;
+        _image_cache.clear();
     }
 
 
@@ -68,6 +117,28 @@ public class DockerAPI {
         return ret;
     }
 
+    /**
+     * Returns all running containers with the given label
+     *
+     * @param key   The label key
+     * @param value The label value
+     * @return The Vector of wrapped containers
+     * @throws IOException Throws an exception if something goes wrong with the socket
+     */
+    public Vector<ContainerWrapper> get_containers_by_label(String key, String value) throws IOException {
+        Vector<ContainerWrapper> ret = new Vector<>();
+        for (Container cont : _docker_connection.containers()) {
+            if (!(cont.get("Labels") instanceof JsonObject)) {
+                continue;
+            }
+            JsonObject labels = cont.getJsonObject("Labels");
+            if (labels.containsKey(key) && value.equals(labels.getString(key))) {
+                ret.add(new ContainerWrapper(cont));
+            }
+        }
+        return ret;
+    }
+
     /**
      * Returns all images wrapped in the utility classes
      *
@@ -83,9 +154,40 @@ public class DockerAPI {
     }
 
     /**
-     * Check if an image is available
+     * Check if an image is available, using a direct lookup of the image
+     * Existing images are cached for a short time, missing images are always checked again
      */
     public boolean check_image_exists(String imageName) {
+        String cache_key = (_tcp_uri != null ? _tcp_uri.toString() : _socket_file.getPath()) + "|" + imageName;
+        Long found = _image_cache.get(cache_key);
+        if (found != null && System.currentTimeMillis() - found < _image_cache_ttl) {
+            return true;
+        }
+
+        boolean exists;
+        try {
+            int status = get_status("/images/" + encode_path(imageName) + "/json");
+            if (status == 200) {
+                exists = true;
+            } else if (status == 404) {
+                exists = false;
+            } else {
+                exists = check_image_exists_in_list(imageName);
+            }
+        } catch (IOException ex) {
+            exists = check_image_exists_in_list(imageName);
+        }
+
+        if (exists && _image_cache_ttl > 0) {
+            _image_cache.put(cache_key, System.currentTimeMillis());
+        }
+        return exists;
+    }
+
+    /**
+     * Check if an image is available by scanning all local images
+     */
+    public boolean check_image_exists_in_list(String imageName) {
         for (Image dockerImage : _docker_connection.images()) {
             try {
                 if (dockerImage.containsKey("RepoTags")) {
@@ -106,6 +208,58 @@ public class DockerAPI {
         return false;
     }
 
+    /**
+     * URL-encodes the segments of a path, keeping the slashes of e.g. "docker.io/library/ubuntu:20.04"
+     */
+    static String encode_path(String path) {
+        StringBuilder ret = new StringBuilder();
+        String[] segments = path.split("/", -1);
+        for (int i = 0; i < segments.length; i++) {
+            if (i > 0) {
+                ret.append('/');
+            }
+            try {
+                ret.append(URLEncoder.encode(segments[i], "UTF-8").replace("+", "%20"));
+            } catch (UnsupportedEncodingException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+        return ret.toString();
+    }
+
+    /**
+     * Sends a GET request to the docker api and returns the http status
+     *
+     * @param path The api path
+     * @return The http status code
+     * @throws IOException Throws an IO Exception if the docker api is unavailable
+     */
+    private int get_status(String path) throws IOException {
+        if (_tcp_uri != null) {
+            HttpURLConnection connection = (HttpURLConnection) new URL(_tcp_uri.toString().replaceAll("/$", "") + path).openConnection();
+            connection.setRequestMethod("GET");
+            connection.setConnectTimeout(5000);
+            connection.setReadTimeout(5000);
+            int status = connection.getResponseCode();
+            connection.disconnect();
+            return status;
+        }
+
+        try (UnixSocketChannel channel = UnixSocketChannel.open(new UnixSocketAddress(_socket_file))) {
+            OutputStream out = Channels.newOutputStream(channel);
+            out.write(("GET " + path + " HTTP/1.0\r\nHost: docker\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            // status line, e.g. "HTTP/1.1 200 OK"
+            BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+            String statusLine = in.readLine();
+            if (statusLine == null || statusLine.split(" ").length < 2) {
+                throw new IOException("invalid response from docker api: " + statusLine);
+            }
+            return Integer.parseInt(statusLine.split(" ")[1]);
+        }
+    }
+
     /**
      * Returns the wrapped handle to use the native functions of the handle
      *
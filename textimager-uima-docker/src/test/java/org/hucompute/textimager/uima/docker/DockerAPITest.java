@@ -0,0 +1,160 @@
+package org.hucompute.textimager.uima.docker;
+
+import jnr.unixsocket.UnixServerSocketChannel;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * check_image_exists against a fake docker daemon on a local unix socket
+ */
+public class DockerAPITest {
+    private File directory;
+    private UnixSocketAddress address;
+    private UnixServerSocketChannel server;
+    private Thread acceptor;
+    private volatile boolean running = true;
+
+    /**
+     * The paths of the requests in the order they came in
+     */
+    private final List<String> requests = new CopyOnWriteArrayList<>();
+
+    /**
+     * The answer to an image inspect request by path, 404 if there is none
+     */
+    private final Map<String, Integer> inspectStatus = new ConcurrentHashMap<>();
+
+    private DockerAPI api;
+
+    @Before
+    public void startDaemon() throws IOException {
+        directory = Files.createTempDirectory("docker-api-test").toFile();
+        File socket = new File(directory, "docker.sock");
+        server = UnixServerSocketChannel.open();
+        address = new UnixSocketAddress(socket);
+        server.socket().bind(address);
+        acceptor = new Thread(() -> {
+            while (running) {
+                try (UnixSocketChannel client = server.accept()) {
+                    if (client != null) {
+                        answer(client);
+                    }
+                } catch (IOException ex) {
+                    // closed
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+        api = new DockerAPI(socket);
+    }
+
+    @After
+    public void stopDaemon() throws IOException, InterruptedException {
+        DockerAPI.set_image_cache_ttl(30000);
+        // wakes up the blocking accept
+        running = false;
+        UnixSocketChannel.open(address).close();
+        acceptor.join(5000);
+        server.close();
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    private void answer(UnixSocketChannel client) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(client), StandardCharsets.UTF_8));
+        String requestLine = in.readLine();
+        if (requestLine == null) {
+            return;
+        }
+        // headers, the GET requests have no body
+        String header;
+        do {
+            header = in.readLine();
+        } while (header != null && !header.isEmpty());
+
+        String path = requestLine.split(" ")[1];
+        requests.add(path);
+        int status;
+        String body;
+        if (path.contains("/images/json")) {
+            status = 200;
+            body = "[{\"Id\":\"sha256:1\",\"RepoTags\":[\"listed:1.0\"]}]";
+        } else {
+            status = inspectStatus.getOrDefault(path, 404);
+            body = status == 200 ? "{\"Id\":\"sha256:1\"}" : "{\"message\":\"no such image\"}";
+        }
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        OutputStream out = Channels.newOutputStream(client);
+        out.write(("HTTP/1.1 " + status + " Fake\r\n"
+                + "Content-Type: application/json\r\n"
+                + "Content-Length: " + bytes.length + "\r\n"
+                + "Connection: close\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        out.write(bytes);
+        out.flush();
+    }
+
+    private long inspectRequests() {
+        return requests.stream().filter(path -> !path.contains("/images/json")).count();
+    }
+
+    @Test
+    public void existingImageIsInspectedOnce() {
+        inspectStatus.put("/images/docker.io/library/ubuntu%3A20.04/json", 200);
+
+        assertTrue(api.check_image_exists("docker.io/library/ubuntu:20.04"));
+        assertTrue(api.check_image_exists("docker.io/library/ubuntu:20.04"));
+        assertEquals(1, inspectRequests());
+        assertEquals("/images/docker.io/library/ubuntu%3A20.04/json", requests.get(0));
+    }
+
+    @Test
+    public void missingImageIsNotCached() {
+        assertFalse(api.check_image_exists("missing:1.0"));
+        assertFalse(api.check_image_exists("missing:1.0"));
+        assertEquals(2, inspectRequests());
+    }
+
+    @Test
+    public void cacheCanBeDisabled() {
+        DockerAPI.set_image_cache_ttl(0);
+        inspectStatus.put("/images/ubuntu%3A20.04/json", 200);
+
+        assertTrue(api.check_image_exists("ubuntu:20.04"));
+        assertTrue(api.check_image_exists("ubuntu:20.04"));
+        assertEquals(2, inspectRequests());
+    }
+
+    @Test
+    public void nameIsEncoded() {
+        assertFalse(api.check_image_exists("bad name?x=1"));
+        assertEquals("/images/bad%20name%3Fx%3D1/json", requests.get(0));
+    }
+
+    @Test
+    public void serverErrorFallsBackToImageList() {
+        inspectStatus.put("/images/listed%3A1.0/json", 500);
+        inspectStatus.put("/images/other%3A1.0/json", 500);
+
+        assertTrue(api.check_image_exists("listed:1.0"));
+        assertFalse(api.check_image_exists("other:1.0"));
+        assertTrue(requests.stream().anyMatch(path -> path.contains("/images/json")));
+    }
+}
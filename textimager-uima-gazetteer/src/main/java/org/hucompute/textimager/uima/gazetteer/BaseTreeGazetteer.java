@@ -1,15 +1,12 @@
 package org.hucompute.textimager.uima.gazetteer;
 
 import com.google.common.base.Charsets;
-import com.google.common.base.Strings;
-import com.google.common.collect.Lists;
 import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Lemma;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.uima.UIMAException;
 import org.apache.uima.UimaContext;
 import org.apache.uima.analysis_engine.AnalysisEngine;
@@ -17,6 +14,7 @@ import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.cas.Type;
 import org.apache.uima.cas.TypeSystem;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.fit.descriptor.ExternalResource;
 import org.apache.uima.fit.factory.AnalysisEngineFactory;
 import org.apache.uima.fit.factory.JCasFactory;
 import org.apache.uima.fit.pipeline.SimplePipeline;
@@ -25,9 +23,15 @@ import org.apache.uima.jcas.JCas;
 import org.apache.uima.jcas.cas.TOP;
 import org.apache.uima.jcas.tcas.Annotation;
 import org.apache.uima.resource.ResourceInitializationException;
+import org.hucompute.textimager.uima.gazetteer.TreeMatcher.Match;
+import org.hucompute.textimager.uima.gazetteer.models.GazetteerModelOptions;
 import org.hucompute.textimager.uima.gazetteer.models.ITreeGazetteerModel;
-import org.hucompute.textimager.uima.gazetteer.models.TreeGazetteerModel;
+import org.hucompute.textimager.uima.gazetteer.models.SharedGazetteerModels;
+import org.hucompute.textimager.uima.gazetteer.models.TaxonPayload;
+import org.hucompute.textimager.uima.gazetteer.tree.CompactTrie;
 import org.hucompute.textimager.uima.gazetteer.tree.ITreeNode;
+import org.hucompute.textimager.uima.gazetteer.tree.StringTreeNode;
+import org.hucompute.textimager.uima.gazetteer.tree.TokenNormalizer;
 import org.hucompute.textimager.uima.gazetteer.util.UnicodeRegexSegmenter;
 import org.dkpro.core.api.parameter.ComponentParameters;
 import org.dkpro.core.api.resources.MappingProvider;
@@ -38,9 +42,9 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 public abstract class BaseTreeGazetteer extends SegmenterBase {
 	public static final String PARAM_ADD_ABBREVIATED_TAXA = "pAddAbbreviatedTaxa";
@@ -102,7 +106,51 @@ public abstract class BaseTreeGazetteer extends SegmenterBase {
 	 */
 	public static final String PARAM_USE_STRING_TREE = "pUseStringTree";
 	public static final String PARAM_NO_SKIPGRAMS = "pNoSkipGrams";
-	protected static AnalysisEngine regexSegmenter;
+	/**
+	 * Boolean, if true, build the read-only {@link CompactTrie} instead of the {@link StringTreeNode} tree, which needs
+	 * a fraction of the memory. Default: true.
+	 */
+	public static final String PARAM_USE_COMPACT_TREE = "pUseCompactTree";
+	/**
+	 * Boolean, if true, memory map a prebuilt model for the sources and parameters from the gazetteer cache folder
+	 * instead of loading the taxa, and build and write the model if there is none. The folder is set by the
+	 * {@value org.hucompute.textimager.uima.gazetteer.models.StringGazetteerModel#CACHE_DIR_PROPERTY} system property.
+	 * Default: false.
+	 */
+	public static final String PARAM_USE_PREBUILT_MODEL = "pUsePrebuiltModel";
+	/**
+	 * Integer, if greater than 0, build the prebuilt model with a streaming loader that sorts the taxa and skip-grams on
+	 * disk with about this many MB of entries in memory, for taxa files that do not fit into the heap. The model is the
+	 * same. Default: 0, load the taxa into memory.
+	 */
+	public static final String PARAM_STREAMING_LOADER_BUDGET = "pStreamingLoaderBudget";
+	/**
+	 * Boolean, if true, find the matches with an Aho-Corasick automaton over the {@link CompactTrie} in one pass per
+	 * sentence, instead of a tree walk from every token. The annotations are the same. Requires
+	 * {@link #PARAM_USE_COMPACT_TREE}. Default: false.
+	 */
+	public static final String PARAM_USE_AHO_CORASICK = "pUseAhoCorasick";
+	/**
+	 * Boolean, if true, fold the case of the entry and document tokens, so that "STRASSE", "Straße" and "strasse"
+	 * match the same entries. The annotations keep the offsets of the document text. Default: false.
+	 */
+	public static final String PARAM_CASE_FOLDING = "pCaseFolding";
+	/**
+	 * Boolean, if true, strip the diacritics of the entry and document tokens, so that "Müller" matches "Muller".
+	 * Default: false.
+	 */
+	public static final String PARAM_STRIP_DIACRITICS = "pStripDiacritics";
+	/**
+	 * String array of character foldings for OCR confusions, applied to the entry and document tokens, each of the form
+	 * "ſ=s". Default: none.
+	 */
+	public static final String PARAM_CHARACTER_FOLDINGS = "pCharacterFoldings";
+	/**
+	 * Optional {@link TreeGazetteerModelResource} with the model to use instead of building one from the parameters,
+	 * bind the same resource to all gazetteers of a pipeline to share one model.
+	 */
+	public static final String PARAM_MODEL = "pGazetteerModel";
+	protected AnalysisEngine regexSegmenter;
 	@ConfigurationParameter(name = PARAM_LANGUAGE, mandatory = false, defaultValue = "de")
 	protected String language;
 	@ConfigurationParameter(name = PARAM_SOURCE_LOCATION, mandatory = false, defaultValue = "https://www.texttechnologylab.org/files/BIOfidTaxa.zip")
@@ -138,13 +186,32 @@ public abstract class BaseTreeGazetteer extends SegmenterBase {
 	protected boolean pRetokenize;
 	@ConfigurationParameter(name = PARAM_NO_SKIPGRAMS, mandatory = false, defaultValue = "false")
 	protected boolean pNoSkipGrams;
-	protected ArrayList<Annotation> tokens;
-	protected ConcurrentHashMap<Integer, Integer> tokenBeginIndex;
+	@ConfigurationParameter(name = PARAM_USE_COMPACT_TREE, mandatory = false, defaultValue = "true")
+	protected boolean pUseCompactTree;
+	@ConfigurationParameter(name = PARAM_USE_PREBUILT_MODEL, mandatory = false, defaultValue = "false")
+	protected boolean pUsePrebuiltModel;
+	@ConfigurationParameter(name = PARAM_STREAMING_LOADER_BUDGET, mandatory = false, defaultValue = "0")
+	protected int pStreamingLoaderBudget;
+	@ConfigurationParameter(name = PARAM_USE_AHO_CORASICK, mandatory = false, defaultValue = "false")
+	protected boolean pUseAhoCorasick;
+	@ConfigurationParameter(name = PARAM_CASE_FOLDING, mandatory = false, defaultValue = "false")
+	protected boolean pCaseFolding;
+	@ConfigurationParameter(name = PARAM_STRIP_DIACRITICS, mandatory = false, defaultValue = "false")
+	protected boolean pStripDiacritics;
+	@ConfigurationParameter(name = PARAM_CHARACTER_FOLDINGS, mandatory = false)
+	protected String[] pCharacterFoldings;
+	@ExternalResource(key = PARAM_MODEL, mandatory = false, description = "A shared model to use instead of building one")
+	protected TreeGazetteerModelResource gazetteerModel;
 	protected Type taggingType;
 	protected int skipGramTreeDepth;
 	protected ITreeNode skipGramTreeRoot;
-	protected JCas localJCas;
+	protected TreeMatcher treeMatcher;
+	// the JCases for retokenizing, each used by one call at a time
+	private final Queue<JCas> localJCases = new ConcurrentLinkedQueue<>();
 	protected ITreeGazetteerModel stringTreeGazetteerModel;
+	// of the model, applied to the document tokens
+	protected TokenNormalizer tokenNormalizer = TokenNormalizer.NONE;
+	private final Function<String, Object> payloadParser = this::parsePayload;
 	MappingProvider namedEntityMappingProvider;
 
 	/**
@@ -174,39 +241,78 @@ public abstract class BaseTreeGazetteer extends SegmenterBase {
 						UnicodeRegexSegmenter.PARAM_WRITE_SENTENCE, false);
 			}
 
-			createTreeModel();
-
-			localJCas = JCasFactory.createJCas();
+			if (gazetteerModel != null) {
+				getLogger().info("Using model from " + PARAM_MODEL);
+				setTreeModel(gazetteerModel.getModel());
+			} else {
+				createTreeModel();
+			}
 		} catch (IOException | ClassNotFoundException | UIMAException e) {
 			throw new ResourceInitializationException(e);
 		}
 	}
 
-	protected void createTreeModel() throws IOException, ClassNotFoundException {
+	protected void createTreeModel() throws IOException, ClassNotFoundException, ResourceInitializationException {
 		getLogger().info("Initializing StringTreeGazetteerModel");
-		stringTreeGazetteerModel = new TreeGazetteerModel(
-				sourceLocation,
-				pUseLowercase,
-				language,
-				pMinLength,
-				pGetAllSkips,
-				pSplitHyphen,
-				pAddAbbreviatedTaxa,
-				pMinWordCount,
-				tokenBoundaryRegex,
-				getFilterSet(),
-				getGazetteerName(),
-				useSimpleLoading(),
-				pNoSkipGrams
-		);
-		skipGramTreeRoot = stringTreeGazetteerModel.getTree();
+		setTreeModel(SharedGazetteerModels.get(createModelOptions().build()));
+	}
+
+	/**
+	 * @return the options of the model for the parameters
+	 */
+	protected GazetteerModelOptions.Builder createModelOptions() throws IOException {
+		return GazetteerModelOptions.builder(sourceLocation, getGazetteerName())
+				.useLowercase(pUseLowercase)
+				.language(language)
+				.minLength(pMinLength)
+				.allSkips(pGetAllSkips)
+				.splitHyphen(pSplitHyphen)
+				.addAbbreviatedTaxa(pAddAbbreviatedTaxa)
+				.minWordCountForSkipGrams(pMinWordCount)
+				.tokenBoundaryRegex(tokenBoundaryRegex)
+				.filterSet(getFilterSet())
+				.simpleLoading(useSimpleLoading())
+				.noSkipGrams(pNoSkipGrams)
+				.compactTree(pUseCompactTree)
+				.usePrebuiltModel(pUsePrebuiltModel)
+				.streamingLoaderBudget(pStreamingLoaderBudget)
+				.tokenNormalizer(createTokenNormalizer());
+	}
+
+	/**
+	 * @return the normalizer of the entry tokens for {@link #PARAM_CASE_FOLDING}, {@link #PARAM_STRIP_DIACRITICS} and
+	 * {@link #PARAM_CHARACTER_FOLDINGS}
+	 */
+	protected TokenNormalizer createTokenNormalizer() {
+		return new TokenNormalizer(pCaseFolding, pStripDiacritics, pCharacterFoldings == null ? new String[0] : pCharacterFoldings);
+	}
+
+	/**
+	 * Use this model for tagging. The model is shared with other instances and must not be modified.
+	 */
+	protected void setTreeModel(ITreeGazetteerModel model) throws ResourceInitializationException {
+		stringTreeGazetteerModel = model;
+		tokenNormalizer = model.getTokenNormalizer();
+		skipGramTreeRoot = model.getTree();
 		skipGramTreeDepth = skipGramTreeRoot.depth();
+		treeMatcher = new TreeMatcher(skipGramTreeRoot, pUseAhoCorasick);
+		if (pUseAhoCorasick && !treeMatcher.usesAhoCorasick()) {
+			getLogger().warn(PARAM_USE_AHO_CORASICK + " requires a CompactTrie, using the tree walk");
+		}
 	}
 
 	protected HashSet<String> getFilterSet() throws IOException {
+		return loadFilterSet(pFilterLocation);
+	}
+
+	/**
+	 * @param filterLocation a text file with one word per line, may be empty or null
+	 * @return the lower cased words
+	 */
+	public static HashSet<String> loadFilterSet(String filterLocation) throws IOException {
 		HashSet<String> filterSet = new HashSet<>();
-		if (StringUtils.isNotEmpty(pFilterLocation)) {
-			filterSet = FileUtils.readLines(new File(pFilterLocation), Charsets.UTF_8)
+		if (StringUtils.isNotEmpty(filterLocation)) {
+			filterSet = FileUtils.readLines(new File(filterLocation), Charsets.UTF_8)
 					.stream()
 					.map(String::toLowerCase)
 					.collect(Collectors.toCollection(HashSet::new));
@@ -223,7 +329,6 @@ public abstract class BaseTreeGazetteer extends SegmenterBase {
 	protected void process(JCas originalJCas, String text, int zoneBegin) throws AnalysisEngineProcessException {
 		namedEntityMappingProvider.configure(originalJCas.getCas());
 		inferTaggingType(originalJCas.getTypeSystem());
-		tokenBeginIndex = new ConcurrentHashMap<>();
 
 		if (originalJCas.getDocumentText().trim().length() == 0) {
 			getLogger().debug("Skipping empty JCas");
@@ -231,30 +336,52 @@ public abstract class BaseTreeGazetteer extends SegmenterBase {
 		}
 
 		getLogger().debug("Tagging");
+		JCas localJCas = null;
 		try {
+			JCas jCas = originalJCas;
 			if (pRetokenize) {
-				localJCas = processLocalJCas(originalJCas);
-			} else {
-				localJCas = originalJCas;
+				localJCas = localJCases.poll();
+				if (localJCas == null) {
+					localJCas = JCasFactory.createJCas();
+				}
+				jCas = processLocalJCas(originalJCas, localJCas);
 			}
+			TaggingContext context = createContext(jCas);
 
-			Collection<Sentence> sentences = JCasUtil.select(localJCas, Sentence.class);
+			Collection<Sentence> sentences = JCasUtil.select(jCas, Sentence.class);
+			List<Match> matches;
 			if (!pUseSentenceLevelTagging || sentences.isEmpty()) {
-				tagEntireDocumentText(originalJCas, localJCas);
+				getLogger().debug(String.format(
+						"%s, tagging entire document text.",
+						pUseSentenceLevelTagging ? "Found no sentences" : "PARAM_USE_SENTECE_LEVEL_TAGGING=false"
+						)
+				);
+				matches = treeMatcher.findAllMatches(context.query, 0);
 			} else {
-				int sentencesLength = sentences.stream().map(Sentence::getCoveredText).collect(Collectors.joining(" ")).length();
-				getLogger().debug(String.format("Tagging sentences. Coverage: %d/%d", sentencesLength, localJCas.getDocumentText().length()));
-				tagSentences(originalJCas, localJCas, sentences);
+				matches = tagSentences(context, sentences);
+			}
+
+			for (Match match : matches) {
+				addAnnotation(originalJCas, context, match);
 			}
 		} catch (UIMAException e) {
 			throw new AnalysisEngineProcessException(e);
+		} finally {
+			// the annotations are added, the tokens of the local JCas are no longer needed
+			if (localJCas != null) {
+				localJCas.reset();
+				localJCases.add(localJCas);
+			}
 		}
 	}
 
 	protected abstract void inferTaggingType(TypeSystem typeSystem);
 
-	protected JCas processLocalJCas(JCas originalJCas) throws AnalysisEngineProcessException {
-		localJCas.reset();
+	/**
+	 * Tokenize the text of the original JCas with the {@link UnicodeRegexSegmenter} into the local JCas, which is only
+	 * used by this call.
+	 */
+	protected JCas processLocalJCas(JCas originalJCas, JCas localJCas) throws AnalysisEngineProcessException {
 		localJCas.setDocumentText(originalJCas.getDocumentText());
 		localJCas.setDocumentLanguage(originalJCas.getDocumentLanguage());
 
@@ -269,79 +396,36 @@ public abstract class BaseTreeGazetteer extends SegmenterBase {
 		return localJCas;
 	}
 
-	protected void tagEntireDocumentText(JCas originalJCas, JCas localJCas) {
-		getLogger().debug(String.format(
-				"%s, tagging entire document text.",
-				pUseSentenceLevelTagging ? "PARAM_FORCE_DOCUMENT_TEXT_TAGGING=true" : "Found no sentences"
-				)
-		);
-
-		ArrayList<String> query = getDocumentLevelQuery(localJCas);
-		findAllMatches(skipGramTreeRoot, query, 0).forEach(m -> addAnnotation(originalJCas, m));
-	}
-
-	protected ArrayList<String> getDocumentLevelQuery(JCas aJCas) {
-		ArrayList<String> query = new ArrayList<>();
-		tokens = Lists.newArrayList(JCasUtil.select(aJCas, Lemma.class));
+	/**
+	 * Collect the tokens, or the lemmata if {@link #PARAM_USE_LEMMATA} is set and there are any, with their texts.
+	 */
+	protected TaggingContext createContext(JCas aJCas) {
+		ArrayList<Annotation> tokens = new ArrayList<>(JCasUtil.select(aJCas, Lemma.class));
 		if (!pUseLemmata || tokens.isEmpty()) {
-			tokens = Lists.newArrayList(JCasUtil.select(aJCas, Token.class));
+			tokens = new ArrayList<>(JCasUtil.select(aJCas, Token.class));
 		}
-		for (Annotation token : tokens) {
-			String qText = getAnnotationText(token);
-			query.add(qText);
+		if (tokenNormalizer.isIdentity()) {
+			return new TaggingContext(tokens, this::getAnnotationText);
 		}
-		return query;
-	}
-
-	protected void tagSentences(JCas originalJCas, JCas localJCas, Collection<Sentence> sentences) {
-		tokens = Lists.newArrayList(JCasUtil.select(localJCas, Lemma.class));
-		final ConcurrentHashMap<Sentence, Collection<Annotation>> sentenceIndex;
-		if (pUseLemmata && !tokens.isEmpty()) {
-			sentenceIndex = new ConcurrentHashMap<>(JCasUtil.indexCovered(localJCas, Sentence.class, Lemma.class));
-			for (int i = 0; i < tokens.size(); i++) {
-				tokenBeginIndex.put(tokens.get(i).getBegin(), i);
-			}
-		} else {
-			sentenceIndex = new ConcurrentHashMap<>(JCasUtil.indexCovered(localJCas, Sentence.class, Token.class));
-			tokens = Lists.newArrayList(JCasUtil.select(localJCas, Token.class));
-			for (int i = 0; i < tokens.size(); i++) {
-				tokenBeginIndex.put(tokens.get(i).getBegin(), i);
-			}
-		}
-		sentences.stream()
-				.parallel()
-				.flatMap(sentence -> {
-					ImmutablePair<Integer, ArrayList<String>> pair = getSentenceList(sentenceIndex, sentence);
-					Integer sentenceOffset = pair.left;
-					ArrayList<String> query = pair.right;
-					if (sentenceOffset < 0 || query.size() == 0) {
-						return Stream.empty();
-					}
-					return findAllMatches(skipGramTreeRoot, query, sentenceOffset).stream();
-				})
-				.collect(Collectors.toList())
-				.forEach(m -> addAnnotation(originalJCas, m));
+		// the tree keys are normalized, the matches keep the offsets of the tokens
+		return new TaggingContext(tokens, token -> tokenNormalizer.normalize(getAnnotationText(token)));
 	}
 
 	/**
-	 * Get a list of tokens or lemmata covered by this sentence.
-	 *
-	 * @param sentenceIndex The JCas containing the sentence.
-	 * @param sentence      The sentence in question.
-	 * @return A list of token or lemma values.
-	 */
-	protected ImmutablePair<Integer, ArrayList<String>> getSentenceList(Map<Sentence, Collection<Annotation>> sentenceIndex, Sentence sentence) {
-		ArrayList<String> arrayList = new ArrayList<>();
-		ArrayList<Annotation> annotations = new ArrayList<>(sentenceIndex.get(sentence));
-
-		int sentenceBeginIndex = -1;
-		if (annotations.size() > 0) {
-			sentenceBeginIndex = tokenBeginIndex.get(annotations.get(0).getBegin());
-			annotations.forEach(
-					annotation -> arrayList.add(getAnnotationText(annotation))
-			);
+	 * Tag the sentences in parallel, each sentence is a range of the document tokens.
+	 */
+	protected List<Match> tagSentences(TaggingContext context, Collection<Sentence> sentences) {
+		int[] sentenceBegins = new int[sentences.size()];
+		int[] sentenceEnds = new int[sentences.size()];
+		int index = 0;
+		for (Sentence sentence : sentences) {
+			sentenceBegins[index] = sentence.getBegin();
+			sentenceEnds[index] = sentence.getEnd();
+			index++;
 		}
-		return ImmutablePair.of(sentenceBeginIndex, arrayList);
+		int[][] sentenceTokens = TreeMatcher.coveredTokens(context.begins, context.ends, sentenceBegins, sentenceEnds);
+		getLogger().debug(String.format("Tagging %d sentences.", sentences.size()));
+		return treeMatcher.findAllMatches(context.query, sentenceTokens[0], sentenceTokens[1]);
 	}
 
 	/**
@@ -363,50 +447,19 @@ public abstract class BaseTreeGazetteer extends SegmenterBase {
 		}
 	}
 
-	protected ArrayList<Match> findAllMatches(ITreeNode root, final ArrayList<String> query, int globalOffset) {
-		ArrayList<Match> matches = new ArrayList<>();
-		int offset = 0;
-		do {
-			List<String> subList = query.subList(offset, Math.min(query.size(), offset + skipGramTreeDepth));
-			ImmutablePair<String, Integer> matchedString = root.traverse(subList);
-			if (!Strings.isNullOrEmpty(matchedString.left) && matchedString.right > -1) {
-				int start = offset;
-				int end = offset + matchedString.right;
-				matches.add(new Match(start + globalOffset, end + globalOffset, matchedString.left));
-				offset += matchedString.right;
-			}
-			offset += 1;
-		} while (offset < query.size() && offset > -1);
-		// old
-		//} while (offset < (query.size() - skipGramTreeDepth) && offset > -1);
-		return matches;
-	}
-
-	protected void addAnnotation(JCas aJCas, Match match) {
+	protected void addAnnotation(JCas aJCas, TaggingContext context, Match match) {
 		try {
-			Annotation fromToken = tokens.get(match.start);
-			Annotation toToken = tokens.get(match.end);
+			Annotation fromToken = context.tokens.get(match.start);
+			Annotation toToken = context.tokens.get(match.end);
 
 			String taxon = stringTreeGazetteerModel.getSkipGramTaxonLookup().get(match.value);
 
-			HashSet<Object> objects = stringTreeGazetteerModel.getTaxonUriMap().get(taxon);
+			// the objects of the form "0:abc", split by their source index and parsed once per model and gazetteer class
+			TaxonPayload payload = stringTreeGazetteerModel.getPayload(taxon, getClass(), payloadParser);
 
 			for (Map.Entry<Type, Set<Integer>> entry : getTaggingTypeWithSourceIds(taxon).entrySet()) {
-				Type type = entry.getKey();
-
-				// each object is of the form "0:abc", containing the source index and the additional string data
-				// filter for this type
-				HashSet<Object> myObjects = (HashSet<Object>) objects
-						.stream()
-						.filter(o -> {
-							Integer id = Integer.valueOf(o.toString().split(":", -1)[0]);
-							return entry.getValue().contains(id);
-						})
-						.map(o -> (Object) Stream.of(o.toString().split(":", -1)).skip(1).collect(Collectors.joining(":")))
-						.collect(Collectors.toSet());
-
-				addMyAnnotation(aJCas, fromToken, toToken, type, myObjects);
-			};
+				addMyAnnotation(aJCas, fromToken, toToken, entry.getKey(), payload.getObjects(entry.getValue()));
+			}
 
 		} catch (NullPointerException e) {
 			// FIXME: Remove this
@@ -416,6 +469,15 @@ public abstract class BaseTreeGazetteer extends SegmenterBase {
 		}
 	}
 
+	/**
+	 * Parse the additional data of an URI, without its source index, into the object passed to
+	 * {@link #addMyAnnotation}. Called once per taxon, model and gazetteer class, the result is shared by all matches and
+	 * gazetteer instances of that class and model and must not be modified. Default: the data string.
+	 */
+	protected Object parsePayload(String data) {
+		return data;
+	}
+
 	protected void addAdditionalComments(JCas aJCas, TOP ref) {
 		if (pAnnotationComments != null) {
 			if (pAnnotationComments.length > 0 && pAnnotationComments.length % 2 == 0) {
@@ -438,6 +500,9 @@ public abstract class BaseTreeGazetteer extends SegmenterBase {
 		}
 	}
 
+	/**
+	 * @param objects the parsed data of the URIs, see {@link #parsePayload(String)}, shared and must not be modified
+	 */
 	abstract protected void addMyAnnotation(JCas aJCas, Annotation fromToken, Annotation toToken, Type type, HashSet<Object> objects);
 
 	protected abstract Set<Type> getTaggingType(String taxon);
@@ -450,16 +515,28 @@ public abstract class BaseTreeGazetteer extends SegmenterBase {
 		return false;
 	}
 
-	protected static class Match {
-
-		final int start;
-		final int end;
-		final String value;
-
-		public Match(int start, int end, String value) {
-			this.start = start;
-			this.end = end;
-			this.value = value;
+	/**
+	 * The tokens of one document and their texts and offsets, created per call so that documents and sentences can be
+	 * tagged concurrently without shared state.
+	 */
+	protected static class TaggingContext {
+		final List<Annotation> tokens;
+		final List<String> query;
+		final int[] begins;
+		final int[] ends;
+
+		TaggingContext(List<Annotation> tokens, Function<Annotation, String> text) {
+			this.tokens = tokens;
+			String[] texts = new String[tokens.size()];
+			begins = new int[tokens.size()];
+			ends = new int[tokens.size()];
+			for (int i = 0; i < texts.length; i++) {
+				Annotation token = tokens.get(i);
+				texts[i] = text.apply(token);
+				begins[i] = token.getBegin();
+				ends[i] = token.getEnd();
+			}
+			query = Arrays.asList(texts);
 		}
 	}
 }
@@ -7,6 +7,7 @@ import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.resource.ResourceInitializationException;
 import org.hucompute.textimager.uima.gazetteer.models.ITreeGazetteerModel;
 import org.hucompute.textimager.uima.gazetteer.models.MultiClassTreeGazetteerModel;
+import org.hucompute.textimager.uima.gazetteer.models.SharedGazetteerModels;
 
 import java.io.IOException;
 import java.security.InvalidParameterException;
@@ -43,25 +44,18 @@ public abstract class MultiClassTreeGazetteer extends BaseTreeGazetteer {
 	}
 	
 	@Override
-	protected void createTreeModel() throws IOException, ClassNotFoundException {
+	protected void createTreeModel() throws IOException, ClassNotFoundException, ResourceInitializationException {
 		getLogger().info("Initializing MultiClassTreeGazetteerModel");
-		stringTreeGazetteerModel = new MultiClassTreeGazetteerModel(
-				sourceLocation,
-				pUseLowercase,
-				language,
-				pMinLength,
-				pGetAllSkips,
-				pSplitHyphen,
-				pAddAbbreviatedTaxa,
-				pMinWordCount,
-				tokenBoundaryRegex,
-				getFilterSet(),
-				getGazetteerName(),
-				useSimpleLoading(),
-				pNoSkipGrams
-		);
-		skipGramTreeRoot = ((ITreeGazetteerModel) stringTreeGazetteerModel).getTree();
-		skipGramTreeDepth = skipGramTreeRoot.depth();
+		setTreeModel(SharedGazetteerModels.get(createModelOptions().multiClass(true).build()));
+	}
+	
+	@Override
+	protected void setTreeModel(ITreeGazetteerModel model) throws ResourceInitializationException {
+		if (!(model instanceof MultiClassTreeGazetteerModel)) {
+			throw new ResourceInitializationException(new InvalidParameterException(
+					"MultiClassTreeGazetteer needs a MultiClassTreeGazetteerModel, set TreeGazetteerModelResource.PARAM_MULTI_CLASS"));
+		}
+		super.setTreeModel(model);
 	}
 	
 	@Override
@@ -4,10 +4,11 @@ import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
 import org.apache.uima.cas.Type;
 import org.apache.uima.cas.TypeSystem;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
-import org.hucompute.textimager.uima.gazetteer.models.TreeGazetteerModel;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.hucompute.textimager.uima.gazetteer.models.SharedGazetteerModels;
 
 import java.io.IOException;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -27,30 +28,18 @@ public abstract class SingleClassTreeGazetteer extends BaseTreeGazetteer {
 	protected String pTaggingTypeName;
 
 
-	protected void createTreeModel() throws IOException, ClassNotFoundException {
+	protected void createTreeModel() throws IOException, ClassNotFoundException, ResourceInitializationException {
 		getLogger().info(String.format("Initializing StringTreeGazetteerModel for %s", Class.forName(pTaggingTypeName).getSimpleName()));
-		stringTreeGazetteerModel = new TreeGazetteerModel(
-				sourceLocation,
-				pUseLowercase,
-				language,
-				pMinLength,
-				pGetAllSkips,
-				pSplitHyphen,
-				pAddAbbreviatedTaxa,
-				pMinWordCount,
-				tokenBoundaryRegex,
-				getFilterSet(),
-				getGazetteerName(),
-				useSimpleLoading(),
-				pNoSkipGrams
-		);
-		skipGramTreeRoot = stringTreeGazetteerModel.getTree();
-		skipGramTreeDepth = skipGramTreeRoot.depth();
+		setTreeModel(SharedGazetteerModels.get(createModelOptions().build()));
 	}
 
+	// the tagging type with the only source, the same for all matches
+	private Map<Type, Set<Integer>> taggingTypeWithSourceIds;
+
 	@Override
 	protected void inferTaggingType(TypeSystem typeSystem) {
 		taggingType = typeSystem.getType(pTaggingTypeName);
+		taggingTypeWithSourceIds = Collections.singletonMap(taggingType, Collections.singleton(0));
 	}
 
 	@Override
@@ -62,11 +51,7 @@ public abstract class SingleClassTreeGazetteer extends BaseTreeGazetteer {
 
 	@Override
 	protected Map<Type, Set<Integer>> getTaggingTypeWithSourceIds(String taxon) {
-		Map<Type, Set<Integer>> result = new HashMap<>();
-		Type type = this.taggingType;
-		result.put(type, new HashSet<>());
-		result.get(type).add(0);
-		return result;
+		return taggingTypeWithSourceIds;
 	}
 
 }
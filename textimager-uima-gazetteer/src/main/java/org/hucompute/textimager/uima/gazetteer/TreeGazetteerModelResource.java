@@ -0,0 +1,111 @@
+package org.hucompute.textimager.uima.gazetteer;
+
+import org.apache.uima.fit.component.initialize.ConfigurationParameterInitializer;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
+import org.apache.uima.resource.DataResource;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.apache.uima.resource.SharedResourceObject;
+import org.hucompute.textimager.uima.gazetteer.models.GazetteerModelOptions;
+import org.hucompute.textimager.uima.gazetteer.models.ITreeGazetteerModel;
+import org.hucompute.textimager.uima.gazetteer.models.SharedGazetteerModels;
+import org.hucompute.textimager.uima.gazetteer.tree.TokenNormalizer;
+
+import java.io.IOException;
+
+/**
+ * Shared resource with a tree gazetteer model. Bind it to {@link BaseTreeGazetteer#PARAM_MODEL} of all gazetteers that
+ * should use the same model, instead of each gazetteer instance building its own from its parameters. The model is
+ * taken from {@link SharedGazetteerModels}, so even resources bound in different pipelines share one copy.
+ * <p>
+ * The parameters have the same names and defaults as the {@link BaseTreeGazetteer} parameters. The tagging
+ * parameters of the gazetteers, like {@link BaseTreeGazetteer#PARAM_USE_LOWERCASE}, have to match the model.
+ */
+public class TreeGazetteerModelResource implements SharedResourceObject {
+	/**
+	 * Boolean, if true, build a model for a {@link MultiClassTreeGazetteer}. Default: false.
+	 */
+	public static final String PARAM_MULTI_CLASS = "pMultiClass";
+	@ConfigurationParameter(name = PARAM_MULTI_CLASS, mandatory = false, defaultValue = "false")
+	private boolean multiClass;
+	/**
+	 * The name of the gazetteer, used for the download and model cache folder.
+	 */
+	public static final String PARAM_GAZETTEER_NAME = "pGazetteerName";
+	@ConfigurationParameter(name = PARAM_GAZETTEER_NAME, mandatory = true)
+	private String gazetteerName;
+	/**
+	 * Boolean, if true, read the taxa and their data without removing non-token characters or parsing URIs.
+	 * Default: false.
+	 */
+	public static final String PARAM_SIMPLE_LOADING = "pSimpleLoading";
+	@ConfigurationParameter(name = PARAM_SIMPLE_LOADING, mandatory = false, defaultValue = "false")
+	private boolean simpleLoading;
+	@ConfigurationParameter(name = BaseTreeGazetteer.PARAM_SOURCE_LOCATION, mandatory = false, defaultValue = "https://www.texttechnologylab.org/files/BIOfidTaxa.zip")
+	private String[] sourceLocation;
+	@ConfigurationParameter(name = BaseTreeGazetteer.PARAM_LANGUAGE, mandatory = false, defaultValue = "de")
+	private String language;
+	@ConfigurationParameter(name = BaseTreeGazetteer.PARAM_FILTER_LOCATION, mandatory = false)
+	private String pFilterLocation;
+	@ConfigurationParameter(name = BaseTreeGazetteer.PARAM_MIN_LENGTH, mandatory = false, defaultValue = "5")
+	private Integer pMinLength;
+	@ConfigurationParameter(name = BaseTreeGazetteer.PARAM_MIN_WORD_COUNT, mandatory = false, defaultValue = "3")
+	private Integer pMinWordCount;
+	@ConfigurationParameter(name = BaseTreeGazetteer.PARAM_USE_LOWERCASE, mandatory = false, defaultValue = "false")
+	private Boolean pUseLowercase;
+	@ConfigurationParameter(name = BaseTreeGazetteer.PARAM_GET_ALL_SKIPS, mandatory = false, defaultValue = "false")
+	private Boolean pGetAllSkips;
+	@ConfigurationParameter(name = BaseTreeGazetteer.PARAM_SPLIT_HYPEN, mandatory = false, defaultValue = "true")
+	private Boolean pSplitHyphen;
+	@ConfigurationParameter(name = BaseTreeGazetteer.PARAM_TOKEN_BOUNDARY_REGEX, mandatory = false, defaultValue = "\\s+")
+	private String tokenBoundaryRegex;
+	@ConfigurationParameter(name = BaseTreeGazetteer.PARAM_ADD_ABBREVIATED_TAXA, mandatory = false, defaultValue = "true")
+	private boolean pAddAbbreviatedTaxa;
+	@ConfigurationParameter(name = BaseTreeGazetteer.PARAM_NO_SKIPGRAMS, mandatory = false, defaultValue = "false")
+	private boolean pNoSkipGrams;
+	@ConfigurationParameter(name = BaseTreeGazetteer.PARAM_USE_COMPACT_TREE, mandatory = false, defaultValue = "true")
+	private boolean pUseCompactTree;
+	@ConfigurationParameter(name = BaseTreeGazetteer.PARAM_USE_PREBUILT_MODEL, mandatory = false, defaultValue = "false")
+	private boolean pUsePrebuiltModel;
+	@ConfigurationParameter(name = BaseTreeGazetteer.PARAM_STREAMING_LOADER_BUDGET, mandatory = false, defaultValue = "0")
+	private int pStreamingLoaderBudget;
+	@ConfigurationParameter(name = BaseTreeGazetteer.PARAM_CASE_FOLDING, mandatory = false, defaultValue = "false")
+	private boolean pCaseFolding;
+	@ConfigurationParameter(name = BaseTreeGazetteer.PARAM_STRIP_DIACRITICS, mandatory = false, defaultValue = "false")
+	private boolean pStripDiacritics;
+	@ConfigurationParameter(name = BaseTreeGazetteer.PARAM_CHARACTER_FOLDINGS, mandatory = false)
+	private String[] pCharacterFoldings;
+
+	private ITreeGazetteerModel model;
+
+	@Override
+	public void load(DataResource aData) throws ResourceInitializationException {
+		ConfigurationParameterInitializer.initialize(this, aData);
+
+		try {
+			model = SharedGazetteerModels.get(GazetteerModelOptions.builder(sourceLocation, gazetteerName)
+					.multiClass(multiClass)
+					.useLowercase(pUseLowercase)
+					.language(language)
+					.minLength(pMinLength)
+					.allSkips(pGetAllSkips)
+					.splitHyphen(pSplitHyphen)
+					.addAbbreviatedTaxa(pAddAbbreviatedTaxa)
+					.minWordCountForSkipGrams(pMinWordCount)
+					.tokenBoundaryRegex(tokenBoundaryRegex)
+					.filterSet(BaseTreeGazetteer.loadFilterSet(pFilterLocation))
+					.simpleLoading(simpleLoading)
+					.noSkipGrams(pNoSkipGrams)
+					.compactTree(pUseCompactTree)
+					.usePrebuiltModel(pUsePrebuiltModel)
+					.streamingLoaderBudget(pStreamingLoaderBudget)
+					.tokenNormalizer(new TokenNormalizer(pCaseFolding, pStripDiacritics, pCharacterFoldings == null ? new String[0] : pCharacterFoldings))
+					.build());
+		} catch (IOException e) {
+			throw new ResourceInitializationException(e);
+		}
+	}
+
+	public ITreeGazetteerModel getModel() {
+		return model;
+	}
+}
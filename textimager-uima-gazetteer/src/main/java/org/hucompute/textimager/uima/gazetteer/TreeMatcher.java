@@ -0,0 +1,189 @@
+package org.hucompute.textimager.uima.gazetteer;
+
+import com.google.common.base.Strings;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.hucompute.textimager.uima.gazetteer.tree.AhoCorasickAutomaton;
+import org.hucompute.textimager.uima.gazetteer.tree.CompactTrie;
+import org.hucompute.textimager.uima.gazetteer.tree.ITreeNode;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the longest tree entries in a sequence of token texts. A matcher has no mutable state, so one instance can tag
+ * many documents and sentences at the same time.
+ */
+public class TreeMatcher {
+	private final ITreeNode root;
+	private final int depth;
+	private final AhoCorasickAutomaton automaton;
+
+	public TreeMatcher(ITreeNode root) {
+		this(root, false);
+	}
+
+	/**
+	 * @param root           the tree
+	 * @param useAhoCorasick if true and the tree is a {@link CompactTrie}, find the matches with its
+	 *                       {@link AhoCorasickAutomaton} in one pass instead of a trie walk from every token
+	 */
+	public TreeMatcher(ITreeNode root, boolean useAhoCorasick) {
+		this.root = root;
+		this.depth = root.depth();
+		this.automaton = useAhoCorasick && root instanceof CompactTrie ? ((CompactTrie) root).getAutomaton() : null;
+	}
+
+	public boolean usesAhoCorasick() {
+		return automaton != null;
+	}
+
+	/**
+	 * @param query        the token texts
+	 * @param globalOffset added to the token indices of the matches
+	 * @return the matches from left to right, a match ends before the next one starts
+	 */
+	public ArrayList<Match> findAllMatches(List<String> query, int globalOffset) {
+		if (automaton != null) {
+			return findAllMatches(automaton, (CompactTrie) root, query, globalOffset);
+		}
+		if (root instanceof CompactTrie) {
+			return findAllMatches((CompactTrie) root, query, globalOffset);
+		}
+		ArrayList<Match> matches = new ArrayList<>();
+		int offset = 0;
+		do {
+			List<String> subList = query.subList(offset, Math.min(query.size(), offset + depth));
+			ImmutablePair<String, Integer> matchedString = root.traverse(subList);
+			if (!Strings.isNullOrEmpty(matchedString.left) && matchedString.right > -1) {
+				int start = offset;
+				int end = offset + matchedString.right;
+				matches.add(new Match(start + globalOffset, end + globalOffset, matchedString.left));
+				offset += matchedString.right;
+			}
+			offset += 1;
+		} while (offset < query.size() && offset > -1);
+		return matches;
+	}
+
+	// Same as above without sub lists and pairs, only the matches are allocated
+	private ArrayList<Match> findAllMatches(CompactTrie root, List<String> query, int globalOffset) {
+		ArrayList<Match> matches = new ArrayList<>();
+		for (int offset = 0; offset < query.size(); offset++) {
+			long match = root.longestMatch(query, offset, Math.min(query.size(), offset + depth));
+			if (match != CompactTrie.NO_MATCH) {
+				String value = root.getValue(CompactTrie.matchValue(match));
+				int end = CompactTrie.matchEnd(match);
+				if (!Strings.isNullOrEmpty(value)) {
+					matches.add(new Match(offset + globalOffset, end + globalOffset, value));
+					offset = end;
+				}
+			}
+		}
+		return matches;
+	}
+
+	// Same matches from the longest match at every token, found in one pass
+	private static ArrayList<Match> findAllMatches(AhoCorasickAutomaton automaton, CompactTrie root, List<String> query, int globalOffset) {
+		ArrayList<Match> matches = new ArrayList<>();
+		long[] longest = automaton.longestMatches(query, 0, query.size());
+		for (int offset = 0; offset < longest.length; offset++) {
+			long match = longest[offset];
+			if (match != CompactTrie.NO_MATCH) {
+				String value = root.getValue(CompactTrie.matchValue(match));
+				int end = CompactTrie.matchEnd(match);
+				if (!Strings.isNullOrEmpty(value)) {
+					matches.add(new Match(offset + globalOffset, end + globalOffset, value));
+					offset = end;
+				}
+			}
+		}
+		return matches;
+	}
+
+	/**
+	 * Tag each sentence on its own, in parallel.
+	 *
+	 * @param query          the token texts of the document
+	 * @param sentenceBegins per sentence the index of its first token
+	 * @param sentenceEnds   per sentence the index after its last token
+	 * @return the matches of all sentences in sentence order, with document token indices
+	 */
+	public List<Match> findAllMatches(List<String> query, int[] sentenceBegins, int[] sentenceEnds) {
+		return IntStream.range(0, sentenceBegins.length)
+				.parallel()
+				.filter(sentence -> sentenceBegins[sentence] < sentenceEnds[sentence])
+				.mapToObj(sentence -> findAllMatches(query.subList(sentenceBegins[sentence], sentenceEnds[sentence]), sentenceBegins[sentence]))
+				.flatMap(List::stream)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * @param sorted sorted offsets
+	 * @param offset an offset
+	 * @return the index of the first entry that is not smaller than the offset
+	 */
+	public static int lowerBound(int[] sorted, int offset) {
+		int low = 0;
+		int high = sorted.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted[mid] < offset) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Token index ranges of spans like sentences, with all tokens that are covered by the span.
+	 *
+	 * @param tokenBegins the sorted begin offsets of the tokens
+	 * @param tokenEnds   the end offsets of the tokens
+	 * @param spanBegins  the begin offsets of the spans
+	 * @param spanEnds    the end offsets of the spans
+	 * @return the index of the first and after the last covered token of each span
+	 */
+	public static int[][] coveredTokens(int[] tokenBegins, int[] tokenEnds, int[] spanBegins, int[] spanEnds) {
+		int[] begins = new int[spanBegins.length];
+		int[] ends = new int[spanBegins.length];
+		for (int span = 0; span < spanBegins.length; span++) {
+			int begin = lowerBound(tokenBegins, spanBegins[span]);
+			int end = lowerBound(tokenBegins, spanEnds[span]);
+			while (end > begin && tokenEnds[end - 1] > spanEnds[span]) {
+				end--;
+			}
+			begins[span] = begin;
+			ends[span] = end;
+		}
+		return new int[][]{begins, ends};
+	}
+
+	public static class Match {
+
+		final int start;
+		final int end;
+		final String value;
+
+		public Match(int start, int end, String value) {
+			this.start = start;
+			this.end = end;
+			this.value = value;
+		}
+
+		public int getStart() {
+			return start;
+		}
+
+		public int getEnd() {
+			return end;
+		}
+
+		public String getValue() {
+			return value;
+		}
+	}
+}
@@ -0,0 +1,262 @@
+package org.hucompute.textimager.uima.gazetteer.models;
+
+import org.hucompute.textimager.uima.gazetteer.tree.CompactTrie;
+import org.hucompute.textimager.uima.gazetteer.util.ModelFileReader;
+import org.hucompute.textimager.uima.gazetteer.util.ModelFileWriter;
+
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * A prebuilt gazetteer model: the {@link CompactTrie} of all skip-grams, the taxon of each skip-gram and the URIs of
+ * each taxon. It is written once by {@link #write(Path, CompactTrie, Map, Map)}, or streamed from the taxa files by
+ * the {@link StreamingModelBuilder}, and memory mapped by {@link #map(Path)}, the maps of a mapped model are read-only
+ * views that decode their entries on access.
+ */
+public class GazetteerModelFile {
+	// "TIGZ"
+	static final int MAGIC = 0x5a474954;
+	static final int VERSION = 1;
+
+	private final CompactTrie tree;
+	// per tree value the taxon id, -1 if unknown
+	private final IntBuffer valueTaxon;
+	private final ModelFileReader.StringTable taxa;
+	// per taxon the first URI, one more entry for the end of the last taxon
+	private final IntBuffer uriBegin;
+	private final ModelFileReader.StringTable uris;
+
+	private GazetteerModelFile(CompactTrie tree, IntBuffer valueTaxon, ModelFileReader.StringTable taxa, IntBuffer uriBegin, ModelFileReader.StringTable uris) {
+		this.tree = tree;
+		this.valueTaxon = valueTaxon;
+		this.taxa = taxa;
+		this.uriBegin = uriBegin;
+		this.uris = uris;
+	}
+
+	/**
+	 * Write the model to a temporary file and move it to the target path, so concurrent processes never map a
+	 * partially written model.
+	 */
+	public static void write(Path path, CompactTrie tree, Map<String, String> skipGramTaxonLookup, Map<String, HashSet<Object>> taxonUriMap) throws IOException {
+		List<String> taxa = new ArrayList<>(taxonUriMap.keySet());
+		HashMap<String, Integer> taxonIds = new HashMap<>(taxa.size() * 2);
+		for (int i = 0; i < taxa.size(); i++) {
+			taxonIds.put(taxa.get(i), i);
+		}
+
+		int[] valueTaxon = new int[tree.nodesWithValue()];
+		for (int i = 0; i < valueTaxon.length; i++) {
+			String taxon = skipGramTaxonLookup.get(tree.getValue(i));
+			valueTaxon[i] = taxon == null ? -1 : taxonIds.getOrDefault(taxon, -1);
+		}
+
+		int[] uriBegin = new int[taxa.size() + 1];
+		List<String> uris = new ArrayList<>();
+		for (int i = 0; i < taxa.size(); i++) {
+			uriBegin[i] = uris.size();
+			for (Object uri : taxonUriMap.get(taxa.get(i))) {
+				uris.add(uri.toString());
+			}
+		}
+		uriBegin[taxa.size()] = uris.size();
+
+		Path temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+		try {
+			try (ModelFileWriter out = new ModelFileWriter(temp)) {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				tree.write(out);
+				out.writeInts(valueTaxon);
+				out.writeStrings(taxa, true);
+				out.writeInts(uriBegin);
+				out.writeStrings(uris, false);
+			}
+			Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	public static GazetteerModelFile map(Path path) throws IOException {
+		ModelFileReader in = ModelFileReader.map(path);
+		if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+			throw new IOException(String.format("'%s' is not a gazetteer model of version %d", path, VERSION));
+		}
+		CompactTrie tree = CompactTrie.read(in);
+		IntBuffer valueTaxon = in.readInts();
+		ModelFileReader.StringTable taxa = in.readStrings();
+		IntBuffer uriBegin = in.readInts();
+		ModelFileReader.StringTable uris = in.readStrings();
+		if (valueTaxon.limit() != tree.nodesWithValue() || uriBegin.limit() != taxa.size() + 1) {
+			throw new IOException(String.format("Corrupt gazetteer model '%s'", path));
+		}
+		return new GazetteerModelFile(tree, valueTaxon, taxa, uriBegin, uris);
+	}
+
+	public CompactTrie getTree() {
+		return tree;
+	}
+
+	/**
+	 * @return the skip-grams of the tree and their taxon
+	 */
+	public Map<String, String> getSkipGramTaxonLookup() {
+		return new SkipGramTaxonLookup();
+	}
+
+	/**
+	 * @return the skip-grams of the tree, in tree order instead of by length
+	 */
+	public Set<String> getSortedSkipGramSet() {
+		return new AbstractSet<String>() {
+			@Override
+			public Iterator<String> iterator() {
+				return tree.getValues().iterator();
+			}
+
+			@Override
+			public int size() {
+				return tree.nodesWithValue();
+			}
+
+			@Override
+			public boolean contains(Object o) {
+				return o instanceof String && tree.valueId((String) o) >= 0;
+			}
+		};
+	}
+
+	/**
+	 * @return the taxa and their URIs, each call to {@link Map#get(Object)} returns a new set
+	 */
+	public Map<String, HashSet<Object>> getTaxonUriMap() {
+		return new TaxonUriMap();
+	}
+
+	private HashSet<Object> getUris(int taxonId) {
+		HashSet<Object> result = new HashSet<>();
+		for (int i = uriBegin.get(taxonId); i < uriBegin.get(taxonId + 1); i++) {
+			result.add(uris.get(i));
+		}
+		return result;
+	}
+
+	private class SkipGramTaxonLookup extends AbstractMap<String, String> {
+		@Override
+		public String get(Object key) {
+			if (!(key instanceof String)) {
+				return null;
+			}
+			int valueId = tree.valueId((String) key);
+			if (valueId < 0 || valueTaxon.get(valueId) < 0) {
+				return null;
+			}
+			return taxa.get(valueTaxon.get(valueId));
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return get(key) != null;
+		}
+
+		@Override
+		public Set<Entry<String, String>> entrySet() {
+			return new AbstractSet<Entry<String, String>>() {
+				@Override
+				public Iterator<Entry<String, String>> iterator() {
+					return new Iterator<Entry<String, String>>() {
+						private int next = advance(0);
+
+						private int advance(int valueId) {
+							while (valueId < valueTaxon.limit() && valueTaxon.get(valueId) < 0) {
+								valueId++;
+							}
+							return valueId;
+						}
+
+						@Override
+						public boolean hasNext() {
+							return next < valueTaxon.limit();
+						}
+
+						@Override
+						public Entry<String, String> next() {
+							if (!hasNext()) {
+								throw new NoSuchElementException();
+							}
+							Entry<String, String> entry = new SimpleImmutableEntry<>(tree.getValue(next), taxa.get(valueTaxon.get(next)));
+							next = advance(next + 1);
+							return entry;
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					int size = 0;
+					for (int i = 0; i < valueTaxon.limit(); i++) {
+						if (valueTaxon.get(i) >= 0) {
+							size++;
+						}
+					}
+					return size;
+				}
+			};
+		}
+	}
+
+	private class TaxonUriMap extends AbstractMap<String, HashSet<Object>> {
+		@Override
+		public HashSet<Object> get(Object key) {
+			int taxonId = taxa.indexOf(key);
+			return taxonId < 0 ? null : getUris(taxonId);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return taxa.indexOf(key) >= 0;
+		}
+
+		@Override
+		public int size() {
+			return taxa.size();
+		}
+
+		@Override
+		public Set<Entry<String, HashSet<Object>>> entrySet() {
+			return new AbstractSet<Entry<String, HashSet<Object>>>() {
+				@Override
+				public Iterator<Entry<String, HashSet<Object>>> iterator() {
+					return new Iterator<Entry<String, HashSet<Object>>>() {
+						private int next = 0;
+
+						@Override
+						public boolean hasNext() {
+							return next < taxa.size();
+						}
+
+						@Override
+						public Entry<String, HashSet<Object>> next() {
+							if (!hasNext()) {
+								throw new NoSuchElementException();
+							}
+							Entry<String, HashSet<Object>> entry = new SimpleImmutableEntry<>(taxa.get(next), getUris(next));
+							next++;
+							return entry;
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return taxa.size();
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,362 @@
+package org.hucompute.textimager.uima.gazetteer.models;
+
+import org.hucompute.textimager.uima.gazetteer.tree.CompactTrie;
+import org.hucompute.textimager.uima.gazetteer.tree.StringTreeNode;
+import org.hucompute.textimager.uima.gazetteer.tree.TokenNormalizer;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Objects;
+
+/**
+ * The parameters of a tree gazetteer model. Options are equal if they build the same model, so they are the key of
+ * the {@link SharedGazetteerModels shared models}; the {@link Builder#streamingLoaderBudget(int) streaming loader
+ * budget} only changes how the model is built and is ignored.
+ * <p>
+ * The defaults of the {@link Builder} are the defaults of the gazetteer parameters.
+ */
+public final class GazetteerModelOptions {
+	private final boolean multiClass;
+	private final String[] sourceLocations;
+	private final boolean useLowercase;
+	private final String language;
+	private final double minLength;
+	private final boolean allSkips;
+	private final boolean splitHyphen;
+	private final boolean addAbbreviatedTaxa;
+	private final int minWordCountForSkipGrams;
+	private final String tokenBoundaryRegex;
+	private final HashSet<String> filterSet;
+	private final String gazetteerName;
+	private final boolean simpleLoading;
+	private final boolean noSkipGrams;
+	private final boolean compactTree;
+	private final boolean usePrebuiltModel;
+	private final int streamingLoaderBudget;
+	private final TokenNormalizer tokenNormalizer;
+
+	private GazetteerModelOptions(Builder builder) {
+		multiClass = builder.multiClass;
+		sourceLocations = builder.sourceLocations.clone();
+		useLowercase = builder.useLowercase;
+		language = builder.language;
+		minLength = builder.minLength;
+		allSkips = builder.allSkips;
+		splitHyphen = builder.splitHyphen;
+		addAbbreviatedTaxa = builder.addAbbreviatedTaxa;
+		minWordCountForSkipGrams = builder.minWordCountForSkipGrams;
+		tokenBoundaryRegex = builder.tokenBoundaryRegex;
+		filterSet = new HashSet<>(builder.filterSet);
+		gazetteerName = builder.gazetteerName;
+		simpleLoading = builder.simpleLoading;
+		noSkipGrams = builder.noSkipGrams;
+		compactTree = builder.compactTree;
+		usePrebuiltModel = builder.usePrebuiltModel;
+		streamingLoaderBudget = builder.streamingLoaderBudget;
+		tokenNormalizer = builder.tokenNormalizer;
+	}
+
+	/**
+	 * @param sourceLocations An array of UTF-8 file locations containing a list of one taxon and any number of URIs
+	 *                        (comma or space separated) per line, or URLs or zip files of them.
+	 * @param gazetteerName   The name of the gazetteer, used for the download and model cache folder.
+	 */
+	public static Builder builder(String[] sourceLocations, String gazetteerName) {
+		return new Builder(sourceLocations, gazetteerName);
+	}
+
+	/**
+	 * @return a builder with these options
+	 */
+	public Builder toBuilder() {
+		return new Builder(sourceLocations, gazetteerName)
+				.multiClass(multiClass)
+				.useLowercase(useLowercase)
+				.language(language)
+				.minLength(minLength)
+				.allSkips(allSkips)
+				.splitHyphen(splitHyphen)
+				.addAbbreviatedTaxa(addAbbreviatedTaxa)
+				.minWordCountForSkipGrams(minWordCountForSkipGrams)
+				.tokenBoundaryRegex(tokenBoundaryRegex)
+				.filterSet(filterSet)
+				.simpleLoading(simpleLoading)
+				.noSkipGrams(noSkipGrams)
+				.compactTree(compactTree)
+				.usePrebuiltModel(usePrebuiltModel)
+				.streamingLoaderBudget(streamingLoaderBudget)
+				.tokenNormalizer(tokenNormalizer);
+	}
+
+	public boolean isMultiClass() {
+		return multiClass;
+	}
+
+	public String[] getSourceLocations() {
+		return sourceLocations.clone();
+	}
+
+	public boolean isUseLowercase() {
+		return useLowercase;
+	}
+
+	public String getLanguage() {
+		return language;
+	}
+
+	public double getMinLength() {
+		return minLength;
+	}
+
+	public boolean isAllSkips() {
+		return allSkips;
+	}
+
+	public boolean isSplitHyphen() {
+		return splitHyphen;
+	}
+
+	public boolean isAddAbbreviatedTaxa() {
+		return addAbbreviatedTaxa;
+	}
+
+	public int getMinWordCountForSkipGrams() {
+		return minWordCountForSkipGrams;
+	}
+
+	public String getTokenBoundaryRegex() {
+		return tokenBoundaryRegex;
+	}
+
+	/**
+	 * @return the lower cased entries that are not added to the tree, must not be modified
+	 */
+	public HashSet<String> getFilterSet() {
+		return filterSet;
+	}
+
+	public String getGazetteerName() {
+		return gazetteerName;
+	}
+
+	public boolean isSimpleLoading() {
+		return simpleLoading;
+	}
+
+	public boolean isNoSkipGrams() {
+		return noSkipGrams;
+	}
+
+	public boolean isCompactTree() {
+		return compactTree;
+	}
+
+	public boolean isUsePrebuiltModel() {
+		return usePrebuiltModel;
+	}
+
+	public int getStreamingLoaderBudget() {
+		return streamingLoaderBudget;
+	}
+
+	public TokenNormalizer getTokenNormalizer() {
+		return tokenNormalizer;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof GazetteerModelOptions)) {
+			return false;
+		}
+		GazetteerModelOptions other = (GazetteerModelOptions) o;
+		return multiClass == other.multiClass
+				&& Arrays.equals(sourceLocations, other.sourceLocations)
+				&& useLowercase == other.useLowercase
+				&& Objects.equals(language, other.language)
+				&& Double.compare(minLength, other.minLength) == 0
+				&& allSkips == other.allSkips
+				&& splitHyphen == other.splitHyphen
+				&& addAbbreviatedTaxa == other.addAbbreviatedTaxa
+				&& minWordCountForSkipGrams == other.minWordCountForSkipGrams
+				&& tokenBoundaryRegex.equals(other.tokenBoundaryRegex)
+				&& filterSet.equals(other.filterSet)
+				&& gazetteerName.equals(other.gazetteerName)
+				&& simpleLoading == other.simpleLoading
+				&& noSkipGrams == other.noSkipGrams
+				&& compactTree == other.compactTree
+				&& usePrebuiltModel == other.usePrebuiltModel
+				&& tokenNormalizer.equals(other.tokenNormalizer);
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(multiClass, Arrays.hashCode(sourceLocations), useLowercase, language, minLength, allSkips,
+				splitHyphen, addAbbreviatedTaxa, minWordCountForSkipGrams, tokenBoundaryRegex, filterSet, gazetteerName,
+				simpleLoading, noSkipGrams, compactTree, usePrebuiltModel, tokenNormalizer);
+	}
+
+	public static class Builder {
+		private final String[] sourceLocations;
+		private final String gazetteerName;
+		private boolean multiClass = false;
+		private boolean useLowercase = false;
+		private String language = "de";
+		private double minLength = 5;
+		private boolean allSkips = false;
+		private boolean splitHyphen = true;
+		private boolean addAbbreviatedTaxa = true;
+		private int minWordCountForSkipGrams = 3;
+		private String tokenBoundaryRegex = "\\s+";
+		private HashSet<String> filterSet = new HashSet<>();
+		private boolean simpleLoading = false;
+		private boolean noSkipGrams = false;
+		private boolean compactTree = true;
+		private boolean usePrebuiltModel = false;
+		private int streamingLoaderBudget = 0;
+		private TokenNormalizer tokenNormalizer = TokenNormalizer.NONE;
+
+		private Builder(String[] sourceLocations, String gazetteerName) {
+			this.sourceLocations = Objects.requireNonNull(sourceLocations);
+			this.gazetteerName = Objects.requireNonNull(gazetteerName);
+		}
+
+		/**
+		 * If true, build a {@link MultiClassTreeGazetteerModel} with a class per source location.
+		 */
+		public Builder multiClass(boolean multiClass) {
+			this.multiClass = multiClass;
+			return this;
+		}
+
+		/**
+		 * If true, use lower cased skip-grams.
+		 */
+		public Builder useLowercase(boolean useLowercase) {
+			this.useLowercase = useLowercase;
+			return this;
+		}
+
+		/**
+		 * The language to be used as locale for lower casing.
+		 */
+		public Builder language(String language) {
+			this.language = language;
+			return this;
+		}
+
+		/**
+		 * The minimum skip-gram length. All skip-grams (and taxa) with a length lower than this will be omitted.
+		 */
+		public Builder minLength(double minLength) {
+			this.minLength = minLength;
+			return this;
+		}
+
+		/**
+		 * If true, get all m-skip-n-grams of length n > 2.
+		 */
+		public Builder allSkips(boolean allSkips) {
+			this.allSkips = allSkips;
+			return this;
+		}
+
+		/**
+		 * If true, taxon tokens will be split at hyphens.
+		 */
+		public Builder splitHyphen(boolean splitHyphen) {
+			this.splitHyphen = splitHyphen;
+			return this;
+		}
+
+		/**
+		 * If true, additionally add taxa with the first token abbreviated.
+		 */
+		public Builder addAbbreviatedTaxa(boolean addAbbreviatedTaxa) {
+			this.addAbbreviatedTaxa = addAbbreviatedTaxa;
+			return this;
+		}
+
+		/**
+		 * The lower bound token count for the skip-gram creation.
+		 */
+		public Builder minWordCountForSkipGrams(int minWordCountForSkipGrams) {
+			this.minWordCountForSkipGrams = minWordCountForSkipGrams;
+			return this;
+		}
+
+		/**
+		 * The pattern of the token boundaries of the tree entries.
+		 */
+		public Builder tokenBoundaryRegex(String tokenBoundaryRegex) {
+			this.tokenBoundaryRegex = Objects.requireNonNull(tokenBoundaryRegex);
+			return this;
+		}
+
+		/**
+		 * The lower cased entries that are not added to the tree.
+		 */
+		public Builder filterSet(HashSet<String> filterSet) {
+			this.filterSet = Objects.requireNonNull(filterSet);
+			return this;
+		}
+
+		/**
+		 * If true, read the taxa and their data without removing non-token characters or parsing URIs.
+		 */
+		public Builder simpleLoading(boolean simpleLoading) {
+			this.simpleLoading = simpleLoading;
+			return this;
+		}
+
+		/**
+		 * If true, only add the taxa themselves, no skip-grams.
+		 */
+		public Builder noSkipGrams(boolean noSkipGrams) {
+			this.noSkipGrams = noSkipGrams;
+			return this;
+		}
+
+		/**
+		 * If true, build a read-only {@link CompactTrie}, otherwise a {@link StringTreeNode} tree.
+		 */
+		public Builder compactTree(boolean compactTree) {
+			this.compactTree = compactTree;
+			return this;
+		}
+
+		/**
+		 * If true, memory map the {@link GazetteerModelFile prebuilt model} for these sources and options instead of
+		 * loading the taxa, or build and write it. Always uses a {@link CompactTrie}.
+		 */
+		public Builder usePrebuiltModel(boolean usePrebuiltModel) {
+			this.usePrebuiltModel = usePrebuiltModel;
+			return this;
+		}
+
+		/**
+		 * If greater than 0, build the prebuilt model with the {@link StreamingModelBuilder} instead of loading all
+		 * taxa into maps, with about this many MB of entries in memory, and map it. For sources that do not fit into
+		 * the heap.
+		 */
+		public Builder streamingLoaderBudget(int streamingLoaderBudget) {
+			this.streamingLoaderBudget = streamingLoaderBudget;
+			return this;
+		}
+
+		/**
+		 * Normalizes the tokens of the tree keys, so that case, diacritic and OCR variants of the taxa share one
+		 * entry. The gazetteers normalize the tokens of the documents with the same one.
+		 */
+		public Builder tokenNormalizer(TokenNormalizer tokenNormalizer) {
+			this.tokenNormalizer = Objects.requireNonNull(tokenNormalizer);
+			return this;
+		}
+
+		public GazetteerModelOptions build() {
+			return new GazetteerModelOptions(this);
+		}
+	}
+}
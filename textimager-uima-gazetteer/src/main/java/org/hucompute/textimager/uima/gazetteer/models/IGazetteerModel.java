@@ -4,6 +4,7 @@ import java.net.URI;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Function;
 
 public interface IGazetteerModel {
 	Map<String, String> getSkipGramTaxonLookup();
@@ -11,4 +12,14 @@ public interface IGazetteerModel {
 	Set<String> getSortedSkipGramSet();
 	
 	Map<String, HashSet<Object>> getTaxonUriMap();
+	
+	/**
+	 * The URIs of a taxon, parsed once per model and parser class and shared by all gazetteers of that class that use
+	 * the model, see {@link TaxonPayload}.
+	 *
+	 * @param parserClass the class of the gazetteer, its parser must give the same objects for all its instances
+	 * @param parser      parses the data of each URI
+	 * @return null if the taxon is unknown
+	 */
+	TaxonPayload getPayload(String taxon, Class<?> parserClass, Function<String, Object> parser);
 }
@@ -1,8 +1,14 @@
 package org.hucompute.textimager.uima.gazetteer.models;
 
 import org.hucompute.textimager.uima.gazetteer.tree.ITreeNode;
+import org.hucompute.textimager.uima.gazetteer.tree.TokenNormalizer;
 
 public interface ITreeGazetteerModel extends IGazetteerModel {
 	
 	ITreeNode getTree();
+	
+	/**
+	 * @return the normalizer of the tree keys, the tokens of a document must be normalized by it before the lookup
+	 */
+	TokenNormalizer getTokenNormalizer();
 }
@@ -33,7 +33,14 @@ public class MultiClassTreeGazetteerModel extends TreeGazetteerModel {
 	 * @throws IOException
 	 */
 	public MultiClassTreeGazetteerModel(String[] aSourceLocations, Boolean bUseLowercase, String sLanguage, double dMinLength, boolean bAllSkips, boolean bSplitHyphen, boolean bAddAbbreviatedTaxa, int iMinWordCountForSkipGrams, String tokenBoundaryRegex, HashSet<String> pFilterSet, String gazetteerName, boolean simpleLoading, boolean noSkipGrams) throws IOException {
-		super(aSourceLocations, bUseLowercase, sLanguage, dMinLength, bAllSkips, bSplitHyphen, bAddAbbreviatedTaxa, iMinWordCountForSkipGrams, tokenBoundaryRegex, pFilterSet, gazetteerName, simpleLoading, noSkipGrams);
+		this(optionsOf(aSourceLocations, bUseLowercase, sLanguage, dMinLength, bAllSkips, bSplitHyphen, bAddAbbreviatedTaxa, iMinWordCountForSkipGrams, tokenBoundaryRegex, pFilterSet, gazetteerName, simpleLoading, noSkipGrams).multiClass(true).build());
+	}
+	
+	/**
+	 * Create the skip-grams of the taxa and their tree for the given options, with a class per source location.
+	 */
+	public MultiClassTreeGazetteerModel(GazetteerModelOptions options) throws IOException {
+		super(options);
 	}
 	
 	@Override
@@ -105,7 +112,26 @@ public class MultiClassTreeGazetteerModel extends TreeGazetteerModel {
 		return lTaxonUriMap;
 	}
 	
+	@Override
+	protected String getSourceId(String sourceLocation) {
+		return String.valueOf(fileLocationSourceMapping.get(sourceLocation));
+	}
+	
 	public Set<Integer> getClassIdFromTaxon(String taxon) {
+		if (prebuiltModel != null) {
+			// not part of the prebuilt model, each URI starts with its source id
+			HashSet<Object> uris = taxonUriMap.get(taxon);
+			if (uris == null) {
+				return null;
+			}
+			return uris.stream()
+					.map(uri -> {
+						// files extracted from zip sources have no id, like in taxonSourceMapping
+						String src = uri.toString().split(":", 2)[0];
+						return src.equals("null") ? null : Integer.valueOf(src);
+					})
+					.collect(Collectors.toCollection(HashSet::new));
+		}
 		return this.taxonSourceMapping.get(taxon);
 	}
 }
@@ -0,0 +1,156 @@
+package org.hucompute.textimager.uima.gazetteer.models;
+
+import org.apache.log4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JVM-wide registry of tree gazetteer models. Gazetteers and {@link TreeGazetteerModelResource resources} with the same
+ * parameters get the same model instance, which is built only once. A model is only weakly referenced, so it is
+ * released once no gazetteer uses it any more, and its entry is removed with it. The key of a model includes the
+ * size and modification time of its local source files, so a changed taxa file gives a new model.
+ */
+public final class SharedGazetteerModels {
+	private static final Logger logger = Logger.getLogger(SharedGazetteerModels.class);
+
+	private static final ConcurrentHashMap<List<Object>, Holder> models = new ConcurrentHashMap<>();
+
+	// the references of the models that were garbage collected
+	private static final ReferenceQueue<ITreeGazetteerModel> released = new ReferenceQueue<>();
+
+	private SharedGazetteerModels() {
+	}
+
+	public interface ModelLoader {
+		ITreeGazetteerModel load() throws IOException;
+	}
+
+	private static class Holder {
+		ModelReference model;
+		// set once the holder is no longer in the map
+		boolean removed;
+	}
+
+	private static class ModelReference extends WeakReference<ITreeGazetteerModel> {
+		final List<Object> key;
+		final Holder holder;
+
+		ModelReference(ITreeGazetteerModel model, List<Object> key, Holder holder) {
+			super(model, released);
+			this.key = key;
+			this.holder = holder;
+		}
+	}
+
+	/**
+	 * Remove the entries of the models that were garbage collected.
+	 */
+	private static void removeReleased() {
+		Reference<? extends ITreeGazetteerModel> reference;
+		while ((reference = released.poll()) != null) {
+			ModelReference modelReference = (ModelReference) reference;
+			Holder holder = modelReference.holder;
+			synchronized (holder) {
+				// the holder may already have a new model
+				if (holder.model == modelReference) {
+					models.remove(modelReference.key, holder);
+					holder.removed = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return true if there is an entry for the key, released models are removed first
+	 */
+	static boolean contains(List<Object> key) {
+		removeReleased();
+		return models.containsKey(key);
+	}
+
+	/**
+	 * Get the model for the key, or load it. Concurrent calls with the same key wait for the first one, calls with
+	 * different keys do not block each other.
+	 *
+	 * @param key    all parameters that define the model
+	 * @param loader builds the model if there is none for the key
+	 * @return the shared model
+	 */
+	public static ITreeGazetteerModel get(List<Object> key, ModelLoader loader) throws IOException {
+		removeReleased();
+		while (true) {
+			Holder holder = models.computeIfAbsent(key, k -> new Holder());
+			synchronized (holder) {
+				if (holder.removed) {
+					// removed while waiting for the lock, use the new holder
+					continue;
+				}
+				ITreeGazetteerModel model = holder.model == null ? null : holder.model.get();
+				if (model == null) {
+					try {
+						model = loader.load();
+					} catch (IOException | RuntimeException e) {
+						models.remove(key, holder);
+						holder.removed = true;
+						throw e;
+					}
+					holder.model = new ModelReference(model, key, holder);
+				} else {
+					logger.info("Using shared gazetteer model");
+				}
+				return model;
+			}
+		}
+	}
+
+	/**
+	 * The size and modification time of the local source files, the files of a folder are listed like
+	 * {@link StringGazetteerModel} does. Downloaded sources are not checked again, so they have no version.
+	 */
+	static List<Object> getSourceVersions(String[] aSourceLocations) {
+		List<Object> versions = new ArrayList<>();
+		for (String sourceLocation : aSourceLocations) {
+			File sourceLocationFile = new File(sourceLocation);
+			if (sourceLocationFile.isDirectory()) {
+				File[] files = sourceLocationFile.listFiles();
+				if (files != null) {
+					Arrays.sort(files);
+					for (File file : files) {
+						addSourceVersion(versions, file);
+					}
+				}
+			} else {
+				addSourceVersion(versions, sourceLocationFile);
+			}
+		}
+		return versions;
+	}
+
+	private static void addSourceVersion(List<Object> versions, File file) {
+		if (file.isFile()) {
+			versions.add(Arrays.asList(file.getAbsolutePath(), file.length(), file.lastModified()));
+		}
+	}
+
+	/**
+	 * Get the shared {@link TreeGazetteerModel} or {@link MultiClassTreeGazetteerModel} for these options. The key is
+	 * the options with the versions of their source files.
+	 */
+	public static ITreeGazetteerModel get(GazetteerModelOptions options) throws IOException {
+		List<Object> key = Arrays.asList(options, getSourceVersions(options.getSourceLocations()));
+		return get(key, () -> {
+			if (options.isMultiClass()) {
+				return new MultiClassTreeGazetteerModel(options);
+			}
+			return new TreeGazetteerModel(options);
+		});
+	}
+}
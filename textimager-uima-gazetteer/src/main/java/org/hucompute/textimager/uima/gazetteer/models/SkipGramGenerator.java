@@ -0,0 +1,146 @@
+package org.hucompute.textimager.uima.gazetteer.models;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Generates the skip-grams of a taxon: the sequences of its words with some words left out, joined by spaces. The
+ * words of a taxon are addressed by their index, and each skip-gram is a bit mask of the kept words. The masks with
+ * the same number of words are enumerated in increasing order, so no lists or boxed combinations are created, and
+ * equal skip-grams of repeated words are merged by the result set.
+ * <p>
+ * With the default limits, the skip-grams are the same as the gazetteers always generated: for taxa of
+ * {@code minWordCount} to 5 words, all skip-grams that leave out one word, or with {@code allSkips} and more than three
+ * words, all skip-grams of at least two words.
+ */
+public class SkipGramGenerator {
+	public static final int DEFAULT_MAX_WORD_COUNT = 5;
+	public static final int UNLIMITED = Integer.MAX_VALUE;
+
+	private static final Pattern WORD_BOUNDARY = Pattern.compile("[\\s\n]+");
+	private static final Pattern WORD_BOUNDARY_WITH_HYPHEN = Pattern.compile("[\\s\n\\-]+");
+
+	private final boolean noSkipGrams;
+	private final boolean addAbbreviatedTaxa;
+	private final int minWordCount;
+	private final int maxWordCount;
+	private final boolean allSkips;
+	private final boolean splitHyphen;
+	private final int maxGap;
+	private final int maxSkipGrams;
+
+	public SkipGramGenerator(boolean noSkipGrams, boolean addAbbreviatedTaxa, int minWordCount, boolean allSkips, boolean splitHyphen) {
+		this(noSkipGrams, addAbbreviatedTaxa, minWordCount, DEFAULT_MAX_WORD_COUNT, allSkips, splitHyphen, UNLIMITED, UNLIMITED);
+	}
+
+	/**
+	 * @param noSkipGrams        if true, only the taxon and its abbreviation
+	 * @param addAbbreviatedTaxa if true, add the taxon with its first word abbreviated ("A. alba") and its skip-grams
+	 * @param minWordCount       the minimum number of words of a taxon with skip-grams
+	 * @param maxWordCount       the maximum number of words of a taxon with skip-grams, at most 62
+	 * @param allSkips           if true, leave out any number of words down to two words, otherwise exactly one
+	 * @param splitHyphen        if true, hyphens separate words
+	 * @param maxGap             the maximum number of adjacent words left out between two kept words
+	 * @param maxSkipGrams       the maximum number of skip-grams per taxon, the ones with more words first
+	 */
+	public SkipGramGenerator(boolean noSkipGrams, boolean addAbbreviatedTaxa, int minWordCount, int maxWordCount, boolean allSkips, boolean splitHyphen, int maxGap, int maxSkipGrams) {
+		if (maxWordCount > 62) {
+			throw new IllegalArgumentException("maxWordCount must be at most 62, was " + maxWordCount);
+		}
+		this.noSkipGrams = noSkipGrams;
+		this.addAbbreviatedTaxa = addAbbreviatedTaxa;
+		this.minWordCount = minWordCount;
+		this.maxWordCount = maxWordCount;
+		this.allSkips = allSkips;
+		this.splitHyphen = splitHyphen;
+		this.maxGap = maxGap;
+		this.maxSkipGrams = maxSkipGrams;
+	}
+
+	/**
+	 * @return the skip-grams of the taxon, and its abbreviation and the skip-grams of that
+	 */
+	public HashSet<String> getSkipGrams(String taxon) {
+		HashSet<String> skipGrams = new HashSet<>();
+		addSkipGrams(taxon, skipGrams);
+
+		if (addAbbreviatedTaxa) {
+			String[] words = getWords(taxon);
+			if (words.length > 1) {
+				words[0] = taxon.charAt(0) + ".";
+				String abbreviatedString = String.join(" ", words);
+				skipGrams.add(abbreviatedString);
+				if (words.length > 2) {
+					addSkipGrams(abbreviatedString, skipGrams);
+				}
+			}
+		}
+		return skipGrams;
+	}
+
+	/**
+	 * Add the skip-grams of a string, or the string itself if it has none.
+	 */
+	public void addSkipGrams(String string, Set<String> skipGrams) {
+		String[] words = getWords(string);
+		int n = words.length;
+		if (noSkipGrams || n < minWordCount || n > maxWordCount) {
+			skipGrams.add(string);
+			return;
+		}
+
+		int minKept = allSkips && n > 3 ? 2 : n - 1;
+		StringBuilder skipGram = new StringBuilder(string.length());
+		int added = 0;
+		for (int kept = n - 1; kept >= minKept; kept--) {
+			if (kept == 0) {
+				// a single word without it
+				if (skipGrams.add("") && ++added >= maxSkipGrams) {
+					return;
+				}
+				continue;
+			}
+			long end = 1L << n;
+			// Gosper's hack: the next larger mask with the same number of bits
+			for (long mask = (1L << kept) - 1; mask < end; ) {
+				if (maxGap == UNLIMITED || maxGap(mask) <= maxGap) {
+					skipGram.setLength(0);
+					for (long rest = mask; rest != 0; rest &= rest - 1) {
+						if (rest != mask) {
+							skipGram.append(' ');
+						}
+						skipGram.append(words[Long.numberOfTrailingZeros(rest)]);
+					}
+					if (skipGrams.add(skipGram.toString()) && ++added >= maxSkipGrams) {
+						return;
+					}
+				}
+				long lowest = mask & -mask;
+				long carry = mask + lowest;
+				mask = (((carry ^ mask) >>> 2) / lowest) | carry;
+			}
+		}
+	}
+
+	// the longest run of words left out between two kept words
+	static int maxGap(long mask) {
+		int gap = 0;
+		long rest = mask >>> Long.numberOfTrailingZeros(mask);
+		while (rest != 0) {
+			int kept = Long.numberOfTrailingZeros(~rest);
+			rest >>>= kept;
+			if (rest == 0) {
+				break;
+			}
+			int skipped = Long.numberOfTrailingZeros(rest);
+			gap = Math.max(gap, skipped);
+			rest >>>= skipped;
+		}
+		return gap;
+	}
+
+	String[] getWords(String string) {
+		return (splitHyphen ? WORD_BOUNDARY_WITH_HYPHEN : WORD_BOUNDARY).split(string);
+	}
+}
@@ -0,0 +1,386 @@
+package org.hucompute.textimager.uima.gazetteer.models;
+
+import com.google.common.base.Strings;
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.hucompute.textimager.uima.gazetteer.util.ExternalSorter;
+import org.hucompute.textimager.uima.gazetteer.util.ModelFileWriter;
+import org.hucompute.textimager.uima.gazetteer.util.StringTableWriter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static org.hucompute.textimager.uima.gazetteer.util.ExternalSorter.escape;
+import static org.hucompute.textimager.uima.gazetteer.util.ExternalSorter.unescape;
+
+/**
+ * Builds the {@link GazetteerModelFile} of a {@link StringGazetteerModel} from taxa files that do not fit into memory.
+ * Instead of the taxon, skip-gram and tree maps, each step writes records to an {@link ExternalSorter} that keeps at
+ * most the budget in memory:
+ * <ol>
+ * <li>the URIs of each line by taxon, to merge the lines of the same taxon,</li>
+ * <li>each taxon by its first line, which gives the taxon ids in the order of the in-memory map and writes the taxa
+ * and URI tables,</li>
+ * <li>the skip-grams of each taxon by skip-gram, to find the taxon of each skip-gram like
+ * {@link StringGazetteerModel#buildSkipGramTaxonLookup()},</li>
+ * <li>the tree entries by their tokens, the first entry of each token sequence is kept like in the
+ * {@link org.hucompute.textimager.uima.gazetteer.tree.CompactTrie.Builder}.</li>
+ * </ol>
+ * The tree is then built with one pass over the sorted entries per tree level, the nodes of a level are in the order of
+ * the entries. Only the distinct tokens are kept in memory, as in a mapped model.
+ */
+class StreamingModelBuilder {
+	private static final Logger logger = Logger.getLogger(StreamingModelBuilder.class);
+
+	// separates the tokens of a tree entry key and ends the key, so that shorter keys sort first
+	private static final char TOKEN_SEPARATOR = '\u0001';
+	private static final char KEY_END = '\u0000';
+	private static final Pattern TOKEN_SEPARATOR_PATTERN = Pattern.compile(String.valueOf(TOKEN_SEPARATOR), Pattern.LITERAL);
+
+	private final StringGazetteerModel model;
+	private final Pattern tokenBoundaryRegex;
+	private final boolean simpleLoading;
+	private final long budget;
+
+	/**
+	 * @param model              the model with the taxa files and parameters
+	 * @param tokenBoundaryRegex the token boundaries of the tree entries
+	 * @param simpleLoading      the taxa file format, see {@link StringGazetteerModel#parseTaxon}
+	 * @param budget             the estimated heap in bytes for the records held in memory
+	 */
+	StreamingModelBuilder(StringGazetteerModel model, String tokenBoundaryRegex, boolean simpleLoading, long budget) {
+		this.model = model;
+		this.tokenBoundaryRegex = Pattern.compile(tokenBoundaryRegex, Pattern.UNICODE_CHARACTER_CLASS);
+		this.simpleLoading = simpleLoading;
+		this.budget = budget;
+	}
+
+	void build(Path modelFile) throws IOException {
+		long startTime = System.currentTimeMillis();
+		Path folder = Files.createTempDirectory(modelFile.getParent(), "streaming");
+		try (ExternalSorter taxonLines = new ExternalSorter(folder, budget);
+			 ExternalSorter firstLines = new ExternalSorter(folder, budget);
+			 ExternalSorter skipGrams = new ExternalSorter(folder, budget);
+			 ExternalSorter treeEntries = new ExternalSorter(folder, budget);
+			 StringTableWriter taxa = new StringTableWriter(folder, true);
+			 StringTableWriter uris = new StringTableWriter(folder, false);
+			 StringTableWriter values = new StringTableWriter(folder, true)) {
+			readLines(taxonLines);
+			mergeTaxa(taxonLines, firstLines);
+			Path uriBegin = folder.resolve("uriBegin.bin");
+			writeTaxa(firstLines, taxa, uris, uriBegin, skipGrams);
+			lookupSkipGrams(skipGrams, taxa.size(), treeEntries);
+			Path entries = folder.resolve("entries.txt");
+			String[] tokens = writeEntries(treeEntries, entries);
+
+			Path temp = Files.createTempFile(modelFile.getParent(), modelFile.getFileName().toString(), ".tmp");
+			try {
+				try (ModelFileWriter out = new ModelFileWriter(temp)) {
+					out.writeInt(GazetteerModelFile.MAGIC);
+					out.writeInt(GazetteerModelFile.VERSION);
+					// the sections of CompactTrie.write
+					buildTree(entries, tokens, folder, values, out);
+					out.writeStrings(taxa);
+					out.writeInts(uriBegin);
+					out.writeStrings(uris);
+				}
+				Files.move(temp, modelFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				Files.deleteIfExists(temp);
+			}
+			logger.info(String.format("Streamed prebuilt model '%s' with %d skip-grams from %d taxa in %dms.",
+					modelFile, values.size(), taxa.size(), System.currentTimeMillis() - startTime));
+		} finally {
+			FileUtils.deleteDirectory(folder.toFile());
+		}
+	}
+
+	// taxon, line number, URI
+	private void readLines(ExternalSorter taxonLines) throws IOException {
+		long lineNumber = 0;
+		for (int i = 0; i < model.sourceLocations.size(); i++) {
+			String sourceLocation = model.sourceLocations.get(i);
+			logger.info(String.format("[%d/%d] Streaming file %s", i + 1, model.sourceLocations.size(), sourceLocation));
+			String sourceId = model.getSourceId(sourceLocation);
+			try (BufferedReader reader = Files.newBufferedReader(Paths.get(sourceLocation), StandardCharsets.UTF_8)) {
+				String line;
+				while ((line = reader.readLine()) != null) {
+					if (Strings.isNullOrEmpty(line)) {
+						continue;
+					}
+					String taxon = StringGazetteerModel.parseTaxon(line, model.useLowercase, model.language, simpleLoading);
+					String key = escape(taxon) + '\t' + pad(lineNumber++) + '\t';
+					// a taxon without URIs is kept too
+					taxonLines.add(key + '-');
+					Iterator<Object> lineUris = StringGazetteerModel.parseUris(line, simpleLoading).iterator();
+					while (lineUris.hasNext()) {
+						taxonLines.add(key + '+' + escape(sourceId + ":" + lineUris.next()));
+					}
+				}
+			}
+		}
+		logger.info(String.format("Read %d lines from %d files.", lineNumber, model.sourceLocations.size()));
+	}
+
+	// first line number, taxon, URIs
+	private void mergeTaxa(ExternalSorter taxonLines, ExternalSorter firstLines) throws IOException {
+		Iterator<String> records = taxonLines.sorted();
+		String taxon = null;
+		String firstLine = null;
+		LinkedHashSet<String> uris = new LinkedHashSet<>();
+		while (records.hasNext()) {
+			String record = records.next();
+			int taxonEnd = record.indexOf('\t');
+			int lineEnd = record.indexOf('\t', taxonEnd + 1);
+			if (taxon == null || !record.regionMatches(0, taxon, 0, taxonEnd) || taxon.length() != taxonEnd) {
+				if (taxon != null) {
+					addTaxon(firstLines, firstLine, taxon, uris);
+				}
+				taxon = record.substring(0, taxonEnd);
+				firstLine = record.substring(taxonEnd + 1, lineEnd);
+				uris.clear();
+			}
+			if (record.charAt(lineEnd + 1) == '+') {
+				uris.add(record.substring(lineEnd + 2));
+			}
+		}
+		if (taxon != null) {
+			addTaxon(firstLines, firstLine, taxon, uris);
+		}
+	}
+
+	private static void addTaxon(ExternalSorter firstLines, String firstLine, String taxon, Set<String> uris) throws IOException {
+		StringBuilder record = new StringBuilder(firstLine).append('\t').append(taxon);
+		for (String uri : uris) {
+			record.append('\t').append(uri);
+		}
+		firstLines.add(record.toString());
+	}
+
+	// skip-gram, taxon id and position, 'g' for a skip-gram of the taxon or 's' for the taxon itself
+	private void writeTaxa(ExternalSorter firstLines, StringTableWriter taxa, StringTableWriter uris, Path uriBeginFile, ExternalSorter skipGrams) throws IOException {
+		Iterator<String> records = firstLines.sorted();
+		try (ModelFileWriter uriBegin = new ModelFileWriter(uriBeginFile)) {
+			while (records.hasNext()) {
+				String[] fields = records.next().split("\t", -1);
+				String taxon = unescape(fields[1]);
+				String taxonId = pad(taxa.size());
+				taxa.add(taxon);
+				uriBegin.writeInt(uris.size());
+				for (int i = 2; i < fields.length; i++) {
+					uris.add(unescape(fields[i]));
+				}
+
+				// the position of each skip-gram in the lookup map
+				int index = 0;
+				for (String skipGram : model.skipGramGenerator.getSkipGrams(taxon)) {
+					skipGrams.add(escape(skipGram) + '\t' + taxonId + pad(index++) + "\tg");
+				}
+				skipGrams.add(fields[1] + '\t' + taxonId + pad(0) + "\ts");
+			}
+			uriBegin.writeInt(uris.size());
+		}
+		logger.info(String.format("Merged %d taxa with %d URIs.", taxa.size(), uris.size()));
+	}
+
+	/**
+	 * A skip-gram of several taxa is dropped, like in {@link StringGazetteerModel#buildSkipGramTaxonLookup()}: the map
+	 * merge removes it for the second taxon and adds it again for the third. A taxon is always its own skip-gram. The
+	 * entries are ordered like the sorted skip-gram set, by length and then by their position in the lookup map.
+	 */
+	// tree key, length and position, value, taxon id
+	private void lookupSkipGrams(ExternalSorter skipGrams, int taxonCount, ExternalSorter treeEntries) throws IOException {
+		Iterator<String> records = skipGrams.sorted();
+		String skipGram = null;
+		int generated = 0;
+		String lastGenerated = null;
+		int self = -1;
+		long lookups = 0;
+		while (true) {
+			String record = records.hasNext() ? records.next() : null;
+			int skipGramEnd = record == null ? -1 : record.indexOf('\t');
+			if (skipGram != null && (record == null || skipGram.length() != skipGramEnd || !record.startsWith(skipGram))) {
+				int taxonId = self >= 0 ? self : generated % 2 == 1 ? taxonId(lastGenerated) : -1;
+				if (taxonId >= 0) {
+					lookups++;
+					// the taxa are added again after all skip-grams, unless they are already in the map
+					String position = generated % 2 == 1 ? lastGenerated : pad(taxonCount + self) + pad(0);
+					addTreeEntry(treeEntries, unescape(skipGram), taxonId, position);
+				}
+				skipGram = null;
+			}
+			if (record == null) {
+				break;
+			}
+			if (skipGram == null) {
+				skipGram = record.substring(0, skipGramEnd);
+				generated = 0;
+				lastGenerated = null;
+				self = -1;
+			}
+			String position = record.substring(skipGramEnd + 1, record.length() - 2);
+			if (record.charAt(record.length() - 1) == 'g') {
+				generated++;
+				lastGenerated = position;
+			} else {
+				self = taxonId(position);
+			}
+		}
+		logger.info(String.format("Found %d skip-grams with a taxon.", lookups));
+	}
+
+	private static int taxonId(String position) {
+		return Integer.parseInt(position.substring(0, 19));
+	}
+
+	// like StringGazetteerModel.buildSortedSkipGramSet, buildCompactTree and CompactTrie.Builder.add
+	private void addTreeEntry(ExternalSorter treeEntries, String skipGram, int taxonId, String position) throws IOException {
+		if (skipGram.isEmpty() || skipGram.length() < model.minLength || model.filterSet.contains(skipGram.toLowerCase())) {
+			return;
+		}
+		String value = model.useLowercase ? skipGram.toLowerCase() : skipGram;
+		StringBuilder record = new StringBuilder();
+		for (String token : tokenBoundaryRegex.split(value.trim())) {
+			if (record.length() > 0) {
+				record.append(TOKEN_SEPARATOR);
+			}
+			record.append(escape(model.tokenNormalizer.normalize(token)));
+		}
+		record.append(KEY_END)
+				.append(pad(Integer.MAX_VALUE - skipGram.length()))
+				.append(position)
+				.append('\t').append(escape(value))
+				.append('\t').append(taxonId);
+		treeEntries.add(record.toString());
+	}
+
+	/**
+	 * Write the first entry of each key, as tokens, value and taxon id.
+	 *
+	 * @return the sorted distinct escaped tokens
+	 */
+	private String[] writeEntries(ExternalSorter treeEntries, Path entries) throws IOException {
+		Iterator<String> records = treeEntries.sorted();
+		HashSet<String> tokens = new HashSet<>();
+		String previousKey = null;
+		long count = 0;
+		try (BufferedWriter writer = Files.newBufferedWriter(entries, StandardCharsets.UTF_8)) {
+			while (records.hasNext()) {
+				String record = records.next();
+				int keyEnd = record.indexOf(KEY_END);
+				String key = record.substring(0, keyEnd);
+				if (key.equals(previousKey)) {
+					continue;
+				}
+				previousKey = key;
+				tokens.addAll(Arrays.asList(TOKEN_SEPARATOR_PATTERN.split(key, -1)));
+				writer.write(key);
+				writer.write(record, record.indexOf('\t', keyEnd), record.length() - record.indexOf('\t', keyEnd));
+				writer.write('\n');
+				count++;
+			}
+		}
+		logger.info(String.format("Building tree from %d entries with %d tokens..", count, tokens.size()));
+		String[] sorted = tokens.toArray(new String[0]);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	/**
+	 * Write the tree like {@link org.hucompute.textimager.uima.gazetteer.tree.CompactTrie#write}. The token ids are
+	 * the positions of the sorted tokens, so the sorted entries are also sorted by token ids.
+	 */
+	private void buildTree(Path entries, String[] tokens, Path folder, StringTableWriter values, ModelFileWriter out) throws IOException {
+		Path firstChildFile = folder.resolve("firstChild.bin");
+		Path labelFile = folder.resolve("label.bin");
+		Path nodeValueFile = folder.resolve("nodeValue.bin");
+		Path valueTaxonFile = folder.resolve("valueTaxon.bin");
+		int maxKeyLength = 0;
+		try (ModelFileWriter firstChild = new ModelFileWriter(firstChildFile);
+			 ModelFileWriter label = new ModelFileWriter(labelFile);
+			 ModelFileWriter nodeValue = new ModelFileWriter(nodeValueFile);
+			 ModelFileWriter valueTaxon = new ModelFileWriter(valueTaxonFile)) {
+			// the root
+			label.writeInt(-1);
+			nodeValue.writeInt(-1);
+			int nodes = 1;
+			int levelStart = 0;
+			for (int depth = 1; ; depth++) {
+				int nextLevelStart = nodes;
+				boolean deeper = false;
+				try (BufferedReader reader = Files.newBufferedReader(entries, StandardCharsets.UTF_8)) {
+					String[] previous = null;
+					String line;
+					while ((line = reader.readLine()) != null) {
+						int keyEnd = line.indexOf('\t');
+						String[] key = TOKEN_SEPARATOR_PATTERN.split(line.substring(0, keyEnd), -1);
+						int common = previous == null ? -1 : commonPrefix(previous, key);
+						previous = key;
+						maxKeyLength = Math.max(maxKeyLength, key.length);
+						deeper |= key.length > depth;
+						// the entries with the same parent prefix follow each other
+						if (key.length >= depth - 1 && common < depth - 1) {
+							firstChild.writeInt(nodes);
+						}
+						if (key.length >= depth && common < depth) {
+							label.writeInt(Arrays.binarySearch(tokens, key[depth - 1]));
+							if (key.length == depth) {
+								int valueEnd = line.indexOf('\t', keyEnd + 1);
+								nodeValue.writeInt(values.size());
+								values.add(unescape(line.substring(keyEnd + 1, valueEnd)));
+								valueTaxon.writeInt(Integer.parseInt(line.substring(valueEnd + 1)));
+							} else {
+								nodeValue.writeInt(-1);
+							}
+							nodes++;
+						}
+					}
+				}
+				levelStart = nextLevelStart;
+				if (!deeper) {
+					break;
+				}
+			}
+			// the nodes of the last level have no children, and the end of the last node
+			for (int node = levelStart; node <= nodes; node++) {
+				firstChild.writeInt(nodes);
+			}
+		}
+
+		out.writeInt(maxKeyLength);
+		List<String> tokenList = new ArrayList<>(tokens.length);
+		for (String token : tokens) {
+			tokenList.add(unescape(token));
+		}
+		out.writeStrings(tokenList, false);
+		out.writeInts(firstChildFile);
+		out.writeInts(labelFile);
+		out.writeInts(nodeValueFile);
+		out.writeStrings(values);
+		out.writeInts(valueTaxonFile);
+	}
+
+	private static int commonPrefix(String[] a, String[] b) {
+		int length = Math.min(a.length, b.length);
+		for (int i = 0; i < length; i++) {
+			if (!a[i].equals(b[i])) {
+				return i;
+			}
+		}
+		return length;
+	}
+
+	// fixed width, so that the numbers sort like strings
+	private static String pad(long value) {
+		String digits = Long.toString(value);
+		return "0000000000000000000".substring(digits.length()) + digits;
+	}
+}
@@ -2,16 +2,15 @@ package org.hucompute.textimager.uima.gazetteer.models;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Sets;
-import com.google.common.collect.Streams;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import org.apache.commons.collections4.SetUtils;
 import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang3.ArrayUtils;
-import org.apache.commons.math3.util.Combinations;
-import org.apache.commons.math3.util.Pair;
 import org.apache.log4j.Logger;
 import org.apache.uima.util.UriUtils;
+import org.hucompute.textimager.uima.gazetteer.tree.CompactTrie;
 import org.hucompute.textimager.uima.gazetteer.tree.StringTreeNode;
+import org.hucompute.textimager.uima.gazetteer.tree.TokenNormalizer;
 import org.texttechnologylab.utilities.helper.FileUtils;
 
 import java.io.*;
@@ -23,10 +22,11 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -35,9 +35,17 @@ public class StringGazetteerModel implements IGazetteerModel {
 	
 	public static final Pattern nonTokenCharacterClass = Pattern.compile("[^\\p{Alpha}\\- ]+", Pattern.UNICODE_CHARACTER_CLASS);
 	
+	/**
+	 * System property for the folder of the downloaded taxa files and prebuilt models, defaults to
+	 * ~/.textimager/gazetteer. Each gazetteer name gets its own sub folder.
+	 */
+	public static final String CACHE_DIR_PROPERTY = "textimager.gazetteer.cacheDir";
+	
 	protected static final Logger logger = Logger.getLogger(StringGazetteerModel.class);
-	protected static Path tempPath;
-	protected static Path cachePath;
+	// the folders of the downloaded taxa files and prebuilt models of this gazetteer
+	protected final Path tempPath;
+	protected final Path cachePath;
+	protected final GazetteerModelOptions options;
 	protected final ArrayList<String> sourceLocations;
 	protected final Boolean useLowercase;
 	protected final String language;
@@ -48,10 +56,17 @@ public class StringGazetteerModel implements IGazetteerModel {
 	protected final HashSet<String> filterSet;
 	protected final int minWordCountForSkipGrams;
 	protected final boolean noSkipGrams;
+	protected final SkipGramGenerator skipGramGenerator;
+	protected final TokenNormalizer tokenNormalizer;
+	// the prebuilt model for these sources and parameters, null if prebuilt models are not used
+	protected final Path modelFile;
+	protected GazetteerModelFile prebuiltModel;
 	
 	Map<String, String> skipGramTaxonLookup;
 	Set<String> sortedSkipGramSet;
 	Map<String, HashSet<Object>> taxonUriMap;
+	// the parsed URIs of the tagged taxa, by the class of the parser
+	private final ConcurrentHashMap<Class<?>, ConcurrentHashMap<String, TaxonPayload>> payloads = new ConcurrentHashMap<>();
 	
 	/**
 	 * Create 1-skip-n-grams from each taxon in a file from a given list of files.
@@ -85,22 +100,90 @@ public class StringGazetteerModel implements IGazetteerModel {
 			boolean simpleLoading,
 			boolean noSkipGrams
 	) throws IOException {
+		this(optionsOf(aSourceLocations, bUseLowercase, sLanguage, dMinLength, bAllSkips, bSplitHyphen, bAddAbbreviatedTaxa, iMinWordCountForSkipGrams, tokenBoundaryRegex, pFilterSet, gazetteerName, simpleLoading, noSkipGrams).build());
+	}
+	
+	/**
+	 * @return the options of the positional constructor parameters, with the defaults for the others
+	 */
+	static GazetteerModelOptions.Builder optionsOf(
+			String[] aSourceLocations,
+			Boolean bUseLowercase,
+			String sLanguage,
+			double dMinLength,
+			boolean bAllSkips,
+			boolean bSplitHyphen,
+			boolean bAddAbbreviatedTaxa,
+			int iMinWordCountForSkipGrams,
+			String tokenBoundaryRegex,
+			HashSet<String> pFilterSet,
+			String gazetteerName,
+			boolean simpleLoading,
+			boolean noSkipGrams
+	) {
+		return GazetteerModelOptions.builder(aSourceLocations, gazetteerName)
+				.useLowercase(bUseLowercase)
+				.language(sLanguage)
+				.minLength(dMinLength)
+				.allSkips(bAllSkips)
+				.splitHyphen(bSplitHyphen)
+				.addAbbreviatedTaxa(bAddAbbreviatedTaxa)
+				.minWordCountForSkipGrams(iMinWordCountForSkipGrams)
+				.tokenBoundaryRegex(tokenBoundaryRegex)
+				.filterSet(pFilterSet)
+				.simpleLoading(simpleLoading)
+				.noSkipGrams(noSkipGrams);
+	}
+	
+	/**
+	 * Create the skip-grams of the taxa for the given options. If {@link GazetteerModelOptions#isUsePrebuiltModel()},
+	 * the {@link GazetteerModelFile prebuilt model} for these options is memory mapped instead of loading the taxa, if
+	 * one exists. Subclasses write the model once they built the tree.
+	 */
+	protected StringGazetteerModel(GazetteerModelOptions options) throws IOException {
+		String[] aSourceLocations = options.getSourceLocations();
+		String gazetteerName = options.getGazetteerName();
 		tempPath = Paths.get("/tmp/" + gazetteerName + "/");
-		cachePath = Paths.get(System.getenv("HOME"), ".textimager/gazetteer/" + gazetteerName + "/").toAbsolutePath();
+		String cacheDir = System.getProperty(CACHE_DIR_PROPERTY);
+		cachePath = (cacheDir != null ? Paths.get(cacheDir, gazetteerName) : Paths.get(System.getenv("HOME"), ".textimager/gazetteer/" + gazetteerName + "/")).toAbsolutePath();
 
+		this.options = options;
 		sourceLocations = getTaxaFiles(aSourceLocations);
-		useLowercase = bUseLowercase;
-		language = sLanguage;
-		minLength = dMinLength;
-		getAllSkips = bAllSkips;
-		splitHyphen = bSplitHyphen;
-		addAbbreviatedTaxa = bAddAbbreviatedTaxa;
-		minWordCountForSkipGrams = iMinWordCountForSkipGrams;
-		filterSet = pFilterSet;
-		this.noSkipGrams = noSkipGrams;
+		useLowercase = options.isUseLowercase();
+		language = options.getLanguage();
+		minLength = options.getMinLength();
+		getAllSkips = options.isAllSkips();
+		splitHyphen = options.isSplitHyphen();
+		addAbbreviatedTaxa = options.isAddAbbreviatedTaxa();
+		minWordCountForSkipGrams = options.getMinWordCountForSkipGrams();
+		filterSet = options.getFilterSet();
+		noSkipGrams = options.isNoSkipGrams();
+		skipGramGenerator = new SkipGramGenerator(noSkipGrams, addAbbreviatedTaxa, minWordCountForSkipGrams, getAllSkips, splitHyphen);
+		tokenNormalizer = options.getTokenNormalizer();
+		String tokenBoundaryRegex = options.getTokenBoundaryRegex();
+		boolean simpleLoading = options.isSimpleLoading();
+		int streamingLoaderBudget = options.getStreamingLoaderBudget();
 		
 		long startTime = System.currentTimeMillis();
 		
+		// the streaming loader writes the model for the same file name
+		modelFile = options.isUsePrebuiltModel() || streamingLoaderBudget > 0 ? getModelFile(aSourceLocations, tokenBoundaryRegex, simpleLoading) : null;
+		if (modelFile != null && Files.isRegularFile(modelFile)) {
+			try {
+				mapModel(startTime);
+				return;
+			} catch (IOException | RuntimeException e) {
+				logger.warn(String.format("Could not map prebuilt model '%s', rebuilding it: %s", modelFile, e));
+				prebuiltModel = null;
+			}
+		}
+		
+		if (streamingLoaderBudget > 0) {
+			new StreamingModelBuilder(this, tokenBoundaryRegex, simpleLoading, streamingLoaderBudget * (1L << 20)).build(modelFile);
+			mapModel(startTime);
+			return;
+		}
+		
 		// Map: Taxon -> {URI}
 		taxonUriMap = buildTaxaUriMap(simpleLoading);
 		
@@ -110,11 +193,26 @@ public class StringGazetteerModel implements IGazetteerModel {
 		// Set: {Skip-Gram}
 		sortedSkipGramSet = buildSortedSkipGramSet();
 		
+		// models are shared between gazetteer instances
+		taxonUriMap = Collections.unmodifiableMap(taxonUriMap);
+		skipGramTaxonLookup = Collections.unmodifiableMap(skipGramTaxonLookup);
+		sortedSkipGramSet = Collections.unmodifiableSet(sortedSkipGramSet);
+		
 		logger.info(String.format("Finished loading %d skip-grams from %d taxa in %dms.",
 				sortedSkipGramSet.size(), taxonUriMap.size(), System.currentTimeMillis() - startTime)
 		);
 	}
 	
+	private void mapModel(long startTime) throws IOException {
+		prebuiltModel = GazetteerModelFile.map(modelFile);
+		taxonUriMap = prebuiltModel.getTaxonUriMap();
+		skipGramTaxonLookup = prebuiltModel.getSkipGramTaxonLookup();
+		sortedSkipGramSet = prebuiltModel.getSortedSkipGramSet();
+		logger.info(String.format("Mapped prebuilt model '%s' with %d skip-grams from %d taxa in %dms.",
+				modelFile, sortedSkipGramSet.size(), taxonUriMap.size(), System.currentTimeMillis() - startTime)
+		);
+	}
+	
 	protected LinkedHashMap<String, HashSet<Object>> buildTaxaUriMap(boolean simpleLoading) throws IOException {
 		final AtomicInteger duplicateKeys = new AtomicInteger(0);
 		final LinkedHashMap<String, HashSet<Object>> lTaxonUriMap = new LinkedHashMap<>();
@@ -142,20 +240,17 @@ public class StringGazetteerModel implements IGazetteerModel {
 	}
 	
 	protected LinkedHashMap<String, String> buildSkipGramTaxonLookup() {
-		AtomicInteger duplicateKeys = new AtomicInteger(0);
-		final LinkedHashMap<String, String> lSkipGramTaxonLookup = taxonUriMap.keySet().stream()
-				.flatMap(s -> getSkipGramsFromTaxon(this.noSkipGrams, s, this.addAbbreviatedTaxa, this.minWordCountForSkipGrams, this.getAllSkips, this.splitHyphen)
-						.stream().map(val -> new Pair<>(s, val)))
-				.collect(Collectors.toMap(
-						Pair::getSecond,    // the skip-gram
-						Pair::getFirst,     // the corresponding taxon
-						(u, v) -> {
-							// Drop duplicate skip-grams to ensure bijective skip-gram <-> taxon mapping.
-							duplicateKeys.incrementAndGet();
-							return null;
-						},
-						LinkedHashMap::new));
-		logger.info(String.format("Ignoring %d duplicate skip-grams!", duplicateKeys.get()));
+		int duplicateKeys = 0;
+		final LinkedHashMap<String, String> lSkipGramTaxonLookup = new LinkedHashMap<>();
+		for (String taxon : taxonUriMap.keySet()) {
+			for (String skipGram : skipGramGenerator.getSkipGrams(taxon)) {
+				// Drop duplicate skip-grams to ensure bijective skip-gram <-> taxon mapping.
+				if (lSkipGramTaxonLookup.merge(skipGram, taxon, (u, v) -> null) == null) {
+					duplicateKeys++;
+				}
+			}
+		}
+		logger.info(String.format("Ignoring %d duplicate skip-grams!", duplicateKeys));
 		
 		// Ensure actual taxa are contained in lSkipGramTaxonLookup
 		taxonUriMap.keySet().forEach(tax -> lSkipGramTaxonLookup.put(tax, tax));
@@ -181,6 +276,59 @@ public class StringGazetteerModel implements IGazetteerModel {
 		return taxonUriMap.get(skipGramTaxonLookup.get(skipGram));
 	}
 	
+	/**
+	 * The prebuilt model is named by a hash of the model class, all parameters and the path, size and modification
+	 * time of each taxa file, so changing any of them builds a new model.
+	 *
+	 * @return the location of the prebuilt model for these sources and parameters.
+	 */
+	protected Path getModelFile(String[] aSourceLocations, String tokenBoundaryRegex, boolean simpleLoading) throws IOException {
+		Hasher hasher = Hashing.sha256().newHasher()
+				.putInt(GazetteerModelFile.VERSION)
+				.putString(getClass().getName(), StandardCharsets.UTF_8)
+				.putBoolean(useLowercase)
+				.putString(String.valueOf(language), StandardCharsets.UTF_8)
+				.putDouble(minLength)
+				.putBoolean(getAllSkips)
+				.putBoolean(splitHyphen)
+				.putBoolean(addAbbreviatedTaxa)
+				.putInt(minWordCountForSkipGrams)
+				.putString(tokenBoundaryRegex, StandardCharsets.UTF_8)
+				.putBoolean(simpleLoading)
+				.putBoolean(noSkipGrams);
+		// models without normalization keep their names
+		if (!tokenNormalizer.isIdentity()) {
+			hasher.putString(tokenNormalizer.toString(), StandardCharsets.UTF_8);
+		}
+		// the source order defines the class ids
+		for (String sourceLocation : aSourceLocations) {
+			hasher.putString(sourceLocation, StandardCharsets.UTF_8).putByte((byte) 0);
+		}
+		for (String sourceLocation : sourceLocations) {
+			Path path = Paths.get(sourceLocation).toAbsolutePath();
+			hasher.putString(path.toString(), StandardCharsets.UTF_8).putByte((byte) 0)
+					.putLong(Files.size(path))
+					.putLong(Files.getLastModifiedTime(path).toMillis());
+		}
+		for (String filter : new TreeSet<>(filterSet)) {
+			hasher.putString(filter, StandardCharsets.UTF_8).putByte((byte) 0);
+		}
+		return getTaxaLocation().resolve(String.format("model-%s.bin", hasher.hash()));
+	}
+	
+	/**
+	 * Write the prebuilt model with the given tree, failures are only logged.
+	 */
+	protected void writeModel(CompactTrie tree) {
+		long startTime = System.currentTimeMillis();
+		try {
+			GazetteerModelFile.write(modelFile, tree, skipGramTaxonLookup, taxonUriMap);
+			logger.info(String.format("Wrote prebuilt model '%s' in %dms.", modelFile, System.currentTimeMillis() - startTime));
+		} catch (IOException e) {
+			logger.warn(String.format("Could not write prebuilt model '%s': %s", modelFile, e));
+		}
+	}
+	
 	protected ArrayList<String> getTaxaFiles(String[] aSourceLocations) throws IOException {
 		ArrayList<String> lSourceLocations = new ArrayList<>();
 		for (String sourceLocation : aSourceLocations) {
@@ -216,34 +364,48 @@ public class StringGazetteerModel implements IGazetteerModel {
 	 */
 	protected static LinkedHashMap<String, HashSet<Object>> loadTaxaMap(String sourceLocation, Boolean pUseLowercase, String language, boolean simpleLoad) throws IOException {
 		try (BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(Files.newInputStream(Paths.get(sourceLocation)), StandardCharsets.UTF_8))) {
-			if (simpleLoad) {
-				return bufferedReader.lines()
-						.filter(s -> !Strings.isNullOrEmpty(s))
-						.collect(Collectors.toMap(
-								s -> {
-									String taxon = s.split("\t", 2)[0].trim();
-									return pUseLowercase ? taxon.toLowerCase(Locale.forLanguageTag(language)) : taxon;
-								},
-								s -> Stream.of(s.split("\t", 2)[1]).collect(Collectors.toCollection(HashSet::new)),
-								(u, v) -> new HashSet<>(SetUtils.union(u, v)),
-								LinkedHashMap::new)
-						);
-			}
-
 			return bufferedReader.lines()
 					.filter(s -> !Strings.isNullOrEmpty(s))
 					.collect(Collectors.toMap(
-							s -> {
-								String taxon = nonTokenCharacterClass.matcher(s.split("\t", 2)[0]).replaceAll("").trim();
-								return pUseLowercase ? taxon.toLowerCase(Locale.forLanguageTag(language)) : taxon;
-							},
-							s -> Arrays.stream(s.split("\t", 2)[1].split("[ ,]")).map(UriUtils::create).collect(Collectors.toCollection(HashSet::new)),
+							s -> parseTaxon(s, pUseLowercase, language, simpleLoad),
+							s -> parseUris(s, simpleLoad).collect(Collectors.toCollection(HashSet::new)),
 							(u, v) -> new HashSet<>(SetUtils.union(u, v)),
 							LinkedHashMap::new)
 					);
 		}
 	}
 	
+	/**
+	 * @return the taxon of a line of a taxa file
+	 */
+	protected static String parseTaxon(String line, Boolean pUseLowercase, String language, boolean simpleLoad) {
+		String taxon = line.split("\t", 2)[0];
+		if (!simpleLoad) {
+			taxon = nonTokenCharacterClass.matcher(taxon).replaceAll("");
+		}
+		taxon = taxon.trim();
+		return pUseLowercase ? taxon.toLowerCase(Locale.forLanguageTag(language)) : taxon;
+	}
+	
+	/**
+	 * @return the URIs of a line of a taxa file, or the rest of the line for simple loading
+	 */
+	protected static Stream<Object> parseUris(String line, boolean simpleLoad) {
+		String uris = line.split("\t", 2)[1];
+		if (simpleLoad) {
+			return Stream.of(uris);
+		}
+		return Arrays.stream(uris.split("[ ,]")).map(UriUtils::create);
+	}
+	
+	/**
+	 * @return the id of the source of this taxa file, the prefix of its URIs
+	 */
+	protected String getSourceId(String sourceLocation) {
+		// always use "0", only one class
+		return "0";
+	}
+	
 	/**
 	 * Attempt to download the taxa files, if the location parameter is a valid URL
 	 *
@@ -263,7 +425,7 @@ public class StringGazetteerModel implements IGazetteerModel {
 		return sourceLocation;
 	}
 	
-	protected static ArrayList<String> extractTaxaFiles(String sourceLocation) throws IOException {
+	protected ArrayList<String> extractTaxaFiles(String sourceLocation) throws IOException {
 		logger.info(String.format("Extracting taxa files from '%s'..", sourceLocation));
 		
 		File gazetteerFolder = getTaxaLocation().toFile();
@@ -297,7 +459,7 @@ public class StringGazetteerModel implements IGazetteerModel {
 	 * @throws IOException If neither {@link TreeGazetteerModel#cachePath cachePath} nor {@link
 	 *                     TreeGazetteerModel#tempPath tempPath} are writable.
 	 */
-	protected static Path getTaxaLocation() throws IOException {
+	protected Path getTaxaLocation() throws IOException {
 		Path gazetteerFolder;
 		if (cachePath.toFile().mkdirs() || (Files.isReadable(cachePath) && Files.isWritable(cachePath))) {
 			// Check if we have read/write access to the ~/.cache path
@@ -316,8 +478,7 @@ public class StringGazetteerModel implements IGazetteerModel {
 	}
 	
 	/**
-	 * Calls {@link #getSkipGramsFromTaxonAsStream getSkipGramsFromTaxonAsStream(String)} and collects the result in a
-	 * Set.
+	 * The skip-grams of a taxon from a {@link SkipGramGenerator} with the default limits, see {@link #skipGramGenerator}.
 	 *
 	 * @param pString                  the target String.
 	 * @param addAbbreviatedTaxa
@@ -327,26 +488,13 @@ public class StringGazetteerModel implements IGazetteerModel {
 	 * @return a List of Strings.
 	 */
 	public static Set<String> getSkipGramsFromTaxon(boolean noSkipGrams, String pString, boolean addAbbreviatedTaxa, int minWordCountForSkipGrams, boolean getAllSkips, boolean splitHyphen) {
-		HashSet<String> basicSkipGrams = getSkipGramsFromTaxonAsStream(noSkipGrams, pString, minWordCountForSkipGrams, getAllSkips, splitHyphen, 5);
-		
-		if (addAbbreviatedTaxa) {
-			ArrayList<String> words = getWords(pString, splitHyphen);
-			if (words.size() > 1) {
-				words.set(0, pString.charAt(0) + ".");
-				String abbreviatedString = String.join(" ", words);
-				basicSkipGrams.add(abbreviatedString);
-				if (words.size() > 2) {
-					basicSkipGrams.addAll(getSkipGramsFromTaxonAsStream(noSkipGrams, abbreviatedString, minWordCountForSkipGrams, getAllSkips, splitHyphen, 5));
-				}
-			}
-		}
-		return basicSkipGrams;
+		return new SkipGramGenerator(noSkipGrams, addAbbreviatedTaxa, minWordCountForSkipGrams, getAllSkips, splitHyphen).getSkipGrams(pString);
 	}
 	
 	/**
-	 * Get a List of 1-skip-n-grams for the given string. The string itself is always the first element of the list. The
-	 * string is split by whitespaces and all n over n-1 combinations are computed and added to the list. If there is
-	 * only a single word in the given string, a singleton list with that word is returned.
+	 * Get a List of 1-skip-n-grams for the given string. The string is split by whitespaces and all n over n-1
+	 * combinations are computed and added to the list. If the string has fewer or more words than the limits, a
+	 * singleton list with the string is returned.
 	 *
 	 * @param pString                  the target String.
 	 * @param minWordCountForSkipGrams
@@ -356,33 +504,10 @@ public class StringGazetteerModel implements IGazetteerModel {
 	 * @return a Stream of Strings.
 	 */
 	protected static HashSet<String> getSkipGramsFromTaxonAsStream(boolean noSkipGrams, String pString, int minWordCountForSkipGrams, boolean getAllSkips, boolean splitHyphen, int maxWordCountForSkipGrams) {
-		ArrayList<String> words = getWords(pString, splitHyphen);
-		if (noSkipGrams || (words.size() < minWordCountForSkipGrams | words.size() > maxWordCountForSkipGrams)) {
-			return Sets.newHashSet(pString);
-		} else {
-			IntStream combinationRange;
-			if (getAllSkips && words.size() > 3) {
-				combinationRange = IntStream.range(2, words.size());
-			} else {
-				combinationRange = IntStream.of(words.size() - 1);
-			}
-			
-			Stream<Integer[]> combinationsArraysStream = combinationRange
-					.boxed()
-					.map(i -> new Combinations(words.size(), i).iterator())
-					.flatMap(Streams::stream)
-					.map(ArrayUtils::toObject);
-			
-			return combinationsArraysStream
-					.parallel()
-					.map(combination -> {
-						ArrayList<String> strings = new ArrayList<>();
-						for (int index : combination) {
-							strings.add(words.get(index));
-						}
-						return String.join(" ", strings);
-					}).collect(Collectors.toCollection(HashSet::new));
-		}
+		HashSet<String> skipGrams = new HashSet<>();
+		new SkipGramGenerator(noSkipGrams, false, minWordCountForSkipGrams, maxWordCountForSkipGrams, getAllSkips, splitHyphen,
+				SkipGramGenerator.UNLIMITED, SkipGramGenerator.UNLIMITED).addSkipGrams(pString, skipGrams);
+		return skipGrams;
 	}
 	
 	protected static ArrayList<String> getWords(String pString, boolean splitHyphen) {
@@ -397,7 +522,7 @@ public class StringGazetteerModel implements IGazetteerModel {
 	
 	protected StringTreeNode buildTree(Boolean bUseLowercase, String tokenBoundaryRegex) {
 		logger.info("Building tree..");
-		StringTreeNode tree = new StringTreeNode(tokenBoundaryRegex, bUseLowercase);
+		StringTreeNode tree = new StringTreeNode(tokenBoundaryRegex, bUseLowercase, tokenNormalizer);
 		sortedSkipGramSet.stream()
 				.parallel()
 				.filter(entry -> !filterSet.contains(entry.toLowerCase()))
@@ -405,6 +530,15 @@ public class StringGazetteerModel implements IGazetteerModel {
 		return tree;
 	}
 	
+	protected CompactTrie buildCompactTree(Boolean bUseLowercase, String tokenBoundaryRegex) {
+		logger.info("Building compact tree..");
+		CompactTrie.Builder builder = new CompactTrie.Builder(tokenBoundaryRegex, bUseLowercase, tokenNormalizer);
+		sortedSkipGramSet.stream()
+				.filter(entry -> !filterSet.contains(entry.toLowerCase()))
+				.forEach(builder::add);
+		return builder.build();
+	}
+	
 	/**
 	 * Stream all previously created skip-grams sorted .
 	 *
@@ -429,4 +563,27 @@ public class StringGazetteerModel implements IGazetteerModel {
 		return taxonUriMap;
 	}
 	
+	@Override
+	public TaxonPayload getPayload(String taxon, Class<?> parserClass, Function<String, Object> parser) {
+		if (taxon == null) {
+			return null;
+		}
+		ConcurrentHashMap<String, TaxonPayload> parsed = payloads.get(parserClass);
+		if (parsed == null) {
+			parsed = payloads.computeIfAbsent(parserClass, c -> new ConcurrentHashMap<>());
+		}
+		TaxonPayload payload = parsed.get(taxon);
+		if (payload == null) {
+			payload = parsed.computeIfAbsent(taxon, t -> {
+				HashSet<Object> uris = taxonUriMap.get(t);
+				return uris == null ? null : TaxonPayload.parse(uris, parser);
+			});
+		}
+		return payload;
+	}
+	
+	public TokenNormalizer getTokenNormalizer() {
+		return tokenNormalizer;
+	}
+	
 }
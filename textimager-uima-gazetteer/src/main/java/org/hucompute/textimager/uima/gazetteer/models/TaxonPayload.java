@@ -0,0 +1,65 @@
+package org.hucompute.textimager.uima.gazetteer.models;
+
+import java.util.*;
+import java.util.function.Function;
+
+/**
+ * The URIs of a taxon, each of the form "0:abc" with the source index and the additional string data, split and parsed
+ * once. The objects of each source are kept in one set, so tagging a match with the objects of one source needs no
+ * allocation. The sets are shared by all matches and must not be modified.
+ */
+public final class TaxonPayload {
+	private static final HashSet<Object> NO_OBJECTS = new HashSet<>();
+
+	// sorted
+	private final int[] sourceIds;
+	private final HashSet<Object>[] objects;
+
+	@SuppressWarnings("unchecked")
+	private TaxonPayload(TreeMap<Integer, HashSet<Object>> objectsBySource) {
+		sourceIds = new int[objectsBySource.size()];
+		objects = new HashSet[objectsBySource.size()];
+		int i = 0;
+		for (Map.Entry<Integer, HashSet<Object>> entry : objectsBySource.entrySet()) {
+			sourceIds[i] = entry.getKey();
+			objects[i] = entry.getValue();
+			i++;
+		}
+	}
+
+	/**
+	 * @param uris   the URIs of the taxon
+	 * @param parser parses the data of a URI, once for each
+	 */
+	public static TaxonPayload parse(Collection<Object> uris, Function<String, Object> parser) {
+		TreeMap<Integer, HashSet<Object>> objectsBySource = new TreeMap<>();
+		for (Object uri : uris) {
+			String string = uri.toString();
+			int separator = string.indexOf(':');
+			int sourceId = Integer.parseInt(separator < 0 ? string : string.substring(0, separator));
+			String data = separator < 0 ? "" : string.substring(separator + 1);
+			objectsBySource.computeIfAbsent(sourceId, id -> new HashSet<>()).add(parser.apply(data));
+		}
+		return new TaxonPayload(objectsBySource);
+	}
+
+	/**
+	 * @param sourceIds the sources of a tagging type
+	 * @return the parsed data of the URIs from these sources
+	 */
+	public HashSet<Object> getObjects(Set<Integer> sourceIds) {
+		if (sourceIds.size() == 1) {
+			return getObjects(sourceIds.iterator().next());
+		}
+		HashSet<Object> union = new HashSet<>();
+		for (Integer sourceId : sourceIds) {
+			union.addAll(getObjects(sourceId));
+		}
+		return union;
+	}
+
+	private HashSet<Object> getObjects(int sourceId) {
+		int i = Arrays.binarySearch(sourceIds, sourceId);
+		return i < 0 ? NO_OBJECTS : objects[i];
+	}
+}
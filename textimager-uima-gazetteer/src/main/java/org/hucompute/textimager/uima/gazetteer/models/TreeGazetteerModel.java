@@ -1,7 +1,7 @@
 package org.hucompute.textimager.uima.gazetteer.models;
 
+import org.hucompute.textimager.uima.gazetteer.tree.CompactTrie;
 import org.hucompute.textimager.uima.gazetteer.tree.ITreeNode;
-import org.hucompute.textimager.uima.gazetteer.tree.StringTreeNode;
 
 import java.io.IOException;
 import java.util.HashSet;
@@ -9,7 +9,7 @@ import java.util.HashSet;
 
 public class TreeGazetteerModel extends StringGazetteerModel implements ITreeGazetteerModel {
 	
-	private final StringTreeNode tree;
+	private final ITreeNode tree;
 	
 	/**
 	 * Create 1-skip-n-grams from each taxon in a file from a given list of files.
@@ -43,9 +43,29 @@ public class TreeGazetteerModel extends StringGazetteerModel implements ITreeGaz
 			boolean simpleLoading,
 			boolean noSkipGrams
 	) throws IOException {
-		super(aSourceLocations, bUseLowercase, sLanguage, dMinLength, bAllSkips, bSplitHyphen, bAddAbbreviatedTaxa, iMinWordCountForSkipGrams, tokenBoundaryRegex, pFilterSet, gazetteerName, simpleLoading, noSkipGrams);
+		this(optionsOf(aSourceLocations, bUseLowercase, sLanguage, dMinLength, bAllSkips, bSplitHyphen, bAddAbbreviatedTaxa, iMinWordCountForSkipGrams, tokenBoundaryRegex, pFilterSet, gazetteerName, simpleLoading, noSkipGrams).build());
+	}
+	
+	/**
+	 * Create the skip-grams of the taxa and their tree for the given options.
+	 */
+	public TreeGazetteerModel(GazetteerModelOptions options) throws IOException {
+		super(options);
+		if (prebuiltModel != null) {
+			tree = prebuiltModel.getTree();
+			return;
+		}
+		
 		long startTime = System.currentTimeMillis();
-		tree = buildTree(bUseLowercase, tokenBoundaryRegex);
+		if (modelFile != null) {
+			CompactTrie compactTrie = buildCompactTree(useLowercase, options.getTokenBoundaryRegex());
+			writeModel(compactTrie);
+			tree = compactTrie;
+		} else if (options.isCompactTree()) {
+			tree = buildCompactTree(useLowercase, options.getTokenBoundaryRegex());
+		} else {
+			tree = buildTree(useLowercase, options.getTokenBoundaryRegex());
+		}
 		
 		logger.info(String.format("Finished building tree with %d nodes from %d skip-grams in %dms.",
 				tree.size(), sortedSkipGramSet.size(), System.currentTimeMillis() - startTime
@@ -0,0 +1,120 @@
+package org.hucompute.textimager.uima.gazetteer.tree;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton over the token ids of a {@link CompactTrie}. The trie nodes are the states and the failure link
+ * of a node is the node of its longest proper suffix, so a single pass over the query finds every entry instead of a
+ * trie walk from each token.
+ * <p>
+ * The trie nodes are numbered in breadth-first order, so the links are computed in one loop over the nodes. The
+ * automaton needs three ints per node and is read-only once built.
+ */
+public class AhoCorasickAutomaton {
+
+	public interface MatchConsumer {
+		/**
+		 * @param start   index of the first token
+		 * @param end     index of the last token
+		 * @param valueId the value id, see {@link CompactTrie#getValue(int)}
+		 */
+		void match(int start, int end, int valueId);
+	}
+
+	private final CompactTrie trie;
+
+	// per node: the failure link and the node or nearest node on the failure chain with a value, or -1
+	private final int[] fail;
+	private final int[] output;
+	// per node the number of tokens
+	private final int[] length;
+
+	AhoCorasickAutomaton(CompactTrie trie) {
+		this.trie = trie;
+		int nodes = trie.size();
+		fail = new int[nodes];
+		output = new int[nodes];
+		length = new int[nodes];
+
+		// the root value is never matched, like in CompactTrie.longestMatch
+		output[0] = -1;
+		for (int node = 0; node < nodes; node++) {
+			for (int child = trie.firstChild(node); child < trie.firstChild(node + 1); child++) {
+				length[child] = length[node] + 1;
+				if (node == 0) {
+					fail[child] = 0;
+				} else {
+					int tokenId = trie.label(child);
+					int suffix = fail[node];
+					int next;
+					while ((next = trie.child(suffix, tokenId)) < 0 && suffix != 0) {
+						suffix = fail[suffix];
+					}
+					fail[child] = Math.max(next, 0);
+				}
+				// the suffix is shorter, so its links are already set
+				output[child] = trie.nodeValue(child) >= 0 ? child : output[fail[child]];
+			}
+		}
+	}
+
+	/**
+	 * Find all entries, including overlapping ones. The matches are reported by their end, longer matches first.
+	 *
+	 * @param query    the tokens
+	 * @param from     index of the first token
+	 * @param to       index after the last token
+	 * @param consumer gets the matches
+	 */
+	public void forEachMatch(List<String> query, int from, int to, MatchConsumer consumer) {
+		int state = 0;
+		for (int index = from; index < to; index++) {
+			int tokenId = trie.tokenId(query.get(index));
+			if (tokenId < 0) {
+				state = 0;
+				continue;
+			}
+			int next;
+			while ((next = trie.child(state, tokenId)) < 0 && state != 0) {
+				state = fail[state];
+			}
+			state = Math.max(next, 0);
+			for (int node = output[state]; node >= 0; node = output[fail[node]]) {
+				consumer.match(index - length[node] + 1, index, trie.nodeValue(node));
+			}
+		}
+	}
+
+	/**
+	 * The longest entry starting at each token, the same as {@link CompactTrie#longestMatch(List, int, int)} from every
+	 * token up to {@code to}, in one pass.
+	 *
+	 * @param query the tokens
+	 * @param from  index of the first token
+	 * @param to    index after the last token
+	 * @return per token from {@code from} the match or {@link CompactTrie#NO_MATCH}
+	 */
+	public long[] longestMatches(List<String> query, int from, int to) {
+		long[] longest = new long[to - from];
+		Arrays.fill(longest, CompactTrie.NO_MATCH);
+		// same as forEachMatch, the matches of a start are found with increasing end, so the last one is the longest
+		int state = 0;
+		for (int index = from; index < to; index++) {
+			int tokenId = trie.tokenId(query.get(index));
+			if (tokenId < 0) {
+				state = 0;
+				continue;
+			}
+			int next;
+			while ((next = trie.child(state, tokenId)) < 0 && state != 0) {
+				state = fail[state];
+			}
+			state = Math.max(next, 0);
+			for (int node = output[state]; node >= 0; node = output[fail[node]]) {
+				longest[index - length[node] + 1 - from] = ((long) trie.nodeValue(node) << 32) | index;
+			}
+		}
+		return longest;
+	}
+}
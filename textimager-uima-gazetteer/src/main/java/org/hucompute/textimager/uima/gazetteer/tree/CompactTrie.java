@@ -0,0 +1,405 @@
+package org.hucompute.textimager.uima.gazetteer.tree;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.hucompute.textimager.uima.gazetteer.util.ModelFileReader;
+import org.hucompute.textimager.uima.gazetteer.util.ModelFileWriter;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Read-only token trie stored in primitive arrays, built once with a {@link Builder}.
+ * <p>
+ * Tokens are interned to ids. Nodes are numbered in breadth-first order, so the children of node {@code n} are the
+ * nodes {@code firstChild[n]} to {@code firstChild[n + 1] - 1}, sorted by their token id. A node needs three ints
+ * instead of a map with its entries, and {@link #longestMatch(List, int, int)} does not allocate.
+ * <p>
+ * The node arrays are int buffers, so a trie {@link #read(ModelFileReader) read} from a model file uses the memory
+ * mapping directly. Only the tokens are decoded when it is read, the values are decoded on access.
+ */
+public class CompactTrie implements ITreeNode {
+
+	public static final long NO_MATCH = -1L;
+
+	// token id lookup, open addressing with id + 1, 0 is empty
+	private final String[] tokens;
+	private final int[] tokenTable;
+	private final int tokenMask;
+
+	// per node, firstChild has one more entry for the end of the last node
+	private final IntBuffer firstChild;
+	private final IntBuffer label;
+	private final IntBuffer nodeValue;
+
+	private final List<String> values;
+	private final int maxKeyLength;
+
+	// built on first use
+	private volatile AhoCorasickAutomaton automaton;
+
+	private CompactTrie(String[] tokens, IntBuffer firstChild, IntBuffer label, IntBuffer nodeValue, List<String> values, int maxKeyLength) {
+		this.tokens = tokens;
+		this.firstChild = firstChild;
+		this.label = label;
+		this.nodeValue = nodeValue;
+		this.values = values;
+		this.maxKeyLength = maxKeyLength;
+
+		int tableSize = Integer.highestOneBit(Math.max(2, tokens.length * 2) - 1) << 1;
+		this.tokenTable = new int[tableSize];
+		this.tokenMask = tableSize - 1;
+		for (int id = 0; id < tokens.length; id++) {
+			int slot = ModelFileReader.spread(tokens[id].hashCode()) & tokenMask;
+			while (tokenTable[slot] != 0) {
+				slot = (slot + 1) & tokenMask;
+			}
+			tokenTable[slot] = id + 1;
+		}
+	}
+
+	/**
+	 * @param token the token
+	 * @return the id of the token, or -1 if no entry contains it
+	 */
+	public int tokenId(String token) {
+		int slot = ModelFileReader.spread(token.hashCode()) & tokenMask;
+		int id;
+		while ((id = tokenTable[slot]) != 0) {
+			if (tokens[id - 1].equals(token)) {
+				return id - 1;
+			}
+			slot = (slot + 1) & tokenMask;
+		}
+		return -1;
+	}
+
+	// the child of the node with this token, or -1
+	int child(int node, int tokenId) {
+		int low = firstChild.get(node);
+		int high = firstChild.get(node + 1) - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int midLabel = label.get(mid);
+			if (midLabel < tokenId) {
+				low = mid + 1;
+			} else if (midLabel > tokenId) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Find the longest entry starting at {@code from}.
+	 *
+	 * @param query the tokens
+	 * @param from  index of the first token
+	 * @param to    index after the last token to consider
+	 * @return {@link #NO_MATCH} or the match, see {@link #matchValue(long)} and {@link #matchEnd(long)}
+	 */
+	public long longestMatch(List<String> query, int from, int to) {
+		long match = NO_MATCH;
+		int node = 0;
+		for (int index = from; index < to; index++) {
+			int tokenId = tokenId(query.get(index));
+			if (tokenId < 0) {
+				break;
+			}
+			node = child(node, tokenId);
+			if (node < 0) {
+				break;
+			}
+			int valueId = nodeValue.get(node);
+			if (valueId >= 0) {
+				match = ((long) valueId << 32) | index;
+			}
+		}
+		return match;
+	}
+
+	int firstChild(int node) {
+		return firstChild.get(node);
+	}
+
+	int label(int node) {
+		return label.get(node);
+	}
+
+	int nodeValue(int node) {
+		return nodeValue.get(node);
+	}
+
+	/**
+	 * @return the Aho-Corasick automaton of this trie, shared by all users of the trie
+	 */
+	public AhoCorasickAutomaton getAutomaton() {
+		AhoCorasickAutomaton automaton = this.automaton;
+		if (automaton == null) {
+			synchronized (this) {
+				automaton = this.automaton;
+				if (automaton == null) {
+					automaton = new AhoCorasickAutomaton(this);
+					this.automaton = automaton;
+				}
+			}
+		}
+		return automaton;
+	}
+
+	// the value id of a match
+	public static int matchValue(long match) {
+		return (int) (match >>> 32);
+	}
+
+	// the index of the last token of a match
+	public static int matchEnd(long match) {
+		return (int) match;
+	}
+
+	public String getValue(int valueId) {
+		return values.get(valueId);
+	}
+
+	/**
+	 * @param value an entry as added to the {@link Builder}
+	 * @return the value id of the entry, or -1
+	 */
+	public int valueId(String value) {
+		return values.indexOf(value);
+	}
+
+	/**
+	 * @return all values, the index is the value id
+	 */
+	public List<String> getValues() {
+		return Collections.unmodifiableList(values);
+	}
+
+	@Override
+	public ImmutablePair<String, Integer> traverse(@Nonnull List<String> subString) {
+		long match = longestMatch(subString, 0, subString.size());
+		if (match == NO_MATCH) {
+			return ImmutablePair.of(null, -1);
+		}
+		return ImmutablePair.of(values.get(matchValue(match)), matchEnd(match));
+	}
+
+	@Override
+	public boolean hasValue() {
+		return nodeValue.get(0) >= 0;
+	}
+
+	@Override
+	public boolean isLeaf() {
+		return label.limit() == 1;
+	}
+
+	@Override
+	public void insert(String value) {
+		throw new UnsupportedOperationException("CompactTrie is read-only, use CompactTrie.Builder");
+	}
+
+	@Override
+	public int size() {
+		return label.limit();
+	}
+
+	@Override
+	public int leafs() {
+		int leafs = 0;
+		for (int node = 0; node < label.limit(); node++) {
+			if (firstChild.get(node) == firstChild.get(node + 1)) {
+				leafs++;
+			}
+		}
+		return leafs;
+	}
+
+	@Override
+	public int nodesWithValue() {
+		return values.size();
+	}
+
+	@Override
+	public int depth() {
+		// same as StringTreeNode, the root counts as one level
+		return maxKeyLength + 1;
+	}
+
+	@Override
+	public String getValue() {
+		return hasValue() ? values.get(nodeValue.get(0)) : null;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("{\"CompactTrie\": {\"nodes\": %d, \"tokens\": %d, \"values\": %d}}", size(), tokens.length, values.size());
+	}
+
+	public void write(ModelFileWriter out) throws IOException {
+		out.writeInt(maxKeyLength);
+		out.writeStrings(Arrays.asList(tokens), false);
+		out.writeInts(firstChild);
+		out.writeInts(label);
+		out.writeInts(nodeValue);
+		out.writeStrings(values, true);
+	}
+
+	public static CompactTrie read(ModelFileReader in) throws IOException {
+		int maxKeyLength = in.readInt();
+		String[] tokens = in.readStrings().toArray(new String[0]);
+		IntBuffer firstChild = in.readInts();
+		IntBuffer label = in.readInts();
+		IntBuffer nodeValue = in.readInts();
+		List<String> values = in.readStrings();
+		if (firstChild.limit() != label.limit() + 1 || nodeValue.limit() != label.limit()) {
+			throw new IOException("Corrupt trie in model file");
+		}
+		return new CompactTrie(tokens, firstChild, label, nodeValue, values, maxKeyLength);
+	}
+
+	/**
+	 * Collects the entries, splits and lower cases them like {@link StringTreeNode#insert(String)}. Entries with the
+	 * same tokens keep the value that was added first. The tokens of the keys are normalized by the
+	 * {@link TokenNormalizer}, the values are kept, so the queries must be normalized by the same one.
+	 */
+	public static class Builder {
+		private final Pattern tokenBoundaryRegex;
+		private final boolean toLowerCase;
+		private final TokenNormalizer normalizer;
+
+		private final HashMap<String, Integer> tokenIds = new HashMap<>();
+		private final ArrayList<String> tokens = new ArrayList<>();
+		private final ArrayList<Entry> entries = new ArrayList<>();
+
+		public Builder(String tokenBoundaryRegex, boolean toLowerCase) {
+			this(tokenBoundaryRegex, toLowerCase, TokenNormalizer.NONE);
+		}
+
+		public Builder(String tokenBoundaryRegex, boolean toLowerCase, TokenNormalizer normalizer) {
+			this.tokenBoundaryRegex = Pattern.compile(tokenBoundaryRegex, Pattern.UNICODE_CHARACTER_CLASS);
+			this.toLowerCase = toLowerCase;
+			this.normalizer = normalizer;
+		}
+
+		public synchronized Builder add(String value) {
+			if (toLowerCase)
+				value = value.toLowerCase();
+			String[] split = tokenBoundaryRegex.split(value.trim());
+			int[] key = new int[split.length];
+			for (int i = 0; i < split.length; i++) {
+				split[i] = normalizer.normalize(split[i]);
+				Integer id = tokenIds.get(split[i]);
+				if (id == null) {
+					id = tokens.size();
+					tokens.add(split[i]);
+					tokenIds.put(split[i], id);
+				}
+				key[i] = id;
+			}
+			entries.add(new Entry(key, value, entries.size()));
+			return this;
+		}
+
+		public synchronized CompactTrie build() {
+			// sorted keys: every node is a range of entries, with the entry ending at this node first
+			Collections.sort(entries);
+
+			int maxKeyLength = 0;
+			long maxNodes = 1;
+			for (Entry entry : entries) {
+				maxKeyLength = Math.max(maxKeyLength, entry.key.length);
+				maxNodes += entry.key.length;
+			}
+			maxNodes = Math.min(maxNodes, Integer.MAX_VALUE - 1);
+
+			int[] label = new int[(int) maxNodes];
+			int[] firstChild = new int[(int) maxNodes + 1];
+			int[] nodeValue = new int[(int) maxNodes];
+			// entry range and depth of the nodes waiting for their children
+			int[] rangeBegin = new int[(int) maxNodes];
+			int[] rangeEnd = new int[(int) maxNodes];
+			int[] nodeDepth = new int[(int) maxNodes];
+			ArrayList<String> values = new ArrayList<>();
+
+			label[0] = -1;
+			rangeEnd[0] = entries.size();
+			int nodes = 1;
+			for (int node = 0; node < nodes; node++) {
+				int begin = rangeBegin[node];
+				int end = rangeEnd[node];
+				int depth = nodeDepth[node];
+
+				nodeValue[node] = -1;
+				if (begin < end && entries.get(begin).key.length == depth) {
+					nodeValue[node] = values.size();
+					values.add(entries.get(begin).value);
+					// skip entries with the same tokens
+					while (begin < end && entries.get(begin).key.length == depth) {
+						begin++;
+					}
+				}
+
+				firstChild[node] = nodes;
+				while (begin < end) {
+					int tokenId = entries.get(begin).key[depth];
+					int childEnd = begin + 1;
+					while (childEnd < end && entries.get(childEnd).key[depth] == tokenId) {
+						childEnd++;
+					}
+					label[nodes] = tokenId;
+					rangeBegin[nodes] = begin;
+					rangeEnd[nodes] = childEnd;
+					nodeDepth[nodes] = depth + 1;
+					nodes++;
+					begin = childEnd;
+				}
+			}
+			firstChild[nodes] = nodes;
+
+			return new CompactTrie(
+					tokens.toArray(new String[0]),
+					IntBuffer.wrap(Arrays.copyOf(firstChild, nodes + 1)),
+					IntBuffer.wrap(Arrays.copyOf(label, nodes)),
+					IntBuffer.wrap(Arrays.copyOf(nodeValue, nodes)),
+					Arrays.asList(values.toArray(new String[0])),
+					maxKeyLength
+			);
+		}
+	}
+
+	private static class Entry implements Comparable<Entry> {
+		final int[] key;
+		final String value;
+		final int order;
+
+		Entry(int[] key, String value, int order) {
+			this.key = key;
+			this.value = value;
+			this.order = order;
+		}
+
+		@Override
+		public int compareTo(Entry other) {
+			int length = Math.min(key.length, other.key.length);
+			for (int i = 0; i < length; i++) {
+				if (key[i] != other.key[i]) {
+					return Integer.compare(key[i], other.key[i]);
+				}
+			}
+			if (key.length != other.key.length) {
+				return Integer.compare(key.length, other.key.length);
+			}
+			return Integer.compare(order, other.order);
+		}
+	}
+}
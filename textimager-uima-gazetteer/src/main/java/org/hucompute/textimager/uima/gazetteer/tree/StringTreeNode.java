@@ -1,6 +1,5 @@
 package org.hucompute.textimager.uima.gazetteer.tree;
 
-import org.apache.commons.collections4.iterators.ListIteratorWrapper;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 
@@ -22,13 +21,22 @@ public class StringTreeNode implements ITreeNode {
 	private String value;
 	private final Pattern tokenBoundaryRegex;
 	private boolean toLowerCase;
+	private TokenNormalizer normalizer = TokenNormalizer.NONE;
 	
 	
 	/**
 	 * Create a root node.
 	 */
 	public StringTreeNode(String tokenBoundaryRegex, boolean toLowerCase) {
+		this(tokenBoundaryRegex, toLowerCase, TokenNormalizer.NONE);
+	}
+	
+	/**
+	 * Create a root node that normalizes the tokens of the inserted entries, but not their values.
+	 */
+	public StringTreeNode(String tokenBoundaryRegex, boolean toLowerCase, TokenNormalizer normalizer) {
 		this.toLowerCase = toLowerCase;
+		this.normalizer = normalizer;
 		this.tokenBoundaryRegex = Pattern.compile(tokenBoundaryRegex, Pattern.UNICODE_CHARACTER_CLASS);
 		this.parent = null;
 		this.children = new ConcurrentHashMap<>(1, 1);
@@ -59,7 +67,9 @@ public class StringTreeNode implements ITreeNode {
 		if (toLowerCase)
 			value = value.toLowerCase();
 		ArrayDeque<String> arrayDeque = new ArrayDeque<>();
-		Collections.addAll(arrayDeque, tokenBoundaryRegex.split(value.trim()));
+		for (String token : tokenBoundaryRegex.split(value.trim())) {
+			arrayDeque.add(normalizer.normalize(token));
+		}
 		this.insert(arrayDeque, value);
 	}
 	
@@ -79,31 +89,23 @@ public class StringTreeNode implements ITreeNode {
 	}
 	
 	public ImmutablePair<String, Integer> traverse(@Nonnull List<String> fullString) {
-		return this.traverse(new ListIteratorWrapper<>(fullString.iterator()), null);
+		return this.traverse(fullString, 0, null, -1);
 	}
 	
-	private ImmutablePair<String, Integer> traverse(@Nonnull ListIteratorWrapper<String> listIterator, @Nullable String lastValue) {
-		// if there are further tokens
-		if (listIterator.hasNext()) {
-			// save value if this node has one
-			if (this.value != null) {
-				lastValue = this.value;
+	private ImmutablePair<String, Integer> traverse(@Nonnull List<String> fullString, int index, @Nullable String lastValue, int lastIndex) {
+		// if there are further tokens, traverse the tree recursively
+		if (index < fullString.size()) {
+			StringTreeNode child = this.children.get(fullString.get(index));
+			if (child != null) {
+				// save the value and its last token if the child has one
+				if (child.value != null) {
+					lastValue = child.value;
+					lastIndex = index;
+				}
+				return child.traverse(fullString, index + 1, lastValue, lastIndex);
 			}
-			
-			// traverse the tree recursively
-			String key = listIterator.next();
-			if (this.children.containsKey(key)) {
-				return this.children.get(key).traverse(listIterator, lastValue);
-			}
-			listIterator.previous();
-		}
-		
-		int previousIndex = listIterator.hasPrevious() ? listIterator.previousIndex() : -1;
-		if (this.value == null) {
-			return ImmutablePair.of(lastValue, previousIndex);
-		} else {
-			return ImmutablePair.of(this.value, previousIndex);
 		}
+		return ImmutablePair.of(lastValue, lastIndex);
 	}
 	
 	public int size() {
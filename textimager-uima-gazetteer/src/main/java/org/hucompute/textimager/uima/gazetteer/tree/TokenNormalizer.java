@@ -0,0 +1,130 @@
+package org.hucompute.textimager.uima.gazetteer.tree;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Maps the tokens of the entries and of the documents to one canonical form, so that a tree stores each entry once
+ * and variants of it still match: case folding ("STRASSE", "Straße" and "strasse"), diacritic stripping ("Müller" and
+ * "Muller") and character foldings for OCR confusions, like "ſ=s" for the long s of old prints.
+ * <p>
+ * The same normalizer must be applied to the entries and to the tokens of a document. It only changes the tokens, the
+ * values of a tree and the offsets of the matches stay those of the original text. Immutable, so it is part of the key
+ * of shared models.
+ */
+public final class TokenNormalizer {
+	public static final TokenNormalizer NONE = new TokenNormalizer(false, false);
+
+	private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+
+	private final boolean caseFold;
+	private final boolean stripDiacritics;
+	// pairs of source and replacement, applied in this order
+	private final String[] foldings;
+	// if any folding replaces an ascii string, ascii tokens have no fast path
+	private final boolean asciiFoldings;
+
+	/**
+	 * @param caseFold        if true, fold upper and lower case, including "ß" to "ss"
+	 * @param stripDiacritics if true, remove the combining marks of the canonical decomposition
+	 * @param foldings        character foldings of the form "ſ=s", applied before the others
+	 */
+	public TokenNormalizer(boolean caseFold, boolean stripDiacritics, String... foldings) {
+		this.caseFold = caseFold;
+		this.stripDiacritics = stripDiacritics;
+		this.foldings = new String[foldings.length * 2];
+		boolean ascii = false;
+		for (int i = 0; i < foldings.length; i++) {
+			int separator = foldings[i].indexOf('=', 1);
+			if (separator < 0) {
+				throw new IllegalArgumentException(String.format("Folding '%s' is not of the form 'ſ=s'", foldings[i]));
+			}
+			String source = foldings[i].substring(0, separator);
+			this.foldings[2 * i] = source;
+			this.foldings[2 * i + 1] = foldings[i].substring(separator + 1);
+			ascii |= source.chars().anyMatch(c -> c < 0x80);
+		}
+		this.asciiFoldings = ascii;
+	}
+
+	/**
+	 * @return true if the tokens are not changed
+	 */
+	public boolean isIdentity() {
+		return !caseFold && !stripDiacritics && foldings.length == 0;
+	}
+
+	/**
+	 * @return the canonical form of the token, the token itself if it is one
+	 */
+	public String normalize(String token) {
+		if (isIdentity() || !asciiFoldings && isCanonicalAscii(token)) {
+			return token;
+		}
+		String normalized = token;
+		for (int i = 0; i < foldings.length; i += 2) {
+			normalized = normalized.replace(foldings[i], foldings[i + 1]);
+		}
+		if (stripDiacritics && !isAscii(normalized)) {
+			normalized = MARKS.matcher(Normalizer.normalize(normalized, Normalizer.Form.NFD)).replaceAll("");
+			normalized = Normalizer.normalize(normalized, Normalizer.Form.NFC);
+		}
+		if (caseFold) {
+			// upper case first, so "ß" and "ſ" fold like "ss" and "s"
+			normalized = normalized.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+		}
+		return normalized;
+	}
+
+	// ascii without upper case letters if case is folded
+	private boolean isCanonicalAscii(String token) {
+		for (int i = 0; i < token.length(); i++) {
+			char c = token.charAt(i);
+			if (c >= 0x80 || caseFold && c >= 'A' && c <= 'Z') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static boolean isAscii(String string) {
+		for (int i = 0; i < string.length(); i++) {
+			if (string.charAt(i) >= 0x80) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof TokenNormalizer)) {
+			return false;
+		}
+		TokenNormalizer other = (TokenNormalizer) o;
+		return caseFold == other.caseFold && stripDiacritics == other.stripDiacritics && Arrays.equals(foldings, other.foldings);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * Boolean.hashCode(caseFold) + Boolean.hashCode(stripDiacritics)) + Arrays.hashCode(foldings);
+	}
+
+	/**
+	 * @return all options, part of the name of prebuilt models
+	 */
+	@Override
+	public String toString() {
+		StringBuilder string = new StringBuilder("TokenNormalizer[caseFold=").append(caseFold)
+				.append(", stripDiacritics=").append(stripDiacritics).append(", foldings=");
+		for (int i = 0; i < foldings.length; i += 2) {
+			string.append(i == 0 ? "" : " ").append(foldings[i]).append('=').append(foldings[i + 1]);
+		}
+		return string.append(']').toString();
+	}
+}
@@ -0,0 +1,198 @@
+package org.hucompute.textimager.uima.gazetteer.util;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts string records in their natural order with a bounded amount of memory. Records are collected until their
+ * estimated size exceeds the budget, then sorted and written to a temporary run file. {@link #sorted()} merges the runs.
+ * <p>
+ * Records must not contain line breaks, see {@link #escape(String)}.
+ */
+public class ExternalSorter implements Closeable {
+	// estimated heap of a record: string header and array, list entry
+	private static final int RECORD_OVERHEAD = 64;
+
+	private final Path folder;
+	private final long budget;
+
+	private final ArrayList<String> records = new ArrayList<>();
+	private long recordBytes = 0;
+	private final List<Path> runs = new ArrayList<>();
+	private final List<BufferedReader> readers = new ArrayList<>();
+	private long size = 0;
+
+	/**
+	 * @param folder the folder for the run files
+	 * @param budget the estimated heap in bytes for the records held in memory
+	 */
+	public ExternalSorter(Path folder, long budget) {
+		this.folder = folder;
+		this.budget = budget;
+	}
+
+	public void add(String record) throws IOException {
+		records.add(record);
+		recordBytes += RECORD_OVERHEAD + 2L * record.length();
+		size++;
+		if (recordBytes >= budget) {
+			spill();
+		}
+	}
+
+	public long size() {
+		return size;
+	}
+
+	private void spill() throws IOException {
+		if (records.isEmpty()) {
+			return;
+		}
+		Collections.sort(records);
+		Path run = Files.createTempFile(folder, "run", ".txt");
+		runs.add(run);
+		try (BufferedWriter writer = Files.newBufferedWriter(run, StandardCharsets.UTF_8)) {
+			for (String record : records) {
+				writer.write(record);
+				writer.write('\n');
+			}
+		}
+		records.clear();
+		records.trimToSize();
+		recordBytes = 0;
+	}
+
+	/**
+	 * All records in sorted order, can be called once. If the records did not fit into the budget, the remaining ones
+	 * are written to a run as well, so only one line per run is kept in memory while merging.
+	 */
+	public Iterator<String> sorted() throws IOException {
+		if (runs.isEmpty()) {
+			Collections.sort(records);
+			return records.iterator();
+		}
+		spill();
+
+		PriorityQueue<Run> queue = new PriorityQueue<>(runs.size());
+		for (Path path : runs) {
+			BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8);
+			readers.add(reader);
+			Run run = new Run(reader);
+			if (run.next()) {
+				queue.add(run);
+			}
+		}
+		return new Iterator<String>() {
+			@Override
+			public boolean hasNext() {
+				return !queue.isEmpty();
+			}
+
+			@Override
+			public String next() {
+				if (queue.isEmpty()) {
+					throw new NoSuchElementException();
+				}
+				Run run = queue.poll();
+				String record = run.record;
+				try {
+					if (run.next()) {
+						queue.add(run);
+					}
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				return record;
+			}
+		};
+	}
+
+	@Override
+	public void close() throws IOException {
+		records.clear();
+		for (BufferedReader reader : readers) {
+			reader.close();
+		}
+		for (Path run : runs) {
+			Files.deleteIfExists(run);
+		}
+	}
+
+	/**
+	 * Escape backslashes, tabs and line breaks, so that the string can be a tab separated field of a record.
+	 */
+	public static String escape(String value) {
+		if (value.indexOf('\\') < 0 && value.indexOf('\t') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+			return value;
+		}
+		StringBuilder escaped = new StringBuilder(value.length() + 8);
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '\\':
+					escaped.append("\\\\");
+					break;
+				case '\t':
+					escaped.append("\\t");
+					break;
+				case '\n':
+					escaped.append("\\n");
+					break;
+				case '\r':
+					escaped.append("\\r");
+					break;
+				default:
+					escaped.append(c);
+			}
+		}
+		return escaped.toString();
+	}
+
+	public static String unescape(String value) {
+		if (value.indexOf('\\') < 0) {
+			return value;
+		}
+		StringBuilder unescaped = new StringBuilder(value.length());
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '\\' && i + 1 < value.length()) {
+				char next = value.charAt(++i);
+				unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+			} else {
+				unescaped.append(c);
+			}
+		}
+		return unescaped.toString();
+	}
+
+	private static class Run implements Comparable<Run> {
+		final BufferedReader reader;
+		String record;
+
+		Run(BufferedReader reader) {
+			this.reader = reader;
+		}
+
+		boolean next() throws IOException {
+			record = reader.readLine();
+			return record != null;
+		}
+
+		@Override
+		public int compareTo(Run other) {
+			return record.compareTo(other.record);
+		}
+	}
+}
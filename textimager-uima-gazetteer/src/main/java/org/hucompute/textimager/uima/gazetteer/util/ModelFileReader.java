@@ -0,0 +1,139 @@
+package org.hucompute.textimager.uima.gazetteer.util;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * Reads the sections written by a {@link ModelFileWriter} from a read-only memory mapped file. The returned buffers and
+ * tables are views of the mapping, so the pages are only read when accessed and are shared by all processes that map
+ * the same file.
+ */
+public class ModelFileReader {
+	private final ByteBuffer buffer;
+
+	private ModelFileReader(ByteBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	public static ModelFileReader map(Path path) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			if (channel.size() > Integer.MAX_VALUE) {
+				throw new IOException(String.format("Model file '%s' exceeds 2 GB", path));
+			}
+			// the mapping stays valid after the channel is closed
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			return new ModelFileReader(mapped.order(ByteOrder.LITTLE_ENDIAN));
+		}
+	}
+
+	public static int spread(int hash) {
+		return (hash ^ (hash >>> 16)) * 0x9E3779B1;
+	}
+
+	public int readInt() throws IOException {
+		if (buffer.remaining() < Integer.BYTES) {
+			throw new IOException("Unexpected end of model file");
+		}
+		return buffer.getInt();
+	}
+
+	public IntBuffer readInts() throws IOException {
+		return slice(readInt()).asIntBuffer();
+	}
+
+	public int[] readIntArray() throws IOException {
+		int[] values = new int[readInt()];
+		slice(values.length).asIntBuffer().get(values);
+		return values;
+	}
+
+	public StringTable readStrings() throws IOException {
+		IntBuffer offsets = readInts();
+		IntBuffer index = readInts();
+		int length = offsets.get(offsets.limit() - 1);
+		if (length > buffer.remaining()) {
+			throw new IOException("Unexpected end of model file");
+		}
+		ByteBuffer bytes = buffer.slice();
+		((Buffer) bytes).limit(length);
+		((Buffer) buffer).position(buffer.position() + (length + Integer.BYTES - 1) / Integer.BYTES * Integer.BYTES);
+		return new StringTable(offsets, index, bytes);
+	}
+
+	// the next count ints as a buffer, advances the position
+	private ByteBuffer slice(int count) throws IOException {
+		long length = (long) count * Integer.BYTES;
+		if (count < 0 || length > buffer.remaining()) {
+			throw new IOException("Unexpected end of model file");
+		}
+		ByteBuffer slice = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		((Buffer) slice).limit((int) length);
+		((Buffer) buffer).position(buffer.position() + (int) length);
+		return slice;
+	}
+
+	/**
+	 * Read-only list of the strings of a table, decoded on access.
+	 */
+	public static class StringTable extends AbstractList<String> implements RandomAccess {
+		private final IntBuffer offsets;
+		private final IntBuffer index;
+		private final ByteBuffer bytes;
+
+		StringTable(IntBuffer offsets, IntBuffer index, ByteBuffer bytes) {
+			this.offsets = offsets;
+			this.index = index;
+			this.bytes = bytes;
+		}
+
+		@Override
+		public String get(int id) {
+			int begin = offsets.get(id);
+			byte[] value = new byte[offsets.get(id + 1) - begin];
+			for (int i = 0; i < value.length; i++) {
+				value[i] = bytes.get(begin + i);
+			}
+			return new String(value, StandardCharsets.UTF_8);
+		}
+
+		@Override
+		public int size() {
+			return offsets.limit() - 1;
+		}
+
+		/**
+		 * Uses the hash index if the table was written with one.
+		 */
+		@Override
+		public int indexOf(Object o) {
+			if (index.limit() == 0 || !(o instanceof String)) {
+				return super.indexOf(o);
+			}
+			int mask = index.limit() - 1;
+			int slot = spread(o.hashCode()) & mask;
+			int id;
+			while ((id = index.get(slot)) != 0) {
+				if (get(id - 1).equals(o)) {
+					return id - 1;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return indexOf(o) >= 0;
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package org.hucompute.textimager.uima.gazetteer.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes the sections of a prebuilt model file, to be memory mapped with a {@link ModelFileReader}.
+ * <p>
+ * All values are little endian ints, int arrays are prefixed with their length. String tables are stored as UTF-8
+ * with an offset array and an optional hash index for {@link ModelFileReader.StringTable#indexOf(Object)}.
+ */
+public class ModelFileWriter implements Closeable {
+	private final FileChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20).order(ByteOrder.LITTLE_ENDIAN);
+	private long position = 0;
+
+	public ModelFileWriter(Path path) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+	}
+
+	public void writeInt(int value) throws IOException {
+		if (buffer.remaining() < Integer.BYTES) {
+			flush();
+		}
+		buffer.putInt(value);
+		position += Integer.BYTES;
+	}
+
+	public void writeInts(int[] values) throws IOException {
+		writeInt(values.length);
+		for (int value : values) {
+			writeInt(value);
+		}
+	}
+
+	public void writeInts(IntBuffer values) throws IOException {
+		writeInt(values.limit());
+		for (int i = 0; i < values.limit(); i++) {
+			writeInt(values.get(i));
+		}
+	}
+
+	/**
+	 * Write the ints of a file like {@link #writeInts(int[])}.
+	 *
+	 * @param rawInts a file of ints without a length, written with {@link #writeInt(int)}
+	 */
+	public void writeInts(Path rawInts) throws IOException {
+		long size = Files.size(rawInts);
+		if (size % Integer.BYTES != 0 || size / Integer.BYTES > Integer.MAX_VALUE) {
+			throw new IOException(String.format("'%s' is not an int array", rawInts));
+		}
+		writeInt((int) (size / Integer.BYTES));
+		append(rawInts);
+	}
+
+	/**
+	 * @param strings the strings
+	 * @param index   if true, add a hash index to look up the position of a string
+	 */
+	public void writeStrings(List<String> strings, boolean index) throws IOException {
+		byte[][] encoded = new byte[strings.size()][];
+		int[] offsets = new int[strings.size() + 1];
+		long length = 0;
+		for (int i = 0; i < encoded.length; i++) {
+			encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+			offsets[i] = (int) length;
+			length += encoded[i].length;
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("String table exceeds 2 GB");
+			}
+		}
+		offsets[encoded.length] = (int) length;
+
+		writeInts(offsets);
+		if (index) {
+			writeInts(hashIndex(strings));
+		} else {
+			writeInts(new int[0]);
+		}
+		for (byte[] bytes : encoded) {
+			writeBytes(bytes);
+		}
+		// keep the next section aligned
+		while (position % Integer.BYTES != 0) {
+			writeBytes(new byte[1]);
+		}
+	}
+
+	/**
+	 * Write a table collected on disk, the same as {@link #writeStrings(List, boolean)}. The hash index is built in a
+	 * memory mapped temporary file.
+	 */
+	public void writeStrings(StringTableWriter table) throws IOException {
+		table.finish();
+		writeInt(table.size() + 1);
+		append(table.offsetsFile);
+		writeInt(table.length());
+		if (table.hasIndex()) {
+			writeHashIndex(table.hashesFile, table.size());
+		} else {
+			writeInts(new int[0]);
+		}
+		append(table.bytesFile);
+		while (position % Integer.BYTES != 0) {
+			writeBytes(new byte[1]);
+		}
+	}
+
+	private void writeHashIndex(Path hashesFile, int count) throws IOException {
+		int size = Integer.highestOneBit(Math.max(2, count * 2) - 1) << 1;
+		int mask = size - 1;
+		Path tableFile = Files.createTempFile(hashesFile.getParent(), "index", ".bin");
+		try {
+			try (FileChannel hashesChannel = FileChannel.open(hashesFile, StandardOpenOption.READ);
+				 FileChannel tableChannel = FileChannel.open(tableFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+				IntBuffer hashes = hashesChannel.map(FileChannel.MapMode.READ_ONLY, 0, (long) count * Integer.BYTES)
+						.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+				IntBuffer table = tableChannel.map(FileChannel.MapMode.READ_WRITE, 0, (long) size * Integer.BYTES)
+						.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+				for (int id = 0; id < count; id++) {
+					int slot = ModelFileReader.spread(hashes.get(id)) & mask;
+					while (table.get(slot) != 0) {
+						slot = (slot + 1) & mask;
+					}
+					table.put(slot, id + 1);
+				}
+			}
+			writeInts(tableFile);
+		} finally {
+			Files.deleteIfExists(tableFile);
+		}
+	}
+
+	// copy a file at the current position
+	private void append(Path file) throws IOException {
+		flush();
+		try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = in.size();
+			long copied = 0;
+			while (copied < size) {
+				copied += in.transferTo(copied, size - copied, channel);
+			}
+			position += size;
+		}
+	}
+
+	// open addressing with id + 1, 0 is empty
+	private static int[] hashIndex(List<String> strings) {
+		int size = Integer.highestOneBit(Math.max(2, strings.size() * 2) - 1) << 1;
+		int mask = size - 1;
+		int[] table = new int[size];
+		for (int id = 0; id < strings.size(); id++) {
+			int slot = ModelFileReader.spread(strings.get(id).hashCode()) & mask;
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = id + 1;
+		}
+		return table;
+	}
+
+	private void writeBytes(byte[] bytes) throws IOException {
+		int offset = 0;
+		while (offset < bytes.length) {
+			if (!buffer.hasRemaining()) {
+				flush();
+			}
+			int length = Math.min(buffer.remaining(), bytes.length - offset);
+			buffer.put(bytes, offset, length);
+			offset += length;
+		}
+		position += bytes.length;
+	}
+
+	private void flush() throws IOException {
+		((Buffer) buffer).flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		((Buffer) buffer).clear();
+	}
+
+	public long position() {
+		return position;
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+			channel.force(false);
+		} finally {
+			channel.close();
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package org.hucompute.textimager.uima.gazetteer.util;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Collects a string table in temporary files instead of memory, for {@link ModelFileWriter#writeStrings(StringTableWriter)}.
+ * The table has the same format as one written by {@link ModelFileWriter#writeStrings(java.util.List, boolean)}.
+ */
+public class StringTableWriter implements Closeable {
+	private final boolean index;
+	final Path bytesFile;
+	final Path offsetsFile;
+	final Path hashesFile;
+	private final OutputStream bytes;
+	private final ModelFileWriter offsets;
+	private final ModelFileWriter hashes;
+	private long length = 0;
+	private int size = 0;
+	private boolean finished = false;
+
+	/**
+	 * @param folder the folder for the temporary files
+	 * @param index  if true, add a hash index to look up the position of a string
+	 */
+	public StringTableWriter(Path folder, boolean index) throws IOException {
+		this.index = index;
+		bytesFile = Files.createTempFile(folder, "strings", ".bin");
+		offsetsFile = Files.createTempFile(folder, "offsets", ".bin");
+		hashesFile = Files.createTempFile(folder, "hashes", ".bin");
+		bytes = new BufferedOutputStream(Files.newOutputStream(bytesFile), 1 << 16);
+		offsets = new ModelFileWriter(offsetsFile);
+		hashes = new ModelFileWriter(hashesFile);
+	}
+
+	public void add(String value) throws IOException {
+		byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+		offsets.writeInt((int) length);
+		length += encoded.length;
+		if (length > Integer.MAX_VALUE) {
+			throw new IOException("String table exceeds 2 GB");
+		}
+		bytes.write(encoded);
+		if (index) {
+			hashes.writeInt(value.hashCode());
+		}
+		size++;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	int length() {
+		return (int) length;
+	}
+
+	boolean hasIndex() {
+		return index;
+	}
+
+	// close the files before they are copied
+	void finish() throws IOException {
+		if (!finished) {
+			finished = true;
+			bytes.close();
+			offsets.close();
+			hashes.close();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			Files.deleteIfExists(bytesFile);
+			Files.deleteIfExists(offsetsFile);
+			Files.deleteIfExists(hashesFile);
+		}
+	}
+}
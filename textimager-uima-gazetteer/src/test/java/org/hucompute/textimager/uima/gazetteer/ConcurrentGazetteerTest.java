@@ -0,0 +1,144 @@
+package org.hucompute.textimager.uima.gazetteer;
+
+import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Sentence;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineDescription;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.hucompute.textimager.uima.gazetteer.models.StringGazetteerModel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.hucompute.textimager.uima.gazetteer.TreeGazetteerModelResourceTest.writeMapping;
+import static org.hucompute.textimager.uima.gazetteer.TreeGazetteerModelResourceTest.writeTaxa;
+import static org.junit.Assert.*;
+
+/**
+ * Gazetteer instances of several pipeline threads tag documents at the same time, each document retokenized and
+ * tagged by sentence.
+ */
+public class ConcurrentGazetteerTest {
+	// like the pipeline threads of a worker
+	private static final int THREADS = 8;
+
+	private static final int DOCUMENTS = 50;
+
+	private static final String[] WORDS = {"Im", "Wald", "stehen", "und", "Quercus", "robur", "Fagus", "sylvatica",
+			"Larix", "decidua", "eine", "alba"};
+
+	private Path taxaFolder;
+	private Path cacheFolder;
+
+	@Before
+	public void createFolders() throws IOException {
+		taxaFolder = Files.createTempDirectory("taxa");
+		cacheFolder = Files.createTempDirectory("gazetteer");
+		System.setProperty(StringGazetteerModel.CACHE_DIR_PROPERTY, cacheFolder.toString());
+		RecordingGazetteer.models.clear();
+	}
+
+	@After
+	public void deleteFolders() throws IOException {
+		System.clearProperty(StringGazetteerModel.CACHE_DIR_PROPERTY);
+		FileUtils.deleteDirectory(taxaFolder.toFile());
+		FileUtils.deleteDirectory(cacheFolder.toFile());
+	}
+
+	// sentences of random words, each ending with " ."
+	private static String createText(Random random) {
+		StringBuilder text = new StringBuilder();
+		for (int sentence = 0; sentence < 20; sentence++) {
+			int words = 5 + random.nextInt(15);
+			for (int word = 0; word < words; word++) {
+				text.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+			}
+			text.append(". ");
+		}
+		return text.toString();
+	}
+
+	private static JCas createDocument(String text) throws Exception {
+		JCas jCas = JCasFactory.createJCas();
+		jCas.setDocumentText(text);
+		jCas.setDocumentLanguage("de");
+		int begin = 0;
+		int end;
+		while ((end = text.indexOf('.', begin)) >= 0) {
+			new Sentence(jCas, begin, end + 1).addToIndexes();
+			begin = end + 2;
+		}
+		return jCas;
+	}
+
+	private static List<String> tag(AnalysisEngine engine, String text) throws Exception {
+		JCas jCas = createDocument(text);
+		engine.process(jCas);
+		List<String> entities = new ArrayList<>();
+		for (NamedEntity entity : JCasUtil.select(jCas, NamedEntity.class)) {
+			entities.add(String.format("%d-%d %s", entity.getBegin(), entity.getEnd(), entity.getValue()));
+		}
+		return entities;
+	}
+
+	@Test
+	public void pipelineThreadsTagLikeOneThread() throws Exception {
+		AnalysisEngineDescription description = AnalysisEngineFactory.createEngineDescription(RecordingGazetteer.class,
+				BaseTreeGazetteer.PARAM_SOURCE_LOCATION, writeTaxa(taxaFolder),
+				BaseTreeGazetteer.PARAM_MAPPING_PROVIDER_LOCATION, writeMapping(taxaFolder),
+				BaseTreeGazetteer.PARAM_RETOKENIZE, true,
+				BaseTreeGazetteer.PARAM_USE_SENTECE_LEVEL_TAGGING, true,
+				SingleClassTreeGazetteer.PARAM_TAGGING_TYPE_NAME, NamedEntity.class.getName());
+
+		Random random = new Random(3);
+		List<String> texts = new ArrayList<>();
+		for (int i = 0; i < DOCUMENTS; i++) {
+			texts.add(createText(random));
+		}
+		AnalysisEngine sequential = AnalysisEngineFactory.createEngine(description);
+		List<List<String>> expected = new ArrayList<>();
+		for (String text : texts) {
+			expected.add(tag(sequential, text));
+		}
+		sequential.destroy();
+		assertTrue(expected.stream().anyMatch(entities -> !entities.isEmpty()));
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int thread = 0; thread < THREADS; thread++) {
+			int offset = thread;
+			futures.add(executor.submit(() -> {
+				AnalysisEngine engine = AnalysisEngineFactory.createEngine(description);
+				start.await();
+				// every thread starts with another document
+				for (int i = 0; i < DOCUMENTS; i++) {
+					int document = (i + offset * 7) % DOCUMENTS;
+					assertEquals(expected.get(document), tag(engine, texts.get(document)));
+				}
+				engine.destroy();
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get(2, TimeUnit.MINUTES);
+		}
+		executor.shutdown();
+
+		assertEquals(THREADS + 1, RecordingGazetteer.models.size());
+		for (Object model : RecordingGazetteer.models) {
+			assertSame(RecordingGazetteer.models.get(0), model);
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package org.hucompute.textimager.uima.gazetteer;
+
+import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.hucompute.textimager.uima.gazetteer.models.StringGazetteerModel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hucompute.textimager.uima.gazetteer.TreeGazetteerModelResourceTest.createDocument;
+import static org.hucompute.textimager.uima.gazetteer.TreeGazetteerModelResourceTest.writeMapping;
+import static org.junit.Assert.*;
+
+/**
+ * Tags folded variants of the entries with {@link BaseTreeGazetteer#PARAM_CASE_FOLDING} and
+ * {@link BaseTreeGazetteer#PARAM_CHARACTER_FOLDINGS}, the annotations keep the offsets of the original text.
+ */
+public class FoldingGazetteerTest {
+	private static final String TEXT = "An der GROSSE STRASSE ſtehen Pinus ſylveſtris und Pinus sylvestris .";
+
+	private Path taxaFolder;
+	private Path cacheFolder;
+	private String taxaFile;
+	private String mappingFile;
+
+	@Before
+	public void createFolders() throws IOException {
+		taxaFolder = Files.createTempDirectory("taxa");
+		cacheFolder = Files.createTempDirectory("gazetteer");
+		System.setProperty(StringGazetteerModel.CACHE_DIR_PROPERTY, cacheFolder.toString());
+		taxaFile = taxaFolder.resolve("names.txt").toString();
+		Files.write(Paths.get(taxaFile), Arrays.asList(
+				"Große Straße\thttps://www.biofid.de/bio-ontologies/places/1",
+				"Pinus sylvestris\thttps://www.biofid.de/bio-ontologies/plants/1"
+		), StandardCharsets.UTF_8);
+		mappingFile = writeMapping(taxaFolder);
+	}
+
+	@After
+	public void deleteFolders() throws IOException {
+		System.clearProperty(StringGazetteerModel.CACHE_DIR_PROPERTY);
+		FileUtils.deleteDirectory(taxaFolder.toFile());
+		FileUtils.deleteDirectory(cacheFolder.toFile());
+	}
+
+	private List<String> tag(Object... parameters) throws Exception {
+		List<Object> allParameters = new ArrayList<>(Arrays.asList(
+				BaseTreeGazetteer.PARAM_SOURCE_LOCATION, taxaFile,
+				BaseTreeGazetteer.PARAM_MAPPING_PROVIDER_LOCATION, mappingFile,
+				SingleClassTreeGazetteer.PARAM_TAGGING_TYPE_NAME, NamedEntity.class.getName()));
+		allParameters.addAll(Arrays.asList(parameters));
+		AnalysisEngine engine = AnalysisEngineFactory.createEngine(RecordingGazetteer.class, allParameters.toArray());
+		JCas jCas = createDocument(TEXT);
+		engine.process(jCas);
+		engine.destroy();
+
+		List<String> entities = new ArrayList<>();
+		for (NamedEntity entity : JCasUtil.select(jCas, NamedEntity.class)) {
+			entities.add(String.format("%d-%d %s", entity.getBegin(), entity.getEnd(), entity.getCoveredText()));
+		}
+		return entities;
+	}
+
+	// the only occurrence of the text in the document
+	private static String span(String text) {
+		int begin = TEXT.indexOf(text);
+		return String.format("%d-%d %s", begin, begin + text.length(), text);
+	}
+
+	@Test
+	public void foldedMatchesHaveOriginalOffsets() throws Exception {
+		assertEquals(Arrays.asList(span("GROSSE STRASSE"), span("Pinus ſylveſtris"), span("Pinus sylvestris")),
+				tag(BaseTreeGazetteer.PARAM_CASE_FOLDING, true,
+						BaseTreeGazetteer.PARAM_CHARACTER_FOLDINGS, new String[]{"ſ=s"}));
+	}
+
+	@Test
+	public void withoutFoldingOnlyExactMatches() throws Exception {
+		assertEquals(Arrays.asList(span("Pinus sylvestris")), tag());
+	}
+}
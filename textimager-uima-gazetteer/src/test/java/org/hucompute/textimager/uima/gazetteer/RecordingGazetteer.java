@@ -0,0 +1,44 @@
+package org.hucompute.textimager.uima.gazetteer;
+
+import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
+import org.apache.uima.UimaContext;
+import org.apache.uima.cas.Type;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.jcas.tcas.Annotation;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.hucompute.textimager.uima.gazetteer.models.ITreeGazetteerModel;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.stream.Collectors;
+
+/**
+ * Gazetteer for the annotator tests, remembers the models and resources of its instances.
+ */
+public class RecordingGazetteer extends SingleClassTreeGazetteer {
+	static final List<ITreeGazetteerModel> models = new CopyOnWriteArrayList<>();
+	static final List<TreeGazetteerModelResource> resources = new CopyOnWriteArrayList<>();
+
+	@Override
+	public void initialize(UimaContext aContext) throws ResourceInitializationException {
+		super.initialize(aContext);
+		models.add(stringTreeGazetteerModel);
+		if (gazetteerModel != null) {
+			resources.add(gazetteerModel);
+		}
+	}
+
+	@Override
+	protected void addMyAnnotation(JCas aJCas, Annotation fromToken, Annotation toToken, Type type, HashSet<Object> objects) {
+		NamedEntity annotation = (NamedEntity) aJCas.getCas().createAnnotation(type, fromToken.getBegin(), toToken.getEnd());
+		annotation.setValue(new TreeSet<>(objects.stream().map(Object::toString).collect(Collectors.toList())).toString());
+		aJCas.addFsToIndexes(annotation);
+	}
+
+	@Override
+	protected String getGazetteerName() {
+		return "recording-test";
+	}
+}
@@ -0,0 +1,156 @@
+package org.hucompute.textimager.uima.gazetteer;
+
+import de.tudarmstadt.ukp.dkpro.core.api.ner.type.NamedEntity;
+import de.tudarmstadt.ukp.dkpro.core.api.ner.type.Organization;
+import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
+import org.apache.commons.io.FileUtils;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.fit.factory.AnalysisEngineFactory;
+import org.apache.uima.fit.factory.ExternalResourceFactory;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.fit.util.JCasUtil;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ExternalResourceDescription;
+import org.hucompute.textimager.uima.gazetteer.models.StringGazetteerModel;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * One {@link TreeGazetteerModelResource} bound to {@link BaseTreeGazetteer#PARAM_MODEL} of several gazetteers.
+ */
+public class TreeGazetteerModelResourceTest {
+	static final String TEXT = "Im Wald stehen Quercus robur und Fagus sylvatica , aber keine Pinus sylvestris .";
+
+	private Path taxaFolder;
+	private Path cacheFolder;
+	private String taxaFile;
+	private String mappingFile;
+	private String gazetteerName;
+
+	@Before
+	public void createFolders() throws IOException {
+		taxaFolder = Files.createTempDirectory("taxa");
+		cacheFolder = Files.createTempDirectory("gazetteer");
+		System.setProperty(StringGazetteerModel.CACHE_DIR_PROPERTY, cacheFolder.toString());
+		gazetteerName = "resource-test-" + System.nanoTime();
+		taxaFile = writeTaxa(taxaFolder);
+		mappingFile = writeMapping(taxaFolder);
+		RecordingGazetteer.models.clear();
+		RecordingGazetteer.resources.clear();
+	}
+
+	@After
+	public void deleteFolders() throws IOException {
+		System.clearProperty(StringGazetteerModel.CACHE_DIR_PROPERTY);
+		FileUtils.deleteDirectory(taxaFolder.toFile());
+		FileUtils.deleteDirectory(cacheFolder.toFile());
+	}
+
+	static String writeTaxa(Path folder) throws IOException {
+		Path file = folder.resolve("plants.txt");
+		Files.write(file, Arrays.asList(
+				"Quercus robur\thttps://www.biofid.de/bio-ontologies/plants/1",
+				"Fagus sylvatica\thttps://www.biofid.de/bio-ontologies/plants/2",
+				"Larix decidua\thttps://www.biofid.de/bio-ontologies/plants/3"
+		), StandardCharsets.UTF_8);
+		return file.toString();
+	}
+
+	static String writeMapping(Path folder) throws IOException {
+		Path file = folder.resolve("ner-default.map");
+		Files.write(file, Arrays.asList("*=" + NamedEntity.class.getName()), StandardCharsets.UTF_8);
+		return file.toUri().toString();
+	}
+
+	/**
+	 * A document with a token for each run of non-space characters, like the tokenizer before the gazetteer.
+	 */
+	static JCas createDocument(String text) throws Exception {
+		JCas jCas = JCasFactory.createJCas();
+		jCas.setDocumentText(text);
+		jCas.setDocumentLanguage("de");
+		Matcher matcher = Pattern.compile("\\S+").matcher(text);
+		while (matcher.find()) {
+			new Token(jCas, matcher.start(), matcher.end()).addToIndexes();
+		}
+		return jCas;
+	}
+
+	static List<String> spans(JCas jCas, Class<? extends NamedEntity> type) {
+		List<String> spans = new ArrayList<>();
+		for (NamedEntity entity : JCasUtil.select(jCas, type)) {
+			spans.add(entity.getCoveredText());
+		}
+		return spans;
+	}
+
+	private ExternalResourceDescription createModelResource() {
+		return ExternalResourceFactory.createExternalResourceDescription(TreeGazetteerModelResource.class,
+				"file:" + taxaFile,
+				TreeGazetteerModelResource.PARAM_GAZETTEER_NAME, gazetteerName,
+				BaseTreeGazetteer.PARAM_SOURCE_LOCATION, taxaFile);
+	}
+
+	private Object[] gazetteerParameters(ExternalResourceDescription model, Class<? extends NamedEntity> taggingType) {
+		return new Object[]{
+				BaseTreeGazetteer.PARAM_MODEL, model,
+				BaseTreeGazetteer.PARAM_MAPPING_PROVIDER_LOCATION, mappingFile,
+				SingleClassTreeGazetteer.PARAM_TAGGING_TYPE_NAME, taggingType.getName()
+		};
+	}
+
+	@Test
+	public void gazetteersOfOnePipelineShareTheResource() throws Exception {
+		ExternalResourceDescription model = createModelResource();
+		AnalysisEngine pipeline = AnalysisEngineFactory.createEngine(AnalysisEngineFactory.createEngineDescription(
+				AnalysisEngineFactory.createEngineDescription(RecordingGazetteer.class, gazetteerParameters(model, NamedEntity.class)),
+				AnalysisEngineFactory.createEngineDescription(RecordingGazetteer.class, gazetteerParameters(model, Organization.class))));
+
+		assertEquals(2, RecordingGazetteer.resources.size());
+		assertSame(RecordingGazetteer.resources.get(0), RecordingGazetteer.resources.get(1));
+		assertSame(RecordingGazetteer.models.get(0), RecordingGazetteer.models.get(1));
+		assertSame(RecordingGazetteer.resources.get(0).getModel(), RecordingGazetteer.models.get(0));
+
+		JCas jCas = createDocument(TEXT);
+		pipeline.process(jCas);
+		List<String> expected = Arrays.asList("Quercus robur", "Fagus sylvatica");
+		assertEquals(expected, spans(jCas, Organization.class));
+		// an Organization is a NamedEntity too
+		assertEquals(4, JCasUtil.select(jCas, NamedEntity.class).size());
+		pipeline.destroy();
+	}
+
+	@Test
+	public void resourcesOfDifferentPipelinesShareTheModel() throws Exception {
+		AnalysisEngine first = AnalysisEngineFactory.createEngine(RecordingGazetteer.class,
+				gazetteerParameters(createModelResource(), NamedEntity.class));
+		AnalysisEngine second = AnalysisEngineFactory.createEngine(RecordingGazetteer.class,
+				gazetteerParameters(createModelResource(), NamedEntity.class));
+
+		assertEquals(2, RecordingGazetteer.resources.size());
+		assertNotSame(RecordingGazetteer.resources.get(0), RecordingGazetteer.resources.get(1));
+		assertSame(RecordingGazetteer.models.get(0), RecordingGazetteer.models.get(1));
+
+		JCas firstJCas = createDocument(TEXT);
+		first.process(firstJCas);
+		JCas secondJCas = createDocument(TEXT);
+		second.process(secondJCas);
+		assertEquals(Arrays.asList("Quercus robur", "Fagus sylvatica"), spans(firstJCas, NamedEntity.class));
+		assertEquals(spans(firstJCas, NamedEntity.class), spans(secondJCas, NamedEntity.class));
+		first.destroy();
+		second.destroy();
+	}
+}
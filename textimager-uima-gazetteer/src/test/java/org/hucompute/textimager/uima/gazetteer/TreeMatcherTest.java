@@ -0,0 +1,227 @@
+package org.hucompute.textimager.uima.gazetteer;
+
+import org.hucompute.textimager.uima.gazetteer.TreeMatcher.Match;
+import org.hucompute.textimager.uima.gazetteer.tree.CompactTrie;
+import org.hucompute.textimager.uima.gazetteer.tree.StringTreeNode;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tags generated documents with one shared {@link TreeMatcher}, like the gazetteer instances of a pipeline.
+ */
+public class TreeMatcherTest {
+	// like the pipeline threads of a worker
+	private static final int THREADS = 16;
+
+	// number of documents for the benchmark
+	private static final int DOCUMENTS = Integer.getInteger("textimager.gazetteer.benchmarkDocuments", 2_000);
+
+	private static final String BOUNDARY = "\\s+";
+
+	private static final String[] ENTRIES = {
+			"Abies", "Abies alba", "Abies alba subsp nebrodensis", "Picea abies", "Fagus sylvatica",
+			"Quercus robur", "Quercus", "Larix decidua", "Pinus sylvestris", "Pinus"
+	};
+
+	private static final String[] WORDS = {"und", "der", "Wald", "mit", "alba", "subsp", "robur", "eine"};
+
+	private static CompactTrie compactTrie() {
+		CompactTrie.Builder builder = new CompactTrie.Builder(BOUNDARY, false);
+		for (String entry : ENTRIES) {
+			builder.add(entry);
+		}
+		return builder.build();
+	}
+
+	private static StringTreeNode stringTree() {
+		StringTreeNode tree = new StringTreeNode(BOUNDARY, false);
+		for (String entry : ENTRIES) {
+			tree.insert(entry);
+		}
+		return tree;
+	}
+
+	// a document of sentences with entries between other words, returns the sentence token ranges
+	private static int[][] randomDocument(Random random, List<String> tokens, int sentences) {
+		int[] begins = new int[sentences];
+		int[] ends = new int[sentences];
+		for (int sentence = 0; sentence < sentences; sentence++) {
+			begins[sentence] = tokens.size();
+			int length = random.nextInt(30);
+			while (tokens.size() - begins[sentence] < length) {
+				if (random.nextInt(4) == 0) {
+					tokens.addAll(Arrays.asList(ENTRIES[random.nextInt(ENTRIES.length)].split(" ")));
+				} else {
+					tokens.add(WORDS[random.nextInt(WORDS.length)]);
+				}
+			}
+			ends[sentence] = tokens.size();
+		}
+		return new int[][]{begins, ends};
+	}
+
+	private static List<String> toStrings(List<Match> matches) {
+		List<String> strings = new ArrayList<>(matches.size());
+		for (Match match : matches) {
+			strings.add(String.format("%d-%d %s", match.getStart(), match.getEnd(), match.getValue()));
+		}
+		return strings;
+	}
+
+	// one sentence after the other, like the gazetteer did before the sentences were tagged in parallel
+	private static List<String> tagSequentially(TreeMatcher matcher, List<String> tokens, int[][] sentences) {
+		List<Match> matches = new ArrayList<>();
+		for (int sentence = 0; sentence < sentences[0].length; sentence++) {
+			List<String> query = new ArrayList<>(tokens.subList(sentences[0][sentence], sentences[1][sentence]));
+			if (!query.isEmpty()) {
+				matches.addAll(matcher.findAllMatches(query, sentences[0][sentence]));
+			}
+		}
+		return toStrings(matches);
+	}
+
+	@Test
+	public void findAllMatches() {
+		List<String> query = Arrays.asList("eine", "Abies", "alba", "subsp", "nebrodensis", "und", "Pinus", "Pinus", "sylvestris");
+		for (TreeMatcher matcher : new TreeMatcher[]{new TreeMatcher(compactTrie()), new TreeMatcher(stringTree())}) {
+			assertEquals(Arrays.asList("11-14 Abies alba subsp nebrodensis", "16-16 Pinus", "17-18 Pinus sylvestris"),
+					toStrings(matcher.findAllMatches(query, 10)));
+			assertEquals(Collections.emptyList(), matcher.findAllMatches(Arrays.asList("der", "Wald"), 0));
+		}
+	}
+
+	@Test
+	public void coveredTokens() {
+		// "Abies alba. Picea-abies. . Quercus robur"
+		int[] tokenBegins = {0, 6, 10, 12, 17, 23, 25, 27, 35};
+		int[] tokenEnds = {5, 10, 11, 17, 23, 24, 26, 34, 40};
+		// the second sentence ends inside a token, the third covers no token
+		int[] sentenceBegins = {0, 12, 24, 27};
+		int[] sentenceEnds = {11, 20, 24, 40};
+
+		int[][] covered = TreeMatcher.coveredTokens(tokenBegins, tokenEnds, sentenceBegins, sentenceEnds);
+		assertArrayEquals(new int[]{0, 3, 6, 7}, covered[0]);
+		assertArrayEquals(new int[]{3, 4, 6, 9}, covered[1]);
+
+		assertEquals(0, TreeMatcher.lowerBound(tokenBegins, -1));
+		assertEquals(3, TreeMatcher.lowerBound(tokenBegins, 12));
+		assertEquals(4, TreeMatcher.lowerBound(tokenBegins, 13));
+		assertEquals(tokenBegins.length, TreeMatcher.lowerBound(tokenBegins, 100));
+	}
+
+	@Test
+	public void sentencesInParallelLikeSequentially() {
+		Random random = new Random(1);
+		for (TreeMatcher matcher : new TreeMatcher[]{new TreeMatcher(compactTrie()), new TreeMatcher(stringTree())}) {
+			List<String> tokens = new ArrayList<>();
+			int[][] sentences = randomDocument(random, tokens, 500);
+			List<String> expected = tagSequentially(matcher, tokens, sentences);
+			assertFalse(expected.isEmpty());
+			assertEquals(expected, toStrings(matcher.findAllMatches(tokens, sentences[0], sentences[1])));
+		}
+	}
+
+	@Test
+	public void ahoCorasickLikeTreeWalk() {
+		CompactTrie trie = compactTrie();
+		TreeMatcher treeWalk = new TreeMatcher(trie);
+		TreeMatcher ahoCorasick = new TreeMatcher(trie, true);
+		assertFalse(treeWalk.usesAhoCorasick());
+		assertTrue(ahoCorasick.usesAhoCorasick());
+		// only the compact trie has an automaton
+		assertFalse(new TreeMatcher(stringTree(), true).usesAhoCorasick());
+
+		Random random = new Random(4);
+		for (int i = 0; i < 100; i++) {
+			List<String> tokens = new ArrayList<>();
+			int[][] sentences = randomDocument(random, tokens, 1 + random.nextInt(50));
+			assertEquals(toStrings(treeWalk.findAllMatches(tokens, 0)), toStrings(ahoCorasick.findAllMatches(tokens, 0)));
+			assertEquals(toStrings(treeWalk.findAllMatches(tokens, sentences[0], sentences[1])),
+					toStrings(ahoCorasick.findAllMatches(tokens, sentences[0], sentences[1])));
+		}
+	}
+
+	@Test
+	public void concurrentDocuments() throws Exception {
+		TreeMatcher matcher = new TreeMatcher(compactTrie());
+		List<List<String>> documents = new ArrayList<>();
+		List<int[][]> sentences = new ArrayList<>();
+		List<List<String>> expected = new ArrayList<>();
+		Random random = new Random(2);
+		for (int i = 0; i < 200; i++) {
+			List<String> tokens = new ArrayList<>();
+			sentences.add(randomDocument(random, tokens, 1 + random.nextInt(50)));
+			documents.add(tokens);
+			expected.add(tagSequentially(matcher, tokens, sentences.get(i)));
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int thread = 0; thread < THREADS; thread++) {
+			int first = thread;
+			futures.add(executor.submit(() -> {
+				start.await();
+				// every thread tags all documents in its own order, the sentences of each in parallel
+				for (int i = 0; i < documents.size(); i++) {
+					int document = (first * 31 + i) % documents.size();
+					int[][] ranges = sentences.get(document);
+					assertEquals(expected.get(document), toStrings(matcher.findAllMatches(documents.get(document), ranges[0], ranges[1])));
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get(2, TimeUnit.MINUTES);
+		}
+		executor.shutdown();
+	}
+
+	// enable with -Dtextimager.benchmark=true
+	@Test
+	public void benchmarkThroughput() throws Exception {
+		Assume.assumeTrue(Boolean.getBoolean("textimager.benchmark"));
+
+		TreeMatcher matcher = new TreeMatcher(compactTrie());
+		List<List<String>> documents = new ArrayList<>();
+		List<int[][]> sentences = new ArrayList<>();
+		Random random = new Random(3);
+		long tokens = 0;
+		for (int i = 0; i < DOCUMENTS; i++) {
+			List<String> document = new ArrayList<>();
+			sentences.add(randomDocument(random, document, 100));
+			documents.add(document);
+			tokens += document.size();
+		}
+
+		for (int threads : new int[]{1, 2, 4, 8, THREADS}) {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			long nanos = Long.MAX_VALUE;
+			// best of a few rounds, the first ones warm up the JIT
+			for (int round = 0; round < 3; round++) {
+				long begin = System.nanoTime();
+				List<Future<Integer>> futures = new ArrayList<>();
+				for (int i = 0; i < documents.size(); i++) {
+					int document = i;
+					futures.add(executor.submit(() -> {
+						int[][] ranges = sentences.get(document);
+						return matcher.findAllMatches(documents.get(document), ranges[0], ranges[1]).size();
+					}));
+				}
+				for (Future<Integer> future : futures) {
+					assertTrue(future.get() > 0);
+				}
+				nanos = Math.min(nanos, System.nanoTime() - begin);
+			}
+			executor.shutdown();
+			System.out.println(String.format("%2d threads: %.0f documents/sec, %.0f tokens/sec",
+					threads, documents.size() / (nanos / 1e9), tokens / (nanos / 1e9)));
+		}
+	}
+}
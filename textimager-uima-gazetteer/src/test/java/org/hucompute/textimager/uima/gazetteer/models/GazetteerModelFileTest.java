@@ -0,0 +1,280 @@
+package org.hucompute.textimager.uima.gazetteer.models;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.hucompute.textimager.uima.gazetteer.tree.ITreeNode;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * Builds models from generated taxa files and compares them with the prebuilt models mapped on the next start.
+ */
+public class GazetteerModelFileTest {
+	// number of taxa per file for the benchmark
+	private static final int TAXA = Integer.getInteger("textimager.gazetteer.benchmarkTaxa", 100_000);
+
+	private Path taxaFolder;
+	private Path cacheFolder;
+	private String gazetteerName;
+
+	@Before
+	public void createFolder() throws IOException {
+		taxaFolder = Files.createTempDirectory("taxa");
+		cacheFolder = Files.createTempDirectory("gazetteer");
+		System.setProperty(StringGazetteerModel.CACHE_DIR_PROPERTY, cacheFolder.toString());
+		gazetteerName = "model-test-" + System.nanoTime();
+	}
+
+	@After
+	public void deleteFolders() throws IOException {
+		System.clearProperty(StringGazetteerModel.CACHE_DIR_PROPERTY);
+		FileUtils.deleteDirectory(taxaFolder.toFile());
+		FileUtils.deleteDirectory(cacheFolder.toFile());
+	}
+
+	// taxa may only contain letters, spaces and hyphens
+	static String word(String prefix, int number) {
+		StringBuilder word = new StringBuilder(prefix);
+		do {
+			word.append((char) ('a' + number % 26));
+			number /= 26;
+		} while (number > 0);
+		return word.toString();
+	}
+
+	// one taxon and its URIs per line, like the BIOfid taxa lists
+	private String writeTaxa(String name, int count, long seed) throws IOException {
+		return writeTaxa(taxaFolder, name, count, seed);
+	}
+
+	static String writeTaxa(Path folder, String name, int count, long seed) throws IOException {
+		Random random = new Random(seed);
+		Path file = folder.resolve(name);
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < count; i++) {
+				StringBuilder taxon = new StringBuilder(word("Genus", random.nextInt(count / 10 + 1)));
+				int words = 1 + random.nextInt(4);
+				for (int w = 1; w < words; w++) {
+					taxon.append(' ').append(word(w == 2 ? "subsp" : "epithet", random.nextInt(count)));
+				}
+				writer.write(String.format("%s\thttps://www.biofid.de/bio-ontologies/%s/%d https://www.wikidata.org/wiki/Q%d\n",
+						taxon, name, i, random.nextInt(1_000_000)));
+			}
+		}
+		return file.toString();
+	}
+
+	private TreeGazetteerModel createModel(String[] sources, boolean usePrebuiltModel) throws IOException {
+		return new TreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName)
+				.usePrebuiltModel(usePrebuiltModel)
+				.build());
+	}
+
+	static List<String> randomQuery(Random random, List<String> skipGrams, int tokens) {
+		List<String> query = new ArrayList<>(tokens);
+		while (query.size() < tokens) {
+			if (random.nextInt(5) == 0) {
+				query.addAll(Arrays.asList(skipGrams.get(random.nextInt(skipGrams.size())).split(" ")));
+			} else {
+				query.add(random.nextBoolean() ? "und" : word("Genus", random.nextInt(100)));
+			}
+		}
+		return query;
+	}
+
+	static void assertSameMatches(IGazetteerModel expectedModel, ITreeNode expectedTree, IGazetteerModel actualModel, ITreeNode actualTree) {
+		List<String> skipGrams = new ArrayList<>(expectedModel.getSortedSkipGramSet());
+		List<String> query = randomQuery(new Random(1), skipGrams, 20_000);
+		int depth = expectedTree.depth();
+		assertEquals(depth, actualTree.depth());
+		int matches = 0;
+		for (int offset = 0; offset < query.size(); offset++) {
+			List<String> subList = query.subList(offset, Math.min(query.size(), offset + depth));
+			ImmutablePair<String, Integer> expected = expectedTree.traverse(subList);
+			assertEquals(expected, actualTree.traverse(subList));
+			if (expected.right > -1) {
+				String taxon = expectedModel.getSkipGramTaxonLookup().get(expected.left);
+				assertEquals(taxon, actualModel.getSkipGramTaxonLookup().get(expected.left));
+				assertEquals(expectedModel.getTaxonUriMap().get(taxon), actualModel.getTaxonUriMap().get(taxon));
+				matches++;
+			}
+		}
+		assertTrue(matches > 0);
+	}
+
+	@Test
+	public void mappedModelMatchesBuiltModel() throws IOException {
+		String[] sources = {writeTaxa("plants.txt", 2_000, 1), writeTaxa("animals.txt", 2_000, 2)};
+
+		TreeGazetteerModel built = createModel(sources, false);
+		assertNull(built.modelFile);
+
+		TreeGazetteerModel written = createModel(sources, true);
+		assertNull(written.prebuiltModel);
+		assertTrue(Files.isRegularFile(written.modelFile));
+
+		TreeGazetteerModel mapped = createModel(sources, true);
+		assertNotNull(mapped.prebuiltModel);
+		assertEquals(written.modelFile, mapped.modelFile);
+
+		assertEquals(built.getTree().size(), mapped.getTree().size());
+		assertEquals(built.getTaxonUriMap().size(), mapped.getTaxonUriMap().size());
+		assertEquals(built.getTaxonUriMap(), mapped.getTaxonUriMap());
+		assertSameMatches(built, built.getTree(), mapped, mapped.getTree());
+	}
+
+	@Test
+	public void changedSourcesOrParametersUseNewModel() throws IOException {
+		String[] sources = {writeTaxa("plants.txt", 500, 1)};
+		Path modelFile = createModel(sources, true).modelFile;
+
+		TreeGazetteerModel lowercase = new TreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName)
+				.useLowercase(true)
+				.usePrebuiltModel(true)
+				.build());
+		assertNotEquals(modelFile, lowercase.modelFile);
+
+		writeTaxa("plants.txt", 600, 1);
+		TreeGazetteerModel changed = createModel(sources, true);
+		assertNotEquals(modelFile, changed.modelFile);
+		assertNull(changed.prebuiltModel);
+	}
+
+	@Test
+	public void modelsKeepTheirFolders() throws IOException {
+		String[] sources = {writeTaxa("plants.txt", 500, 1)};
+		TreeGazetteerModel first = createModel(sources, true);
+		TreeGazetteerModel other = new TreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName + "-other")
+				.usePrebuiltModel(true)
+				.build());
+
+		assertEquals(cacheFolder.resolve(gazetteerName).toAbsolutePath(), first.getTaxaLocation());
+		assertEquals(cacheFolder.resolve(gazetteerName + "-other").toAbsolutePath(), other.getTaxaLocation());
+		assertEquals(first.getTaxaLocation(), first.modelFile.getParent());
+		assertEquals(other.getTaxaLocation(), other.modelFile.getParent());
+	}
+
+	@Test
+	public void corruptModelIsRebuilt() throws IOException {
+		String[] sources = {writeTaxa("plants.txt", 500, 1)};
+		Path modelFile = createModel(sources, true).modelFile;
+		byte[] bytes = Files.readAllBytes(modelFile);
+		Files.write(modelFile, Arrays.copyOf(bytes, bytes.length / 2));
+
+		TreeGazetteerModel rebuilt = createModel(sources, true);
+		assertNull(rebuilt.prebuiltModel);
+		assertEquals(bytes.length, Files.size(modelFile));
+		assertNotNull(createModel(sources, true).prebuiltModel);
+	}
+
+	@Test
+	public void multiClassIdsFromPrebuiltModel() throws IOException {
+		String[] sources = {writeTaxa("plants.txt", 1_000, 1), writeTaxa("animals.txt", 1_000, 1)};
+		MultiClassTreeGazetteerModel built = new MultiClassTreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName)
+				.usePrebuiltModel(true)
+				.build());
+		MultiClassTreeGazetteerModel mapped = new MultiClassTreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName)
+				.usePrebuiltModel(true)
+				.build());
+		assertNotNull(mapped.prebuiltModel);
+
+		for (String taxon : built.getTaxonUriMap().keySet()) {
+			assertEquals(built.getClassIdFromTaxon(taxon), mapped.getClassIdFromTaxon(taxon));
+		}
+		// same taxa in both files
+		assertEquals(new HashSet<>(Arrays.asList(0, 1)), mapped.getClassIdFromTaxon(built.getTaxonUriMap().keySet().iterator().next()));
+	}
+
+	@Test
+	public void multiClassIdsOfZipSources() throws IOException {
+		Path zip = taxaFolder.resolve("taxa.zip");
+		try (ZipOutputStream out = new ZipOutputStream(Files.newOutputStream(zip))) {
+			out.putNextEntry(new ZipEntry("plants.txt"));
+			out.write(Files.readAllBytes(Paths.get(writeTaxa("plants.txt", 500, 1))));
+			out.closeEntry();
+		}
+		String[] sources = {zip.toString()};
+		MultiClassTreeGazetteerModel built = new MultiClassTreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName)
+				.usePrebuiltModel(true)
+				.build());
+		MultiClassTreeGazetteerModel mapped = new MultiClassTreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName)
+				.usePrebuiltModel(true)
+				.build());
+		assertNotNull(mapped.prebuiltModel);
+
+		for (String taxon : built.getTaxonUriMap().keySet()) {
+			assertEquals(built.getClassIdFromTaxon(taxon), mapped.getClassIdFromTaxon(taxon));
+		}
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	// resident set size of this process in kB, -1 if unknown
+	private static long residentSetSize() throws IOException {
+		Path status = Paths.get("/proc/self/status");
+		if (!Files.isReadable(status)) {
+			return -1;
+		}
+		for (String line : Files.readAllLines(status)) {
+			if (line.startsWith("VmRSS:")) {
+				return Long.parseLong(line.replaceAll("\\D", ""));
+			}
+		}
+		return -1;
+	}
+
+	// enable with -Dtextimager.benchmark=true
+	@Test
+	public void benchmarkColdAndWarmStartup() throws IOException {
+		Assume.assumeTrue(Boolean.getBoolean("textimager.benchmark"));
+
+		String[] sources = {writeTaxa("plants.txt", TAXA, 1), writeTaxa("animals.txt", TAXA, 2)};
+
+		long[] cold = null;
+		long[] warm = null;
+		TreeGazetteerModel model = null;
+		// cold: load the taxa, build and write the model, warm: map the model
+		for (String name : new String[]{"cold", "warm"}) {
+			model = null;
+			long heapBefore = usedHeap();
+			long rssBefore = residentSetSize();
+			long start = System.nanoTime();
+			model = createModel(sources, true);
+			long millis = (System.nanoTime() - start) / 1_000_000;
+			long heap = (usedHeap() - heapBefore) >> 20;
+			long rss = rssBefore < 0 ? -1 : (residentSetSize() - rssBefore) >> 10;
+			System.out.println(String.format("%s start: %d ms, heap +%d MB, rss +%d MB, %d nodes",
+					name, millis, heap, rss, model.getTree().size()));
+			if (cold == null) {
+				cold = new long[]{millis, heap};
+			} else {
+				warm = new long[]{millis, heap};
+			}
+		}
+		System.out.println(String.format("model file: %d MB", Files.size(model.modelFile) >> 20));
+
+		assertNotNull(model.prebuiltModel);
+		assertTrue("warm start should be faster", warm[0] < cold[0]);
+		assertTrue("warm start should need less heap", warm[1] < cold[1]);
+	}
+}
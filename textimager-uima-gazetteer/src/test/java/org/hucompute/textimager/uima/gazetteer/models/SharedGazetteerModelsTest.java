@@ -0,0 +1,193 @@
+package org.hucompute.textimager.uima.gazetteer.models;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.hucompute.textimager.uima.gazetteer.tree.ITreeNode;
+import org.hucompute.textimager.uima.gazetteer.tree.TokenNormalizer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hucompute.textimager.uima.gazetteer.models.GazetteerModelFileTest.randomQuery;
+import static org.hucompute.textimager.uima.gazetteer.models.GazetteerModelFileTest.writeTaxa;
+import static org.junit.Assert.*;
+
+public class SharedGazetteerModelsTest {
+	// like the pipeline threads of a worker
+	private static final int THREADS = 16;
+
+	private Path taxaFolder;
+	private Path cacheFolder;
+	private String gazetteerName;
+
+	@Before
+	public void createFolder() throws IOException {
+		taxaFolder = Files.createTempDirectory("taxa");
+		cacheFolder = Files.createTempDirectory("gazetteer");
+		System.setProperty(StringGazetteerModel.CACHE_DIR_PROPERTY, cacheFolder.toString());
+		gazetteerName = "shared-test-" + System.nanoTime();
+	}
+
+	@After
+	public void deleteFolders() throws IOException {
+		System.clearProperty(StringGazetteerModel.CACHE_DIR_PROPERTY);
+		FileUtils.deleteDirectory(taxaFolder.toFile());
+		FileUtils.deleteDirectory(cacheFolder.toFile());
+		FileUtils.deleteDirectory(Paths.get("/tmp/" + gazetteerName).toFile());
+	}
+
+	private TreeGazetteerModel createModel(String[] sources) throws IOException {
+		return new TreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName)
+				.build());
+	}
+
+	// matches like TreeMatcher.findAllMatches, with the taxon and its URIs
+	private static List<String> tag(ITreeGazetteerModel model, List<String> query) {
+		ITreeNode tree = model.getTree();
+		int depth = tree.depth();
+		List<String> matches = new ArrayList<>();
+		for (int offset = 0; offset < query.size(); offset++) {
+			ImmutablePair<String, Integer> match = tree.traverse(query.subList(offset, Math.min(query.size(), offset + depth)));
+			if (match.right > -1) {
+				String taxon = model.getSkipGramTaxonLookup().get(match.left);
+				matches.add(String.format("%d-%d %s %s", offset, offset + match.right, taxon,
+						new TreeSet<Object>(model.getTaxonUriMap().get(taxon))));
+				offset += match.right;
+			}
+		}
+		return matches;
+	}
+
+	@Test
+	public void concurrentInstancesBuildOneModel() throws Exception {
+		String[] sources = {writeTaxa(taxaFolder, "plants.txt", 5_000, 1)};
+		TreeGazetteerModel reference = createModel(sources);
+		List<String> query = randomQuery(new Random(3), new ArrayList<>(reference.getSortedSkipGramSet()), 20_000);
+		List<String> expected = tag(reference, query);
+		assertFalse(expected.isEmpty());
+
+		AtomicInteger builds = new AtomicInteger();
+		List<Object> key = Arrays.asList("concurrent", gazetteerName);
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<ITreeGazetteerModel>> futures = new ArrayList<>();
+		for (int i = 0; i < THREADS; i++) {
+			futures.add(executor.submit(() -> {
+				start.await();
+				ITreeGazetteerModel model = SharedGazetteerModels.get(key, () -> {
+					builds.incrementAndGet();
+					return createModel(sources);
+				});
+				// all threads tag with the same model at the same time
+				for (int round = 0; round < 5; round++) {
+					assertEquals(expected, tag(model, query));
+				}
+				return model;
+			}));
+		}
+		start.countDown();
+
+		ITreeGazetteerModel shared = futures.get(0).get(2, TimeUnit.MINUTES);
+		for (Future<ITreeGazetteerModel> future : futures) {
+			assertSame(shared, future.get(2, TimeUnit.MINUTES));
+		}
+		executor.shutdown();
+		assertEquals(1, builds.get());
+		assertNotSame(reference, shared);
+	}
+
+	@Test
+	public void modelsAreSharedByParameters() throws IOException {
+		String[] sources = {writeTaxa(taxaFolder, "plants.txt", 1_000, 1)};
+		ITreeGazetteerModel single = SharedGazetteerModels.get(GazetteerModelOptions.builder(sources, gazetteerName)
+				.build());
+		// another gazetteer instance with the same parameters
+		ITreeGazetteerModel same = SharedGazetteerModels.get(GazetteerModelOptions.builder(sources.clone(), gazetteerName)
+				.build());
+		ITreeGazetteerModel multi = SharedGazetteerModels.get(GazetteerModelOptions.builder(sources, gazetteerName)
+				.multiClass(true)
+				.build());
+		ITreeGazetteerModel lowercase = SharedGazetteerModels.get(GazetteerModelOptions.builder(sources, gazetteerName)
+				.useLowercase(true)
+				.build());
+
+		assertSame(single, same);
+		assertNotSame(single, multi);
+		assertTrue(multi instanceof MultiClassTreeGazetteerModel);
+		assertNotSame(single, lowercase);
+	}
+
+	@Test
+	public void optionsWithoutBudgetAreTheKey() {
+		String[] sources = {"plants.txt", "animals.txt"};
+		GazetteerModelOptions options = GazetteerModelOptions.builder(sources, gazetteerName)
+				.filterSet(new HashSet<>(Arrays.asList("a", "b")))
+				.build();
+		// the budget does not change the model
+		GazetteerModelOptions streamed = options.toBuilder()
+				.streamingLoaderBudget(16)
+				.build();
+		assertEquals(options, streamed);
+		assertEquals(options.hashCode(), streamed.hashCode());
+		assertEquals(options, GazetteerModelOptions.builder(sources.clone(), gazetteerName)
+				.filterSet(new HashSet<>(Arrays.asList("b", "a")))
+				.build());
+
+		sources[0] = "fungi.txt";
+		assertEquals("plants.txt", options.getSourceLocations()[0]);
+		assertNotEquals(options, options.toBuilder().compactTree(false).build());
+		assertNotEquals(options, options.toBuilder().minWordCountForSkipGrams(2).build());
+		assertNotEquals(options, options.toBuilder().tokenNormalizer(new TokenNormalizer(true, false)).build());
+	}
+
+	@Test
+	public void changedSourceGivesNewModel() throws IOException {
+		String[] sources = {writeTaxa(taxaFolder, "plants.txt", 1_000, 1)};
+		ITreeGazetteerModel before = SharedGazetteerModels.get(GazetteerModelOptions.builder(sources, gazetteerName)
+				.usePrebuiltModel(true)
+				.build());
+
+		writeTaxa(taxaFolder, "plants.txt", 1_200, 2);
+		// the file system may only store seconds
+		Paths.get(sources[0]).toFile().setLastModified(System.currentTimeMillis() + 10_000);
+		ITreeGazetteerModel after = SharedGazetteerModels.get(GazetteerModelOptions.builder(sources, gazetteerName)
+				.usePrebuiltModel(true)
+				.build());
+
+		assertNotSame(before, after);
+		assertNotEquals(before.getTaxonUriMap().keySet(), after.getTaxonUriMap().keySet());
+		// the prebuilt model of the old file is not used either
+		assertEquals(createModel(sources).getTaxonUriMap().keySet(), after.getTaxonUriMap().keySet());
+	}
+
+	@Test
+	public void releasedModelsAreRemoved() throws Exception {
+		String[] sources = {writeTaxa(taxaFolder, "plants.txt", 100, 1)};
+		List<Object> key = Arrays.asList("released", gazetteerName);
+		ITreeGazetteerModel model = SharedGazetteerModels.get(key, () -> createModel(sources));
+		assertTrue(SharedGazetteerModels.contains(key));
+		assertSame(model, SharedGazetteerModels.get(key, () -> createModel(sources)));
+
+		model = null;
+		long deadline = System.currentTimeMillis() + 30_000;
+		while (SharedGazetteerModels.contains(key) && System.currentTimeMillis() < deadline) {
+			System.gc();
+			Thread.sleep(50);
+		}
+		assertFalse(SharedGazetteerModels.contains(key));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void sharedModelsAreReadOnly() throws IOException {
+		String[] sources = {writeTaxa(taxaFolder, "plants.txt", 100, 1)};
+		createModel(sources).getTaxonUriMap().clear();
+	}
+}
@@ -0,0 +1,189 @@
+package org.hucompute.textimager.uima.gazetteer.models;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import com.google.common.collect.Streams;
+import org.apache.commons.lang3.ArrayUtils;
+import org.apache.commons.math3.util.Combinations;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.hucompute.textimager.uima.gazetteer.models.GazetteerModelFileTest.word;
+import static org.junit.Assert.*;
+
+/**
+ * Compares the {@link SkipGramGenerator} with the combinations the models used before.
+ */
+public class SkipGramGeneratorTest {
+	// number of taxa for the benchmark
+	private static final int TAXA = Integer.getInteger("textimager.gazetteer.benchmarkTaxa", 100_000);
+
+	private static ArrayList<String> legacyWords(String pString, boolean splitHyphen) {
+		return Lists.newArrayList(pString.split(splitHyphen ? "[\\s\n\\-]+" : "[\\s\n]+"));
+	}
+
+	// StringGazetteerModel.getSkipGramsFromTaxonAsStream before the generator
+	private static HashSet<String> legacySkipGrams(boolean noSkipGrams, String pString, int minWordCountForSkipGrams, boolean getAllSkips, boolean splitHyphen, int maxWordCountForSkipGrams) {
+		ArrayList<String> words = legacyWords(pString, splitHyphen);
+		if (noSkipGrams || (words.size() < minWordCountForSkipGrams | words.size() > maxWordCountForSkipGrams)) {
+			return Sets.newHashSet(pString);
+		}
+		IntStream combinationRange;
+		if (getAllSkips && words.size() > 3) {
+			combinationRange = IntStream.range(2, words.size());
+		} else {
+			combinationRange = IntStream.of(words.size() - 1);
+		}
+		Stream<Integer[]> combinationsArraysStream = combinationRange
+				.boxed()
+				.map(i -> new Combinations(words.size(), i).iterator())
+				.flatMap(Streams::stream)
+				.map(ArrayUtils::toObject);
+		return combinationsArraysStream
+				.parallel()
+				.map(combination -> {
+					ArrayList<String> strings = new ArrayList<>();
+					for (int index : combination) {
+						strings.add(words.get(index));
+					}
+					return String.join(" ", strings);
+				}).collect(Collectors.toCollection(HashSet::new));
+	}
+
+	// StringGazetteerModel.getSkipGramsFromTaxon before the generator
+	private static Set<String> legacySkipGramsWithAbbreviation(boolean noSkipGrams, String pString, boolean addAbbreviatedTaxa, int minWordCountForSkipGrams, boolean getAllSkips, boolean splitHyphen) {
+		HashSet<String> basicSkipGrams = legacySkipGrams(noSkipGrams, pString, minWordCountForSkipGrams, getAllSkips, splitHyphen, 5);
+		if (addAbbreviatedTaxa) {
+			ArrayList<String> words = legacyWords(pString, splitHyphen);
+			if (words.size() > 1) {
+				words.set(0, pString.charAt(0) + ".");
+				String abbreviatedString = String.join(" ", words);
+				basicSkipGrams.add(abbreviatedString);
+				if (words.size() > 2) {
+					basicSkipGrams.addAll(legacySkipGrams(noSkipGrams, abbreviatedString, minWordCountForSkipGrams, getAllSkips, splitHyphen, 5));
+				}
+			}
+		}
+		return basicSkipGrams;
+	}
+
+	// mostly binomials and trinomials, some with authors and hyphens, few long names
+	private static String randomTaxon(Random random) {
+		int words = 1 + Math.min(11, (int) Math.abs(random.nextGaussian() * 2));
+		StringBuilder taxon = new StringBuilder(word("Genus", random.nextInt(1_000)));
+		for (int w = 1; w < words; w++) {
+			// repeated words and hyphens
+			String next = random.nextInt(10) == 0 ? "alba" : word(w == 2 ? "subsp" : "epithet", random.nextInt(10_000));
+			taxon.append(random.nextInt(8) == 0 ? '-' : ' ').append(next);
+		}
+		return taxon.toString();
+	}
+
+	@Test
+	public void likeCombinations() {
+		Random random = new Random(1);
+		for (int i = 0; i < 5_000; i++) {
+			String taxon = randomTaxon(random);
+			boolean noSkipGrams = random.nextInt(10) == 0;
+			boolean addAbbreviatedTaxa = random.nextBoolean();
+			int minWordCount = random.nextInt(4);
+			boolean allSkips = random.nextBoolean();
+			boolean splitHyphen = random.nextBoolean();
+			assertEquals(taxon, legacySkipGramsWithAbbreviation(noSkipGrams, taxon, addAbbreviatedTaxa, minWordCount, allSkips, splitHyphen),
+					new SkipGramGenerator(noSkipGrams, addAbbreviatedTaxa, minWordCount, allSkips, splitHyphen).getSkipGrams(taxon));
+			assertEquals(taxon, legacySkipGramsWithAbbreviation(noSkipGrams, taxon, addAbbreviatedTaxa, minWordCount, allSkips, splitHyphen),
+					StringGazetteerModel.getSkipGramsFromTaxon(noSkipGrams, taxon, addAbbreviatedTaxa, minWordCount, allSkips, splitHyphen));
+		}
+		// a single word without itself
+		assertEquals(Collections.singleton(""), new SkipGramGenerator(false, false, 1, false, false).getSkipGrams("Abies"));
+		assertEquals(legacySkipGrams(false, "Abies alba alba", 3, false, false, 5),
+				new SkipGramGenerator(false, false, 3, false, false).getSkipGrams("Abies alba alba"));
+	}
+
+	@Test
+	public void limits() {
+		assertEquals(0, SkipGramGenerator.maxGap(0b1));
+		assertEquals(0, SkipGramGenerator.maxGap(0b111000));
+		assertEquals(2, SkipGramGenerator.maxGap(0b1001));
+		assertEquals(3, SkipGramGenerator.maxGap(0b10001011));
+
+		String taxon = "a b c d e f";
+		SkipGramGenerator unlimited = new SkipGramGenerator(false, false, 3, 6, true, false, SkipGramGenerator.UNLIMITED, SkipGramGenerator.UNLIMITED);
+		// all subsets of two to five words
+		assertEquals(15 + 20 + 15 + 6, unlimited.getSkipGrams(taxon).size());
+
+		SkipGramGenerator gap = new SkipGramGenerator(false, false, 3, 6, true, false, 1, SkipGramGenerator.UNLIMITED);
+		HashSet<String> gapped = gap.getSkipGrams(taxon);
+		assertTrue(gapped.contains("a c e"));
+		assertTrue(gapped.contains("c d e f"));
+		assertFalse(gapped.contains("a d"));
+		for (String skipGram : gapped) {
+			assertTrue(unlimited.getSkipGrams(taxon).contains(skipGram));
+		}
+
+		SkipGramGenerator count = new SkipGramGenerator(false, false, 3, 6, true, false, SkipGramGenerator.UNLIMITED, 10);
+		HashSet<String> counted = count.getSkipGrams(taxon);
+		assertEquals(10, counted.size());
+		// the ones with more words first
+		for (String skipGram : counted) {
+			assertTrue(skipGram, skipGram.split(" ").length >= 4);
+		}
+
+		// too long for skip-grams
+		assertEquals(Collections.singleton(taxon), new SkipGramGenerator(false, false, 3, false, false).getSkipGrams(taxon));
+	}
+
+	// enable with -Dtextimager.benchmark=true
+	@Test
+	public void benchmarkSkipGrams() {
+		Assume.assumeTrue(Boolean.getBoolean("textimager.benchmark"));
+
+		Random random = new Random(2);
+		List<String> taxa = new ArrayList<>(TAXA);
+		for (int i = 0; i < TAXA; i++) {
+			taxa.add(randomTaxon(random));
+		}
+		SkipGramGenerator generator = new SkipGramGenerator(false, true, 3, true, true);
+
+		long legacyNanos = Long.MAX_VALUE;
+		long generatorNanos = Long.MAX_VALUE;
+		long legacyCount = 0;
+		long generatorCount = 0;
+		// best of a few rounds, the first ones warm up the JIT
+		for (int round = 0; round < 3; round++) {
+			long start = System.nanoTime();
+			legacyCount = 0;
+			for (String taxon : taxa) {
+				legacyCount += legacySkipGramsWithAbbreviation(false, taxon, true, 3, true, true).size();
+			}
+			legacyNanos = Math.min(legacyNanos, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			generatorCount = 0;
+			for (String taxon : taxa) {
+				generatorCount += generator.getSkipGrams(taxon).size();
+			}
+			generatorNanos = Math.min(generatorNanos, System.nanoTime() - start);
+		}
+		assertEquals(legacyCount, generatorCount);
+
+		System.out.println(String.format("%d taxa, %d skip-grams", taxa.size(), generatorCount));
+		System.out.println(String.format("combinations: %.0f taxa/sec", taxa.size() / (legacyNanos / 1e9)));
+		System.out.println(String.format("generator: %.0f taxa/sec", taxa.size() / (generatorNanos / 1e9)));
+
+		// long names with all skips, where the number of combinations explodes
+		SkipGramGenerator longNames = new SkipGramGenerator(false, false, 3, 12, true, true, 2, 1_000);
+		long start = System.nanoTime();
+		long count = 0;
+		for (String taxon : taxa) {
+			count += longNames.getSkipGrams(taxon).size();
+		}
+		System.out.println(String.format("up to 12 words, gaps of up to 2, at most 1000 per taxon: %d skip-grams, %.0f taxa/sec",
+				count, taxa.size() / ((System.nanoTime() - start) / 1e9)));
+	}
+}
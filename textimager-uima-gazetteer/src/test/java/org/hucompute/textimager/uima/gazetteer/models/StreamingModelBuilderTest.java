@@ -0,0 +1,226 @@
+package org.hucompute.textimager.uima.gazetteer.models;
+
+import org.apache.commons.io.FileUtils;
+import org.hucompute.textimager.uima.gazetteer.tree.CompactTrie;
+import org.hucompute.textimager.uima.gazetteer.tree.TokenNormalizer;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.hucompute.textimager.uima.gazetteer.models.GazetteerModelFileTest.assertSameMatches;
+import static org.hucompute.textimager.uima.gazetteer.models.GazetteerModelFileTest.word;
+import static org.hucompute.textimager.uima.gazetteer.models.GazetteerModelFileTest.writeTaxa;
+import static org.junit.Assert.*;
+
+/**
+ * Compares the models streamed by the {@link StreamingModelBuilder} with the models built in memory.
+ */
+public class StreamingModelBuilderTest {
+	// lines of the taxa file and heap of the process that streams it
+	private static final int LINES = Integer.getInteger("textimager.gazetteer.streamingLines", 2_000_000);
+	private static final String HEAP = System.getProperty("textimager.gazetteer.streamingHeap", "-Xmx128m");
+
+	private static final String BOUNDARY = "\\s+";
+
+	private Path taxaFolder;
+	private Path cacheFolder;
+	private String gazetteerName;
+
+	@Before
+	public void createFolder() throws IOException {
+		taxaFolder = Files.createTempDirectory("taxa");
+		cacheFolder = Files.createTempDirectory("gazetteer");
+		System.setProperty(StringGazetteerModel.CACHE_DIR_PROPERTY, cacheFolder.toString());
+		gazetteerName = "streaming-test-" + System.nanoTime();
+	}
+
+	@After
+	public void deleteFolders() throws IOException {
+		System.clearProperty(StringGazetteerModel.CACHE_DIR_PROPERTY);
+		FileUtils.deleteDirectory(taxaFolder.toFile());
+		FileUtils.deleteDirectory(cacheFolder.toFile());
+		FileUtils.deleteDirectory(Paths.get("/tmp/" + gazetteerName).toFile());
+	}
+
+	private static void assertSameModel(TreeGazetteerModel built, TreeGazetteerModel streamed) {
+		assertNotNull(streamed.prebuiltModel);
+		CompactTrie builtTree = (CompactTrie) built.getTree();
+		CompactTrie streamedTree = (CompactTrie) streamed.getTree();
+		assertEquals(builtTree.size(), streamedTree.size());
+		assertEquals(builtTree.depth(), streamedTree.depth());
+		// the token ids and so the order of the nodes differ
+		assertEquals(new HashSet<>(builtTree.getValues()), new HashSet<>(streamedTree.getValues()));
+		for (String value : builtTree.getValues()) {
+			assertEquals(value, built.getSkipGramTaxonLookup().get(value), streamed.getSkipGramTaxonLookup().get(value));
+		}
+		assertEquals(built.getTaxonUriMap(), streamed.getTaxonUriMap());
+		assertSameMatches(built, builtTree, streamed, streamedTree);
+	}
+
+	@Test
+	public void streamedModelLikeBuiltModel() throws IOException {
+		String[] sources = {writeTaxa(taxaFolder, "plants.txt", 5_000, 1), writeTaxa(taxaFolder, "animals.txt", 5_000, 2)};
+		for (boolean lowercase : new boolean[]{false, true}) {
+			TreeGazetteerModel built = new TreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName)
+					.useLowercase(lowercase)
+					.filterSet(new HashSet<>(Collections.singletonList("genusb")))
+					.build());
+			// 1 MB, so that the records are sorted in several runs
+			TreeGazetteerModel streamed = new TreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName)
+					.useLowercase(lowercase)
+					.filterSet(new HashSet<>(Collections.singletonList("genusb")))
+					.streamingLoaderBudget(1)
+					.build());
+			assertSameModel(built, streamed);
+		}
+	}
+
+	@Test
+	public void streamedModelWithNormalizedKeys() throws IOException {
+		String[] sources = {writeTaxa(taxaFolder, "plants.txt", 2_000, 1)};
+		TokenNormalizer normalizer = new TokenNormalizer(true, true, "ſ=s");
+		TreeGazetteerModel built = new TreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName)
+				.tokenNormalizer(normalizer)
+				.build());
+		TreeGazetteerModel streamed = new TreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName)
+				.streamingLoaderBudget(1)
+				.tokenNormalizer(normalizer)
+				.build());
+		assertSameModel(built, streamed);
+		assertEquals(normalizer, streamed.getTokenNormalizer());
+
+		// the keys are folded, the values are the taxa
+		String taxon = built.getTaxonUriMap().keySet().iterator().next();
+		List<String> query = new ArrayList<>();
+		for (String token : taxon.toUpperCase().split(BOUNDARY)) {
+			query.add(normalizer.normalize(token));
+		}
+		CompactTrie tree = (CompactTrie) streamed.getTree();
+		long match = tree.longestMatch(query, 0, query.size());
+		assertEquals(query.size() - 1, CompactTrie.matchEnd(match));
+		assertEquals(taxon, tree.getValue(CompactTrie.matchValue(match)));
+
+		// not the model without normalization
+		TreeGazetteerModel plain = new TreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName)
+				.usePrebuiltModel(true)
+				.build());
+		assertNotEquals(streamed.modelFile, plain.modelFile);
+		assertEquals(TokenNormalizer.NONE, plain.getTokenNormalizer());
+	}
+
+	@Test
+	public void streamedModelIsMappedOnTheNextStart() throws IOException {
+		String[] sources = {writeTaxa(taxaFolder, "plants.txt", 500, 1)};
+		TreeGazetteerModel streamed = new TreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName)
+				.streamingLoaderBudget(1)
+				.build());
+		long modified = Files.getLastModifiedTime(streamed.modelFile).toMillis();
+
+		TreeGazetteerModel mapped = new TreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName)
+				.usePrebuiltModel(true)
+				.build());
+		assertNotNull(mapped.prebuiltModel);
+		assertEquals(streamed.modelFile, mapped.modelFile);
+		assertEquals(modified, Files.getLastModifiedTime(mapped.modelFile).toMillis());
+		// no temporary files are left
+		try (Stream<Path> files = Files.list(streamed.modelFile.getParent())) {
+			assertEquals(0, files.filter(file -> file.getFileName().toString().startsWith("streaming")
+					|| file.getFileName().toString().endsWith(".tmp")).count());
+		}
+	}
+
+	@Test
+	public void multiClassAndSimpleLoading() throws IOException {
+		// the same taxa in both files
+		String[] sources = {writeTaxa(taxaFolder, "plants.txt", 2_000, 1), writeTaxa(taxaFolder, "animals.txt", 2_000, 1)};
+		MultiClassTreeGazetteerModel built = new MultiClassTreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName)
+				.build());
+		MultiClassTreeGazetteerModel streamed = new MultiClassTreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName)
+				.streamingLoaderBudget(1)
+				.build());
+		assertSameModel(built, streamed);
+		for (String taxon : built.getTaxonUriMap().keySet()) {
+			assertEquals(built.getClassIdFromTaxon(taxon), streamed.getClassIdFromTaxon(taxon));
+		}
+
+		TreeGazetteerModel builtSimple = new TreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName)
+				.simpleLoading(true)
+				.noSkipGrams(true)
+				.build());
+		TreeGazetteerModel streamedSimple = new TreeGazetteerModel(GazetteerModelOptions.builder(sources, gazetteerName)
+				.simpleLoading(true)
+				.noSkipGrams(true)
+				.streamingLoaderBudget(1)
+				.build());
+		assertSameModel(builtSimple, streamedSimple);
+	}
+
+	// taxa over a limited vocabulary, most lines are new taxa
+	private static void writeLargeTaxa(Path file, int lines) throws IOException {
+		Random random = new Random(3);
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < lines; i++) {
+				StringBuilder taxon = new StringBuilder(word("Genus", random.nextInt(20_000)));
+				int words = 1 + random.nextInt(4);
+				for (int w = 1; w < words; w++) {
+					taxon.append(' ').append(word(w == 2 ? "subsp" : "epithet", random.nextInt(50_000)));
+				}
+				writer.write(String.format("%s\thttps://www.biofid.de/bio-ontologies/%d\n", taxon, i));
+			}
+		}
+	}
+
+	/**
+	 * Streams a taxa file in a separate process with a heap that is too small to load it into memory.
+	 * Takes minutes, enable with -Dtextimager.benchmark=true
+	 */
+	@Test
+	public void largeSourceWithSmallHeap() throws Exception {
+		Assume.assumeTrue(Boolean.getBoolean("textimager.benchmark"));
+
+		Path source = taxaFolder.resolve("large.txt");
+		writeLargeTaxa(source, LINES);
+		System.out.println(String.format("%d lines, %d MB", LINES, Files.size(source) >> 20));
+
+		Process process = new ProcessBuilder(
+				Paths.get(System.getProperty("java.home"), "bin", "java").toString(), HEAP,
+				"-D" + StringGazetteerModel.CACHE_DIR_PROPERTY + "=" + cacheFolder,
+				"-cp", System.getProperty("java.class.path"),
+				StreamingModelBuilderTest.class.getName(), source.toString(), gazetteerName)
+				.inheritIO()
+				.start();
+		assertTrue(process.waitFor(30, TimeUnit.MINUTES));
+		assertEquals(0, process.exitValue());
+
+		TreeGazetteerModel mapped = new TreeGazetteerModel(GazetteerModelOptions.builder(new String[]{source.toString()}, gazetteerName)
+				.usePrebuiltModel(true)
+				.build());
+		assertNotNull(mapped.prebuiltModel);
+		assertTrue(mapped.getTaxonUriMap().size() > LINES / 2);
+		String taxon = mapped.getTaxonUriMap().keySet().iterator().next();
+		assertEquals(taxon, mapped.getSkipGramTaxonLookup().get(taxon));
+	}
+
+	// streams the taxa file of the arguments with a budget of 16 MB
+	public static void main(String[] args) throws IOException {
+		long start = System.currentTimeMillis();
+		TreeGazetteerModel model = new TreeGazetteerModel(GazetteerModelOptions.builder(new String[]{args[0]}, args[1])
+				.streamingLoaderBudget(16)
+				.build());
+		Runtime runtime = Runtime.getRuntime();
+		System.out.println(String.format("streamed %d taxa, %d nodes in %d ms, max heap %d MB, model file %d MB",
+				model.getTaxonUriMap().size(), model.getTree().size(), System.currentTimeMillis() - start,
+				runtime.maxMemory() >> 20, Files.size(model.modelFile) >> 20));
+	}
+}
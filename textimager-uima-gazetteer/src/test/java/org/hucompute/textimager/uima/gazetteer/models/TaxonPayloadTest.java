@@ -0,0 +1,215 @@
+package org.hucompute.textimager.uima.gazetteer.models;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hucompute.textimager.uima.gazetteer.models.GazetteerModelFileTest.word;
+import static org.junit.Assert.*;
+
+/**
+ * Compares the {@link TaxonPayload} with splitting the URIs for every match, like the gazetteers did before.
+ */
+public class TaxonPayloadTest {
+	// number of documents for the benchmark
+	private static final int DOCUMENTS = Integer.getInteger("textimager.gazetteer.benchmarkDocuments", 2_000);
+
+	private Path taxaFolder;
+	private Path cacheFolder;
+	private String gazetteerName;
+
+	@Before
+	public void createFolder() throws IOException {
+		taxaFolder = Files.createTempDirectory("taxa");
+		cacheFolder = Files.createTempDirectory("gazetteer");
+		System.setProperty(StringGazetteerModel.CACHE_DIR_PROPERTY, cacheFolder.toString());
+		gazetteerName = "payload-test-" + System.nanoTime();
+	}
+
+	@After
+	public void deleteFolders() throws IOException {
+		System.clearProperty(StringGazetteerModel.CACHE_DIR_PROPERTY);
+		FileUtils.deleteDirectory(taxaFolder.toFile());
+		FileUtils.deleteDirectory(cacheFolder.toFile());
+		FileUtils.deleteDirectory(Paths.get("/tmp/" + gazetteerName).toFile());
+	}
+
+	// the objects of these sources without the source index, parsed for every match
+	private static HashSet<Object> splitObjects(Collection<Object> objects, Set<Integer> sourceIds, Function<String, Object> parser) {
+		return (HashSet<Object>) objects
+				.stream()
+				.filter(o -> {
+					Integer id = Integer.valueOf(o.toString().split(":", -1)[0]);
+					return sourceIds.contains(id);
+				})
+				.map(o -> (Object) Stream.of(o.toString().split(":", -1)).skip(1).collect(Collectors.joining(":")))
+				.map(o -> parser.apply(o.toString()))
+				.collect(Collectors.toSet());
+	}
+
+	@Test
+	public void objectsBySource() {
+		AtomicInteger parsed = new AtomicInteger();
+		HashSet<Object> uris = new HashSet<>(Arrays.asList("0:a", "1:https://b.org/c", "1:d", "2:", "12:e"));
+		TaxonPayload payload = TaxonPayload.parse(uris, data -> {
+			parsed.incrementAndGet();
+			return data;
+		});
+		assertEquals(uris.size(), parsed.get());
+
+		assertEquals(new HashSet<>(Arrays.asList("https://b.org/c", "d")), payload.getObjects(Collections.singleton(1)));
+		assertEquals(new HashSet<>(Arrays.asList("a", "")), payload.getObjects(new HashSet<>(Arrays.asList(0, 2))));
+		assertEquals(Collections.singleton("e"), payload.getObjects(Collections.singleton(12)));
+		assertTrue(payload.getObjects(Collections.singleton(3)).isEmpty());
+		// no copies for a single source
+		assertSame(payload.getObjects(Collections.singleton(1)), payload.getObjects(Collections.singleton(1)));
+
+		Random random = new Random(1);
+		for (int i = 0; i < 1_000; i++) {
+			HashSet<Object> randomUris = new HashSet<>();
+			for (int j = random.nextInt(5); j >= 0; j--) {
+				randomUris.add(random.nextInt(4) + ":" + (random.nextBoolean() ? "x" : "y:" + random.nextInt(3)));
+			}
+			Set<Integer> sourceIds = new HashSet<>(Arrays.asList(random.nextInt(4), random.nextInt(4)));
+			assertEquals(splitObjects(randomUris, sourceIds, data -> data),
+					TaxonPayload.parse(randomUris, data -> data).getObjects(sourceIds));
+		}
+	}
+
+	// a GND like list: a name, and a json object with the full name and other data
+	private String writeEntries(int count) throws IOException {
+		Random random = new Random(2);
+		Path file = taxaFolder.resolve("gnd.txt");
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < count; i++) {
+				String name = word("Name", i) + " " + word("Vorname", random.nextInt(count));
+				writer.write(String.format("%s\t{\"fullname\":\"%s\",\"gnd\":\"https://d-nb.info/gnd/%d\",\"birth\":\"%d\",\"profession\":\"%s\"}\n",
+						name, name, 100_000 + i, 1500 + random.nextInt(500), word("Beruf", random.nextInt(50))));
+			}
+		}
+		return file.toString();
+	}
+
+	private TreeGazetteerModel createModel(String source) throws IOException {
+		return new TreeGazetteerModel(GazetteerModelOptions.builder(new String[]{source}, gazetteerName)
+				.splitHyphen(false)
+				.addAbbreviatedTaxa(false)
+				.simpleLoading(true)
+				.noSkipGrams(true)
+				.build());
+	}
+
+	// a flat json object of strings, like the GND gazetteer reads it
+	private static Object parseJson(String json) {
+		LinkedHashMap<String, String> data = new LinkedHashMap<>();
+		String[] parts = json.substring(1, json.length() - 1).split("\",\"");
+		for (String part : parts) {
+			String[] keyValue = part.replace("\"", "").split(":", 2);
+			data.put(keyValue[0], keyValue[1]);
+		}
+		return Collections.unmodifiableMap(data);
+	}
+
+	@Test
+	public void parsedOncePerModel() throws IOException {
+		TreeGazetteerModel model = createModel(writeEntries(100));
+		AtomicInteger parsed = new AtomicInteger();
+		Function<String, Object> parser = data -> {
+			parsed.incrementAndGet();
+			return parseJson(data);
+		};
+
+		Set<Integer> source = Collections.singleton(0);
+		for (int round = 0; round < 3; round++) {
+			for (String taxon : model.getTaxonUriMap().keySet()) {
+				TaxonPayload payload = model.getPayload(taxon, TaxonPayloadTest.class, parser);
+				assertSame(payload, model.getPayload(taxon, TaxonPayloadTest.class, parser));
+				assertEquals(splitObjects(model.getTaxonUriMap().get(taxon), source, TaxonPayloadTest::parseJson), payload.getObjects(source));
+			}
+		}
+		assertEquals(model.getTaxonUriMap().size(), parsed.get());
+		assertNull(model.getPayload("unknown", TaxonPayloadTest.class, parser));
+		assertNull(model.getPayload(null, TaxonPayloadTest.class, parser));
+	}
+
+	@Test
+	public void parsedPerParserClass() throws IOException {
+		TreeGazetteerModel model = createModel(writeEntries(10));
+		Set<Integer> source = Collections.singleton(0);
+		String taxon = model.getTaxonUriMap().keySet().iterator().next();
+
+		// like a GND gazetteer and a gazetteer with the default parser using one model
+		TaxonPayload json = model.getPayload(taxon, TaxonPayloadTest.class, TaxonPayloadTest::parseJson);
+		TaxonPayload strings = model.getPayload(taxon, Object.class, data -> data);
+		assertTrue(json.getObjects(source).iterator().next() instanceof Map);
+		assertTrue(strings.getObjects(source).iterator().next() instanceof String);
+		assertSame(json, model.getPayload(taxon, TaxonPayloadTest.class, data -> data));
+	}
+
+	// enable with -Dtextimager.benchmark=true
+	@Test
+	public void benchmarkDocuments() throws IOException {
+		Assume.assumeTrue(Boolean.getBoolean("textimager.benchmark"));
+
+		TreeGazetteerModel model = createModel(writeEntries(5_000));
+		List<String> taxa = new ArrayList<>(model.getTaxonUriMap().keySet());
+		Set<Integer> source = Collections.singleton(0);
+		Function<String, Object> parser = TaxonPayloadTest::parseJson;
+
+		// entity dense documents, most matches are a few frequent entries
+		Random random = new Random(3);
+		List<String[]> documents = new ArrayList<>();
+		for (int i = 0; i < DOCUMENTS; i++) {
+			String[] matches = new String[200];
+			for (int m = 0; m < matches.length; m++) {
+				int rank = (int) Math.min(taxa.size() - 1, Math.abs(random.nextGaussian()) * taxa.size() / 20);
+				matches[m] = taxa.get(rank);
+			}
+			documents.add(matches);
+		}
+
+		long splitNanos = Long.MAX_VALUE;
+		long payloadNanos = Long.MAX_VALUE;
+		int splitObjects = 0;
+		int payloadObjects = 0;
+		// best of a few rounds, the first ones warm up the JIT
+		for (int round = 0; round < 5; round++) {
+			long start = System.nanoTime();
+			splitObjects = 0;
+			for (String[] document : documents) {
+				for (String taxon : document) {
+					splitObjects += splitObjects(model.getTaxonUriMap().get(taxon), source, parser).size();
+				}
+			}
+			splitNanos = Math.min(splitNanos, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			payloadObjects = 0;
+			for (String[] document : documents) {
+				for (String taxon : document) {
+					payloadObjects += model.getPayload(taxon, TaxonPayloadTest.class, parser).getObjects(source).size();
+				}
+			}
+			payloadNanos = Math.min(payloadNanos, System.nanoTime() - start);
+		}
+		assertEquals(splitObjects, payloadObjects);
+
+		System.out.println(String.format("%d documents with %d matches of %d entries", documents.size(), 200, taxa.size()));
+		System.out.println(String.format("split and parse per match: %.0f documents/sec", documents.size() / (splitNanos / 1e9)));
+		System.out.println(String.format("parsed payloads: %.0f documents/sec", documents.size() / (payloadNanos / 1e9)));
+	}
+}
@@ -0,0 +1,197 @@
+package org.hucompute.textimager.uima.gazetteer.tree;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the {@link AhoCorasickAutomaton} with {@link CompactTrie#longestMatch(List, int, int)} from every token.
+ */
+public class AhoCorasickAutomatonTest {
+	// number of entries and tokens for the benchmark
+	private static final int ENTRIES = Integer.getInteger("textimager.gazetteer.benchmarkEntries", 300_000);
+	private static final int TOKENS = 1_000_000;
+
+	private static final String BOUNDARY = "\\s+";
+
+	private static CompactTrie build(boolean toLowerCase, String... entries) {
+		CompactTrie.Builder builder = new CompactTrie.Builder(BOUNDARY, toLowerCase);
+		for (String entry : entries) {
+			builder.add(entry);
+		}
+		return builder.build();
+	}
+
+	private static List<String> allMatches(CompactTrie trie, List<String> query) {
+		List<String> matches = new ArrayList<>();
+		trie.getAutomaton().forEachMatch(query, 0, query.size(),
+				(start, end, valueId) -> matches.add(String.format("%d-%d %s", start, end, trie.getValue(valueId))));
+		return matches;
+	}
+
+	// every entry by its end, longer ones first, from the trie walk
+	private static List<String> allMatchesByTrieWalk(CompactTrie trie, List<String> query) {
+		List<String> matches = new ArrayList<>();
+		for (int end = 0; end < query.size(); end++) {
+			for (int start = 0; start <= end; start++) {
+				long match = trie.longestMatch(query, start, end + 1);
+				if (match != CompactTrie.NO_MATCH && CompactTrie.matchEnd(match) == end) {
+					matches.add(String.format("%d-%d %s", start, end, trie.getValue(CompactTrie.matchValue(match))));
+				}
+			}
+		}
+		return matches;
+	}
+
+	private static long[] longestMatchesByTrieWalk(CompactTrie trie, List<String> query, int from, int to) {
+		long[] longest = new long[to - from];
+		for (int start = from; start < to; start++) {
+			longest[start - from] = trie.longestMatch(query, start, to);
+		}
+		return longest;
+	}
+
+	@Test
+	public void overlappingEntries() {
+		CompactTrie trie = build(false, "a b c", "b c", "c", "b c d", "a b", "c d e f", "d");
+		List<String> query = Arrays.asList("a", "b", "c", "d", "e", "f", "x", "b", "c");
+
+		assertEquals(Arrays.asList(
+				"0-1 a b",
+				"0-2 a b c", "1-2 b c", "2-2 c",
+				"1-3 b c d", "3-3 d",
+				"2-5 c d e f",
+				"7-8 b c", "8-8 c"
+		), allMatches(trie, query));
+		assertEquals(allMatchesByTrieWalk(trie, query), allMatches(trie, query));
+		assertArrayEquals(longestMatchesByTrieWalk(trie, query, 0, query.size()), trie.getAutomaton().longestMatches(query, 0, query.size()));
+		// the matches stay within the range
+		assertArrayEquals(longestMatchesByTrieWalk(trie, query, 2, 5), trie.getAutomaton().longestMatches(query, 2, 5));
+	}
+
+	@Test
+	public void unknownTokensAndLowerCase() {
+		CompactTrie trie = build(true, "Abies Alba", "Alba");
+		List<String> query = Arrays.asList("abies", "Alba", "abies", "alba", "unbekannt", "alba");
+
+		assertEquals(Arrays.asList("2-3 abies alba", "3-3 alba", "5-5 alba"), allMatches(trie, query));
+		assertArrayEquals(longestMatchesByTrieWalk(trie, query, 0, query.size()), trie.getAutomaton().longestMatches(query, 0, query.size()));
+		assertEquals(0, trie.getAutomaton().longestMatches(query, 3, 3).length);
+	}
+
+	// few tokens, so that many entries are suffixes and prefixes of other entries
+	private static String[] randomEntries(Random random, int count, int vocabulary, int maxWords) {
+		String[] entries = new String[count];
+		for (int i = 0; i < count; i++) {
+			int words = 1 + random.nextInt(maxWords);
+			StringBuilder entry = new StringBuilder();
+			for (int w = 0; w < words; w++) {
+				entry.append(w > 0 ? " " : "").append("w").append(random.nextInt(vocabulary));
+			}
+			entries[i] = entry.toString();
+		}
+		return entries;
+	}
+
+	private static List<String> randomQuery(Random random, String[] entries, int vocabulary, int tokens) {
+		List<String> query = new ArrayList<>(tokens);
+		while (query.size() < tokens) {
+			if (random.nextInt(3) == 0) {
+				query.addAll(Arrays.asList(entries[random.nextInt(entries.length)].split(" ")));
+			} else {
+				// one more word than the entries, so some tokens are unknown
+				query.add("w" + random.nextInt(vocabulary + 1));
+			}
+		}
+		return query;
+	}
+
+	@Test
+	public void randomEntriesLikeTrieWalk() {
+		Random random = new Random(5);
+		for (int vocabulary : new int[]{2, 5, 50}) {
+			String[] entries = randomEntries(random, 200, vocabulary, 5);
+			CompactTrie trie = build(false, entries);
+			for (int i = 0; i < 20; i++) {
+				List<String> query = randomQuery(random, entries, vocabulary, 200);
+				assertEquals(allMatchesByTrieWalk(trie, query), allMatches(trie, query));
+				assertArrayEquals(longestMatchesByTrieWalk(trie, query, 0, query.size()),
+						trie.getAutomaton().longestMatches(query, 0, query.size()));
+				assertArrayEquals(longestMatchesByTrieWalk(trie, query, 50, 150),
+						trie.getAutomaton().longestMatches(query, 50, 150));
+			}
+		}
+	}
+
+	// the tree gazetteer matches: the longest entry, then continue after it
+	private static int countByTrieWalk(CompactTrie trie, List<String> query, int depth) {
+		int matches = 0;
+		for (int offset = 0; offset < query.size(); offset++) {
+			long match = trie.longestMatch(query, offset, Math.min(query.size(), offset + depth));
+			if (match != CompactTrie.NO_MATCH) {
+				matches++;
+				offset = CompactTrie.matchEnd(match);
+			}
+		}
+		return matches;
+	}
+
+	private static int countByAutomaton(CompactTrie trie, List<String> query) {
+		int matches = 0;
+		long[] longest = trie.getAutomaton().longestMatches(query, 0, query.size());
+		for (int offset = 0; offset < longest.length; offset++) {
+			if (longest[offset] != CompactTrie.NO_MATCH) {
+				matches++;
+				offset = CompactTrie.matchEnd(longest[offset]);
+			}
+		}
+		return matches;
+	}
+
+	// enable with -Dtextimager.benchmark=true
+	@Test
+	public void benchmarkTrieWalkAndAutomaton() {
+		Assume.assumeTrue(Boolean.getBoolean("textimager.benchmark"));
+
+		Random random = new Random(7);
+		// taxa like entries, short entries over few words, and long entries with many shared prefixes
+		for (int[] setting : new int[][]{{ENTRIES / 4, 5}, {100, 5}, {10, 20}}) {
+			int vocabulary = setting[0];
+			String[] entries = randomEntries(random, ENTRIES, vocabulary, setting[1]);
+			CompactTrie trie = build(false, entries);
+			List<String> query = randomQuery(random, entries, vocabulary, TOKENS);
+			trie.getAutomaton();
+
+			int depth = trie.depth();
+			int walkMatches = 0;
+			int automatonMatches = 0;
+			long walkNanos = Long.MAX_VALUE;
+			long automatonNanos = Long.MAX_VALUE;
+			// best of a few rounds, the first ones warm up the JIT
+			for (int round = 0; round < 5; round++) {
+				long start = System.nanoTime();
+				walkMatches = countByTrieWalk(trie, query, depth);
+				walkNanos = Math.min(walkNanos, System.nanoTime() - start);
+
+				start = System.nanoTime();
+				automatonMatches = countByAutomaton(trie, query);
+				automatonNanos = Math.min(automatonNanos, System.nanoTime() - start);
+			}
+			assertEquals(walkMatches, automatonMatches);
+			assertTrue(walkMatches > 0);
+
+			System.out.println(String.format("%d entries of up to %d over %d words, %d matches in %d tokens",
+					entries.length, setting[1], vocabulary, walkMatches, query.size()));
+			System.out.println(String.format("trie walk: %.0f tokens/sec", query.size() / (walkNanos / 1e9)));
+			System.out.println(String.format("automaton: %.0f tokens/sec", query.size() / (automatonNanos / 1e9)));
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package org.hucompute.textimager.uima.gazetteer.tree;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the {@link CompactTrie} with the {@link StringTreeNode} tree it replaces.
+ */
+public class CompactTrieTest {
+	// number of entries for the benchmark, about the size of a single taxa list
+	private static final int ENTRIES = Integer.getInteger("textimager.gazetteer.benchmarkEntries", 300_000);
+
+	private static final String BOUNDARY = "\\s+";
+
+	@Test
+	public void longestMatch() {
+		CompactTrie trie = new CompactTrie.Builder(BOUNDARY, false)
+				.add("Abies")
+				.add("Abies alba")
+				.add("Abies alba subsp. nebrodensis")
+				.add("Picea abies")
+				.build();
+
+		assertEquals(ImmutablePair.of("Abies alba", 1), trie.traverse(Arrays.asList("Abies", "alba", "Mill.")));
+		assertEquals(ImmutablePair.of("Abies alba subsp. nebrodensis", 3), trie.traverse(Arrays.asList("Abies", "alba", "subsp.", "nebrodensis")));
+		// the match ends at the last entry, not at the last matching token
+		assertEquals(ImmutablePair.of("Abies alba", 1), trie.traverse(Arrays.asList("Abies", "alba", "subsp.", "borisii-regis")));
+		assertEquals(ImmutablePair.of(null, -1), trie.traverse(Arrays.asList("Picea", "omorika")));
+		assertEquals(ImmutablePair.of(null, -1), trie.traverse(Arrays.asList("Larix")));
+
+		List<String> query = Arrays.asList("eine", "Picea", "abies", "neben", "Abies", "alba");
+		long match = trie.longestMatch(query, 1, query.size());
+		assertEquals("Picea abies", trie.getValue(CompactTrie.matchValue(match)));
+		assertEquals(2, CompactTrie.matchEnd(match));
+		assertEquals(CompactTrie.NO_MATCH, trie.longestMatch(query, 0, query.size()));
+
+		assertEquals(5, trie.depth());
+		assertEquals(4, trie.nodesWithValue());
+		assertEquals(7, trie.size());
+	}
+
+	@Test
+	public void lowerCaseLikeStringTree() {
+		StringTreeNode tree = new StringTreeNode(BOUNDARY, true);
+		CompactTrie.Builder builder = new CompactTrie.Builder(BOUNDARY, true);
+		for (String entry : new String[]{"Fagus Sylvatica", "  Quercus  robur "}) {
+			tree.insert(entry);
+			builder.add(entry);
+		}
+		CompactTrie trie = builder.build();
+
+		for (List<String> query : Arrays.asList(
+				Arrays.asList("fagus", "sylvatica"),
+				Arrays.asList("quercus", "robur", "l."),
+				Arrays.asList("Fagus", "sylvatica"))) {
+			assertEquals(tree.traverse(query), trie.traverse(query));
+		}
+		assertEquals(tree.size(), trie.size());
+		assertEquals(tree.depth(), trie.depth());
+	}
+
+	private static List<String> randomEntries(Random random, int count, int vocabulary) {
+		List<String> entries = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			int words = 1 + random.nextInt(4);
+			StringBuilder entry = new StringBuilder();
+			for (int w = 0; w < words; w++) {
+				if (w > 0) {
+					entry.append(' ');
+				}
+				// zipf like, few frequent genus names and many rare epithets
+				int word = (int) (vocabulary * Math.pow(random.nextDouble(), 2));
+				entry.append(w == 0 ? "Genus" : "epithet").append(word);
+			}
+			entries.add(entry.toString());
+		}
+		return entries;
+	}
+
+	private static List<String> randomQuery(Random random, List<String> entries, int tokens) {
+		List<String> query = new ArrayList<>(tokens);
+		while (query.size() < tokens) {
+			if (random.nextInt(10) == 0) {
+				query.addAll(Arrays.asList(entries.get(random.nextInt(entries.size())).split(" ")));
+			} else {
+				query.add(random.nextBoolean() ? "und" : "Genus" + random.nextInt(50));
+			}
+		}
+		return query;
+	}
+
+	@Test
+	public void randomEntriesMatchLikeStringTree() {
+		Random random = new Random(42);
+		List<String> entries = randomEntries(random, 20_000, 2_000);
+
+		StringTreeNode tree = new StringTreeNode(BOUNDARY, false);
+		CompactTrie.Builder builder = new CompactTrie.Builder(BOUNDARY, false);
+		entries.forEach(tree::insert);
+		entries.forEach(builder::add);
+		CompactTrie trie = builder.build();
+
+		assertEquals(tree.size(), trie.size());
+		assertEquals(tree.leafs(), trie.leafs());
+		assertEquals(tree.nodesWithValue(), trie.nodesWithValue());
+		assertEquals(tree.depth(), trie.depth());
+
+		List<String> query = randomQuery(random, entries, 50_000);
+		int depth = tree.depth();
+		for (int offset = 0; offset < query.size(); offset++) {
+			List<String> subList = query.subList(offset, Math.min(query.size(), offset + depth));
+			assertEquals(tree.traverse(subList), trie.traverse(subList));
+		}
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	// matches per offset like TreeMatcher.findAllMatches
+	private static int countMatches(ITreeNode root, List<String> query, int depth) {
+		int matches = 0;
+		for (int offset = 0; offset < query.size(); offset++) {
+			ImmutablePair<String, Integer> match = root.traverse(query.subList(offset, Math.min(query.size(), offset + depth)));
+			if (match.right > -1) {
+				matches++;
+				offset += match.right;
+			}
+		}
+		return matches;
+	}
+
+	private static int countMatches(CompactTrie root, List<String> query, int depth) {
+		int matches = 0;
+		for (int offset = 0; offset < query.size(); offset++) {
+			long match = root.longestMatch(query, offset, Math.min(query.size(), offset + depth));
+			if (match != CompactTrie.NO_MATCH) {
+				matches++;
+				offset = CompactTrie.matchEnd(match);
+			}
+		}
+		return matches;
+	}
+
+	// enable with -Dtextimager.benchmark=true
+	@Test
+	public void benchmarkFootprintAndLookups() {
+		Assume.assumeTrue(Boolean.getBoolean("textimager.benchmark"));
+
+		Random random = new Random(7);
+		List<String> entries = randomEntries(random, ENTRIES, ENTRIES / 4);
+		List<String> query = randomQuery(random, entries, 1_000_000);
+
+		long before = usedHeap();
+		StringTreeNode tree = new StringTreeNode(BOUNDARY, false);
+		entries.parallelStream().forEach(tree::insert);
+		long treeBytes = usedHeap() - before;
+
+		before = usedHeap();
+		CompactTrie.Builder builder = new CompactTrie.Builder(BOUNDARY, false);
+		entries.forEach(builder::add);
+		CompactTrie trie = builder.build();
+		builder = null;
+		long trieBytes = usedHeap() - before;
+
+		int depth = tree.depth();
+		int treeMatches = 0;
+		int trieMatches = 0;
+		long treeNanos = Long.MAX_VALUE;
+		long trieNanos = Long.MAX_VALUE;
+		// best of a few rounds, the first ones warm up the JIT
+		for (int round = 0; round < 5; round++) {
+			long start = System.nanoTime();
+			treeMatches = countMatches(tree, query, depth);
+			treeNanos = Math.min(treeNanos, System.nanoTime() - start);
+
+			start = System.nanoTime();
+			trieMatches = countMatches(trie, query, depth);
+			trieNanos = Math.min(trieNanos, System.nanoTime() - start);
+		}
+		assertEquals(treeMatches, trieMatches);
+
+		System.out.println(String.format("%d entries, %d nodes, %d matches in %d tokens", entries.size(), trie.size(), trieMatches, query.size()));
+		System.out.println(String.format("StringTreeNode: %.1f MB, %.0f lookups/sec", treeBytes / 1e6, query.size() / (treeNanos / 1e9)));
+		System.out.println(String.format("CompactTrie:    %.1f MB, %.0f lookups/sec", trieBytes / 1e6, query.size() / (trieNanos / 1e9)));
+
+		assertTrue("compact trie should need less memory", trieBytes < treeBytes);
+	}
+}
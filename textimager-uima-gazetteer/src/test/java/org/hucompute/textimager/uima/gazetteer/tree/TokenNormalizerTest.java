@@ -0,0 +1,214 @@
+package org.hucompute.textimager.uima.gazetteer.tree;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares trees with {@link TokenNormalizer normalized} keys with trees that store the case, diacritic and OCR variants
+ * of the entries.
+ */
+public class TokenNormalizerTest {
+	// number of entries for the benchmark
+	private static final int ENTRIES = Integer.getInteger("textimager.gazetteer.benchmarkEntries", 100_000);
+
+	private static final String BOUNDARY = "\\s+";
+
+	private static final TokenNormalizer FOLDING = new TokenNormalizer(true, true, "ſ=s");
+
+	@Test
+	public void normalize() {
+		assertEquals("strasse", FOLDING.normalize("Straße"));
+		assertEquals("strasse", FOLDING.normalize("STRASSE"));
+		assertEquals("muller", FOLDING.normalize("Müller"));
+		assertEquals("muller", FOLDING.normalize("MÜLLER"));
+		assertEquals("wiese", FOLDING.normalize("Wieſe"));
+		assertEquals("cafe", FOLDING.normalize("Café"));
+		// decomposed input
+		assertEquals("cafe", FOLDING.normalize("Café"));
+		assertEquals("subsp.", FOLDING.normalize("subsp."));
+
+		// only the configured foldings
+		assertEquals("Müller", new TokenNormalizer(false, false, "ſ=s").normalize("Müller"));
+		assertEquals("Wiese", new TokenNormalizer(false, false, "ſ=s").normalize("Wieſe"));
+		assertEquals("Muller", new TokenNormalizer(false, true).normalize("Müller"));
+		assertEquals("müller", new TokenNormalizer(true, false).normalize("Müller"));
+		assertEquals("com", new TokenNormalizer(false, false, "rn=m").normalize("corn"));
+
+		// canonical tokens are not copied
+		String token = "abies";
+		assertSame(token, FOLDING.normalize(token));
+		assertSame(token, TokenNormalizer.NONE.normalize(token));
+		assertTrue(TokenNormalizer.NONE.isIdentity());
+		assertTrue(new TokenNormalizer(false, false).isIdentity());
+		assertFalse(FOLDING.isIdentity());
+
+		assertEquals(FOLDING, new TokenNormalizer(true, true, "ſ=s"));
+		assertEquals(FOLDING.hashCode(), new TokenNormalizer(true, true, "ſ=s").hashCode());
+		assertNotEquals(FOLDING, new TokenNormalizer(true, true));
+		assertNotEquals(FOLDING.toString(), new TokenNormalizer(true, true).toString());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void invalidFolding() {
+		new TokenNormalizer(false, false, "ſs");
+	}
+
+	@Test
+	public void treesKeepTheValues() {
+		StringTreeNode tree = new StringTreeNode(BOUNDARY, false, FOLDING);
+		CompactTrie.Builder builder = new CompactTrie.Builder(BOUNDARY, false, FOLDING);
+		for (String entry : new String[]{"Abies alba", "Mentha × piperita", "Straßen-Wegerich"}) {
+			tree.insert(entry);
+			builder.add(entry);
+		}
+		CompactTrie trie = builder.build();
+
+		for (List<String> query : Arrays.asList(
+				Arrays.asList("ABIES", "Alba"),
+				Arrays.asList("mentha", "×", "PIPERİTA"),
+				Arrays.asList("Strassen-Wegerich"),
+				Arrays.asList("ſtraſſen-wegerich"))) {
+			List<String> normalized = normalize(query);
+			assertEquals(query.toString(), tree.traverse(normalized), trie.traverse(normalized));
+			assertEquals(query.toString(), query.size() - 1, (int) trie.traverse(normalized).right);
+		}
+		assertEquals(ImmutablePair.of("Abies alba", 1), trie.traverse(normalize(Arrays.asList("abies", "ALBA"))));
+		assertEquals(ImmutablePair.of("Straßen-Wegerich", 0), trie.traverse(normalize(Arrays.asList("STRASSEN-WEGERICH"))));
+		// the query must be normalized like the keys
+		assertEquals(ImmutablePair.of(null, -1), trie.traverse(Arrays.asList("ABIES", "Alba")));
+	}
+
+	private static List<String> normalize(List<String> tokens) {
+		List<String> normalized = new ArrayList<>(tokens.size());
+		for (String token : tokens) {
+			normalized.add(FOLDING.normalize(token));
+		}
+		return normalized;
+	}
+
+	private static final String[] SYLLABLES = {"ba", "mü", "lé", "sa", "ßo", "tä", "ro", "sö", "ke", "stu", "wi", "ne", "ga", "ri", "po"};
+
+	// historical names with umlauts, accents and sharp s
+	private static String randomWord(Random random, boolean capitalized) {
+		StringBuilder word = new StringBuilder();
+		for (int s = 2 + random.nextInt(3); s > 0; s--) {
+			word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+		}
+		return capitalized ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word.toString();
+	}
+
+	private static String stripped(String string) {
+		return string.replace('ä', 'a').replace('ö', 'o').replace('ü', 'u').replace('é', 'e')
+				.replace('Ä', 'A').replace('Ö', 'O').replace('Ü', 'U').replace('É', 'E');
+	}
+
+	// the long s of old prints, except at the end of a word
+	private static String longS(String string) {
+		return string.replaceAll("s(?=\\p{L})", "ſ");
+	}
+
+	// how the entry is written in a document: as it is, in capitals, without diacritics, in an old print
+	private static String randomVariant(Random random, String entry) {
+		switch (random.nextInt(5)) {
+			case 0:
+				return entry;
+			case 1:
+				return entry.toUpperCase(Locale.ROOT);
+			case 2:
+				return entry.toLowerCase(Locale.ROOT);
+			case 3:
+				return stripped(entry).replace("ß", "ss");
+			default:
+				return longS(entry);
+		}
+	}
+
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	// the share of variants that match their whole entry
+	private static double recall(CompactTrie trie, List<String> variants, TokenNormalizer normalizer) {
+		int found = 0;
+		for (String variant : variants) {
+			List<String> query = new ArrayList<>();
+			for (String token : variant.split(BOUNDARY)) {
+				query.add(normalizer.normalize(token));
+			}
+			long match = trie.longestMatch(query, 0, query.size());
+			if (match != CompactTrie.NO_MATCH && CompactTrie.matchEnd(match) == query.size() - 1) {
+				found++;
+			}
+		}
+		return found / (double) variants.size();
+	}
+
+	// enable with -Dtextimager.benchmark=true
+	@Test
+	public void benchmarkSizeAndRecall() {
+		Assume.assumeTrue(Boolean.getBoolean("textimager.benchmark"));
+
+		Random random = new Random(11);
+		List<String> entries = new ArrayList<>(ENTRIES);
+		List<String> variants = new ArrayList<>(ENTRIES);
+		for (int i = 0; i < ENTRIES; i++) {
+			String entry = randomWord(random, true) + " " + randomWord(random, false);
+			entries.add(entry);
+			variants.add(randomVariant(random, entry));
+		}
+
+		long before = usedHeap();
+		CompactTrie.Builder builder = new CompactTrie.Builder(BOUNDARY, false);
+		entries.forEach(builder::add);
+		CompactTrie plain = builder.build();
+		builder = null;
+		long plainBytes = usedHeap() - before;
+
+		// the alternative: store every variant of every entry
+		before = usedHeap();
+		builder = new CompactTrie.Builder(BOUNDARY, false);
+		for (String entry : entries) {
+			for (String variant : new String[]{entry, entry.toUpperCase(Locale.ROOT), entry.toLowerCase(Locale.ROOT),
+					stripped(entry).replace("ß", "ss"), longS(entry)}) {
+				builder.add(variant);
+			}
+		}
+		CompactTrie expanded = builder.build();
+		builder = null;
+		long expandedBytes = usedHeap() - before;
+
+		before = usedHeap();
+		builder = new CompactTrie.Builder(BOUNDARY, false, FOLDING);
+		entries.forEach(builder::add);
+		CompactTrie folded = builder.build();
+		builder = null;
+		long foldedBytes = usedHeap() - before;
+
+		double plainRecall = recall(plain, variants, TokenNormalizer.NONE);
+		double expandedRecall = recall(expanded, variants, TokenNormalizer.NONE);
+		double foldedRecall = recall(folded, variants, FOLDING);
+
+		System.out.println(String.format("%d entries, %d document variants", entries.size(), variants.size()));
+		System.out.println(String.format("plain:    %d nodes, %.1f MB, recall %.3f", plain.size(), plainBytes / 1e6, plainRecall));
+		System.out.println(String.format("variants: %d nodes, %.1f MB, recall %.3f", expanded.size(), expandedBytes / 1e6, expandedRecall));
+		System.out.println(String.format("folded:   %d nodes, %.1f MB, recall %.3f", folded.size(), foldedBytes / 1e6, foldedRecall));
+
+		assertEquals(1.0, foldedRecall, 0.0);
+		assertTrue(plainRecall < foldedRecall);
+		assertTrue("folded keys should need fewer nodes than the variants", folded.size() < expanded.size());
+		assertTrue(folded.size() <= plain.size());
+	}
+}
@@ -11,8 +11,8 @@ import org.texttechnologylab.annotation.type.Person_HumanBeing;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
 
 public class GNDGazetteer extends SingleClassTreeGazetteer {
     @Override
@@ -31,49 +31,79 @@ public class GNDGazetteer extends SingleClassTreeGazetteer {
         commentVersion.setValue("ttlab_gnd_v_1.0.1");
         comments.add(commentVersion);
 
-        // Get data as json strings for this annotation
-        List<String> jsons = objects.stream()
-                .map(Object::toString)
-                .filter(s -> s != null && !s.isEmpty())
-                .collect(Collectors.toList());
+        // Data parsed once per entry, always a map of string -> string
+        for (Object object : objects) {
+            GNDEntry entry = object instanceof GNDEntry ? (GNDEntry) object : (GNDEntry) parsePayload(object.toString());
 
-        // Get data from json, always a map of string -> string
-        for (String json : jsons) {
+            // "fullname" is special, add to "person" annotation
+            if (entry.fullname != null) {
+                person.setValue(entry.fullname);
+            }
+            for (int i = 0; i < entry.keys.length; i++) {
+                // Add data to annotation
+                AnnotationComment comment = new AnnotationComment(aJCas);
+                comment.setReference(person);
+                comment.setKey(entry.keys[i]);
+                comment.setValue(entry.values[i]);
+                comments.add(comment);
+            }
+        }
+
+        // Add all to cas
+        aJCas.addFsToIndexes(person);
+        for (AnnotationComment comment : comments) {
+            aJCas.addFsToIndexes(comment);
+        }
+
+        // Additional comments from config
+        addAdditionalComments(aJCas, person);
+    }
+
+    /**
+     * Parse the json data of an entry once, instead of for every match.
+     */
+    @Override
+    protected Object parsePayload(String json) {
+        List<String> keys = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        String fullname = null;
+        if (json != null && !json.isEmpty()) {
             try {
                 JSONObject data = new JSONObject(json);
-                data.keys().forEachRemaining(key -> {
+                Iterator<String> iterator = data.keys();
+                while (iterator.hasNext()) {
+                    String key = iterator.next();
                     String value = data.getString(key);
-
-                    // "fullname" is special, add to "person" annotation
                     if (key.equals("fullname")) {
-                        person.setValue(value);
+                        fullname = value;
                     }
-                    else {
-                        // TODO empty values might be usefull?
-                        if (!value.isEmpty()) {
-                            // Add data to annotation
-                            AnnotationComment comment = new AnnotationComment(aJCas);
-                            comment.setReference(person);
-                            comment.setKey(key);
-                            comment.setValue(value);
-                            comments.add(comment);
-                        }
+                    // TODO empty values might be usefull?
+                    else if (!value.isEmpty()) {
+                        keys.add(key);
+                        values.add(value);
                     }
-                });
+                }
             } catch (JSONException e) {
                 // ignore errors, this is only extra metadata...
-                e.printStackTrace();
+                getLogger().warn(String.format("Ignoring invalid GND data '%s': %s", json, e.getMessage()));
             }
         }
+        return new GNDEntry(fullname, keys.toArray(new String[0]), values.toArray(new String[0]));
+    }
 
-        // Add all to cas
-        aJCas.addFsToIndexes(person);
-        for (AnnotationComment comment : comments) {
-            aJCas.addFsToIndexes(comment);
-        }
+    /**
+     * The data of a GND entry: the full name and the other non-empty values, in the order of the json object.
+     */
+    static final class GNDEntry {
+        final String fullname;
+        final String[] keys;
+        final String[] values;
 
-        // Additional comments from config
-        addAdditionalComments(aJCas, person);
+        GNDEntry(String fullname, String[] keys, String[] values) {
+            this.fullname = fullname;
+            this.keys = keys;
+            this.values = values;
+        }
     }
 
     @Override
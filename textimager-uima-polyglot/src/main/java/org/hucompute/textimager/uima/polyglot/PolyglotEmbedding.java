@@ -2,10 +2,10 @@ package org.hucompute.textimager.uima.polyglot;
 
 import static org.apache.uima.fit.util.JCasUtil.select;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.lang.ProcessBuilder.Redirect;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
@@ -44,6 +44,9 @@ public class PolyglotEmbedding  extends SegmenterBase {
     @ConfigurationParameter(name = PARAM_POLYGLOT_PATH, mandatory = false)
     protected String POLYGLOT_LOCATION;
     
+    // python process running language.py
+    private PolyglotWorker worker;
+    
     public static final String PARAM_EMBEDDING_PATH = "EmbeddingPath";
     @ConfigurationParameter(name = PARAM_EMBEDDING_PATH, mandatory = false)
     protected String EMBEDDING_LOCATION;
@@ -57,6 +60,9 @@ public class PolyglotEmbedding  extends SegmenterBase {
 		if(POLYGLOT_LOCATION == null) {
 			POLYGLOT_LOCATION = "src/main/resources/org/hucompute/textimager/uima/polyglot/python/";
 		}
+		if (worker == null) {
+			worker = PolyglotWorker.acquire(PythonPATH, POLYGLOT_LOCATION + "language.py");
+		}
 		
 		if(EMBEDDING_LOCATION == null) {
 			EMBEDDING_LOCATION = "/home/alex/polyglot_data/embeddings2/" + aJCas.getDocumentLanguage() + "/embeddings_pkl.tar.bz2";
@@ -64,29 +70,18 @@ public class PolyglotEmbedding  extends SegmenterBase {
 			EMBEDDING_LOCATION = EMBEDDING_LOCATION + aJCas.getDocumentLanguage() + "/embeddings_pkl.tar.bz2"; 
 		}
 		
-		for (Token token : select(aJCas, Token.class)) {				
-			// Define ProcessBuilder
-		    ProcessBuilder pb = new ProcessBuilder(PythonPATH, POLYGLOT_LOCATION + "language.py", "embedding", token.getCoveredText(), EMBEDDING_LOCATION);
-		    pb.redirectError(Redirect.INHERIT);
-		    
-		    boolean success = false;
-		    Process proc = null;
-		    
-		    try {
-		    	// Start Process
-		        proc = pb.start();
+		// all tokens with one request
+		List<Token> tokens = new ArrayList<>(select(aJCas, Token.class));
+		List<List<String>> commands = new ArrayList<>();
+		for (Token token : tokens) {
+			commands.add(Arrays.asList("embedding", token.getCoveredText(), EMBEDDING_LOCATION));
+		}
 		
-		        // IN, ERROR Streams
-		        BufferedReader in = new BufferedReader(new InputStreamReader(proc.getInputStream()));
-		        BufferedReader error = new BufferedReader(new InputStreamReader(proc.getErrorStream()));
-		      
-		        StringBuilder builder = new StringBuilder();
-						String line = null;
-						while ( (line = in.readLine()) != null) {
-						   builder.append(line);
-						   builder.append(System.getProperty("line.separator"));
-						}
-				String result = builder.toString();
+		try {
+			List<String> results = worker.call(commands);
+			for (int ind = 0; ind < tokens.size(); ind++) {
+				Token token = tokens.get(ind);
+				String result = results.get(ind);
 				String[] resultInParts = result.split("\n");
 								
 				// Only process sentence if Embedding-TAG is found.
@@ -99,38 +94,20 @@ public class PolyglotEmbedding  extends SegmenterBase {
 						embeddingText.addToIndexes();	
 					}
 				}
-					
-		        // Get Errors
-		         String errorString = "";
-				 line = "";
-				 try {
-					while ((line = error.readLine()) != null) {
-						errorString += line+"\n";
-					}
-				 } catch (IOException e) {
-					e.printStackTrace();
-				 }
-		
-				 // Log Error
-				 if(errorString != "")
-				 getLogger().error(errorString);
-				 
-		         success = true;
-		    }
-		    catch (IOException e) {
-		        throw new AnalysisEngineProcessException(e);
-		    }
-		    
-		    finally {
-		        if (!success) {
-		
-		        }
-		        
-		        if (proc != null) {
-		            proc.destroy();
-		        }
-		    }	
+			}
+	    }
+	    catch (IOException e) {
+	        throw new AnalysisEngineProcessException(e);
+	    }
+	}
+	
+	@Override
+	public void destroy() {
+		if (worker != null) {
+			worker.release();
+			worker = null;
 		}
+		super.destroy();
 	}
 	
 	@Override
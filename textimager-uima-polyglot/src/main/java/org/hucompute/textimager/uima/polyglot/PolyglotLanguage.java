@@ -1,9 +1,6 @@
 package org.hucompute.textimager.uima.polyglot;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.lang.ProcessBuilder.Redirect;
 
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
@@ -36,6 +33,9 @@ public class PolyglotLanguage  extends SegmenterBase {
     @ConfigurationParameter(name = PARAM_POLYGLOT_PATH, mandatory = false)
     protected String POLYGLOT_LOCATION;
     
+    // python process running language.py
+    private PolyglotWorker worker;
+    
 	/**
 	 * Analyze the text and recognize language. After successfully recognition, add language code to JCas.
 	 * @param aJCas
@@ -45,66 +45,32 @@ public class PolyglotLanguage  extends SegmenterBase {
 		if(POLYGLOT_LOCATION == null) {
 			POLYGLOT_LOCATION = "src/main/resources/org/hucompute/textimager/uima/polyglot/python/";
 		}
+		if (worker == null) {
+			worker = PolyglotWorker.acquire(PythonPATH, POLYGLOT_LOCATION + "language.py");
+		}
 		
 		String inputText = aJCas.getDocumentText();
 		
-		// Define ProcessBuilder
-        ProcessBuilder pb = new ProcessBuilder(PythonPATH, POLYGLOT_LOCATION + "language.py", "language", inputText);
-        pb.redirectError(Redirect.INHERIT);
-        
-        boolean success = false;
-        Process proc = null;
-        
-        try {
-	    	// Start Process
-	        proc = pb.start();
-	
-	        // IN, ERROR Streams
-	        BufferedReader in = new BufferedReader(new InputStreamReader(proc.getInputStream()));
-	        BufferedReader error = new BufferedReader(new InputStreamReader(proc.getErrorStream()));
-	      
-	        StringBuilder builder = new StringBuilder();
-					String line = null;
-					while ( (line = in.readLine()) != null) {
-					   builder.append(line);
-					   builder.append(System.getProperty("line.separator"));
-					}
-			String result = builder.toString();
+		try {
+			String result = worker.call("language", inputText);
 			String[] resultInParts = result.split("code: ");
 			resultInParts = resultInParts[1].split("       ");   
 								
 			aJCas.setDocumentLanguage(resultInParts[0]);				
 					
-	        // Get Errors
-             String errorString = "";
-			 line = "";
-			 try {
-				while ((line = error.readLine()) != null) {
-					errorString += line+"\n";
-				}
-			 } catch (IOException e) {
-				e.printStackTrace();
-			 }
-
-			 // Log Error
-			 if(errorString != "")
-			 getLogger().error(errorString);
-			 
-             success = true;
         }
         catch (IOException e) {
             throw new AnalysisEngineProcessException(e);
         }
-        
-        finally {
-            if (!success) {
-
-            }
-            
-            if (proc != null) {
-                proc.destroy();
-            }
-        }
+	}
+	
+	@Override
+	public void destroy() {
+		if (worker != null) {
+			worker.release();
+			worker = null;
+		}
+		super.destroy();
 	}
 	
 	@Override
@@ -2,12 +2,10 @@ package org.hucompute.textimager.uima.polyglot;
 
 import static org.apache.uima.fit.util.JCasUtil.select;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.lang.ProcessBuilder.Redirect;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
@@ -47,6 +45,9 @@ public class PolyglotMorphology  extends SegmenterBase {
     @ConfigurationParameter(name = PARAM_POLYGLOT_PATH, mandatory = false)
     protected String POLYGLOT_LOCATION;
     
+    // python process running language.py
+    private PolyglotWorker worker;
+    
 	/**
 	 * Analyze the text and create NE-Tag for every word. After successfully creation, add NE to JCas.
 	 * @param aJCas
@@ -56,32 +57,22 @@ public class PolyglotMorphology  extends SegmenterBase {
 		if(POLYGLOT_LOCATION == null) {
 			POLYGLOT_LOCATION = "src/main/resources/org/hucompute/textimager/uima/polyglot/python/";
 		}
+		if (worker == null) {
+			worker = PolyglotWorker.acquire(PythonPATH, POLYGLOT_LOCATION + "language.py");
+		}
 		
-		for (Token token : select(aJCas, Token.class)) {		
-			// Define ProcessBuilder
-	        ProcessBuilder pb = new ProcessBuilder(PythonPATH, POLYGLOT_LOCATION + "language.py", "morphology", token.getCoveredText(), aJCas.getDocumentLanguage());
-	        pb.redirectError(Redirect.INHERIT);
-	        
-	        boolean success = false;
-	        Process proc = null;
-	        
-	        try {
-		    	// Start Process
-		        proc = pb.start();
+		// all tokens with one request
+		List<Token> tokens = new ArrayList<>(select(aJCas, Token.class));
+		List<List<String>> commands = new ArrayList<>();
+		for (Token token : tokens) {
+			commands.add(Arrays.asList("morphology", token.getCoveredText(), aJCas.getDocumentLanguage()));
+		}
 		
-		        // IN, OUT, ERROR Streams
-		        PrintWriter out = new PrintWriter(new OutputStreamWriter(proc.getOutputStream()));
-		        BufferedReader in = new BufferedReader(new InputStreamReader(proc.getInputStream()));
-		        BufferedReader error = new BufferedReader(new InputStreamReader(proc.getErrorStream()));
-		      
-		        StringBuilder builder = new StringBuilder();
-						String line = null;
-						while ( (line = in.readLine()) != null) {
-						   builder.append(line);
-						   builder.append(System.getProperty("line.separator"));
-						}
-				String result = builder.toString();
-				String[] resultInParts = result.split("\n");
+		try {
+			List<String> results = worker.call(commands);
+			for (int ind = 0; ind < tokens.size(); ind++) {
+				Token token = tokens.get(ind);
+				String[] resultInParts = results.get(ind).split("\n");
 				String value = "";
 				
 				// Build value-String
@@ -93,41 +84,22 @@ public class PolyglotMorphology  extends SegmenterBase {
 				MorphologicalFeatures morpheme = new MorphologicalFeatures(aJCas, token.getBegin(), token.getEnd());
 				morpheme.setValue(value);
 				morpheme.addToIndexes();	
-				
-				
-		        // Get Errors
-	             String errorString = "";
-				 line = "";
-				 try {
-					while ((line = error.readLine()) != null) {
-						errorString += line+"\n";
-					}
-				 } catch (IOException e) {
-					e.printStackTrace();
-				 }
-
-				 // Log Error
-				 if(errorString != "")
-				 getLogger().error(errorString);
-				 
-	             success = true;
-	        }
-	        catch (IOException e) {
-	            throw new AnalysisEngineProcessException(e);
-	        }
-	        
-	        finally {
-	            if (!success) {
+			}
+        }
+        catch (IOException e) {
+            throw new AnalysisEngineProcessException(e);
+        }
+	}
 
-	            }
-	            
-	            if (proc != null) {
-	                proc.destroy();
-	            }
-	        }
+	@Override
+	public void destroy() {
+		if (worker != null) {
+			worker.release();
+			worker = null;
 		}
+		super.destroy();
 	}
-
+	
 	@Override
 	protected void process(JCas aJCas, String text, int zoneBegin) throws AnalysisEngineProcessException {		
 			
@@ -2,11 +2,8 @@ package org.hucompute.textimager.uima.polyglot;
 
 import static org.apache.uima.fit.util.JCasUtil.select;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.lang.ProcessBuilder.Redirect;
 import java.net.URL;
 import java.util.ArrayList;
 
@@ -86,6 +83,9 @@ public class PolyglotPartOfSpeech  extends SegmenterBase {
     @ConfigurationParameter(name = PARAM_POLYGLOT_PATH, mandatory = false)
     protected String POLYGLOT_LOCATION;
     
+    // python process running language.py
+    private PolyglotWorker worker;
+    
     /**
      * Log the tag set(s) when a model is loaded.
      *
@@ -139,6 +139,9 @@ public class PolyglotPartOfSpeech  extends SegmenterBase {
 		if(POLYGLOT_LOCATION == null) {
 			POLYGLOT_LOCATION = "src/main/resources/org/hucompute/textimager/uima/polyglot/python/";
 		}
+		if (worker == null) {
+			worker = PolyglotWorker.acquire(PythonPATH, POLYGLOT_LOCATION + "language.py");
+		}
 		
 		// Variables for mapping
 		CAS cas = aJCas.getCas();
@@ -154,28 +157,8 @@ public class PolyglotPartOfSpeech  extends SegmenterBase {
 		int offsetToken = 0;
 		
 		for (Sentence sentence : select(aJCas, Sentence.class)) {	
-			// Define ProcessBuilder
-	        ProcessBuilder pb = new ProcessBuilder(PythonPATH, POLYGLOT_LOCATION + "language.py", "pos", sentence.getCoveredText());
-	        pb.redirectError(Redirect.INHERIT);
-	        
-	        boolean success = false;
-	        Process proc = null;
-			
-	        try {
-		    	// Start Process
-		        proc = pb.start();
-		
-		        // IN, ERROR Streams
-		        BufferedReader in = new BufferedReader(new InputStreamReader(proc.getInputStream()));
-		        BufferedReader error = new BufferedReader(new InputStreamReader(proc.getErrorStream()));
-		      
-		        StringBuilder builder = new StringBuilder();
-						String line = null;
-						while ( (line = in.readLine()) != null) {
-						   builder.append(line);
-						   builder.append(System.getProperty("line.separator"));
-						}
-				String result = builder.toString();
+			try {
+				String result = worker.call("pos", sentence.getCoveredText());
 				String[] resultInParts = result.split("\n");
 
 				int currentOffset = 0;
@@ -207,40 +190,23 @@ public class PolyglotPartOfSpeech  extends SegmenterBase {
 
 				offsetToken = offsetToken + currentOffset;
 				
-		        // Get Errors
-	             String errorString = "";
-				 line = "";
-				 try {
-					while ((line = error.readLine()) != null) {
-						errorString += line+"\n";
-					}
-				 } catch (IOException e) {
-					e.printStackTrace();
-				 }
-	
-				 // Log Error
-				 if(errorString != "")
-				 getLogger().error(errorString);
-				 
-	             success = true;
 	        }
 	        catch (IOException e) {
 	            throw new AnalysisEngineProcessException(e);
 	        }
-	        
-	        finally {
-	            if (!success) {
-	
-	            }
-	            
-	            if (proc != null) {
-	                proc.destroy();
-	            }
-	        }
 		}
 	}
 
 	
+	@Override
+	public void destroy() {
+		if (worker != null) {
+			worker.release();
+			worker = null;
+		}
+		super.destroy();
+	}
+	
 	@Override
 	protected void process(JCas aJCas, String text, int zoneBegin) throws AnalysisEngineProcessException {		
 			
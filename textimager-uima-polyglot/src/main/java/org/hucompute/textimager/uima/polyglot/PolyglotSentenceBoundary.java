@@ -1,9 +1,6 @@
 package org.hucompute.textimager.uima.polyglot;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.lang.ProcessBuilder.Redirect;
 
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
@@ -39,6 +36,9 @@ public class PolyglotSentenceBoundary  extends SegmenterBase {
     @ConfigurationParameter(name = PARAM_POLYGLOT_PATH, mandatory = false)
     protected String POLYGLOT_LOCATION;
     
+    // python process running language.py
+    private PolyglotWorker worker;
+    
 	/**
 	 * Analyze the text and create sentences. After successfully creation, add sentences to JCas.
 	 * @param aJCas
@@ -48,30 +48,13 @@ public class PolyglotSentenceBoundary  extends SegmenterBase {
 		if(POLYGLOT_LOCATION == null) {
 			POLYGLOT_LOCATION = "src/main/resources/org/hucompute/textimager/uima/polyglot/python/";
 		}
+		if (worker == null) {
+			worker = PolyglotWorker.acquire(PythonPATH, POLYGLOT_LOCATION + "language.py");
+		}
 		String inputText = aJCas.getDocumentText();
 		
-		// Define ProcessBuilder
-        ProcessBuilder pb = new ProcessBuilder(PythonPATH, POLYGLOT_LOCATION + "language.py", "sentence", inputText);
-        pb.redirectError(Redirect.INHERIT);
-        
-        boolean success = false;
-        Process proc = null;
-        
-        try {
-	    	// Start Process
-	        proc = pb.start();
-	
-	        // IN, ERROR Streams
-	        BufferedReader in = new BufferedReader(new InputStreamReader(proc.getInputStream()));
-	        BufferedReader error = new BufferedReader(new InputStreamReader(proc.getErrorStream()));
-	      
-	        StringBuilder builder = new StringBuilder();
-					String line = null;
-					while ( (line = in.readLine()) != null) {
-					   builder.append(line);
-					   builder.append(System.getProperty("line.separator"));
-					}
-			String result = builder.toString();
+		try {
+			String result = worker.call("sentence", inputText);
 			String[] resultInParts = result.split("\n");
 			
 			String documentText = aJCas.getDocumentText();
@@ -103,36 +86,19 @@ public class PolyglotSentenceBoundary  extends SegmenterBase {
 	            sentence.addToIndexes(aJCas);
 			}
 			
-	        // Get Errors
-             String errorString = "";
-			 line = "";
-			 try {
-				while ((line = error.readLine()) != null) {
-					errorString += line+"\n";
-				}
-			 } catch (IOException e) {
-				e.printStackTrace();
-			 }
-
-			 // Log Error
-			 if(errorString != "")
-			 getLogger().error(errorString);
-			 
-             success = true;
         }
         catch (IOException e) {
             throw new AnalysisEngineProcessException(e);
         }
-        
-        finally {
-            if (!success) {
-
-            }
-            
-            if (proc != null) {
-                proc.destroy();
-            }
-        }
+	}
+	
+	@Override
+	public void destroy() {
+		if (worker != null) {
+			worker.release();
+			worker = null;
+		}
+		super.destroy();
 	}
 	
 	@Override
@@ -2,10 +2,7 @@ package org.hucompute.textimager.uima.polyglot;
 
 import static org.apache.uima.fit.util.JCasUtil.select;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.lang.ProcessBuilder.Redirect;
 import java.util.ArrayList;
 
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
@@ -45,6 +42,9 @@ public class PolyglotSentiment  extends SegmenterBase {
     @ConfigurationParameter(name = PARAM_POLYGLOT_PATH, mandatory = false)
     protected String POLYGLOT_LOCATION;
     
+    // python process running language.py
+    private PolyglotWorker worker;
+    
 	/**
 	 * Analyze the text and create Sentiment-Tag for every word. After successfully creation, add Polarity to JCas.
 	 * @param aJCas
@@ -54,6 +54,9 @@ public class PolyglotSentiment  extends SegmenterBase {
 		if(POLYGLOT_LOCATION == null) {
 			POLYGLOT_LOCATION = "src/main/resources/org/hucompute/textimager/uima/polyglot/python/";
 		}
+		if (worker == null) {
+			worker = PolyglotWorker.acquire(PythonPATH, POLYGLOT_LOCATION + "language.py");
+		}
 		
 		String inputText = aJCas.getDocumentText();
 		
@@ -63,28 +66,8 @@ public class PolyglotSentiment  extends SegmenterBase {
 			T.add(token);
 		}
 		
-		// Define ProcessBuilder
-        ProcessBuilder pb = new ProcessBuilder(PythonPATH, POLYGLOT_LOCATION + "language.py", "sentiment", inputText);
-        pb.redirectError(Redirect.INHERIT);
-        
-        boolean success = false;
-        Process proc = null;
-        
-        try {
-	    	// Start Process
-	        proc = pb.start();
-	
-	        // IN, ERROR Streams
-	        BufferedReader in = new BufferedReader(new InputStreamReader(proc.getInputStream()));
-	        BufferedReader error = new BufferedReader(new InputStreamReader(proc.getErrorStream()));
-	      
-	        StringBuilder builder = new StringBuilder();
-					String line = null;
-					while ( (line = in.readLine()) != null) {
-					   builder.append(line);
-					   builder.append(System.getProperty("line.separator"));
-					}
-			String result = builder.toString();
+		try {
+			String result = worker.call("sentiment", inputText);
 			String[] resultInParts = result.split("\n");
 			
 			// Only process sentence if Sentiment-TAG is found.
@@ -97,36 +80,19 @@ public class PolyglotSentiment  extends SegmenterBase {
 				}
 			}
 				
-	        // Get Errors
-             String errorString = "";
-			 line = "";
-			 try {
-				while ((line = error.readLine()) != null) {
-					errorString += line+"\n";
-				}
-			 } catch (IOException e) {
-				e.printStackTrace();
-			 }
-
-			 // Log Error
-			 if(errorString != "")
-			 getLogger().error(errorString);
-			 
-             success = true;
         }
         catch (IOException e) {
             throw new AnalysisEngineProcessException(e);
         }
-        
-        finally {
-            if (!success) {
-
-            }
-            
-            if (proc != null) {
-                proc.destroy();
-            }
-        }	
+	}
+	
+	@Override
+	public void destroy() {
+		if (worker != null) {
+			worker.release();
+			worker = null;
+		}
+		super.destroy();
 	}
 	
 	@Override
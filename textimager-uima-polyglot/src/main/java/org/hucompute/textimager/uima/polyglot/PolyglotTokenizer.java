@@ -2,12 +2,7 @@ package org.hucompute.textimager.uima.polyglot;
 
 import static org.apache.uima.fit.util.JCasUtil.select;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
-import java.lang.ProcessBuilder.Redirect;
 
 import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
 import org.apache.uima.fit.descriptor.ConfigurationParameter;
@@ -45,6 +40,9 @@ public class PolyglotTokenizer  extends SegmenterBase {
     public static final String PARAM_POLYGLOT_PATH = "PolyglotPath";
     @ConfigurationParameter(name = PARAM_POLYGLOT_PATH, mandatory = false)
     protected String POLYGLOT_LOCATION;
+    
+    // python process running language.py
+    private PolyglotWorker worker;
 	
 	/**
 	 * Analyze the text and create tokens for every word. After successfully creation, add tokens to JCas.
@@ -55,32 +53,13 @@ public class PolyglotTokenizer  extends SegmenterBase {
 		if(POLYGLOT_LOCATION == null) {
 			POLYGLOT_LOCATION = "src/main/resources/org/hucompute/textimager/uima/polyglot/python/";
 		}
+		if (worker == null) {
+			worker = PolyglotWorker.acquire(PythonPATH, POLYGLOT_LOCATION + "language.py");
+		}
 		
 		for (Sentence sentence : select(aJCas, Sentence.class)) {		
-			// Define ProcessBuilder
-	        ProcessBuilder pb = new ProcessBuilder(PythonPATH, POLYGLOT_LOCATION + "language.py", "token", sentence.getCoveredText());
-	        pb.redirectError(Redirect.INHERIT);
-	        
-	        boolean success = false;
-	        Process proc = null;
-	        
-	        try {
-		    	// Start Process
-		        proc = pb.start();
-		
-		        // IN, OUT, ERROR Streams
-		        PrintWriter out = new PrintWriter(new OutputStreamWriter(proc.getOutputStream()));
-		        BufferedReader in = new BufferedReader(new InputStreamReader(proc.getInputStream()));
-		        BufferedReader error = new BufferedReader(new InputStreamReader(proc.getErrorStream()));
-		      
-		        StringBuilder builder = new StringBuilder();
-						String line = null;
-						while ( (line = in.readLine()) != null) {
-						   builder.append(line);
-						   builder.append(System.getProperty("line.separator"));
-						}
-						
-				String result = builder.toString();
+			try {
+				String result = worker.call("token", sentence.getCoveredText());
 				String[] resultInParts = result.split("\n");
 						
 				String currentSentence = sentence.getCoveredText();
@@ -105,40 +84,23 @@ public class PolyglotTokenizer  extends SegmenterBase {
 		        	token.addToIndexes(aJCas);
 				}		
 						
-		        // Get Errors
-	             String errorString = "";
-				 line = "";
-				 try {
-					while ((line = error.readLine()) != null) {
-						errorString += line+"\n";
-					}
-				 } catch (IOException e) {
-					e.printStackTrace();
-				 }
-
-				 // Log Error
-				 if(errorString != "")
-				 getLogger().error(errorString);
-				 
-	             success = true;
 	        }
 	        catch (IOException e) {
 	            throw new AnalysisEngineProcessException(e);
 	        }
-	        
-	        finally {
-	            if (!success) {
-
-	            }
-	            
-	            if (proc != null) {
-	                proc.destroy();
-	            }
-	        }
 		}
 	}
 
 	
+	@Override
+	public void destroy() {
+		if (worker != null) {
+			worker.release();
+			worker = null;
+		}
+		super.destroy();
+	}
+	
 	@Override
 	protected void process(JCas aJCas, String text, int zoneBegin) throws AnalysisEngineProcessException {		
 			
@@ -0,0 +1,241 @@
+package org.hucompute.textimager.uima.polyglot;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ProcessBuilder.Redirect;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+* PolyglotWorker
+*
+* Long running python process executing the commands of language.py, so python and the models
+* are only loaded once instead of for every token.
+*
+* A request is one line with a json list of commands, e.g. [["token","A sentence."],["token","Another one."]].
+* For every command the worker answers with a header line containing the length of the output in bytes,
+* or "ERR" and the length of the error message, followed by the output.
+* The process is started again if it died. Workers are shared by all annotators of this JVM using the same
+* python and script.
+*/
+public class PolyglotWorker {
+	// python error while running a command, the worker is still usable
+	public static class CommandException extends IOException {
+		public CommandException(String message) {
+			super(message);
+		}
+	}
+
+	private static final Map<List<String>, PolyglotWorker> workers = new HashMap<>();
+
+	private final List<String> command;
+	private int useCount = 0;
+
+	private Process process;
+	private OutputStream toWorker;
+	private InputStream fromWorker;
+
+	private long requests = 0;
+	private long restarts = 0;
+
+	PolyglotWorker(List<String> command) {
+		this.command = command;
+	}
+
+	/**
+	 * Get the worker for this script, started on the first request
+	 *
+	 * @param pythonPath the python executable
+	 * @param scriptPath path to language.py
+	 */
+	public static PolyglotWorker acquire(String pythonPath, String scriptPath) {
+		List<String> command = Arrays.asList(pythonPath, scriptPath, "worker");
+		synchronized (workers) {
+			PolyglotWorker worker = workers.computeIfAbsent(command, PolyglotWorker::new);
+			worker.useCount++;
+			return worker;
+		}
+	}
+
+	// Stops the worker if no annotator uses it anymore
+	public void release() {
+		synchronized (workers) {
+			useCount--;
+			if (useCount > 0) {
+				return;
+			}
+			workers.remove(command);
+		}
+		close();
+	}
+
+	// Runs one command, e.g. call("token", text)
+	public String call(String... command) throws IOException {
+		return call(Collections.singletonList(Arrays.asList(command))).get(0);
+	}
+
+	/**
+	 * Runs all commands with one request
+	 *
+	 * @return the output of every command
+	 */
+	public synchronized List<String> call(List<List<String>> commands) throws IOException {
+		if (commands.isEmpty()) {
+			return new ArrayList<>();
+		}
+		requests++;
+		try {
+			return send(commands);
+		} catch (CommandException e) {
+			throw e;
+		} catch (IOException e) {
+			// worker died, try once more with a new one
+			System.out.println("polyglot worker failed, restarting: " + e.getMessage());
+			stop();
+			restarts++;
+			return send(commands);
+		}
+	}
+
+	private List<String> send(List<List<String>> commands) throws IOException {
+		if (process == null || !process.isAlive()) {
+			if (process != null) {
+				System.out.println("polyglot worker exited, restarting");
+				restarts++;
+			}
+			start();
+		}
+
+		toWorker.write((toJson(commands) + "\n").getBytes(StandardCharsets.UTF_8));
+		toWorker.flush();
+
+		// read all answers, even after an error, to stay in sync
+		List<String> results = new ArrayList<>();
+		String error = null;
+		for (int ind = 0; ind < commands.size(); ind++) {
+			String header = readLine();
+			boolean failed = header.startsWith("ERR ");
+			int length = Integer.parseInt(failed ? header.substring(4) : header);
+			String output = new String(readBytes(length), StandardCharsets.UTF_8);
+			if (failed) {
+				error = commands.get(ind).get(0) + ": " + output;
+				results.add(null);
+			}
+			else {
+				results.add(output);
+			}
+		}
+		if (error != null) {
+			throw new CommandException(error);
+		}
+		return results;
+	}
+
+	private void start() throws IOException {
+		System.out.println("starting polyglot worker " + command);
+		ProcessBuilder pb = new ProcessBuilder(command);
+		pb.redirectError(Redirect.INHERIT);
+		process = pb.start();
+		toWorker = process.getOutputStream();
+		fromWorker = new BufferedInputStream(process.getInputStream());
+	}
+
+	private void stop() {
+		if (process == null) {
+			return;
+		}
+		try {
+			toWorker.close();
+			if (!process.waitFor(5, TimeUnit.SECONDS)) {
+				process.destroyForcibly();
+			}
+		} catch (IOException | InterruptedException e) {
+			process.destroyForcibly();
+		}
+		process = null;
+	}
+
+	// Stops the python process
+	public synchronized void close() {
+		stop();
+	}
+
+	private String readLine() throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream();
+		int read;
+		while ((read = fromWorker.read()) != '\n') {
+			if (read == -1) {
+				throw new EOFException("polyglot worker exited");
+			}
+			line.write(read);
+		}
+		return new String(line.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	private byte[] readBytes(int length) throws IOException {
+		byte[] bytes = new byte[length];
+		int offset = 0;
+		while (offset < length) {
+			int read = fromWorker.read(bytes, offset, length - offset);
+			if (read == -1) {
+				throw new EOFException("polyglot worker exited");
+			}
+			offset += read;
+		}
+		return bytes;
+	}
+
+	// Json list of string lists, non ascii characters are escaped
+	static String toJson(List<List<String>> commands) {
+		StringBuilder json = new StringBuilder("[");
+		for (int ind = 0; ind < commands.size(); ind++) {
+			json.append(ind > 0 ? ",[" : "[");
+			List<String> args = commands.get(ind);
+			for (int arg = 0; arg < args.size(); arg++) {
+				if (arg > 0) {
+					json.append(',');
+				}
+				json.append('"');
+				for (char c : args.get(arg).toCharArray()) {
+					if (c == '"' || c == '\\') {
+						json.append('\\').append(c);
+					}
+					else if (c < 0x20 || c > 0x7e) {
+						json.append(String.format("\\u%04x", (int) c));
+					}
+					else {
+						json.append(c);
+					}
+				}
+				json.append('"');
+			}
+			json.append(']');
+		}
+		return json.append(']').toString();
+	}
+
+	// number of requests sent to the worker
+	public long getRequests() {
+		return requests;
+	}
+
+	// number of times the worker was started again
+	public long getRestarts() {
+		return restarts;
+	}
+
+	// the running python process, null if not started
+	Process getProcess() {
+		return process;
+	}
+}
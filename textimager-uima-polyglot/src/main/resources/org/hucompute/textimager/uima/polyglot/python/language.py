@@ -41,27 +41,54 @@ def transliteration(text, toLangCode):
 	inputText = Text(text)
 	for x in inputText.transliterate(toLangCode):
   		print(x)
+embeddingCache = {}
 def embedding(text, embeddingPATH):
-	embeddings = Embedding.load(embeddingPATH)
+	# loading takes seconds, keep them for the worker
+	if embeddingPATH not in embeddingCache:
+		embeddingCache[embeddingPATH] = Embedding.load(embeddingPATH)
+	embeddings = embeddingCache[embeddingPATH]
 	neighbors = embeddings.nearest_neighbors(text)
 	for w, d in zip(neighbors, embeddings.distances(text, neighbors)):
   		print("{}\n{}".format(w,d))
 		
-if sys.argv[1]=="language":
-	language(sys.argv[2])
-elif sys.argv[1]=="token":
-	token(sys.argv[2])
-elif sys.argv[1]=="sentence":
-	sentence(sys.argv[2])
-elif sys.argv[1]=="pos":
-	pos(sys.argv[2])
-elif sys.argv[1]=="ner":
-	ner(sys.argv[2])
-elif sys.argv[1]=="sentiment":
-	sentiment(sys.argv[2])
-elif sys.argv[1]=="embedding":
-	embedding(sys.argv[2], sys.argv[3])
-elif sys.argv[1]=="morphology":
-	morphology(sys.argv[2], sys.argv[3])
-elif sys.argv[1]=="transliteration":
-	transliteration(sys.argv[2], sys.argv[3])
+commands = {
+	"language": language,
+	"token": token,
+	"sentence": sentence,
+	"pos": pos,
+	"ner": ner,
+	"sentiment": sentiment,
+	"embedding": embedding,
+	"morphology": morphology,
+	"transliteration": transliteration
+}
+
+# Long running mode: reads one json list of commands per line,
+# writes the length of every output ("ERR <length>" on errors) and the output
+def worker():
+	import json
+	from StringIO import StringIO
+	out = sys.stdout
+	while True:
+		line = sys.stdin.readline()
+		if not line:
+			break
+		for command in json.loads(line):
+			sys.stdout = StringIO()
+			try:
+				commands[command[0]](*command[1:])
+				status, payload = "", sys.stdout.getvalue()
+			except Exception as e:
+				status, payload = "ERR ", repr(e)
+			finally:
+				sys.stdout = out
+			if isinstance(payload, unicode):
+				payload = payload.encode('utf-8')
+			out.write("%s%d\n" % (status, len(payload)))
+			out.write(payload)
+		out.flush()
+
+if sys.argv[1]=="worker":
+	worker()
+else:
+	commands[sys.argv[1]](*sys.argv[2:])
@@ -0,0 +1,140 @@
+package org.hucompute.textimager.uima.polyglot;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+* PolyglotWorkerTest
+*
+* Tests the worker protocol of language.py and compares it to a process per token.
+* Skipped if polyglot is not installed for the python given with -Dtextimager.polyglot.python.
+*/
+public class PolyglotWorkerTest {
+	private static final String PYTHON = System.getProperty("textimager.polyglot.python", "/usr/bin/python");
+	private static final String SCRIPT = new File("src/main/resources/org/hucompute/textimager/uima/polyglot/python/language.py").getAbsolutePath();
+
+	@BeforeClass
+	public static void polyglotInstalled() throws InterruptedException {
+		boolean installed;
+		try {
+			Process proc = new ProcessBuilder(PYTHON, "-c", "import polyglot").start();
+			installed = proc.waitFor() == 0;
+		} catch (IOException e) {
+			installed = false;
+		}
+		Assume.assumeTrue("polyglot is not installed for " + PYTHON, installed);
+	}
+
+	// Old way: one python process per command
+	private String callProcess(String... args) throws IOException, InterruptedException {
+		List<String> command = new ArrayList<>(Arrays.asList(PYTHON, SCRIPT));
+		command.addAll(Arrays.asList(args));
+		Process proc = new ProcessBuilder(command).start();
+		try (InputStream in = proc.getInputStream()) {
+			String output = IOUtils.toString(in, StandardCharsets.UTF_8);
+			proc.waitFor();
+			return output;
+		}
+	}
+
+	@Test
+	public void workerAnswersLikeProcessPerToken() throws Exception {
+		PolyglotWorker worker = PolyglotWorker.acquire(PYTHON, SCRIPT);
+		try {
+			assertEquals(callProcess("token", "Ein kurzer Satz um Polyglot zu testen."), worker.call("token", "Ein kurzer Satz um Polyglot zu testen."));
+			// not through the command line, its encoding depends on the locale
+			assertEquals("Grüße\naus\nFrankfurt\n", worker.call("token", "Grüße aus Frankfurt"));
+		} finally {
+			worker.release();
+		}
+	}
+
+	@Test
+	public void oneRequestAnswersEveryCommand() throws Exception {
+		PolyglotWorker worker = PolyglotWorker.acquire(PYTHON, SCRIPT);
+		try {
+			List<String> batched = worker.call(Arrays.asList(Arrays.asList("token", "Ein Satz."), Arrays.asList("token", "Noch ein Satz.")));
+			assertEquals(Arrays.asList(worker.call("token", "Ein Satz."), worker.call("token", "Noch ein Satz.")), batched);
+		} finally {
+			worker.release();
+		}
+	}
+
+	// enable with -Dtextimager.benchmark=true
+	@Test
+	public void benchmarkWorkerAgainstProcessPerToken() throws Exception {
+		Assume.assumeTrue(Boolean.getBoolean("textimager.benchmark"));
+
+		List<String> tokens = new ArrayList<>();
+		for (int ind = 0; ind < 20; ind++) {
+			tokens.add("token" + ind);
+		}
+
+		long start = System.nanoTime();
+		List<String> perToken = new ArrayList<>();
+		for (String token : tokens) {
+			perToken.add(callProcess("token", token));
+		}
+		long perTokenMillis = (System.nanoTime() - start) / 1000000;
+
+		PolyglotWorker worker = PolyglotWorker.acquire(PYTHON, SCRIPT);
+		try {
+			start = System.nanoTime();
+			List<List<String>> commands = new ArrayList<>();
+			for (String token : tokens) {
+				commands.add(Arrays.asList("token", token));
+			}
+			List<String> batched = worker.call(commands);
+			long workerMillis = (System.nanoTime() - start) / 1000000;
+
+			assertEquals(perToken, batched);
+			System.out.println(tokens.size() + " tokens: process per token " + perTokenMillis + " ms, worker " + workerMillis + " ms");
+		} finally {
+			worker.release();
+		}
+	}
+
+	@Test
+	public void workerIsRestartedAfterCrash() throws Exception {
+		PolyglotWorker worker = PolyglotWorker.acquire(PYTHON, SCRIPT);
+		try {
+			assertEquals("a\n", worker.call("token", "a"));
+			worker.getProcess().destroyForcibly().waitFor();
+
+			assertEquals("b\n", worker.call("token", "b"));
+			assertEquals(1, worker.getRestarts());
+		} finally {
+			worker.release();
+		}
+	}
+
+	@Test
+	public void pythonErrorKeepsWorker() throws Exception {
+		PolyglotWorker worker = PolyglotWorker.acquire(PYTHON, SCRIPT);
+		try {
+			try {
+				worker.call(Arrays.asList(Arrays.asList("token", "a"), Arrays.asList("unknown", "broken")));
+				throw new AssertionError("expected CommandException");
+			} catch (PolyglotWorker.CommandException e) {
+				assertTrue(e.getMessage().contains("unknown"));
+			}
+			assertEquals("c\n", worker.call("token", "c"));
+			assertEquals(0, worker.getRestarts());
+		} finally {
+			worker.release();
+		}
+	}
+}
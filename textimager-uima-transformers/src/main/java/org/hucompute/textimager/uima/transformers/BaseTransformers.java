@@ -1,9 +1,15 @@
 package org.hucompute.textimager.uima.transformers;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Objects;
 
+import org.apache.commons.io.IOUtils;
 import org.apache.uima.UimaContext;
+import org.apache.uima.fit.descriptor.ConfigurationParameter;
 import org.apache.uima.fit.util.JCasUtil;
 import org.apache.uima.jcas.JCas;
 import org.apache.uima.resource.ResourceInitializationException;
@@ -11,11 +17,15 @@ import org.hucompute.textimager.uima.base.JepAnnotator;
 
 import de.tudarmstadt.ukp.dkpro.core.api.segmentation.type.Token;
 import jep.JepException;
-import jep.SharedInterpreter;
 
 public abstract class BaseTransformers extends JepAnnotator {
 
-	public static SharedInterpreter interp;
+	/**
+	 * Max number of models kept loaded in the interpreter, the least recently used model is dropped
+	 */
+	public static final String PARAM_MAX_MODELS = "maxModels";
+	@ConfigurationParameter(name = PARAM_MAX_MODELS, mandatory = false, defaultValue = "4")
+	protected int maxModels;
 
 	@Override
 	public void initialize(UimaContext aContext) throws ResourceInitializationException {
@@ -53,9 +63,16 @@ public abstract class BaseTransformers extends JepAnnotator {
 		try {
 			interpreter.exec("import os");
 			interpreter.exec("import sys");
-			interpreter.exec("from tranformers import pipeline, AutoTokenizer"); 
+			interpreter.exec("from transformers import pipeline, AutoTokenizer");
 			interpreter.exec("from java.lang import System");
-		} catch (JepException ex) {
+
+			// model cache, shared by all annotators using this interpreter
+			try (InputStream source = getClass().getClassLoader().getResourceAsStream("textimager_model_cache.py")) {
+				interpreter.exec(IOUtils.toString(Objects.requireNonNull(source), StandardCharsets.UTF_8));
+			}
+			interpreter.exec("if 'textimager_models' not in globals(): textimager_models = ModelCache(" + maxModels + ")");
+			interpreter.exec("textimager_models.max_models = max(textimager_models.max_models, " + maxModels + ")");
+		} catch (JepException | IOException ex) {
 			throw new ResourceInitializationException(ex);
 		}
 		
@@ -125,13 +142,14 @@ public abstract class BaseTransformers extends JepAnnotator {
 		return json;
 	}
 	
-	@Override
-	public void destroy() {
-		try {
-			interp.close();
-		} catch (JepException e) {
-			e.printStackTrace();
-		}
-		super.destroy();
+	/**
+	 * Sets the python variable to the model, the model is only created if it is not loaded yet
+	 *
+	 * @param variable python variable to set
+	 * @param key unique name of the model, e.g. "ner:fhswf/bert_de_ner"
+	 * @param factory python expression creating the model
+	 */
+	protected void loadModel(String variable, String key, String factory) throws JepException {
+		interpreter.exec(variable + " = textimager_models.get('" + key + "', lambda: " + factory + ")");
 	}
 }
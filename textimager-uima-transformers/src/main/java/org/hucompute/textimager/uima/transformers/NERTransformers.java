@@ -52,6 +52,27 @@ public class NERTransformers extends BaseTransformers {
 		mappingProvider.setOverride(MappingProvider.LOCATION, nerMappingLocation);
 		mappingProvider.setOverride(MappingProvider.LANGUAGE, language);
 		mappingProvider.setOverride(MappingProvider.VARIANT, variant);
+
+		// load the models once, not for every document
+		if (language != null && !language.isEmpty()) {
+			try {
+				loadModels(language);
+			} catch (JepException e) {
+				throw new ResourceInitializationException(e);
+			}
+		}
+	}
+
+	// Sets "nlp" and "tokenizer" to the cached models for this language
+	private void loadModels(String lang) throws JepException {
+		if (lang.equals("de")) {
+			loadModel("nlp", "ner:fhswf/bert_de_ner", "pipeline('ner', model='fhswf/bert_de_ner')");
+			loadModel("tokenizer", "tokenizer:fhswf/bert_de_ner", "AutoTokenizer.from_pretrained('fhswf/bert_de_ner', use_fast=True)");
+		}
+		else {
+			loadModel("nlp", "ner:default", "pipeline('ner')");
+			loadModel("tokenizer", "tokenizer:dbmdz/bert-large-cased-finetuned-conll03-english", "AutoTokenizer.from_pretrained('dbmdz/bert-large-cased-finetuned-conll03-english', use_fast=True)");
+		}
 	}
 	
 
@@ -62,25 +83,17 @@ public class NERTransformers extends BaseTransformers {
 		HashMap<String, Object>  json = buildJSON(aJCas);
 		ArrayList<ArrayList<Long>> tokens;
 		try {
-			interp.set("lang", aJCas.getDocumentLanguage());
-			interp.set("words",json.get("words"));
-			interp.set("spaces",json.get("spaces"));
-			interp.set("text",aJCas.getDocumentText());
-			
-			if(aJCas.getDocumentLanguage().equals("de")) {
-				interp.exec("nlp = pipeline('ner',model='fhswf/bert_de_ner')");
-				interp.exec("tokenizer = AutoTokenizer.from_pretrained(\"fhswf/bert_de_ner\", use_fast=True)");
-			}
-			else {
-				interp.exec("nlp = pipeline('ner')");
-				interp.exec("tokenizer = AutoTokenizer.from_pretrained(\"dbmdz/bert-large-cased-finetuned-conll03-english\", use_fast=True)");
-			}
+			interpreter.set("lang", aJCas.getDocumentLanguage());
+			interpreter.set("words",json.get("words"));
+			interpreter.set("spaces",json.get("spaces"));
+			interpreter.set("text",aJCas.getDocumentText());
 			
+			loadModels(aJCas.getDocumentLanguage());
 			
-			interp.exec("ents = nlp(text)");
-			interp.exec("tokens = tokenizer(text, return_offsets_mapping = True).get('offset_mapping')");
-			tokens = (ArrayList<ArrayList<Long>>) interp.getValue("tokens");			
-			ArrayList<HashMap<String, Object>> poss = (ArrayList<HashMap<String, Object>>) interp.getValue("ents");
+			interpreter.exec("ents = nlp(text)");
+			interpreter.exec("tokens = tokenizer(text, return_offsets_mapping = True).get('offset_mapping')");
+			tokens = (ArrayList<ArrayList<Long>>) interpreter.getValue("tokens");			
+			ArrayList<HashMap<String, Object>> poss = (ArrayList<HashMap<String, Object>>) interpreter.getValue("ents");
 			poss.forEach(p -> {
 				
 				int index = ((Long)p.get("index")).intValue();
@@ -21,6 +21,11 @@ public class SentAnaTransformers extends BaseTransformers {
 	public void initialize(UimaContext aContext) throws ResourceInitializationException {
 		super.initialize(aContext);
 
+		try {
+			loadModel("nlp", "sentiment-analysis:default", "pipeline('sentiment-analysis')");
+		} catch (JepException e) {
+			throw new ResourceInitializationException(e);
+		}
 	}
 	
 
@@ -30,15 +35,16 @@ public class SentAnaTransformers extends BaseTransformers {
 		HashMap<String, Object>  json = buildJSON(aJCas);
 
 		try {
-			interp.set("lang", aJCas.getDocumentLanguage());
-			interp.set("words",json.get("words"));
-			interp.set("spaces",json.get("spaces"));
-			interp.set("text",aJCas.getDocumentText());
+			interpreter.set("lang", aJCas.getDocumentLanguage());
+			interpreter.set("words",json.get("words"));
+			interpreter.set("spaces",json.get("spaces"));
+			interpreter.set("text",aJCas.getDocumentText());
 
-			interp.exec("nlp = pipeline('sentiment-analysis')");
-			interp.exec("ents = nlp(text)");
+			// cache hit, "nlp" can be changed by other annotators sharing the interpreter
+			loadModel("nlp", "sentiment-analysis:default", "pipeline('sentiment-analysis')");
+			interpreter.exec("ents = nlp(text)");
 
-			ArrayList<HashMap<String, Object>> poss = (ArrayList<HashMap<String, Object>>) interp.getValue("ents");
+			ArrayList<HashMap<String, Object>> poss = (ArrayList<HashMap<String, Object>>) interpreter.getValue("ents");
 			poss.forEach(p -> {
 				
 				String labelStr = p.get("label").toString();
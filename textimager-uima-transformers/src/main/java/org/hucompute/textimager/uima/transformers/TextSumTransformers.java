@@ -16,6 +16,11 @@ public class TextSumTransformers extends BaseTransformers {
 	public void initialize(UimaContext aContext) throws ResourceInitializationException {
 		super.initialize(aContext);
 
+		try {
+			loadModel("nlp", "summarization:default", "pipeline('summarization')");
+		} catch (JepException e) {
+			throw new ResourceInitializationException(e);
+		}
 	}
 	
 
@@ -25,15 +30,16 @@ public class TextSumTransformers extends BaseTransformers {
 		HashMap<String, Object>  json = buildJSON(aJCas);
 
 		try {
-			interp.set("lang", aJCas.getDocumentLanguage());
-			interp.set("words",json.get("words"));
-			interp.set("spaces",json.get("spaces"));
-			interp.set("text",aJCas.getDocumentText());
+			interpreter.set("lang", aJCas.getDocumentLanguage());
+			interpreter.set("words",json.get("words"));
+			interpreter.set("spaces",json.get("spaces"));
+			interpreter.set("text",aJCas.getDocumentText());
 
-			interp.exec("nlp = pipeline('summarization')");
-			interp.exec("textsum = nlp(text)");
+			// cache hit, "nlp" can be changed by other annotators sharing the interpreter
+			loadModel("nlp", "summarization:default", "pipeline('summarization')");
+			interpreter.exec("textsum = nlp(text)");
 
-			ArrayList<HashMap<String, Object>> poss = (ArrayList<HashMap<String, Object>>) interp.getValue("textsum");
+			ArrayList<HashMap<String, Object>> poss = (ArrayList<HashMap<String, Object>>) interpreter.getValue("textsum");
 			poss.forEach(p -> {
 				
 				String labelStr = p.get("summary_text").toString();
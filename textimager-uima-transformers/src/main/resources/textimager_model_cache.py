@@ -0,0 +1,23 @@
+from collections import OrderedDict
+
+
+class ModelCache:
+    """Loaded models of this interpreter, the least recently used model is dropped if there are too many"""
+
+    def __init__(self, max_models):
+        self.max_models = max_models
+        self.models = OrderedDict()
+        # number of times each model was loaded
+        self.loads = {}
+
+    def get(self, key, factory):
+        if key in self.models:
+            self.models.move_to_end(key)
+            return self.models[key]
+
+        model = factory()
+        self.loads[key] = self.loads.get(key, 0) + 1
+        self.models[key] = model
+        while len(self.models) > self.max_models:
+            self.models.popitem(last=False)
+        return model
@@ -0,0 +1,87 @@
+package org.hucompute.textimager.uima.transformers;
+
+import static org.apache.uima.fit.factory.AnalysisEngineFactory.createEngine;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.uima.UIMAException;
+import org.apache.uima.UimaContext;
+import org.apache.uima.analysis_engine.AnalysisEngine;
+import org.apache.uima.analysis_engine.AnalysisEngineProcessException;
+import org.apache.uima.fit.factory.JCasFactory;
+import org.apache.uima.jcas.JCas;
+import org.apache.uima.resource.ResourceInitializationException;
+import org.hucompute.textimager.uima.base.CondaEnvManifest;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import jep.JepException;
+
+/**
+ * Runs with the transformers conda env of the {@link BaseTransformers} defaults, skipped if it is not set up
+ */
+public class ModelCacheTest {
+	private static final Path ENV = Paths.get(System.getProperty("user.home"), ".textimager", "conda", "py37_4.8.3",
+			"miniconda", "envs", "textimager_transformers310_py37");
+
+	// number of times each stand-in model was created
+	private static final Map<String, Long> created = new HashMap<>();
+
+	// loads a tiny stand-in model for the language of each document
+	public static class StandInTransformers extends BaseTransformers {
+		@Override
+		public void initialize(UimaContext aContext) throws ResourceInitializationException {
+			super.initialize(aContext);
+			try {
+				interpreter.exec("class StandInModel:\n"
+						+ "    def __init__(self, lang):\n"
+						+ "        self.lang = lang\n"
+						+ "    def __call__(self, text):\n"
+						+ "        return self.lang + ':' + text\n");
+			} catch (JepException e) {
+				throw new ResourceInitializationException(e);
+			}
+		}
+
+		@Override
+		public void process(JCas aJCas) throws AnalysisEngineProcessException {
+			String lang = aJCas.getDocumentLanguage();
+			try {
+				loadModel("nlp", "standin:" + lang, "StandInModel('" + lang + "')");
+				interpreter.set("text", aJCas.getDocumentText());
+				assertEquals(lang + ":" + aJCas.getDocumentText(), interpreter.getValue("nlp(text)", String.class));
+				created.put(lang, interpreter.getValue("textimager_models.loads['standin:" + lang + "']", Long.class));
+			} catch (JepException e) {
+				throw new AnalysisEngineProcessException(e);
+			}
+		}
+	}
+
+	@BeforeClass
+	public static void envSetUp() {
+		Assume.assumeTrue("the transformers env is not set up in " + ENV, Files.isRegularFile(ENV.resolve(CondaEnvManifest.FILE_NAME)));
+	}
+
+	@Test
+	public void modelsAreCreatedOncePerName() throws UIMAException {
+		AnalysisEngine engine = createEngine(StandInTransformers.class, BaseTransformers.PARAM_MAX_MODELS, 2);
+
+		// "en" is dropped when "fr" is loaded, "de" was used more recently
+		String[] languages = new String[] { "de", "de", "en", "de", "de", "fr", "de", "en" };
+		for (String lang : languages) {
+			JCas jCas = JCasFactory.createText("Ein kurzer Text.", lang);
+			engine.process(jCas);
+		}
+		engine.destroy();
+
+		assertEquals(Long.valueOf(1), created.get("de"));
+		assertEquals(Long.valueOf(1), created.get("fr"));
+		assertEquals(Long.valueOf(2), created.get("en"));
+	}
+}